@@ -121,10 +121,10 @@ public class MissionSplitFrameIMPL implements MissionSplitFrameInterface{
 			String endDateString = date.getMissionStringValue();
 			State originalState = stateBox.getSelectionModel().getSelectedItem();
 			State endState = originalState == State.ON ? State.OFF : State.ON;
-			isSent = isSent && GuiManager.getInstance().sendSatelliteModeCommand(endDateString, selectedComponent.getCommand(endState));
+			isSent = GuiManager.getInstance().sendSatelliteModeCommand(endDateString, selectedComponent.getCommand(endState)) && isSent;
 		}
 		StringBuilder logUpdate = new StringBuilder();
-		logUpdate.append(" A mission for component: ").append(selectedComponent.toString()).append(isSent ? " is sent." : " is stored");
+		logUpdate.append(" A mission for component: ").append(selectedComponent.toString()).append(isSent ? " is sent." : " is queued for the next pass.");
 
 		return logUpdate;
 
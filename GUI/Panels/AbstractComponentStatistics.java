@@ -13,21 +13,20 @@ import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
-import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.poi.hssf.usermodel.HSSFSheet;
 import org.apache.poi.hssf.usermodel.HSSFWorkbook;
-import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.Row;
 
-import data.Component;
+import data.TelemetryDownsampler;
+import data.TelemetryRollup;
+import data.TelemetrySeries;
 import Utils.Utils;
-import javafx.collections.FXCollections;
-import javafx.collections.ObservableList;
+import javafx.application.Platform;
 import javafx.event.ActionEvent;
 import javafx.event.EventHandler;
 import javafx.geometry.Orientation;
-import javafx.scene.chart.CategoryAxis;
 import javafx.scene.chart.LineChart;
 import javafx.scene.chart.NumberAxis;
 import javafx.scene.chart.XYChart;
@@ -41,8 +40,10 @@ import javafx.scene.control.TableView;
 import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.scene.image.ImageView;
 import javafx.scene.input.MouseEvent;
+import javafx.scene.input.ScrollEvent;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.HBox;
+import javafx.util.StringConverter;
 import misc.SatalliteUtils;
 import misc.StatisticDataItem;
 import misc.StatisticDataItemInterface;
@@ -54,11 +55,23 @@ import misc.StatisticDataItemInterface;
  *
  */
 public abstract class AbstractComponentStatistics implements CommunicationRefreshInterface {
+	private static final long dayinMS = 86400000;
+	private static final int daysPerUpdate = 7;
+	private static final int defaultChartPixels = 800;
+	/** The table only needs to know which days have data, the chart and the export read again */
+	private static final long tableResolution = TelemetryRollup.DAY;
+	/** Rows of an .xls sheet, the header included */
+	private static final int maxExcelRows = 65536;
 	TableView<StatisticDataItemInterface> table;
 	private BorderPane rightPane;
 	private BorderPane mainPane;
 	private SplitPane split;
-	LineChart<String,Number> lineChart;
+	LineChart<Number,Number> lineChart;
+	private NumberAxis xAxis;
+	private List<StatisticDataItemInterface> chartItems = new ArrayList<>();
+	private long chartStart, chartEnd;
+	private final AtomicLong loadCounter = new AtomicLong();
+	private final AtomicLong chartCounter = new AtomicLong();
 
 	public AbstractComponentStatistics(BorderPane mainParentPane){			
 		createTable();
@@ -68,20 +81,56 @@ public abstract class AbstractComponentStatistics implements CommunicationRefres
 		mainPane = new BorderPane();
 		HBox chartHbox = SatalliteUtils.getHBox(10);
 
-		final CategoryAxis xAxis = new CategoryAxis();
+		xAxis = new NumberAxis();
 		final NumberAxis yAxis = new NumberAxis();
 		xAxis.setLabel("Day Time");
+		xAxis.setForceZeroInRange(false);
+		yAxis.setForceZeroInRange(false);
+		xAxis.setTickLabelFormatter(new StringConverter<Number>() {
+			private final DateFormat timeFormat = new SimpleDateFormat("HH:mm:ss");
+			private final DateFormat dayFormat = new SimpleDateFormat("dd-MM HH:mm");
 
-		lineChart = new LineChart<String,Number>(xAxis,yAxis);
+			@Override
+			public String toString(Number t) {
+				Date date = new Date(t.longValue());
+				return xAxis.getUpperBound() - xAxis.getLowerBound() > dayinMS ? dayFormat.format(date) : timeFormat.format(date);
+			}
+
+			@Override
+			public Number fromString(String s) {
+				return 0;
+			}
+		});
+
+		lineChart = new LineChart<Number,Number>(xAxis,yAxis);
+		lineChart.setAnimated(false);
+		lineChart.setCreateSymbols(false);
+		lineChart.setOnScroll(new EventHandler<ScrollEvent>() {
+
+			@Override
+			public void handle(ScrollEvent e) {
+				zoomChart(e);
+				e.consume();
+			}
+		});
 		Button clearChart = new Button("Clear Chart");
 		clearChart.setOnAction(new EventHandler<ActionEvent>() {
 
 			@Override
 			public void handle(ActionEvent arg0) {
+				chartItems.clear();
 				lineChart.getData().clear();
 
 			}
 		});
+		Button resetZoom = new Button("Reset Zoom");
+		resetZoom.setOnAction(new EventHandler<ActionEvent>() {
+
+			@Override
+			public void handle(ActionEvent arg0) {
+				showChartRange(chartStart, chartEnd);
+			}
+		});
 		rightPane.setCenter(lineChart);
 		ImageView excellImage = new ImageView(Utils.getImageViewFromLocation(this.getClass(),"excel.jpg"));
 		Button exportToExcel = new Button("Export to excel",excellImage);
@@ -97,7 +146,7 @@ public abstract class AbstractComponentStatistics implements CommunicationRefres
 				}
 			}
 		});
-		chartHbox.getChildren().addAll(clearChart, exportToExcel);
+		chartHbox.getChildren().addAll(clearChart, resetZoom, exportToExcel);
 		rightPane.setTop(chartHbox);
 		split.getItems().addAll(table,rightPane);
 		mainPane.setCenter(split);
@@ -124,27 +173,18 @@ public abstract class AbstractComponentStatistics implements CommunicationRefres
 		return box;
 	}
 
-	protected void populateTableNodes(Timestamp oldestTS,
-			ObservableList<StatisticDataItemInterface> nodes,
-			DateFormat formatter, Timestamp toDate) {
-		boolean hasData = false;
-		List<Component> components = getComponent(oldestTS, toDate);
-		if(components.isEmpty()){
+	/**
+	 * Adds one item per sensor for the given samples
+	 * @param bucketStart time shown as the date of the items
+	 */
+	protected void populateTableNodes(TelemetrySeries series, long bucketStart,
+			List<StatisticDataItemInterface> nodes, DateFormat formatter) {
+		if(series.isEmpty()){
 			return;
 		}
-		Set<String> sensors = components.get(0).getSetOfSensorsNames();
-		for(String sensor : sensors){
-			String[][] data = new String[components.size()][3];
-			for(int i = 0 ; i < components.size() ; i++){
-				hasData = true;
-				Component comp = components.get(i);
-				data[i][0] = formatter.format(new Date(comp.getSampleTimestamp().getTime())).toString();
-				data[i][1] = comp.getSensorValue(sensor).toString();
-				data[i][2] = sensor;
-			}    
-			if(hasData){
-				nodes.add(new StatisticDataItem(formatter.format(new Date(oldestTS.getTime())).toString(), sensor, getObjectName(), data)); //TODO
-			}
+		String date = formatter.format(new Date(bucketStart));
+		for(int channel = 0 ; channel < series.getChannelCount() ; channel++){
+			nodes.add(new StatisticDataItem(date, series.getChannelName(channel), getObjectName(), series, channel));
 		}
 	}
 	/**
@@ -157,7 +197,6 @@ public abstract class AbstractComponentStatistics implements CommunicationRefres
 		Timestamp afterCal = null;
 		before = before.replace("/", "-");
 		after = after.replace("/", "-");
-		long dayinMS = 86400000;
 		DateFormat writeFormat = new SimpleDateFormat( "dd-MM-yyyy");
 		if(before != null && !before.isEmpty()){
 
@@ -187,9 +226,7 @@ public abstract class AbstractComponentStatistics implements CommunicationRefres
 			afterCal = new Timestamp(Calendar.getInstance().getTimeInMillis() - monthInMS * 100);
 		}
 
-		ObservableList<StatisticDataItemInterface> filteredItems = FXCollections.observableArrayList();
-		populateTableNodes(afterCal, filteredItems, new SimpleDateFormat( "dd-MM-yyyy HH:mm:ss"), beforeCal);
-		table.setItems(filteredItems);
+		loadTable(afterCal, beforeCal, false);
 	}
 	
 	
@@ -198,7 +235,7 @@ public abstract class AbstractComponentStatistics implements CommunicationRefres
 	 * @param chart
 	 * @throws Exception
 	 */
-	private void writeExcelApache(LineChart<String, Number> chart) throws Exception{
+	private void writeExcelApache(LineChart<Number, Number> chart) throws Exception{
 		HSSFWorkbook workbook = new HSSFWorkbook();
 		HSSFSheet sheet = workbook.createSheet("Statistics");
 		SimpleDateFormat formatter = new SimpleDateFormat("dd-mm-yy_hh-mm");
@@ -209,23 +246,29 @@ public abstract class AbstractComponentStatistics implements CommunicationRefres
 			file.delete();
 		}
 		file.createNewFile();
-		List<List<String>> data = getTableDataAsList();
-		int numOfRows = 0;
-		int columnNum = 0;
-		for(List<String> newLine : data){
-		
-			for(String singleData : newLine){
-				Row row = sheet.getRow(numOfRows);
-				row = row == null ? sheet.createRow(numOfRows) : row;
-				numOfRows++;
-
-				Cell cell = row.createCell(columnNum);
-				cell.setCellValue(singleData);
-				sheet.autoSizeColumn(columnNum);
-				
+		Row header = sheet.createRow(0);
+		for(int k = 0 ; k < 3 ; k++){
+			header.createCell(k).setCellValue(table.getColumns().get(k).getText());
+		}
+		DateFormat dateFormat = new SimpleDateFormat("dd-MM-yyyy HH:mm:ss");
+		int numOfRows = 1;
+		List<StatisticDataItemInterface> items = table.getSelectionModel().getSelectedItems();
+		// Long ranges are written from the rollups so that every item fits in the sheet
+		int rowsPerItem = (maxExcelRows - 1) / Math.max(1, items.size());
+		for(StatisticDataItemInterface item : items){
+			long resolution = (getItemEnd(item) - getItemStart(item)) / rowsPerItem;
+			TelemetrySeries series = getItemSeries(item, Long.MIN_VALUE, Long.MAX_VALUE, resolution);
+			int channel = item.getChannel();
+			String sensor = series.getChannelName(channel);
+			for(int i = 0 ; i < series.size() && numOfRows < maxExcelRows ; i++){
+				Row row = sheet.createRow(numOfRows++);
+				row.createCell(0).setCellValue(dateFormat.format(new Date(series.getTime(i))));
+				row.createCell(1).setCellValue(series.getValue(channel, i));
+				row.createCell(2).setCellValue(sensor);
 			}
-			numOfRows = 0;
-			columnNum++;
+		}
+		for(int k = 0 ; k < 3 ; k++){
+			sheet.autoSizeColumn(k);
 		}
 		try {
 			FileOutputStream out =
@@ -241,30 +284,6 @@ public abstract class AbstractComponentStatistics implements CommunicationRefres
 
 	}
 	
-	private List<List<String>> getTableDataAsList() {
-		List<List<String>> text = new ArrayList<List<String>>();
-		//StringBuilder text = new StringBuilder();
-		TableView.TableViewSelectionModel<StatisticDataItemInterface> selectionModel = table.getSelectionModel();
-		for(int i = 0 ; i < selectionModel.getSelectedItems().size() ; i++){
-			String[][] data = selectionModel.getSelectedItems().get(i).getData();
-			for(int j = 0 ; j < data.length; j++){
-				if(i == 0 && j == 0){
-					for(int k = 0 ; k < data[j].length ; k++){
-						List<String> newColumn = new ArrayList<>();
-						newColumn.add(table.getColumns().get(k).getText());
-						text.add(newColumn);
-					}
-				}
-				//	                    	}
-				for(int k = 0 ; k < data[j].length ; k++){
-					text.get(k).add(data[j][k]);					
-				}
-			}
-
-		}
-		return text;
-	}
-
 	/**
 	 * Gets the location where to write the excel file
 	 * @return
@@ -306,50 +325,198 @@ public abstract class AbstractComponentStatistics implements CommunicationRefres
 			});
 		}
 		populateTable();
-		table.getItems();
 	}
 	private void populateTable(){
 		final long monthInMS = 26280000;//need to mult by 100
-		final long dayinMS = 86400000;
 		Timestamp oldestTS=new Timestamp(System.currentTimeMillis() - monthInMS * 100);
 		Timestamp TS=new Timestamp(System.currentTimeMillis());
-		ObservableList<StatisticDataItemInterface> nodes = FXCollections.observableArrayList();
 		oldestTS = Utils.stripTimePortion(oldestTS);
-		DateFormat formatter = new SimpleDateFormat( "dd-MM-yyyy HH:mm:ss");
-		while(oldestTS.before(TS)){
-			Timestamp toDate = new Timestamp(oldestTS.getTime() + dayinMS);
-			populateTableNodes(oldestTS, nodes, formatter, toDate);
-			oldestTS.setTime(oldestTS.getTime() + dayinMS);
-		}
-		table.getItems().addAll(nodes);
+		loadTable(oldestTS, TS, true);
+	}
+	
+	/**
+	 * Reads the daily rollups of the whole range with one query on a background thread and fills the table
+	 * a few days at a time, so the screen shows up before the data is loaded.
+	 * A newer load (refresh or filter) makes the results of an older one be dropped.
+	 * @param byDay one item per day and sensor if true, one item per sensor for the whole range otherwise
+	 */
+	private void loadTable(final Timestamp from, final Timestamp to, final boolean byDay){
+		final long load = loadCounter.incrementAndGet();
+		Platform.runLater(new Runnable() {
+			@Override
+			public void run() {
+				if(load == loadCounter.get()){
+					table.getItems().clear();
+					table.setPlaceholder(new Label("Loading..."));
+				}
+			}
+		});
+		Thread loader = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				DateFormat formatter = new SimpleDateFormat( "dd-MM-yyyy HH:mm:ss");
+				List<StatisticDataItemInterface> nodes = new ArrayList<>();
+				TelemetrySeries series = getSeries(from, to, tableResolution, TelemetryRollup.Aggregate.AVERAGE);
+				if(!byDay){
+					populateTableNodes(series, from.getTime(), nodes, formatter);
+				}else{
+					// The series is time ordered, so every day is one run of samples
+					int start = 0;
+					int days = 0;
+					while(start < series.size()){
+						long day = Utils.stripTimePortion(new Timestamp(series.getTime(start))).getTime();
+						int end = series.lowerBound(day + dayinMS);
+						populateTableNodes(series.slice(start, end), day, nodes, formatter);
+						start = end;
+						if(++days % daysPerUpdate == 0){
+							publishTableNodes(load, nodes, false);
+							nodes = new ArrayList<>();
+						}
+					}
+				}
+				publishTableNodes(load, nodes, true);
+			}
+		}, getObjectName() + "StatisticsLoader");
+		loader.setDaemon(true);
+		loader.start();
+	}
+	
+	private void publishTableNodes(final long load, final List<StatisticDataItemInterface> nodes, final boolean done){
+		Platform.runLater(new Runnable() {
+			@Override
+			public void run() {
+				if(load != loadCounter.get()){
+					return;
+				}
+				table.getItems().addAll(nodes);
+				if(done){
+					table.setPlaceholder(new Label("No data"));
+				}
+			}
+		});
 	}
 
 
-	@SuppressWarnings({ "unchecked", "rawtypes" })
-	private void createStatisicsWindow(LineChart<String,Number> lineChart){
-		lineChart.getData().clear();
+	private void createStatisicsWindow(LineChart<Number,Number> lineChart){
 		lineChart.setTitle("Diagnostics");
-		ObservableList<StatisticDataItemInterface> selected = table.getSelectionModel().getSelectedItems();
-		for(int i = 0 ; i < selected.size(); i++){
-			StatisticDataItemInterface selectedItem = selected.get(i);
-			String[][] selectedItemData = selected.get(i).getData();
-			XYChart.Series series = new XYChart.Series();
-			series.setName(selectedItem.getDate());
-			for(int j = 0 ; j < selectedItemData.length; j++){
-				series.getData().add(new XYChart.Data(selectedItemData[j][0].substring(selectedItemData[j][0].indexOf(" ") + 1), Double.valueOf(selectedItemData[j][1])));          
+		chartItems = new ArrayList<>(table.getSelectionModel().getSelectedItems());
+		chartStart = Long.MAX_VALUE;
+		chartEnd = Long.MIN_VALUE;
+		for(StatisticDataItemInterface item : chartItems){
+			if(!item.getSeries().isEmpty()){
+				chartStart = Math.min(chartStart, getItemStart(item));
+				chartEnd = Math.max(chartEnd, getItemEnd(item));
 			}
-			lineChart.getData().add(series);
 		}
-
-
+		if(chartStart > chartEnd){
+			lineChart.getData().clear();
+			return;
+		}
+		showChartRange(chartStart, chartEnd);
+	}
+	
+	/**
+	 * Draws the chosen items between from and to with about one point per pixel of the chart,
+	 * no matter how many samples the range holds: wide ranges are read from the rollup whose buckets
+	 * fit a pixel, narrow ones from the samples and downsampled. Read on a background thread,
+	 * a newer range makes the results of an older one be dropped.
+	 */
+	private void showChartRange(final long from, final long to){
+		if(chartItems.isEmpty()){
+			return;
+		}
+		xAxis.setAutoRanging(false);
+		xAxis.setLowerBound(from);
+		xAxis.setUpperBound(Math.max(to, from + 1));
+		xAxis.setTickUnit(Math.max(1, (to - from) / 10.0));
+		final int pixels = xAxis.getWidth() > 0 ? (int) xAxis.getWidth() : defaultChartPixels;
+		final List<StatisticDataItemInterface> items = new ArrayList<>(chartItems);
+		final long load = chartCounter.incrementAndGet();
+		Thread loader = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				final List<XYChart.Series<Number,Number>> lines = new ArrayList<>();
+				for(StatisticDataItemInterface item : items){
+					TelemetrySeries samples = getItemSeries(item, from, to, (to - from) / pixels);
+					int channel = item.getChannel();
+					XYChart.Series<Number,Number> series = new XYChart.Series<>();
+					series.setName(item.getDate());
+					for(int i : TelemetryDownsampler.downsample(samples, channel, from, to, pixels)){
+						series.getData().add(new XYChart.Data<Number,Number>(samples.getTime(i), samples.getValue(channel, i)));
+					}
+					lines.add(series);
+				}
+				Platform.runLater(new Runnable() {
+					@Override
+					public void run() {
+						if(load == chartCounter.get()){
+							lineChart.getData().setAll(lines);
+						}
+					}
+				});
+			}
+		}, getObjectName() + "ChartLoader");
+		loader.setDaemon(true);
+		loader.start();
+	}
+	
+	/**
+	 * The samples of an item between from and to, at the given resolution
+	 * (see {@link data.DataManager#getEnergySeries(Timestamp, Timestamp, long, TelemetryRollup.Aggregate)})
+	 */
+	private TelemetrySeries getItemSeries(StatisticDataItemInterface item, long from, long to, long resolutionMillis){
+		long start = Math.max(from, getItemStart(item));
+		long end = Math.min(to, getItemEnd(item));
+		if(start > end){
+			return item.getSeries().slice(0, 0);
+		}
+		return getSeries(new Timestamp(start), new Timestamp(end), resolutionMillis, TelemetryRollup.Aggregate.AVERAGE);
+	}
+	
+	private long getItemStart(StatisticDataItemInterface item){
+		return item.getSeries().getTime(0);
+	}
+	
+	/**
+	 * @return the end of the last daily bucket of the item
+	 */
+	private long getItemEnd(StatisticDataItemInterface item){
+		TelemetrySeries series = item.getSeries();
+		return series.getTime(series.size() - 1) + tableResolution - 1;
 	}
-
 	
+	/**
+	 * Scrolling zooms the time axis around the mouse, the visible part is downsampled again
+	 * from the full resolution samples
+	 */
+	private void zoomChart(ScrollEvent e){
+		if(chartItems.isEmpty() || e.getDeltaY() == 0){
+			return;
+		}
+		double lower = xAxis.getLowerBound();
+		double upper = xAxis.getUpperBound();
+		double pivot = xAxis.getValueForDisplay(xAxis.sceneToLocal(e.getSceneX(), e.getSceneY()).getX()).doubleValue();
+		pivot = Math.max(lower, Math.min(upper, pivot));
+		double factor = e.getDeltaY() > 0 ? 0.8 : 1.25;
+		long from = (long) (pivot - (pivot - lower) * factor);
+		long to = (long) (pivot + (upper - pivot) * factor);
+		from = Math.max(chartStart, from);
+		to = Math.min(chartEnd, to);
+		if(to - from < 1000){ // Don't zoom in further than a second
+			return;
+		}
+		showChartRange(from, to);
+	}
+
 	@Override
 	public void refreshPanelData(){
 		this.createTable();
 	}
 	//Abstracts
-	public abstract List<Component> getComponent(Timestamp oldestTS, Timestamp TS);
+	/**
+	 * @param resolutionMillis below a minute the samples themselves are read, see
+	 * {@link data.DataManager#getEnergySeries(Timestamp, Timestamp, long, TelemetryRollup.Aggregate)}
+	 */
+	public abstract TelemetrySeries getSeries(Timestamp oldestTS, Timestamp TS, long resolutionMillis, TelemetryRollup.Aggregate aggregate);
 	public abstract String getObjectName();
 }
@@ -2,12 +2,11 @@ package Panels;
 
 import java.sql.Timestamp;
 import java.text.DateFormat;
-import java.util.ArrayList;
-import java.util.List;
 
 import Utils.Constants;
-import data.Component;
 import data.DataManager;
+import data.TelemetryRollup;
+import data.TelemetrySeries;
 import misc.StatisticDataItemInterface;
 import javafx.collections.ObservableList;
 import javafx.scene.layout.BorderPane;
@@ -25,8 +24,8 @@ public class EnergyComponentStatistics extends AbstractComponentStatistics{
 	}
 
 	@Override
-	public List<Component> getComponent(Timestamp oldestTS, Timestamp TS) {		
-		return new ArrayList<>(DataManager.getInstance().getEnergy(oldestTS, TS));
+	public TelemetrySeries getSeries(Timestamp oldestTS, Timestamp TS, long resolutionMillis, TelemetryRollup.Aggregate aggregate) {
+		return DataManager.getInstance().getEnergySeries(oldestTS, TS, resolutionMillis, aggregate);
 	}
 	@Override
 	public String getObjectName() {
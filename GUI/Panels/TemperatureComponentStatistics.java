@@ -1,11 +1,10 @@
 package Panels;
 
 import java.sql.Timestamp;
-import java.util.ArrayList;
-import java.util.List;
 import Utils.Constants;
-import data.Component;
 import data.DataManager;
+import data.TelemetryRollup;
+import data.TelemetrySeries;
 import javafx.scene.layout.BorderPane;
 
 public class TemperatureComponentStatistics extends AbstractComponentStatistics {
@@ -23,8 +22,8 @@ public class TemperatureComponentStatistics extends AbstractComponentStatistics
 
 
 	@Override
-	public List<Component> getComponent(Timestamp oldestTS, Timestamp TS) {
-		return new ArrayList<>(DataManager.getInstance().getTemprature(oldestTS, TS));
+	public TelemetrySeries getSeries(Timestamp oldestTS, Timestamp TS, long resolutionMillis, TelemetryRollup.Aggregate aggregate) {
+		return DataManager.getInstance().getTemperatureSeries(oldestTS, TS, resolutionMillis, aggregate);
 	}
 
 	@Override
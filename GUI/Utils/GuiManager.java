@@ -8,7 +8,9 @@ import java.util.Calendar;
 import java.util.Date;
 
 import Panels.MissionWrapper;
+import logger.Loggers;
 import orbit.OrbitManager;
+import orbit.PassListener;
 import javafx.application.Platform;
 import communication.CommunicationManager;
 import data.Command;
@@ -24,8 +26,31 @@ import negevsatgui.SattelitePictureController;
 public class GuiManager implements IGuiManager {
 	private static IGuiManager instance = null;
 	private MainWindow mainWindow;
+	/** Follows the pass events on the FX thread */
+	private boolean inPassPhase;
 	private GuiManager(){
 		this.mainWindow = MainWindow.getMainWindow();
+		OrbitManager.getInstance().addPassListener(new PassListener() {
+			@Override
+			public void onPassStart(long passEndMillis) {
+				setInPassPhase(true);
+			}
+
+			@Override
+			public void onPassEnd() {
+				setInPassPhase(false);
+			}
+		});
+		this.inPassPhase = OrbitManager.getInstance().isPassPhase();
+	}
+
+	private void setInPassPhase(final boolean isPassPhase) {
+		Platform.runLater(new Runnable() {
+			@Override
+			public void run() {
+				inPassPhase = isPassPhase;
+			}
+		});
 	}
 
 	public static IGuiManager getInstance(){
@@ -53,8 +78,11 @@ public class GuiManager implements IGuiManager {
 	@Override
 	public void sendImmidiateSatelliteModeCommand(SatelliteMods selectedItem) {
 		Mission newMission = DataManager.getInstance().insertMission(null, selectedItem.getCommand(), 1);
-		addToLog("Sending mission to Satellite -" + selectedItem.toString());
-		CommunicationManager.getInstance().sendMission(newMission);
+		if (newMission == null) {
+			missionNotStored(selectedItem.toString());
+			return;
+		}
+		addToLog((submit(newMission) ? "Sending mission to Satellite -" : "Mission queued for the next pass -") + selectedItem.toString());
 	}
 	/* (non-Javadoc)
 	 * @see Utils.IGuiManager#sendImmidiateDataAquisitionCommand(negevsatgui.MainWindow.DataAcquisitionMode)
@@ -62,8 +90,11 @@ public class GuiManager implements IGuiManager {
 	@Override
 	public void sendImmidiateDataAquisitionCommand(DataAcquisitionMode dataAcquisitionMode) {
 		Mission newMission =  DataManager.getInstance().insertMission(null, dataAcquisitionMode.getCommand(), 1);
-		addToLog("Sending mission to Sattelite -" + dataAcquisitionMode.toString());
-		CommunicationManager.getInstance().sendMission(newMission);
+		if (newMission == null) {
+			missionNotStored(dataAcquisitionMode.toString());
+			return;
+		}
+		addToLog((submit(newMission) ? "Sending mission to Sattelite -" : "Mission queued for the next pass -") + dataAcquisitionMode.toString());
 	}
 	
 	/* (non-Javadoc)
@@ -72,8 +103,12 @@ public class GuiManager implements IGuiManager {
 	@Override
 	public void sendImmidiateComponentStatusChange(Command command) {
 		Mission newMission =  DataManager.getInstance().insertMission(null,command, 1);
-		addToLog("Sending change component status mission to Satellite");
-		CommunicationManager.getInstance().sendMission(newMission);
+		if (newMission == null) {
+			missionNotStored(command.getDescription());
+			return;
+		}
+		addToLog(submit(newMission) ? "Sending change component status mission to Satellite"
+				: "Change component status mission queued for the next pass");
 	}
 	
 	
@@ -83,8 +118,28 @@ public class GuiManager implements IGuiManager {
 	@Override
 	public void sendMission(MissionWrapper wrapper){
 		Mission newMission =  DataManager.getInstance().insertMission(wrapper.getExecutionTS(), wrapper.getMission().getCommand(), wrapper.getMission().getPriority());
-		addToLog("Sending mission: " + newMission.getDescription() + "to Satellite");
-		CommunicationManager.getInstance().sendMission(newMission);
+		if (newMission == null) {
+			missionNotStored(wrapper.getMission().getDescription());
+			return;
+		}
+		addToLog((submit(newMission) ? "Sending mission: " : "Queued mission for the next pass: ") + newMission.getDescription());
+	}
+	
+	/**
+	 * Hand the mission to the uplink scheduler, which sends it in priority order during a pass
+	 * @return true if it goes out in the current pass, false if it waits for the next one
+	 */
+	private boolean submit(Mission mission) {
+		CommunicationManager.getInstance().getUplinkScheduler().submit(mission);
+		return OrbitManager.getInstance().isPassPhase();
+	}
+	
+	/**
+	 * DataManager.insertMission returns null when the mission can't be stored, it isn't sent then
+	 */
+	private void missionNotStored(String description) {
+		Loggers.logError("Failed to store the mission {}, it was not sent", description);
+		addToLog("Failed to store the mission, it was not sent - " + description);
 	}
 	/* (non-Javadoc)
 	 * @see Utils.IGuiManager#refreshSatelliteController(data.Satellite)
@@ -128,7 +183,17 @@ public class GuiManager implements IGuiManager {
 		if(data == null){
 			return;
 		}	
+		if(Platform.isFxApplicationThread()){
 			mainWindow.addToLog("("+ date + ")" + data);
+		}else{
+			Platform.runLater(new Runnable() {
+				
+				@Override
+				public void run() {
+					mainWindow.addToLog("("+ date + ")" + data);
+				}
+			});
+		}
 	}
 
 	/* (non-Javadoc)
@@ -146,15 +211,12 @@ public class GuiManager implements IGuiManager {
 			return false;
 		}
 		Timestamp ts = new Timestamp(date.getTime());
-		Mission mission = new Mission(ts, c, 1);
-		DataManager.getInstance().insertMission(ts, c, 1);
-		if(OrbitManager.getInstance().isPassPhase()){
-			CommunicationManager.getInstance().sendMission(mission);
-			return true;
-		}else{
+		Mission mission = DataManager.getInstance().insertMission(ts, c, 1);
+		if (mission == null) {
+			missionNotStored(c.getDescription());
 			return false;
 		}
-		
+		return submit(mission);
 	}
 	
 	/* (non-Javadoc)
@@ -171,7 +233,7 @@ public class GuiManager implements IGuiManager {
 	 */
 	@Override
 	public boolean getInPassPhase(){
-		return OrbitManager.getInstance().isPassPhase();
+		return inPassPhase;
 	}
 
 	/* (non-Javadoc)
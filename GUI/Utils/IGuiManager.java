@@ -61,10 +61,10 @@ public interface IGuiManager {
 	public void addToLog(String date, String data);
 
 	/**
-	 * Sends Mode command to the satellite
+	 * Queues a Mode command for the uplink, it is sent in the current pass or the next one
 	 * @param dateString
 	 * @param c
-	 * @return 
+	 * @return true if sent in the current pass, false if queued for the next pass
 	 */
 	public boolean sendSatelliteModeCommand(String dateString, Command c);
 
@@ -6,6 +6,12 @@
 
 package misc;
 
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+import data.TelemetrySeries;
+
 /**
  *
  * @author Max
@@ -13,6 +19,8 @@ package misc;
 public class StatisticDataItem implements StatisticDataItemInterface{
     private String date,component,type; 
     private String[][] data;
+    private TelemetrySeries series;
+    private int channel;
     
     
     public StatisticDataItem(String date, String component, String type, String[][] data){
@@ -21,6 +29,17 @@ public class StatisticDataItem implements StatisticDataItemInterface{
         this.type = type;
         this.data = data;
     }
+    
+    /**
+     * An item backed by one channel of a series, the text table is only built if someone asks for it
+     */
+    public StatisticDataItem(String date, String component, String type, TelemetrySeries series, int channel){
+        this.date = date;
+        this.component = component;
+        this.type = type;
+        this.series = series;
+        this.channel = channel;
+    }
     @Override
     public String getDate() {
         return date;
@@ -38,9 +57,28 @@ public class StatisticDataItem implements StatisticDataItemInterface{
 
     @Override
     public String[][] getData() {
+        if(data == null && series != null){
+            DateFormat formatter = new SimpleDateFormat("dd-MM-yyyy HH:mm:ss");
+            data = new String[series.size()][3];
+            for(int i = 0 ; i < series.size() ; i++){
+                data[i][0] = formatter.format(new Date(series.getTime(i)));
+                data[i][1] = Float.toString(series.getValue(channel, i));
+                data[i][2] = component;
+            }
+        }
         return data;
     }
     
+    @Override
+    public TelemetrySeries getSeries() {
+        return series;
+    }
+    
+    @Override
+    public int getChannel() {
+        return channel;
+    }
+    
     public String getSimpleDate(){
     	if(date.contains(" ")){
     		return date.substring(0, date.indexOf(" "));
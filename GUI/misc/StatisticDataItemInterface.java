@@ -6,6 +6,8 @@
 
 package misc;
 
+import data.TelemetrySeries;
+
 /**
  *
  * @author Max
@@ -16,4 +18,6 @@ public interface StatisticDataItemInterface {
    public String getType();
    public String[][] getData();
    public String getSimpleDate();
+   public TelemetrySeries getSeries();
+   public int getChannel();
 }
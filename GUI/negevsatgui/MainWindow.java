@@ -19,6 +19,8 @@ import java.util.Date;
 import java.util.List;
 
 import orbit.OrbitManager;
+import orbit.PassListener;
+import javafx.application.Platform;
 import javafx.scene.paint.Color;
 import data.Command;
 import data.Satellite;
@@ -67,6 +69,12 @@ public class MainWindow{
 	private Text satelliteStatus;
 	private FXMLLoader fxmlLoader;
 	private TextArea listView;
+	private Text phaseLabel;
+	// Pass boundaries as the pass events told them, only used on the FX thread
+	private boolean inPass = false;
+	private long passStart = Long.MAX_VALUE;
+	private long passEnd = 0;
+	private boolean isListeningToPasses = false;
 	public MainWindow(){
 		super();
 		synchronized(MainWindow.class){
@@ -204,17 +212,76 @@ public class MainWindow{
 		stateBox.getChildren().addAll(stLabelText,getSatelliteStatus());
 		stateBox.setSpacing(10);
 		HBox phaseBox = new HBox();
-		Text phLabelText = new Text();
-		phLabelText.setText(OrbitManager.getInstance().isPassPhase() ? "In pass for: " : "Pass in: ");
-		phLabelText.setFont(Font.font("Verdana", FontWeight.BOLD, 20));
-		phaseBox.getChildren().addAll(phLabelText,getTimeUntilPhase());
+		phaseLabel = new Text();
+		phaseLabel.setFont(Font.font("Verdana", FontWeight.BOLD, 20));
+		phaseBox.getChildren().addAll(phaseLabel,getTimeUntilPhase());
+		listenToPasses();
+		phaseLabel.setText(inPass ? "In pass for: " : "Pass in: ");
 		phaseBox.setSpacing(10);
 		textHolder.getChildren().addAll(stateBox,phaseBox);
 		return textHolder;
 
 	}
 	/**
-	 * Timer until the next pass
+	 * Follow the pass starts and ends the OrbitManager publishes instead of asking it every frame
+	 */
+	private void listenToPasses() {
+		if (isListeningToPasses) {
+			return;
+		}
+		isListeningToPasses = true;
+		OrbitManager.getInstance().addPassListener(new PassListener() {
+			@Override
+			public void onPassStart(final long passEndMillis) {
+				Platform.runLater(new Runnable() {
+					@Override
+					public void run() {
+						setPassBoundary(true, passEndMillis);
+					}
+				});
+			}
+
+			@Override
+			public void onPassEnd() {
+				final long nextPassStart = fromNow(OrbitManager.getInstance().timeToPassStart());
+				Platform.runLater(new Runnable() {
+					@Override
+					public void run() {
+						setPassBoundary(false, nextPassStart);
+					}
+				});
+			}
+		});
+		OrbitManager ob = OrbitManager.getInstance();
+		boolean isPassPhase = ob.isPassPhase();
+		setPassBoundary(isPassPhase, fromNow(isPassPhase ? ob.timeToPassEnd() : ob.timeToPassStart()));
+	}
+
+	private static long fromNow(long millis) {
+		return millis == Long.MAX_VALUE ? Long.MAX_VALUE : System.currentTimeMillis() + millis;
+	}
+
+	/**
+	 * @param boundary epoch ms when the pass ends if in a pass, when the next one starts otherwise
+	 */
+	private void setPassBoundary(boolean isPassPhase, long boundary) {
+		inPass = isPassPhase;
+		if (isPassPhase) {
+			passEnd = boundary;
+		}
+		else {
+			passStart = boundary;
+		}
+		if (phaseLabel != null) {
+			phaseLabel.setText(isPassPhase ? "In pass for: " : "Pass in: ");
+		}
+		if (missionPanel != null) {
+			missionPanel.updateImage(Utils.getImageViewFromLocation(getClass(), isPassPhase ? Constants.INPASS : Constants.NOT_PASS));
+		}
+	}
+
+	/**
+	 * Timer until the next pass, or until the end of the current one
 	 * @return
 	 */
 	private Node getTimeUntilPhase() {
@@ -223,7 +290,9 @@ public class MainWindow{
 		new AnimationTimer() {
 			@Override
 			public void handle(long now) {
-				long millis = OrbitManager.getInstance().timeToPassStart();
+				long current = System.currentTimeMillis();
+				long millis = inPass ? passEnd - current : (passStart == Long.MAX_VALUE ? 0 : passStart - current);
+				millis = Math.max(0, millis);
 				long second = (millis / 1000) % 60;
 				long minute = (millis / (1000 * 60)) % 60;
 				long hour = (millis / (1000 * 60 * 60)) % 24;
@@ -487,8 +556,8 @@ public class MainWindow{
 				if(ob.isPassPhase()){
 					return;
 				}
+				// The pass start event updates the countdown and the image
 				ob.setPassPhase();
-				missionPanel.updateImage(Utils.getImageViewFromLocation(getClass(), Constants.INPASS));
 
 			}
 		});
@@ -502,7 +571,6 @@ public class MainWindow{
 					return;
 				}
 				ob.setNonPassPhase();
-				missionPanel.updateImage(Utils.getImageViewFromLocation(getClass(), Constants.NOT_PASS));
 			}
 		});
 		box.getChildren().addAll(phase, noPhase);
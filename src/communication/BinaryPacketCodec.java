@@ -0,0 +1,245 @@
+package communication;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+import data.Satellite;
+import data.Status;
+
+/**
+ * Compact binary downstream packets, about a tenth of the size of the XML packets.
+ * <pre>
+ * byte    header, 0xB1 for version 1
+ * varint  record count
+ * long    base time, epoch ms
+ * record: byte type, zigzag varint ms since the previous record (the base time for the first), then
+ *   TEMPERATURE: float sensor1, sensor2, sensor3
+ *   ENERGY:      float batt1V, batt2V, batt3V, batt1C, batt2C, batt3C
+ *   STATIC:      byte state ordinal, then for temperature, energy, sband, payload, solar panels
+ *                and thermal control: byte status value (0 when unknown), 0x80 set when a
+ *                zigzag varint ms since the record time follows
+ * int     CRC32 of everything before it
+ * </pre>
+ * Numbers are big endian. Everything after the header is escaped so the packet never holds
+ * the STX/EOT frame delimiters: STX, EOT and ESC are sent as ESC followed by the byte XOR 0x20.
+ */
+public class BinaryPacketCodec implements PacketCodec {
+	public static final byte HEADER = (byte) 0xB1;
+	static final byte ESC = 0x1B;
+	static final int TEMPERATURE = 1;
+	static final int ENERGY = 2;
+	static final int STATIC = 3;
+	private static final int hasTime = 0x80;
+	private static final Satellite.SatelliteState[] states = Satellite.SatelliteState.values();
+	private static final Status[] statuses = Status.values();
+
+	@Override
+	public byte getHeaderByte() {
+		return HEADER;
+	}
+
+	@Override
+	public String getName() {
+		return "Binary v1";
+	}
+
+	@Override
+	public void decode(Message m, DownlinkHandler handler) throws InvalidMessageException {
+		ByteBuffer in = ByteBuffer.wrap(unescape(m.getBytes()));
+		if (in.remaining() < 1 + 1 + 8 + 4 || in.get() != HEADER) {
+			throw new InvalidMessageException("Not a binary packet");
+		}
+		CRC32 crc = new CRC32();
+		crc.update(in.array(), 0, in.limit() - 4);
+		if ((int) crc.getValue() != in.getInt(in.limit() - 4)) {
+			throw new InvalidMessageException("Binary packet CRC mismatch");
+		}
+		in.limit(in.limit() - 4);
+		try {
+			long count = readVarint(in);
+			long time = in.getLong();
+			for (long i = 0; i < count; i++) {
+				int type = in.get();
+				time += readZigzag(in);
+				switch (type) {
+				case TEMPERATURE:
+					handler.onTemperatureSample(in.getFloat(), in.getFloat(), in.getFloat(), new Timestamp(time));
+					break;
+				case ENERGY:
+					handler.onEnergySample(in.getFloat(), in.getFloat(), in.getFloat(), in.getFloat(), in.getFloat(),
+							in.getFloat(), new Timestamp(time));
+					break;
+				case STATIC:
+					decodeStatic(in, time, handler);
+					break;
+				default:
+					throw new InvalidMessageException("Unknown binary record type " + type);
+				}
+			}
+		} catch (RuntimeException e) {
+			throw new InvalidMessageException("Truncated binary packet");
+		}
+	}
+
+	private static void decodeStatic(ByteBuffer in, long time, DownlinkHandler handler) throws InvalidMessageException {
+		int state = in.get() & 0xFF;
+		if (state >= states.length) {
+			throw new InvalidMessageException("Unknown satellite state " + state);
+		}
+		Status[] moduleStatus = new Status[6];
+		Timestamp[] moduleTS = new Timestamp[6];
+		for (int i = 0; i < 6; i++) {
+			int b = in.get() & 0xFF;
+			moduleStatus[i] = toStatus(b & ~hasTime);
+			if ((b & hasTime) != 0) {
+				moduleTS[i] = new Timestamp(time + readZigzag(in));
+			}
+		}
+		handler.onStaticPacket(states[state], moduleStatus[0], moduleTS[0], moduleStatus[1], moduleTS[1],
+				moduleStatus[2], moduleTS[2], moduleStatus[3], moduleTS[3], moduleStatus[4], moduleTS[4],
+				moduleStatus[5], moduleTS[5]);
+	}
+
+	private static Status toStatus(int value) {
+		for (Status s : statuses) {
+			if (s.getValue() == value) {
+				return s;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return the escaped packet, ready to be put between the frame delimiters
+	 */
+	public static byte[] encode(DownlinkPacket packet) {
+		int count = packet.getStaticCount() + packet.getTemperatureCount() + packet.getEnergyCount();
+		ByteBuffer out = ByteBuffer.allocate(1 + 5 + 8 + count * (1 + 10 + 6 * 4 + 6 * 11) + 4);
+		out.put(HEADER);
+		writeVarint(out, count);
+		long base = baseTime(packet);
+		out.putLong(base);
+		long time = base;
+		for (DownlinkPacket.StaticStatus s : packet.getStatics()) {
+			long recordTime = firstTime(time, s.tempTS, s.energyTS, s.sbandTS, s.payloadTS, s.solarPanelsTS, s.thermalTS);
+			out.put((byte) STATIC);
+			writeZigzag(out, recordTime - time);
+			time = recordTime;
+			out.put((byte) (s.state == null ? Satellite.SatelliteState.UNKNOWN : s.state).ordinal());
+			putModule(out, time, s.temp, s.tempTS);
+			putModule(out, time, s.energy, s.energyTS);
+			putModule(out, time, s.sband, s.sbandTS);
+			putModule(out, time, s.payload, s.payloadTS);
+			putModule(out, time, s.solarPanels, s.solarPanelsTS);
+			putModule(out, time, s.thermal, s.thermalTS);
+		}
+		for (DownlinkPacket.TemperatureSample t : packet.getTemperatures()) {
+			out.put((byte) TEMPERATURE);
+			writeZigzag(out, t.ts.getTime() - time);
+			time = t.ts.getTime();
+			out.putFloat(t.sensor1).putFloat(t.sensor2).putFloat(t.sensor3);
+		}
+		for (DownlinkPacket.EnergySample e : packet.getEnergies()) {
+			out.put((byte) ENERGY);
+			writeZigzag(out, e.ts.getTime() - time);
+			time = e.ts.getTime();
+			out.putFloat(e.batt1V).putFloat(e.batt2V).putFloat(e.batt3V);
+			out.putFloat(e.batt1C).putFloat(e.batt2C).putFloat(e.batt3C);
+		}
+		CRC32 crc = new CRC32();
+		crc.update(out.array(), 0, out.position());
+		out.putInt((int) crc.getValue());
+		return escape(out.array(), out.position());
+	}
+
+	private static long baseTime(DownlinkPacket packet) {
+		for (DownlinkPacket.StaticStatus s : packet.getStatics()) {
+			return firstTime(0, s.tempTS, s.energyTS, s.sbandTS, s.payloadTS, s.solarPanelsTS, s.thermalTS);
+		}
+		for (DownlinkPacket.TemperatureSample t : packet.getTemperatures()) {
+			return t.ts.getTime();
+		}
+		for (DownlinkPacket.EnergySample e : packet.getEnergies()) {
+			return e.ts.getTime();
+		}
+		return 0;
+	}
+
+	private static long firstTime(long otherwise, Timestamp... times) {
+		for (Timestamp ts : times) {
+			if (ts != null) {
+				return ts.getTime();
+			}
+		}
+		return otherwise;
+	}
+
+	private static void putModule(ByteBuffer out, long time, Status status, Timestamp ts) {
+		int value = status == null ? 0 : status.getValue();
+		out.put((byte) (ts == null ? value : value | hasTime));
+		if (ts != null) {
+			writeZigzag(out, ts.getTime() - time);
+		}
+	}
+
+	static void writeVarint(ByteBuffer out, long value) {
+		while ((value & ~0x7FL) != 0) {
+			out.put((byte) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.put((byte) value);
+	}
+
+	static void writeZigzag(ByteBuffer out, long value) {
+		writeVarint(out, (value << 1) ^ (value >> 63));
+	}
+
+	static long readVarint(ByteBuffer in) {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			byte b = in.get();
+			value |= (long) (b & 0x7F) << shift;
+			if (b >= 0) {
+				return value;
+			}
+		}
+		throw new IllegalStateException("Varint longer than 10 bytes");
+	}
+
+	static long readZigzag(ByteBuffer in) {
+		long value = readVarint(in);
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	static byte[] escape(byte[] bytes, int length) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(length + length / 16);
+		out.write(bytes, 0, 1);
+		for (int i = 1; i < length; i++) {
+			byte b = bytes[i];
+			if (b == FrameDecoder.STX || b == FrameDecoder.EOT || b == ESC) {
+				out.write(ESC);
+				out.write(b ^ 0x20);
+			}
+			else {
+				out.write(b);
+			}
+		}
+		return out.toByteArray();
+	}
+
+	static byte[] unescape(byte[] bytes) {
+		byte[] out = new byte[bytes.length];
+		int n = 0;
+		for (int i = 0; i < bytes.length; i++) {
+			byte b = bytes[i];
+			if (b == ESC && i > 0 && i + 1 < bytes.length) {
+				b = (byte) (bytes[++i] ^ 0x20);
+			}
+			out[n++] = b;
+		}
+		return n == out.length ? out : Arrays.copyOf(out, n);
+	}
+}
@@ -0,0 +1,84 @@
+package communication;
+
+import static org.junit.Assert.*;
+
+import java.sql.Timestamp;
+
+import org.junit.Test;
+
+import data.Satellite.SatelliteState;
+import data.Status;
+
+public class BinaryPacketCodecTests {
+	// Its bytes are STX, EOT, ESC, EOT
+	private static final float delimiters = Float.intBitsToFloat(0x02041B04);
+
+	private static DownlinkPacket samplePacket() {
+		DownlinkPacket packet = new DownlinkPacket();
+		Timestamp ts = new Timestamp(1414998900000L);
+		packet.onStaticPacket(SatelliteState.SAFE_MODE, Status.MALFUNCTION, new Timestamp(ts.getTime() + 1000), Status.ON, ts,
+				Status.STANDBY, new Timestamp(ts.getTime() + 2000), null, null, Status.ON, ts, Status.NON_OPERATIONAL, ts);
+		for (int i = 0; i < 5; i++) {
+			packet.onTemperatureSample(40.5f + i, delimiters, -3.25f, new Timestamp(ts.getTime() + i * 1000));
+		}
+		packet.onEnergySample(109.3f, 110f, 108.7f, 2.1f, delimiters, 3.9f, new Timestamp(ts.getTime() - 60000));
+		return packet;
+	}
+
+	private static DownlinkPacket decode(byte[] encoded) throws InvalidMessageException {
+		DownlinkPacket decoded = new DownlinkPacket();
+		new BinaryPacketCodec().decode(new Message(encoded), decoded);
+		return decoded;
+	}
+
+	@Test
+	public void testRoundTrip() throws InvalidMessageException {
+		DownlinkPacket packet = samplePacket();
+		byte[] encoded = BinaryPacketCodec.encode(packet);
+		for (byte b : encoded) {
+			assertTrue(b != FrameDecoder.STX && b != FrameDecoder.EOT);
+		}
+		assertSame(PacketCodecRegistry.getInstance().getCodec(encoded[0]).getClass(), BinaryPacketCodec.class);
+
+		DownlinkPacket decoded = decode(encoded);
+		assertEquals(1, decoded.getStaticCount());
+		assertEquals(5, decoded.getTemperatureCount());
+		assertEquals(1, decoded.getEnergyCount());
+		DownlinkPacket.StaticStatus s = decoded.getStatics().get(0);
+		DownlinkPacket.StaticStatus expected = packet.getStatics().get(0);
+		assertEquals(SatelliteState.SAFE_MODE, s.state);
+		assertEquals(Status.MALFUNCTION, s.temp);
+		assertEquals(expected.tempTS, s.tempTS);
+		assertEquals(expected.sbandTS, s.sbandTS);
+		assertNull(s.payload);
+		assertNull(s.payloadTS);
+		assertEquals(Status.NON_OPERATIONAL, s.thermal);
+		for (int i = 0; i < 5; i++) {
+			DownlinkPacket.TemperatureSample t = decoded.getTemperatures().get(i);
+			assertEquals(40.5f + i, t.sensor1, 0);
+			assertEquals(delimiters, t.sensor2, 0);
+			assertEquals(packet.getTemperatures().get(i).ts, t.ts);
+		}
+		DownlinkPacket.EnergySample e = decoded.getEnergies().get(0);
+		assertEquals(108.7f, e.batt3V, 0);
+		assertEquals(delimiters, e.batt2C, 0);
+		assertEquals(packet.getEnergies().get(0).ts, e.ts);
+	}
+
+	@Test(expected = InvalidMessageException.class)
+	public void testCorruptedPacket() throws InvalidMessageException {
+		byte[] encoded = BinaryPacketCodec.encode(samplePacket());
+		encoded[encoded.length / 2] ^= 0x40;
+		decode(encoded);
+	}
+
+	@Test
+	public void testSmallerThanXml() {
+		DownlinkPacket packet = new DownlinkPacket();
+		for (int i = 0; i < 10; i++) {
+			packet.onEnergySample(109.3f, 110f, 108.7f, 2.1f, 2.5f, 3.9f, new Timestamp(1414998900000L + i * 1000));
+		}
+		int xml = new Message(ParserBenchmark.energyPacket(10)).getBytes().length;
+		assertTrue(BinaryPacketCodec.encode(packet).length * 5 < xml);
+	}
+}
@@ -1,28 +1,28 @@
 package communication;
 
-import gnu.io.CommPort;
-import gnu.io.CommPortIdentifier;
 import gnu.io.NoSuchPortException;
 import gnu.io.PortInUseException;
-import gnu.io.SerialPort;
 import gnu.io.UnsupportedCommOperationException;
 
+import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
+import java.net.InetSocketAddress;
 import java.sql.Timestamp;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.TooManyListenersException;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
 
 import data.DataManager;
 import data.Mission;
+import logger.EventType;
+import logger.Loggers;
 
 
 public class CommunicationManager {
@@ -30,30 +30,40 @@ public class CommunicationManager {
 	public static final Character stopDelimiter = 4;
 	public static final CharSequence msgStartDelimiter = startDelimiter.toString();
 	public static final CharSequence msgStopDelimiter = stopDelimiter.toString();
+	/** Port name to play a recording instead of a serial port: "REPLAY:dir" or "REPLAY:dir@speed" (a number or "max") */
+	public static final String REPLAY_PORT_PREFIX = "REPLAY:";
+	public static final String RECORDINGS_DIR = "Recordings";
+	
+	private static final int pipelineQueueCapacity = 64;
+	/** More than one decode worker could hand the packets on out of frame order */
+	private static final int decodeWorkers = 1;
+	private static final int validateWorkers = 1;
+	private static final int persistWorkers = 1;
+	private static final int notifyWorkers = 1;
 
 	private static CommunicationManager instance = null;
-	private SerialPort serialPort;
-	private InputStream in;
-	private OutputStream out;
-	
-	private Lock inputLock;
-	private Condition inputDataAvailable;
+	private Transport transport;
 	
 	private BlockingQueue<Message> outputQueue;
-	private BlockingQueue<Message> messageAcceptorQueue;
+	private IngestPipeline ingestPipeline;
 	
-	private SerialReader serialReaderThread;
 	private SerialWriter serialWriterThread;
-	private MessageParser messageParserThread;
+	private FrameReplay frameReplay;
+	private volatile FrameRecorder frameRecorder;
+	private final LinkLayer linkLayer = new LinkLayer();
+	private volatile RetransmitBuffer retransmitBuffer;
+	private final UplinkScheduler uplinkScheduler = new UplinkScheduler();
+	private final UplinkEncoder uplinkEncoder = new UplinkEncoder();
 	
 	private boolean isSimulator;
+	private boolean isStreamingParser;
 
 	private CommunicationManager() {
-		this.inputLock = new ReentrantLock();
-		this.inputDataAvailable = this.inputLock.newCondition();
 		this.outputQueue = new LinkedBlockingQueue<Message>();
-		this.messageAcceptorQueue = new LinkedBlockingQueue<Message>();
+		this.ingestPipeline = new IngestPipeline(pipelineQueueCapacity, decodeWorkers, validateWorkers, 
+													persistWorkers, notifyWorkers);
 		this.isSimulator = false;
+		this.isStreamingParser = true;
 	}
 	
 	public static CommunicationManager getInstance() {
@@ -70,82 +80,230 @@ public class CommunicationManager {
 		connect(portName);
 	}
 	
+	/**
+	 * @param portName "LOCAL" to only parse messages given to sendLocalMessage, a recording to replay
+	 * (see REPLAY_PORT_PREFIX) or a transport (see createTransport)
+	 */
 	public void connect (String portName) throws NoSuchPortException, 
 												PortInUseException, 
 												UnsupportedCommOperationException, 
 												IOException, TooManyListenersException {
 		if (portName.equals("LOCAL")) {
-			(new Thread(new MessageParser())).start();
+			ingestPipeline.start();
+		}
+		else if (portName.startsWith(REPLAY_PORT_PREFIX)) {
+			String recording = portName.substring(REPLAY_PORT_PREFIX.length());
+			double speed = FrameReplay.REAL_TIME;
+			int at = recording.lastIndexOf('@');
+			if (at >= 0) {
+				String value = recording.substring(at + 1);
+				speed = value.equalsIgnoreCase("max") ? FrameReplay.MAX_SPEED : Double.parseDouble(value);
+				recording = recording.substring(0, at);
+			}
+			connectReplay(new File(recording), speed);
 		}
 		else {
-			CommPortIdentifier portIdentifier = CommPortIdentifier.getPortIdentifier(portName);
-	        if ( portIdentifier.isCurrentlyOwned() ) {
-	            System.out.println("Error: Port is currently in use");
-	        }
-	        else {
-	            CommPort commPort = portIdentifier.open(this.getClass().getName(),2000);
-	            
-	            if ( commPort instanceof SerialPort ){
-	                serialPort = (SerialPort) commPort;
-	                serialPort.setSerialPortParams(19200,SerialPort.DATABITS_8,SerialPort.STOPBITS_1,SerialPort.PARITY_NONE);
-	                //serialPort.setFlowControlMode(serialPort.FLOWCONTROL_RTSCTS_IN);
-	                
-	                in = serialPort.getInputStream();
-	                out = serialPort.getOutputStream();
-	                
-	                serialPort.addEventListener(new SerialListener(in));
-	                serialPort.notifyOnDataAvailable(true);
-	                
-	                
-	                serialReaderThread = new SerialReader(in);
-	                serialWriterThread = new SerialWriter(out);
-	                messageParserThread = new MessageParser();
-	                
-	                (new Thread(serialReaderThread)).start();
-	                (new Thread(serialWriterThread)).start();
-	                (new Thread(messageParserThread)).start();
-	            }
-	            else {
-	                System.out.println("Error: Only serial ports are handled by this application");
-	            }
-	        }
+			connect(createTransport(portName));
 		}
     }
 	
+	/**
+	 * @param portName "TCP:host:port" to connect to a network modem, "TCP-LISTEN:port" to wait for
+	 * connections, "UDP:localPort" or "UDP:localPort:host:port", anything else is a serial port name
+	 */
+	public static Transport createTransport(String portName) throws IOException {
+		String[] parts = portName.split(":");
+		try {
+			switch (parts[0].toUpperCase()) {
+			case "TCP":
+				if (parts.length == 3)
+					return TcpTransport.connect(parts[1], Integer.parseInt(parts[2]));
+				break;
+			case "TCP-LISTEN":
+				if (parts.length == 2)
+					return TcpTransport.listen(Integer.parseInt(parts[1]));
+				break;
+			case "UDP":
+				if (parts.length == 2)
+					return new UdpTransport(Integer.parseInt(parts[1]), null);
+				if (parts.length == 4)
+					return new UdpTransport(Integer.parseInt(parts[1]), new InetSocketAddress(parts[2], Integer.parseInt(parts[3])));
+				break;
+			default:
+				return new SerialTransport(portName);
+			}
+		} catch (NumberFormatException e) {
+			// Reported below
+		}
+		throw new IOException("Bad port name " + portName);
+	}
+	
+	/**
+	 * Receive frames from the transport into the ingest pipeline and send the output queue through it
+	 */
+	public void connect (Transport transport) throws IOException {
+		ingestPipeline.start();
+		linkLayer.setRequestingRetransmissions(true);
+		linkLayer.start();
+		transport.open(new FrameDecoder.FrameListener() {
+			@Override
+			public void onFrame(byte[] buffer, int offset, int length) {
+				acceptFrame(buffer, offset, length);
+			}
+		});
+		this.transport = transport;
+		serialWriterThread = new SerialWriter(transport);
+		(new Thread(serialWriterThread, "SerialWriter")).start();
+		uplinkScheduler.start();
+		Loggers.logAction("Connected to {}", transport);
+	}
+	
+	public Transport getTransport() {
+		return transport;
+	}
+	
+	/**
+	 * Feed a recording to the ingest pipeline in place of the serial port
+	 * @param speed FrameReplay.REAL_TIME, a multiple of it or FrameReplay.MAX_SPEED
+	 */
+	public void connectReplay(File recording, double speed) throws IOException {
+		if (!recording.isDirectory()) {
+			throw new IOException("No recording in " + recording);
+		}
+		// Nobody would answer a NACK
+		linkLayer.setRequestingRetransmissions(false);
+		// The recording starts its own frame sequence
+		linkLayer.reset();
+		linkLayer.start();
+		frameReplay = new FrameReplay(recording, speed, new FrameDecoder.FrameListener() {
+			@Override
+			public void onFrame(byte[] buffer, int offset, int length) {
+				acceptFrame(buffer, offset, length);
+			}
+		});
+		ingestPipeline.start();
+		Thread replayThread = new Thread(frameReplay, "FrameReplay");
+		replayThread.setDaemon(true);
+		replayThread.start();
+	}
+	
+	public FrameReplay getFrameReplay() {
+		return frameReplay;
+	}
+	
+	/**
+	 * A complete frame arrived (from the serial port or a replay), check it with the link layer
+	 * and hand it to the ingest pipeline
+	 */
+	void acceptFrame(byte[] buffer, int offset, int length) {
+		Loggers.logEvent(EventType.FRAME_RECEIVED, 0, length);
+		FrameRecorder recorder = frameRecorder;
+		if (recorder != null) {
+			recorder.record(buffer, offset, length);
+		}
+		RetransmitBuffer sent = retransmitBuffer;
+		if (sent != null && sent.handleNack(buffer, offset, length)) {
+			return;
+		}
+		int payload = linkLayer.accept(buffer, offset, length);
+		if (payload < 0) {
+			return;
+		}
+		try {
+			getMessageAcceptorQueue().put(new Message(Arrays.copyOfRange(buffer, payload, offset + length)));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	/**
+	 * Record every received frame to a new directory under Recordings
+	 * @return the recording directory
+	 */
+	public synchronized File startRecording() throws IOException {
+		File dir = new File(RECORDINGS_DIR, new SimpleDateFormat("ddMMyy-HHmmss").format(new Date()));
+		startRecording(dir);
+		return dir;
+	}
+	
+	public synchronized void startRecording(File dir) throws IOException {
+		stopRecording();
+		frameRecorder = new FrameRecorder(dir, FrameRecorder.DEFAULT_SEGMENT_SIZE);
+		Loggers.logAction("Recording received frames to {}", dir);
+	}
+	
+	public synchronized void stopRecording() {
+		FrameRecorder recorder = frameRecorder;
+		if (recorder != null) {
+			frameRecorder = null;
+			recorder.close();
+			Loggers.logAction("Recorded {} frames to {}", recorder.getRecordedFrames(), recorder.getDirectory());
+		}
+	}
+	
+	public FrameRecorder getFrameRecorder() {
+		return frameRecorder;
+	}
+	
+	/**
+	 * @return the sequence and CRC checks of the received frames, with their counters
+	 */
+	public LinkLayer getLinkLayer() {
+		return linkLayer;
+	}
+	
+	/**
+	 * Answer the NACKs of the other side from this buffer, for the simulator
+	 * @param buffer null to stop answering
+	 */
+	public void setRetransmitBuffer(RetransmitBuffer buffer) {
+		this.retransmitBuffer = buffer;
+	}
+	
+	public RetransmitBuffer getRetransmitBuffer() {
+		return retransmitBuffer;
+	}
+	
+	/**
+	 * Missions submitted here are sent in priority order during the next pass,
+	 * sendMissions sends right away
+	 */
+	public UplinkScheduler getUplinkScheduler() {
+		return uplinkScheduler;
+	}
+	
 	public void sendMission(Mission mission) {
 		Collection<Mission> missions = new LinkedList<Mission>();
 		missions.add(mission);
 		sendMissions(missions);
 	}
 	
+	/**
+	 * Send the missions in one uplink packet right away. Their sent time is stored, in one
+	 * transaction, once the packet was written to the transport. If the write fails they
+	 * are handed to the uplink scheduler for the next pass.
+	 */
 	public void sendMissions(Collection<Mission> missions) {
-		Date now = new Date();
-		String msg = 
-				"<?xml version=\"1.0\"?>" +
-                "<packet>" +
-                "<upstreamPacket time=\""+ MessageParser.toRTEMSTimestamp(new Timestamp(now.getTime())) +"\">";
-		for (Mission mission : missions) {
-			String exeTimeString;
-			if (mission.getExecutionTime() == null) {
-				exeTimeString = "0";
+		final List<Mission> packetMissions = new ArrayList<Mission>(missions);
+		Message msg = new Message(uplinkEncoder.encode(packetMissions, System.currentTimeMillis()));
+		msg.setSendListener(new Message.SendListener() {
+			@Override
+			public void onSent(Message msg) {
+				DataManager.getInstance().setMissionsSentTS(packetMissions, new Timestamp(System.currentTimeMillis()));
+				for (Mission mission : packetMissions) {
+					Loggers.logEvent(EventType.MISSION_SENT, mission.getId(), mission.getCommand().getValue(), mission.getCommand().name());
+				}
 			}
-			else {
-				exeTimeString = MessageParser.toRTEMSTimestamp(mission.getExecutionTime());
+
+			@Override
+			public void onSendFailed(Message msg, IOException e) {
+				Loggers.logError("Uplink of {} missions failed, retrying in the next pass: {}", packetMissions.size(), e.getMessage());
+				uplinkScheduler.submitAll(packetMissions);
 			}
-			
-			msg = msg.concat("<mission time=\"" + exeTimeString + 
-					"\" opcode=\"" + mission.getCommand().getValue() + "\" priority=\"" +
-					mission.getPriority() + "\"/>");
-			Date nw= new java.util.Date();
-	        Timestamp sentTime=new Timestamp(nw.getTime());
-	        DataManager.getInstance().setMissionSentTS(mission, sentTime);
-		}
-		
-		msg = msg.concat("</upstreamPacket>" + 
-							"</packet>");
+		});
 		
-		System.out.println("DEBUG: Sending message:\n" + msg);
-		this.sendMessage(new Message(msg));
+		Loggers.logAction("Sending message:\n{}", msg);
+		this.sendMessage(msg);
 	}
 	
 	public void sendMessage(Message msg) {
@@ -158,14 +316,28 @@ public class CommunicationManager {
 	
 	public void sendLocalMessage(Message msg) {
 		try {
-			this.messageAcceptorQueue.put(msg);
+			this.getMessageAcceptorQueue().put(msg);
 		} catch (InterruptedException e) {
 			e.printStackTrace();
 		}
 	}
 	
 	public void disconnect() {
-		
+		if (frameReplay != null) {
+			frameReplay.stopThread();
+		}
+		if (serialWriterThread != null) {
+			serialWriterThread.stopThread();
+		}
+		uplinkScheduler.stopThread();
+		if (transport != null) {
+			transport.close();
+			transport = null;
+		}
+		stopRecording();
+		ingestPipeline.stop();
+		linkLayer.stopThread();
+		linkLayer.reset();
 	}
 	
 	public BlockingQueue<Message> getOutputQueue() {
@@ -173,19 +345,37 @@ public class CommunicationManager {
 	}
 	
 	public BlockingQueue<Message> getMessageAcceptorQueue() {
-		return this.messageAcceptorQueue;
+		return this.ingestPipeline.getInputQueue();
 	}
 	
-	public Lock getInputLock() {
-		return inputLock;
+	/**
+	 * Replace the ingest pipeline with one using other queue sizes and worker counts.
+	 * Must be called before connecting. With more than one worker in a stage the packets
+	 * may be persisted out of order.
+	 */
+	public void configurePipeline(int queueCapacity, int decodeWorkers, int validateWorkers, int persistWorkers, int notifyWorkers) {
+		this.ingestPipeline.stop();
+		this.ingestPipeline = new IngestPipeline(queueCapacity, decodeWorkers, validateWorkers, persistWorkers, notifyWorkers);
 	}
 	
-	public Condition getInputDataAvailable() {
-		return inputDataAvailable;
+	public IngestPipeline getIngestPipeline() {
+		return this.ingestPipeline;
 	}
 	
 	public boolean isSimulator() {
 		return isSimulator;
 	}
+	
+	/**
+	 * Choose how accepted messages are parsed
+	 * @param streaming true for the StAX parser, false to fall back to building a DOM per message
+	 */
+	public void setStreamingParser(boolean streaming) {
+		this.isStreamingParser = streaming;
+	}
+	
+	public boolean isStreamingParser() {
+		return isStreamingParser;
+	}
 
 }
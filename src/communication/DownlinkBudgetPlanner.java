@@ -0,0 +1,346 @@
+package communication;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+
+import orbit.OrbitPropagator;
+import orbit.Pass;
+import data.Command;
+
+/**
+ * Estimates how many Energy, Temperature and Static packets fit in each pass and which FORMAT
+ * command keeps the link busiest. Packet sizes are measured by encoding simulator style packets
+ * of samplesPerPacket samples, spaced like the satellite stores them, with the codec in use and
+ * framing them like the link layer does; the packet overhead is shared by the samples it carries.
+ * The satellite is assumed to store samples at fixed rates between passes; what a pass cannot take
+ * waits for the next one.
+ */
+public class DownlinkBudgetPlanner {
+	/** 10 bits a byte on the serial line */
+	public static final int DEFAULT_BYTES_PER_SECOND = SerialTransport.BAUD_RATE / 10;
+	public static final long DEFAULT_GUARD_MILLIS = UplinkScheduler.DEFAULT_GUARD_MILLIS;
+	/** As the simulator sends them */
+	public static final int DEFAULT_SAMPLES_PER_PACKET = 1;
+	private static final int measuredPackets = 64;
+
+	public static class PassBudget {
+		private final Pass pass;
+		private final Command command;
+		private final long capacityBytes;
+		private final long usedBytes;
+		private final long staticPackets, energyPackets, temperaturePackets;
+		private final long energyLeft, temperatureLeft;
+
+		PassBudget(Pass pass, Command command, long capacityBytes, long usedBytes, long staticPackets,
+				long energyPackets, long temperaturePackets, long energyLeft, long temperatureLeft) {
+			this.pass = pass;
+			this.command = command;
+			this.capacityBytes = capacityBytes;
+			this.usedBytes = usedBytes;
+			this.staticPackets = staticPackets;
+			this.energyPackets = energyPackets;
+			this.temperaturePackets = temperaturePackets;
+			this.energyLeft = energyLeft;
+			this.temperatureLeft = temperatureLeft;
+		}
+
+		public Pass getPass() {
+			return pass;
+		}
+
+		/**
+		 * @return FORMAT_ENERGY, FORMAT_TEMP or FORMAT_MIXED
+		 */
+		public Command getCommand() {
+			return command;
+		}
+
+		public long getCapacityBytes() {
+			return capacityBytes;
+		}
+
+		public long getUsedBytes() {
+			return usedBytes;
+		}
+
+		/**
+		 * @return 0 to 1
+		 */
+		public double getLinkUse() {
+			return capacityBytes == 0 ? 0 : (double) usedBytes / capacityBytes;
+		}
+
+		public long getStaticPackets() {
+			return staticPackets;
+		}
+
+		/**
+		 * @return energy samples sent in the pass, in samplesPerPacket packets
+		 */
+		public long getEnergyPackets() {
+			return energyPackets;
+		}
+
+		public long getTemperaturePackets() {
+			return temperaturePackets;
+		}
+
+		/**
+		 * @return samples still on board after the pass
+		 */
+		public long getEnergyLeft() {
+			return energyLeft;
+		}
+
+		public long getTemperatureLeft() {
+			return temperatureLeft;
+		}
+
+		@Override
+		public String toString() {
+			return command + ": " + staticPackets + " static packets, " + energyPackets + " energy, " + temperaturePackets
+					+ " temperature samples, " + usedBytes + "/" + capacityBytes + " bytes";
+		}
+	}
+
+	/**
+	 * A recorded pass next to what the planner makes of it
+	 */
+	public static class Check {
+		private final PassStatistics recorded;
+		private final long predictedBytes;
+		private final long capacityBytes;
+
+		Check(PassStatistics recorded, long predictedBytes, long capacityBytes) {
+			this.recorded = recorded;
+			this.predictedBytes = predictedBytes;
+			this.capacityBytes = capacityBytes;
+		}
+
+		public PassStatistics getRecorded() {
+			return recorded;
+		}
+
+		/**
+		 * @return link bytes the planner expects for the recorded packets
+		 */
+		public long getPredictedBytes() {
+			return predictedBytes;
+		}
+
+		public long getCapacityBytes() {
+			return capacityBytes;
+		}
+
+		/**
+		 * @return (predicted - recorded) / recorded bytes
+		 */
+		public double getError() {
+			return recorded.getBytes() == 0 ? 0 : (double) (predictedBytes - recorded.getBytes()) / recorded.getBytes();
+		}
+
+		/**
+		 * @return recorded bytes over what the planner thinks the pass can carry
+		 */
+		public double getLinkUse() {
+			return capacityBytes == 0 ? 0 : (double) recorded.getBytes() / capacityBytes;
+		}
+
+		@Override
+		public String toString() {
+			return recorded + ", predicted " + predictedBytes + " bytes of " + capacityBytes;
+		}
+	}
+
+	private final int bytesPerSecond;
+	private final long guardMillis;
+	private final double energyPerSecond;
+	private final double temperaturePerSecond;
+	private final int samplesPerPacket;
+	/** Link bytes a sample takes, its share of the packet included */
+	private final int energyBytes;
+	private final int temperatureBytes;
+	private final int staticBytes;
+	private int staticsPerPass = 1;
+
+	/**
+	 * @param codec the format the satellite downlinks in
+	 * @param energyPerSecond energy samples the satellite stores a second
+	 * @param temperaturePerSecond temperature samples the satellite stores a second
+	 */
+	public DownlinkBudgetPlanner(PacketCodec codec, double energyPerSecond, double temperaturePerSecond) {
+		this(codec, DEFAULT_SAMPLES_PER_PACKET, energyPerSecond, temperaturePerSecond);
+	}
+
+	/**
+	 * @param samplesPerPacket samples of one kind the satellite puts in a packet
+	 */
+	public DownlinkBudgetPlanner(PacketCodec codec, int samplesPerPacket, double energyPerSecond,
+			double temperaturePerSecond) {
+		this(codec, samplesPerPacket, DEFAULT_BYTES_PER_SECOND, DEFAULT_GUARD_MILLIS, energyPerSecond, temperaturePerSecond);
+	}
+
+	public DownlinkBudgetPlanner(PacketCodec codec, int samplesPerPacket, int bytesPerSecond, long guardMillis,
+			double energyPerSecond, double temperaturePerSecond) {
+		this.samplesPerPacket = samplesPerPacket;
+		this.bytesPerSecond = bytesPerSecond;
+		this.guardMillis = guardMillis;
+		this.energyPerSecond = energyPerSecond;
+		this.temperaturePerSecond = temperaturePerSecond;
+		boolean binary = codec.getHeaderByte() == BinaryPacketCodec.HEADER;
+		Random random = new Random(1);
+		long time = System.currentTimeMillis() / 1000 * 1000;
+		long energyInterval = interval(energyPerSecond), temperatureInterval = interval(temperaturePerSecond);
+		long energy = 0, temperature = 0, statics = 0;
+		for (int i = 0; i < measuredPackets; i++) {
+			DownlinkPacket energyPacket = new DownlinkPacket();
+			DownlinkPacket temperaturePacket = new DownlinkPacket();
+			for (int j = 0; j < samplesPerPacket; j++) {
+				energyPacket.onEnergySample(between(random, 107, 112), between(random, 107, 112), between(random, 107, 112),
+						between(random, 1, 4), between(random, 1, 4), between(random, 1, 4), new Timestamp(time + j * energyInterval));
+				temperaturePacket.onTemperatureSample(between(random, 40, 45), between(random, 55, 60),
+						between(random, 50, 55), new Timestamp(time + j * temperatureInterval));
+			}
+			energy += framed(SatelliteSimulator.samplesPacket(energyPacket, binary));
+			temperature += framed(SatelliteSimulator.samplesPacket(temperaturePacket, binary));
+			statics += framed(SatelliteSimulator.staticPacket(new Timestamp(time), binary));
+		}
+		long samples = (long) measuredPackets * samplesPerPacket;
+		this.energyBytes = (int) Math.round((double) energy / samples);
+		this.temperatureBytes = (int) Math.round((double) temperature / samples);
+		this.staticBytes = (int) Math.round((double) statics / measuredPackets);
+	}
+
+	/**
+	 * @return ms between two stored samples
+	 */
+	private static long interval(double perSecond) {
+		return perSecond <= 0 ? 1000 : Math.max(1, Math.round(1000 / perSecond));
+	}
+
+	private static int framed(byte[] packet) {
+		return LinkLayer.frame(0, packet).length;
+	}
+
+	private static float between(Random random, float min, float max) {
+		return random.nextFloat() * (max - min) + min;
+	}
+
+	/**
+	 * @param staticsPerPass static packets every pass starts with
+	 */
+	public void setStaticsPerPass(int staticsPerPass) {
+		this.staticsPerPass = staticsPerPass;
+	}
+
+	/**
+	 * Plan the passes of [start, end). The satellite is assumed to have sent everything it had at start.
+	 */
+	public List<PassBudget> plan(OrbitPropagator propagator, long start, long end) {
+		List<PassBudget> budgets = new ArrayList<PassBudget>();
+		long energyLeft = 0, temperatureLeft = 0;
+		long previousEnd = start;
+		Collection<Pass> passes = propagator.getPassesBetween(start, end);
+		if (passes == null) {
+			return budgets; // The simulated passes are not predicted
+		}
+		for (Pass pass : passes) {
+			if (pass.getStartTime() < start) {
+				continue;
+			}
+			long gap = pass.getStartTime() - previousEnd;
+			PassBudget budget = budget(pass, energyLeft + (long) (energyPerSecond * gap / 1000),
+					temperatureLeft + (long) (temperaturePerSecond * gap / 1000));
+			budgets.add(budget);
+			energyLeft = budget.getEnergyLeft();
+			temperatureLeft = budget.getTemperatureLeft();
+			previousEnd = pass.getEndTime();
+		}
+		return budgets;
+	}
+
+	/**
+	 * @param energySamples waiting on board when the pass starts
+	 * @param temperatureSamples waiting on board when the pass starts
+	 */
+	public PassBudget budget(Pass pass, long energySamples, long temperatureSamples) {
+		long capacity = capacityBytes(pass.getEndTime() - pass.getStartTime());
+		long statics = Math.min(staticsPerPass, capacity / staticBytes);
+		long free = capacity - statics * staticBytes;
+
+		// FORMAT_MIXED sends both kinds, one of each in turn while both last
+		long pairs = Math.min(Math.min(energySamples, temperatureSamples), free / (energyBytes + temperatureBytes));
+		long mixedFree = free - pairs * (energyBytes + temperatureBytes);
+		long mixedEnergy = pairs + Math.min(energySamples - pairs, mixedFree / energyBytes);
+		mixedFree -= (mixedEnergy - pairs) * energyBytes;
+		long mixedTemperature = pairs + Math.min(temperatureSamples - pairs, mixedFree / temperatureBytes);
+		long mixedBytes = mixedEnergy * energyBytes + mixedTemperature * temperatureBytes;
+
+		long energyOnly = Math.min(energySamples, free / energyBytes);
+		long temperatureOnly = Math.min(temperatureSamples, free / temperatureBytes);
+
+		Command command = Command.FORMAT_MIXED;
+		long energy = mixedEnergy, temperature = mixedTemperature, used = mixedBytes;
+		// A single kind is only worth it when mixing would not send more
+		if ((temperatureSamples == 0 && energySamples > 0) || energyOnly * energyBytes > used) {
+			command = Command.FORMAT_ENERGY;
+			energy = energyOnly;
+			temperature = 0;
+			used = energyOnly * energyBytes;
+		}
+		if ((energySamples == 0 && temperatureSamples > 0) || temperatureOnly * temperatureBytes > used) {
+			command = Command.FORMAT_TEMP;
+			energy = 0;
+			temperature = temperatureOnly;
+			used = temperatureOnly * temperatureBytes;
+		}
+		return new PassBudget(pass, command, capacity, used + statics * staticBytes, statics, energy, temperature,
+				energySamples - energy, temperatureSamples - temperature);
+	}
+
+	/**
+	 * Compare a recorded pass with the planner's packet sizes and link capacity. The samples
+	 * are taken to be energy and temperature in the ratio of the sampling rates.
+	 */
+	public Check check(PassStatistics recorded) {
+		double energyShare = energyPerSecond + temperaturePerSecond == 0 ? 0.5
+				: energyPerSecond / (energyPerSecond + temperaturePerSecond);
+		double sampleBytes = energyShare * energyBytes + (1 - energyShare) * temperatureBytes;
+		long predicted = Math.round(recorded.getStatics() * staticBytes + recorded.getSamples() * sampleBytes);
+		return new Check(recorded, predicted, capacityBytes(recorded.getDuration()));
+	}
+
+	public List<Check> check(List<PassStatistics> recorded) {
+		List<Check> checks = new ArrayList<Check>(recorded.size());
+		for (PassStatistics pass : recorded) {
+			checks.add(check(pass));
+		}
+		return checks;
+	}
+
+	/**
+	 * @return link bytes in a pass of this length
+	 */
+	public long capacityBytes(long durationMillis) {
+		return Math.max(0, durationMillis - guardMillis) * bytesPerSecond / 1000;
+	}
+
+	public int getEnergyBytes() {
+		return energyBytes;
+	}
+
+	public int getTemperatureBytes() {
+		return temperatureBytes;
+	}
+
+	public int getStaticBytes() {
+		return staticBytes;
+	}
+
+	public int getSamplesPerPacket() {
+		return samplesPerPacket;
+	}
+}
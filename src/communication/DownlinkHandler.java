@@ -0,0 +1,31 @@
+package communication;
+
+import java.sql.Timestamp;
+
+import data.Satellite;
+import data.Status;
+
+/**
+ * Receives the contents of parsed downstream packets.
+ * Both the DOM based {@link MessageParser} and the {@link StreamingMessageParser}
+ * report every packet they parse through this interface.
+ */
+public interface DownlinkHandler {
+
+	/**
+	 * Called once for each Static packet, after all of its modules were read
+	 */
+	public void onStaticPacket(Satellite.SatelliteState state, Status temp, Timestamp tempTS, Status energy, Timestamp energyTS,
+								Status sband, Timestamp sbandTS, Status payload, Timestamp payloadTS,
+								Status solarPanels, Timestamp solarPanelsTS, Status thermal, Timestamp thermalTS);
+
+	/**
+	 * Called once for each TemperatureSample element
+	 */
+	public void onTemperatureSample(float sensor1, float sensor2, float sensor3, Timestamp ts);
+
+	/**
+	 * Called once for each EnergySample element
+	 */
+	public void onEnergySample(float batt1V, float batt2V, float batt3V, float batt1C, float batt2C, float batt3C, Timestamp ts);
+}
@@ -0,0 +1,168 @@
+package communication;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import data.Satellite;
+import data.Status;
+
+/**
+ * The decoded contents of one downstream packet, collected from a {@link DownlinkHandler}
+ * so the later ingest stages can work on it without the message text.
+ */
+public class DownlinkPacket implements DownlinkHandler {
+
+	public static class TemperatureSample {
+		public final float sensor1, sensor2, sensor3;
+		public final Timestamp ts;
+
+		public TemperatureSample(float sensor1, float sensor2, float sensor3, Timestamp ts) {
+			this.sensor1 = sensor1;
+			this.sensor2 = sensor2;
+			this.sensor3 = sensor3;
+			this.ts = ts;
+		}
+	}
+
+	public static class EnergySample {
+		public final float batt1V, batt2V, batt3V, batt1C, batt2C, batt3C;
+		public final Timestamp ts;
+
+		public EnergySample(float batt1V, float batt2V, float batt3V, float batt1C, float batt2C, float batt3C, Timestamp ts) {
+			this.batt1V = batt1V;
+			this.batt2V = batt2V;
+			this.batt3V = batt3V;
+			this.batt1C = batt1C;
+			this.batt2C = batt2C;
+			this.batt3C = batt3C;
+			this.ts = ts;
+		}
+	}
+
+	public static class StaticStatus {
+		public final Satellite.SatelliteState state;
+		public final Status temp, energy, sband, payload, solarPanels, thermal;
+		public final Timestamp tempTS, energyTS, sbandTS, payloadTS, solarPanelsTS, thermalTS;
+
+		public StaticStatus(Satellite.SatelliteState state, Status temp, Timestamp tempTS, Status energy, Timestamp energyTS,
+							Status sband, Timestamp sbandTS, Status payload, Timestamp payloadTS,
+							Status solarPanels, Timestamp solarPanelsTS, Status thermal, Timestamp thermalTS) {
+			this.state = state;
+			this.temp = temp;
+			this.tempTS = tempTS;
+			this.energy = energy;
+			this.energyTS = energyTS;
+			this.sband = sband;
+			this.sbandTS = sbandTS;
+			this.payload = payload;
+			this.payloadTS = payloadTS;
+			this.solarPanels = solarPanels;
+			this.solarPanelsTS = solarPanelsTS;
+			this.thermal = thermal;
+			this.thermalTS = thermalTS;
+		}
+	}
+
+	private List<StaticStatus> statics = new ArrayList<StaticStatus>(1);
+	private List<TemperatureSample> temperatures = new ArrayList<TemperatureSample>();
+	private List<EnergySample> energies = new ArrayList<EnergySample>();
+
+	@Override
+	public void onStaticPacket(Satellite.SatelliteState state, Status temp, Timestamp tempTS, Status energy, Timestamp energyTS,
+								Status sband, Timestamp sbandTS, Status payload, Timestamp payloadTS,
+								Status solarPanels, Timestamp solarPanelsTS, Status thermal, Timestamp thermalTS) {
+		statics.add(new StaticStatus(state, temp, tempTS, energy, energyTS, sband, sbandTS, payload, payloadTS,
+										solarPanels, solarPanelsTS, thermal, thermalTS));
+	}
+
+	@Override
+	public void onTemperatureSample(float sensor1, float sensor2, float sensor3, Timestamp ts) {
+		temperatures.add(new TemperatureSample(sensor1, sensor2, sensor3, ts));
+	}
+
+	@Override
+	public void onEnergySample(float batt1V, float batt2V, float batt3V, float batt1C, float batt2C, float batt3C, Timestamp ts) {
+		energies.add(new EnergySample(batt1V, batt2V, batt3V, batt1C, batt2C, batt3C, ts));
+	}
+
+	/**
+	 * Report the contents of this packet to another handler, in the order they were parsed per type
+	 */
+	public void replay(DownlinkHandler handler) {
+		for (StaticStatus s : statics) {
+			handler.onStaticPacket(s.state, s.temp, s.tempTS, s.energy, s.energyTS, s.sband, s.sbandTS,
+					s.payload, s.payloadTS, s.solarPanels, s.solarPanelsTS, s.thermal, s.thermalTS);
+		}
+		for (TemperatureSample t : temperatures) {
+			handler.onTemperatureSample(t.sensor1, t.sensor2, t.sensor3, t.ts);
+		}
+		for (EnergySample e : energies) {
+			handler.onEnergySample(e.batt1V, e.batt2V, e.batt3V, e.batt1C, e.batt2C, e.batt3C, e.ts);
+		}
+	}
+
+	/**
+	 * Drop the samples that would corrupt the database or the statistics screens
+	 * @return number of samples removed
+	 */
+	public int removeInvalid() {
+		int removed = 0;
+		for (Iterator<StaticStatus> it = statics.iterator(); it.hasNext();) {
+			if (it.next().state == null) {
+				it.remove();
+				removed++;
+			}
+		}
+		for (Iterator<TemperatureSample> it = temperatures.iterator(); it.hasNext();) {
+			TemperatureSample t = it.next();
+			if (t.ts == null || !isFinite(t.sensor1) || !isFinite(t.sensor2) || !isFinite(t.sensor3)) {
+				it.remove();
+				removed++;
+			}
+		}
+		for (Iterator<EnergySample> it = energies.iterator(); it.hasNext();) {
+			EnergySample e = it.next();
+			if (e.ts == null || !isFinite(e.batt1V) || !isFinite(e.batt2V) || !isFinite(e.batt3V)
+					|| !isFinite(e.batt1C) || !isFinite(e.batt2C) || !isFinite(e.batt3C)) {
+				it.remove();
+				removed++;
+			}
+		}
+		return removed;
+	}
+
+	private static boolean isFinite(float f) {
+		return !Float.isNaN(f) && !Float.isInfinite(f);
+	}
+
+	public boolean isEmpty() {
+		return statics.isEmpty() && temperatures.isEmpty() && energies.isEmpty();
+	}
+
+	public int getStaticCount() {
+		return statics.size();
+	}
+
+	public int getTemperatureCount() {
+		return temperatures.size();
+	}
+
+	public int getEnergyCount() {
+		return energies.size();
+	}
+
+	public List<StaticStatus> getStatics() {
+		return Collections.unmodifiableList(statics);
+	}
+
+	public List<TemperatureSample> getTemperatures() {
+		return Collections.unmodifiableList(temperatures);
+	}
+
+	public List<EnergySample> getEnergies() {
+		return Collections.unmodifiableList(energies);
+	}
+}
@@ -0,0 +1,126 @@
+package communication;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import logger.Loggers;
+
+/**
+ * Incremental STX/EOT framer working on a single reusable buffer.
+ * Every byte is looked at once: only the bytes that arrived in the last read are scanned,
+ * and the unfinished frame (if any) is moved to the start of the buffer instead of being
+ * decoded and kept aside as text.
+ */
+public class FrameDecoder {
+	public static final byte STX = (byte) CommunicationManager.startDelimiter.charValue();
+	public static final byte EOT = (byte) CommunicationManager.stopDelimiter.charValue();
+	public static final int DEFAULT_INITIAL_CAPACITY = 1024;
+	public static final int DEFAULT_MAX_FRAME_SIZE = 1024 * 1024;
+
+	public interface FrameListener {
+		/**
+		 * Called for every complete frame. The bytes are only valid during the call,
+		 * the buffer is reused for the next frames.
+		 * @param buffer backing array of the decoder
+		 * @param offset first payload byte (after the STX)
+		 * @param length payload length (without the EOT)
+		 */
+		public void onFrame(byte[] buffer, int offset, int length);
+	}
+
+	private ByteBuffer buffer;
+	private int maxFrameSize;
+	private int frameStart;
+	private FrameListener listener;
+
+	public FrameDecoder (int initialCapacity, int maxFrameSize, FrameListener listener) {
+		this.buffer = ByteBuffer.allocate(initialCapacity);
+		this.maxFrameSize = maxFrameSize;
+		this.frameStart = -1;
+		this.listener = listener;
+	}
+
+	/**
+	 * Read whatever is available from the stream straight into the frame buffer and
+	 * deliver the frames it completes
+	 * @return number of bytes read, -1 at end of stream
+	 */
+	public int readFrom (InputStream in) throws IOException {
+		ensureSpace();
+		int from = buffer.position();
+		int len = in.read(buffer.array(), buffer.arrayOffset() + from, buffer.remaining());
+		if (len > 0) {
+			buffer.position(from + len);
+			scan(from);
+		}
+		return len;
+	}
+
+	/**
+	 * Feed bytes that were read by someone else
+	 */
+	public void decode (byte[] src, int offset, int length) {
+		while (length > 0) {
+			ensureSpace();
+			int from = buffer.position();
+			int chunk = Math.min(length, buffer.remaining());
+			buffer.put(src, offset, chunk);
+			offset += chunk;
+			length -= chunk;
+			scan(from);
+		}
+	}
+
+	/**
+	 * @return number of buffered bytes that belong to a frame whose EOT did not arrive yet
+	 */
+	public int getPendingBytes () {
+		return frameStart < 0 ? 0 : buffer.position() - frameStart;
+	}
+
+	public int getCapacity () {
+		return buffer.capacity();
+	}
+
+	private void scan (int from) {
+		byte[] array = buffer.array();
+		int base = buffer.arrayOffset();
+		int end = buffer.position();
+		for (int i = from; i < end; i++) {
+			byte b = array[base + i];
+			if (b == STX) {
+				frameStart = i + 1; // A new STX means the previous frame lost its EOT
+			}
+			else if (b == EOT && frameStart >= 0) {
+				listener.onFrame(array, base + frameStart, i - frameStart);
+				frameStart = -1;
+			}
+		}
+		if (frameStart < 0) {
+			buffer.clear(); // Nothing but noise and complete frames
+		}
+		else if (frameStart > 0) {
+			buffer.flip();
+			buffer.position(frameStart);
+			buffer.compact();
+			frameStart = 0;
+		}
+	}
+
+	private void ensureSpace () {
+		if (buffer.hasRemaining()) {
+			return;
+		}
+		if (buffer.capacity() >= maxFrameSize) {
+			Loggers.logError("Dropping a frame longer than {} bytes", maxFrameSize);
+			buffer.clear();
+			frameStart = -1;
+			return;
+		}
+		ByteBuffer bigger = ByteBuffer.allocate(Math.min(buffer.capacity() * 2, maxFrameSize));
+		buffer.flip();
+		bigger.put(buffer);
+		buffer = bigger;
+	}
+}
@@ -0,0 +1,95 @@
+package communication;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class FrameDecoderTests {
+	private List<String> frames;
+	private FrameDecoder decoder;
+
+	@Before
+	public void initObjects(){
+		frames = new ArrayList<String>();
+		decoder = new FrameDecoder(16, 64, new FrameDecoder.FrameListener() {
+			@Override
+			public void onFrame(byte[] buffer, int offset, int length) {
+				frames.add(new String(buffer, offset, length, StandardCharsets.UTF_8));
+			}
+		});
+	}
+
+	private void feed(String s) {
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		decoder.decode(bytes, 0, bytes.length);
+	}
+
+	@Test
+	public void testSingleFrame() {
+		feed("\u0002<a/>\u0004");
+		assertEquals(1, frames.size());
+		assertEquals("<a/>", frames.get(0));
+		assertEquals(0, decoder.getPendingBytes());
+	}
+
+	@Test
+	public void testSeveralFramesInOneChunk() {
+		feed("noise\u0002one\u0004\r\n\u0002two\u0004\u0002thr");
+		assertEquals(2, frames.size());
+		assertEquals("two", frames.get(1));
+		assertEquals(3, decoder.getPendingBytes());
+		feed("ee\u0004");
+		assertEquals("three", frames.get(2));
+	}
+
+	@Test
+	public void testFrameSplitByteByByte() {
+		String msg = "\u0002<packet>split</packet>\u0004";
+		for (int i = 0; i < msg.length(); i++) {
+			feed(msg.substring(i, i + 1));
+		}
+		assertEquals(1, frames.size());
+		assertEquals("<packet>split</packet>", frames.get(0));
+	}
+
+	@Test
+	public void testBufferGrowsForLongFrame() {
+		feed("\u00020123456789012345678901234567890123456789\u0004");
+		assertEquals("0123456789012345678901234567890123456789", frames.get(0));
+		assertTrue(decoder.getCapacity() > 16);
+	}
+
+	@Test
+	public void testOversizedFrameDropped() {
+		StringBuilder sb = new StringBuilder("\u0002");
+		for (int i = 0; i < 100; i++) {
+			sb.append('x');
+		}
+		feed(sb.append("\u0004\u0002ok\u0004").toString());
+		assertEquals(1, frames.size());
+		assertEquals("ok", frames.get(0));
+	}
+
+	@Test
+	public void testNewStartDropsUnterminatedFrame() {
+		feed("\u0002lost\u0002kept\u0004");
+		assertEquals(1, frames.size());
+		assertEquals("kept", frames.get(0));
+	}
+
+	@Test
+	public void testReadFromStream() throws IOException {
+		ByteArrayInputStream in = new ByteArrayInputStream("\u0002abc\u0004\u0002de".getBytes(StandardCharsets.UTF_8));
+		while (decoder.readFrom(in) > 0) {
+		}
+		assertEquals(1, frames.size());
+		assertEquals(2, decoder.getPendingBytes());
+	}
+}
@@ -0,0 +1,175 @@
+package communication;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Records the raw payload of every received frame with its System.nanoTime() arrival time,
+ * so a pass can be replayed later with {@link FrameReplay}.
+ * A recording is a directory of memory-mapped segment files ("00000.frames", "00001.frames", ...):
+ * <pre>
+ * header: int magic, int version, long epoch ms and long nanoTime when the segment was opened
+ * frame:  int length + 1 (0 marks the end), long nanoTime, payload
+ * </pre>
+ * A closed segment is truncated after its end marker.
+ */
+public class FrameRecorder {
+	static final int MAGIC = 0x4E534652; // "NSFR"
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 24;
+	static final int FRAME_HEADER_SIZE = 12;
+	static final String SUFFIX = ".frames";
+	public static final int DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+
+	private final File dir;
+	private final int segmentSize;
+	private RandomAccessFile file;
+	private MappedByteBuffer segment;
+	private int segmentIndex = -1;
+	private boolean isClosed = false;
+	private long recordedFrames = 0;
+	private long recordedBytes = 0;
+	private long droppedFrames = 0;
+
+	public FrameRecorder(File dir, int segmentSize) throws IOException {
+		this.dir = dir;
+		this.segmentSize = segmentSize;
+		if (!dir.exists() && !dir.mkdirs()) {
+			throw new IOException("can't create " + dir);
+		}
+		if (new File(dir, segmentName(0)).exists()) {
+			throw new IOException(dir + " already holds a recording");
+		}
+		openSegment();
+	}
+
+	static String segmentName(int index) {
+		return String.format("%05d%s", index, SUFFIX);
+	}
+
+	public File getDirectory() {
+		return dir;
+	}
+
+	public void record(byte[] buffer, int offset, int length) {
+		record(System.nanoTime(), buffer, offset, length);
+	}
+
+	/**
+	 * @return false if the frame was dropped (recorder closed, disk error or a frame larger than a segment)
+	 */
+	public synchronized boolean record(long nanoTime, byte[] buffer, int offset, int length) {
+		int size = FRAME_HEADER_SIZE + length;
+		if (isClosed || size > segmentSize - HEADER_SIZE - 4) {
+			droppedFrames++;
+			return false;
+		}
+		try {
+			// Keep room for the 0 length that ends the segment
+			if (segment.position() + size + 4 > segmentSize) {
+				openSegment();
+			}
+		} catch (IOException e) {
+			System.err.println("Error opening a frame recording segment in " + dir + ": " + e.getMessage());
+			isClosed = true;
+			droppedFrames++;
+			return false;
+		}
+		int start = segment.position();
+		segment.position(start + 4);
+		segment.putLong(nanoTime);
+		segment.put(buffer, offset, length);
+		segment.putInt(start, length + 1); // Written last, a reader never sees half a frame
+		recordedFrames++;
+		recordedBytes += length;
+		return true;
+	}
+
+	private void openSegment() throws IOException {
+		closeSegment();
+		segmentIndex++;
+		file = new RandomAccessFile(new File(dir, segmentName(segmentIndex)), "rw");
+		segment = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+		segment.putInt(MAGIC);
+		segment.putInt(VERSION);
+		segment.putLong(System.currentTimeMillis());
+		segment.putLong(System.nanoTime());
+	}
+
+	private void closeSegment() throws IOException {
+		if (segment != null) {
+			// The mapping is zero-filled, the 4 bytes after the last frame are its end marker
+			long length = segment.position() + 4;
+			segment.force();
+			unmap(segment);
+			segment = null;
+			try {
+				file.setLength(length);
+			} catch (IOException e) {
+				// Still readable, the replay stops at the end marker
+				System.err.println("Error truncating the frame recording segment in " + dir + ": " + e.getMessage());
+			}
+		}
+		if (file != null) {
+			file.close();
+			file = null;
+		}
+	}
+
+	/**
+	 * Release the mapping now rather than when it's garbage collected, a mapped file can't be
+	 * truncated on Windows. Where the JVM doesn't allow it the truncation may fail instead.
+	 */
+	private static void unmap(MappedByteBuffer buffer) {
+		try {
+			// Java 9 and later
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+			theUnsafe.setAccessible(true);
+			unsafeClass.getMethod("invokeCleaner", ByteBuffer.class).invoke(theUnsafe.get(null), buffer);
+			return;
+		} catch (Exception e) {
+			// Java 8, below
+		}
+		try {
+			Method cleaner = buffer.getClass().getMethod("cleaner");
+			cleaner.setAccessible(true);
+			Object c = cleaner.invoke(buffer);
+			if (c != null) {
+				c.getClass().getMethod("clean").invoke(c);
+			}
+		} catch (Exception e) {
+			// Left to the garbage collector
+		}
+	}
+
+	public synchronized void close() {
+		if (isClosed && segment == null) {
+			return;
+		}
+		isClosed = true;
+		try {
+			closeSegment();
+		} catch (IOException e) {
+			System.err.println("Error closing the frame recording " + dir + ": " + e.getMessage());
+		}
+	}
+
+	public synchronized long getRecordedFrames() {
+		return recordedFrames;
+	}
+
+	public synchronized long getRecordedBytes() {
+		return recordedBytes;
+	}
+
+	public synchronized long getDroppedFrames() {
+		return droppedFrames;
+	}
+}
@@ -0,0 +1,132 @@
+package communication;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Plays a {@link FrameRecorder} recording into a frame listener, in place of the serial port.
+ * Frames are delivered in the recorded order with the recorded gaps divided by the speed:
+ * 1 for real time, N for N times faster, {@link #MAX_SPEED} to deliver them as fast as the
+ * listener takes them (a full ingest queue then slows the replay down, like a slow parser would).
+ */
+public class FrameReplay implements Runnable {
+	public static final double REAL_TIME = 1;
+	public static final double MAX_SPEED = Double.POSITIVE_INFINITY;
+
+	private final File dir;
+	private final double speed;
+	private final FrameDecoder.FrameListener listener;
+	private volatile boolean isRunning;
+	private volatile boolean isFinished;
+	private volatile long replayedFrames;
+	private volatile long maxLagNanos;
+
+	/**
+	 * @param speed greater than 0, MAX_SPEED for no waiting
+	 */
+	public FrameReplay(File dir, double speed, FrameDecoder.FrameListener listener) {
+		if (!(speed > 0)) {
+			throw new IllegalArgumentException("Replay speed must be positive: " + speed);
+		}
+		this.dir = dir;
+		this.speed = speed;
+		this.listener = listener;
+		this.isRunning = true;
+		this.isFinished = false;
+	}
+
+	public File[] getSegments() {
+		File[] files = dir.listFiles(new FilenameFilter() {
+			@Override
+			public boolean accept(File dir, String name) {
+				return name.endsWith(FrameRecorder.SUFFIX);
+			}
+		});
+		if (files == null) {
+			return new File[0];
+		}
+		Arrays.sort(files);
+		return files;
+	}
+
+	@Override
+	public void run() {
+		long firstFrameNanos = 0;
+		long startNanos = 0;
+		boolean isFirst = true;
+		byte[] payload = new byte[4096];
+		try {
+			for (File file : getSegments()) {
+				try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+					FileChannel channel = raf.getChannel();
+					MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+					if (segment.getInt() != FrameRecorder.MAGIC || segment.getInt() != FrameRecorder.VERSION) {
+						System.err.println("Skipping " + file + ", not a frame recording");
+						continue;
+					}
+					segment.position(FrameRecorder.HEADER_SIZE);
+					while (isRunning && segment.remaining() >= FrameRecorder.FRAME_HEADER_SIZE) {
+						int length = segment.getInt() - 1;
+						if (length < 0 || length > segment.remaining() - 8) {
+							break;
+						}
+						long frameNanos = segment.getLong();
+						if (payload.length < length) {
+							payload = new byte[Math.max(length, payload.length * 2)];
+						}
+						segment.get(payload, 0, length);
+						if (isFirst) {
+							isFirst = false;
+							firstFrameNanos = frameNanos;
+							startNanos = System.nanoTime();
+						}
+						waitFor(startNanos, frameNanos - firstFrameNanos);
+						listener.onFrame(payload, 0, length);
+						replayedFrames++;
+					}
+				}
+			}
+		} catch (IOException e) {
+			System.err.println("Error replaying " + dir + ": " + e.getMessage());
+		} finally {
+			isFinished = true;
+		}
+	}
+
+	private void waitFor(long startNanos, long recordedOffsetNanos) {
+		if (speed == MAX_SPEED) {
+			return;
+		}
+		long due = startNanos + (long) (recordedOffsetNanos / speed);
+		long wait;
+		while (isRunning && (wait = due - System.nanoTime()) > 0) {
+			LockSupport.parkNanos(wait);
+		}
+		maxLagNanos = Math.max(maxLagNanos, System.nanoTime() - due);
+	}
+
+	public void stopThread() {
+		this.isRunning = false;
+	}
+
+	public boolean isFinished() {
+		return isFinished;
+	}
+
+	public long getReplayedFrames() {
+		return replayedFrames;
+	}
+
+	/**
+	 * @return how late the worst frame was delivered compared to the scaled recording, 0 at MAX_SPEED
+	 */
+	public long getMaxLagNanos() {
+		return maxLagNanos;
+	}
+}
@@ -0,0 +1,83 @@
+package communication;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FrameReplayTests {
+	private File dir;
+
+	@Before
+	public void initObjects() throws Exception {
+		dir = new File(Files.createTempDirectory("FrameReplayTests").toFile(), "recording");
+	}
+
+	@After
+	public void cleanUp() {
+		for (File file : dir.listFiles()) {
+			file.delete();
+		}
+		dir.delete();
+		dir.getParentFile().delete();
+	}
+
+	private List<String> replay(double speed) {
+		final List<String> frames = new ArrayList<String>();
+		FrameReplay replay = new FrameReplay(dir, speed, new FrameDecoder.FrameListener() {
+			@Override
+			public void onFrame(byte[] buffer, int offset, int length) {
+				frames.add(new String(buffer, offset, length));
+			}
+		});
+		replay.run();
+		assertTrue(replay.isFinished());
+		return frames;
+	}
+
+	@Test
+	public void testReplaysInOrderAcrossSegments() throws Exception {
+		FrameRecorder recorder = new FrameRecorder(dir, 64);
+		for (int i = 0; i < 10; i++) {
+			byte[] frame = ("<frame" + i + "/>").getBytes();
+			assertTrue(recorder.record(i * 1000L, frame, 0, frame.length));
+		}
+		recorder.close();
+		assertTrue(dir.listFiles().length > 1);
+		List<String> frames = replay(FrameReplay.MAX_SPEED);
+		assertEquals(10, frames.size());
+		assertEquals("<frame0/>", frames.get(0));
+		assertEquals("<frame9/>", frames.get(9));
+	}
+
+	@Test
+	public void testClosedSegmentsAreTruncated() throws Exception {
+		FrameRecorder recorder = new FrameRecorder(dir, FrameRecorder.DEFAULT_SEGMENT_SIZE);
+		byte[] frame = "<frame/>".getBytes();
+		recorder.record(0, frame, 0, frame.length);
+		recorder.close();
+		File segment = new File(dir, FrameRecorder.segmentName(0));
+		assertEquals(FrameRecorder.HEADER_SIZE + FrameRecorder.FRAME_HEADER_SIZE + frame.length + 4, segment.length());
+		assertEquals(1, replay(FrameReplay.MAX_SPEED).size());
+	}
+
+	@Test
+	public void testScaledTiming() throws Exception {
+		FrameRecorder recorder = new FrameRecorder(dir, FrameRecorder.DEFAULT_SEGMENT_SIZE);
+		byte[] frame = "x".getBytes();
+		recorder.record(0, frame, 0, 1);
+		recorder.record(400000000L, frame, 0, 1);
+		recorder.close();
+		long start = System.nanoTime();
+		assertEquals(2, replay(4).size());
+		long elapsed = System.nanoTime() - start;
+		assertTrue(elapsed >= 100000000L);
+		assertTrue(elapsed < 400000000L);
+	}
+}
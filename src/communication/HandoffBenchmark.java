@@ -0,0 +1,166 @@
+package communication;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Compares the old SerialListener/SerialReader handoff (read once, then lock and await a
+ * condition signal) with the SerialReader semaphore handoff. A producer thread plays the serial
+ * driver: it appends a frame to a buffer and fires a DATA_AVAILABLE event, at random gaps.
+ * Prints the histogram of the time from a frame being written to it reaching the frame listener.
+ */
+public class HandoffBenchmark {
+	private static final int frames = 20000;
+	private static final long maxGapNanos = TimeUnit.MICROSECONDS.toNanos(500);
+
+	/** A driver buffer: non-blocking reads, like the RXTX stream when nothing is pending */
+	private static class DriverBuffer extends InputStream {
+		private final byte[] data = new byte[1 << 20];
+		private int readPos = 0;
+		private int writePos = 0;
+
+		synchronized void write(byte[] bytes) {
+			if (writePos + bytes.length > data.length) {
+				System.arraycopy(data, readPos, data, 0, writePos - readPos);
+				writePos -= readPos;
+				readPos = 0;
+			}
+			System.arraycopy(bytes, 0, data, writePos, bytes.length);
+			writePos += bytes.length;
+		}
+
+		@Override
+		public synchronized int available() {
+			return writePos - readPos;
+		}
+
+		@Override
+		public synchronized int read() {
+			return readPos < writePos ? data[readPos++] & 0xFF : -1;
+		}
+
+		@Override
+		public synchronized int read(byte[] b, int off, int len) {
+			int n = Math.min(len, writePos - readPos);
+			System.arraycopy(data, readPos, b, off, n);
+			readPos += n;
+			return n;
+		}
+	}
+
+	private interface Handoff extends Runnable {
+		void signal();
+		void stop();
+	}
+
+	/** The handoff SerialReader used before: a signal between the read and the await is lost */
+	private static class LockConditionHandoff implements Handoff {
+		private final ReentrantLock lock = new ReentrantLock();
+		private final Condition dataAvailable = lock.newCondition();
+		private final InputStream in;
+		private final FrameDecoder decoder;
+		private volatile boolean isRunning = true;
+
+		LockConditionHandoff(InputStream in, FrameDecoder.FrameListener listener) {
+			this.in = in;
+			this.decoder = new FrameDecoder(FrameDecoder.DEFAULT_INITIAL_CAPACITY, FrameDecoder.DEFAULT_MAX_FRAME_SIZE, listener);
+		}
+
+		@Override
+		public void run() {
+			while (isRunning) {
+				try {
+					decoder.readFrom(in);
+					lock.lock();
+					try {
+						dataAvailable.await();
+					} finally {
+						lock.unlock();
+					}
+				} catch (IOException | InterruptedException e) {
+					return;
+				}
+			}
+		}
+
+		@Override
+		public void signal() {
+			lock.lock();
+			try {
+				dataAvailable.signal();
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		@Override
+		public void stop() {
+			isRunning = false;
+			signal();
+		}
+	}
+
+	private static class SemaphoreHandoff implements Handoff {
+		private final SerialReader reader;
+
+		SemaphoreHandoff(InputStream in, FrameDecoder.FrameListener listener) {
+			this.reader = new SerialReader(in, listener);
+		}
+
+		@Override
+		public void run() {
+			reader.run();
+		}
+
+		@Override
+		public void signal() {
+			reader.signalDataAvailable();
+		}
+
+		@Override
+		public void stop() {
+			reader.stopThread();
+		}
+	}
+
+	private static LatencyHistogram run(String name, boolean useSemaphore) throws InterruptedException {
+		final LatencyHistogram histogram = new LatencyHistogram(name);
+		final DriverBuffer buffer = new DriverBuffer();
+		FrameDecoder.FrameListener listener = new FrameDecoder.FrameListener() {
+			@Override
+			public void onFrame(byte[] bytes, int offset, int length) {
+				long sent = Long.parseLong(new String(bytes, offset, length, StandardCharsets.US_ASCII));
+				histogram.record(System.nanoTime() - sent);
+			}
+		};
+		Handoff handoff = useSemaphore ? new SemaphoreHandoff(buffer, listener) : new LockConditionHandoff(buffer, listener);
+		Thread reader = new Thread(handoff, name);
+		reader.start();
+		Random random = new Random(1);
+		for (int i = 0; i < frames; i++) {
+			buffer.write(("\u0002" + System.nanoTime() + "\u0004").getBytes(StandardCharsets.US_ASCII));
+			handoff.signal();
+			LockSupport.parkNanos((long) (random.nextDouble() * maxGapNanos));
+		}
+		// A last event for frames still waiting on a lost signal
+		Thread.sleep(10);
+		handoff.signal();
+		Thread.sleep(10);
+		handoff.stop();
+		reader.join(1000);
+		return histogram;
+	}
+
+	public static void main(String[] args) throws InterruptedException {
+		run("warmup", true);
+		run("warmup", false);
+		System.out.println(run("lock/condition (before)", false).format());
+		System.out.println(run("semaphore (after)", true).format());
+	}
+}
@@ -0,0 +1,204 @@
+package communication;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+
+import logger.EventType;
+import logger.Loggers;
+import Utils.GuiManager;
+import data.DataManager;
+import data.Satellite;
+import data.Status;
+
+/**
+ * Staged handling of accepted downlink frames:
+ * frame (SerialReader) -> decode -> validate -> persist -> notify.
+ * Every stage has a bounded queue and its own workers, so a slow disk or GUI only
+ * fills the queues in front of it and then throttles the reader, instead of
+ * letting memory grow during a long pass.
+ */
+public class IngestPipeline {
+	private final PipelineStage<Message, DownlinkPacket> decodeStage;
+	private final PipelineStage<DownlinkPacket, DownlinkPacket> validateStage;
+	private final PipelineStage<DownlinkPacket, DownlinkPacket> persistStage;
+	private final PipelineStage<DownlinkPacket, DownlinkPacket> notifyStage;
+	private final LatencyHistogram frameToParse;
+	/** Shared by the decode workers, each packet is passed as the handler */
+	private final MessageParser parser = new MessageParser();
+	private boolean isStarted;
+
+	public IngestPipeline(int queueCapacity, int decodeWorkers, int validateWorkers, int persistWorkers, int notifyWorkers) {
+		decodeStage = new PipelineStage<Message, DownlinkPacket>("decode", queueCapacity, decodeWorkers,
+				new PipelineStage.Processor<Message, DownlinkPacket>() {
+			@Override
+			public DownlinkPacket process(Message m) {
+				return decode(m);
+			}
+		});
+		validateStage = new PipelineStage<DownlinkPacket, DownlinkPacket>("validate", queueCapacity, validateWorkers,
+				new PipelineStage.Processor<DownlinkPacket, DownlinkPacket>() {
+			@Override
+			public DownlinkPacket process(DownlinkPacket packet) {
+				return validate(packet);
+			}
+		});
+		persistStage = new PipelineStage<DownlinkPacket, DownlinkPacket>("persist", queueCapacity, persistWorkers,
+				new PipelineStage.Processor<DownlinkPacket, DownlinkPacket>() {
+			@Override
+			public DownlinkPacket process(DownlinkPacket packet) {
+				packet.replay(persister);
+				return packet;
+			}
+		});
+		notifyStage = new PipelineStage<DownlinkPacket, DownlinkPacket>("notify", queueCapacity, notifyWorkers,
+				new PipelineStage.Processor<DownlinkPacket, DownlinkPacket>() {
+			@Override
+			public DownlinkPacket process(DownlinkPacket packet) {
+				notifyPacket(packet);
+				return null;
+			}
+		});
+		decodeStage.setNext(validateStage);
+		validateStage.setNext(persistStage);
+		persistStage.setNext(notifyStage);
+		frameToParse = new LatencyHistogram("frame to parse");
+		isStarted = false;
+	}
+
+	public synchronized void start() {
+		if (isStarted) {
+			return;
+		}
+		isStarted = true;
+		decodeStage.start();
+		validateStage.start();
+		persistStage.start();
+		notifyStage.start();
+	}
+
+	public synchronized void stop() {
+		decodeStage.stop();
+		validateStage.stop();
+		persistStage.stop();
+		notifyStage.stop();
+		isStarted = false;
+	}
+
+	/**
+	 * @return queue the framed messages are put into, bounded
+	 */
+	public BlockingQueue<Message> getInputQueue() {
+		return decodeStage.getQueue();
+	}
+
+	public List<PipelineStage<?, ?>> getStages() {
+		List<PipelineStage<?, ?>> stages = new ArrayList<PipelineStage<?, ?>>();
+		stages.add(decodeStage);
+		stages.add(validateStage);
+		stages.add(persistStage);
+		stages.add(notifyStage);
+		return stages;
+	}
+
+	/**
+	 * @return one line per stage with its queue depth and latency
+	 */
+	public String getMetrics() {
+		StringBuilder sb = new StringBuilder();
+		for (PipelineStage<?, ?> stage : getStages()) {
+			sb.append(stage).append('\n');
+		}
+		sb.append(frameToParse).append('\n');
+		return sb.toString();
+	}
+
+	/**
+	 * Time from a complete frame to its parsed packet, including the wait in the decode queue
+	 */
+	public LatencyHistogram getFrameToParseLatency() {
+		return frameToParse;
+	}
+
+	private DownlinkPacket decode(Message m) {
+		if (CommunicationManager.getInstance().isSimulator()) {
+			System.out.println("Message accepted - printing only");
+			System.out.println(m.toString());
+		}
+		DownlinkPacket packet = new DownlinkPacket();
+		parser.parse(m, packet);
+		frameToParse.record(System.nanoTime() - m.getCreatedNanos());
+		return packet.isEmpty() ? null : packet;
+	}
+
+	private DownlinkPacket validate(DownlinkPacket packet) {
+		int removed = packet.removeInvalid();
+		if (removed > 0) {
+			Loggers.logError("Dropped {} invalid samples from a downstream packet", removed);
+		}
+		if (packet.isEmpty()) {
+			return null;
+		}
+		Loggers.logEvent(EventType.PACKET_PARSED, packet.getStaticCount(), packet.getTemperatureCount() + packet.getEnergyCount());
+		return packet;
+	}
+
+	private void notifyPacket(DownlinkPacket packet) {
+		if (Loggers.isActionLogEnabled()) {
+			packet.replay(describer);
+		}
+		if (!DataManager.getInstance().isTestMode()) {
+			if (packet.getTemperatureCount() > 0) {
+				GuiManager.getInstance().addToLog(packet.getTemperatureCount() + " temperature samples received");
+			}
+			if (packet.getEnergyCount() > 0) {
+				GuiManager.getInstance().addToLog(packet.getEnergyCount() + " energy samples received");
+			}
+		}
+	}
+
+	private final DownlinkHandler persister = new DownlinkHandler() {
+		@Override
+		public void onStaticPacket(Satellite.SatelliteState state, Status temp, Timestamp tempTS, Status energy, Timestamp energyTS,
+									Status sband, Timestamp sbandTS, Status payload, Timestamp payloadTS,
+									Status solarPanels, Timestamp solarPanelsTS, Status thermal, Timestamp thermalTS) {
+			DataManager.getInstance().insertSatellite(state, temp, tempTS, energy, energyTS, sband, sbandTS, payload, payloadTS,
+					solarPanels, solarPanelsTS, thermal, thermalTS);
+		}
+
+		@Override
+		public void onTemperatureSample(float sensor1, float sensor2, float sensor3, Timestamp ts) {
+			DataManager.getInstance().insertTemprature(sensor1, sensor2, sensor3, ts);
+		}
+
+		@Override
+		public void onEnergySample(float batt1V, float batt2V, float batt3V, float batt1C, float batt2C, float batt3C, Timestamp ts) {
+			DataManager.getInstance().insertEnergy(batt1V, batt2V, batt3V, batt1C, batt2C, batt3C, ts);
+		}
+	};
+
+	private final DownlinkHandler describer = new DownlinkHandler() {
+		@Override
+		public void onStaticPacket(Satellite.SatelliteState state, Status temp, Timestamp tempTS, Status energy, Timestamp energyTS,
+									Status sband, Timestamp sbandTS, Status payload, Timestamp payloadTS,
+									Status solarPanels, Timestamp solarPanelsTS, Status thermal, Timestamp thermalTS) {
+			log(MessageParser.describeStaticPacket(state, temp, tempTS, energy, energyTS, sband, sbandTS, payload, payloadTS,
+					solarPanels, solarPanelsTS, thermal, thermalTS));
+		}
+
+		@Override
+		public void onTemperatureSample(float sensor1, float sensor2, float sensor3, Timestamp ts) {
+			log(MessageParser.describeTemperatureSample(sensor1, sensor2, sensor3, ts));
+		}
+
+		@Override
+		public void onEnergySample(float batt1V, float batt2V, float batt3V, float batt1C, float batt2C, float batt3C, Timestamp ts) {
+			log(MessageParser.describeEnergySample(batt1V, batt2V, batt3V, batt1C, batt2C, batt3C, ts));
+		}
+
+		private void log(String logMsg) {
+			Loggers.logAction(logMsg);
+		}
+	};
+}
@@ -0,0 +1,107 @@
+package communication;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of latencies with power of two buckets: bucket i counts values
+ * below 2^(i+1) nanoseconds. Percentiles are reported as the upper bound of their bucket.
+ */
+public class LatencyHistogram {
+	private static final int bucketCount = 64;
+
+	private final String name;
+	private final AtomicLongArray buckets = new AtomicLongArray(bucketCount);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong totalNanos = new AtomicLong();
+	private final AtomicLong maxNanos = new AtomicLong();
+
+	public LatencyHistogram(String name) {
+		this.name = name;
+	}
+
+	public void record(long nanos) {
+		if (nanos < 0) {
+			nanos = 0;
+		}
+		buckets.incrementAndGet(63 - Long.numberOfLeadingZeros(nanos | 1));
+		count.incrementAndGet();
+		totalNanos.addAndGet(nanos);
+		long max;
+		while (nanos > (max = maxNanos.get()) && !maxNanos.compareAndSet(max, nanos)) {
+		}
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public long getCount() {
+		return count.get();
+	}
+
+	public long getMaxNanos() {
+		return maxNanos.get();
+	}
+
+	public double getAverageNanos() {
+		long n = count.get();
+		return n == 0 ? 0 : (double) totalNanos.get() / n;
+	}
+
+	/**
+	 * @param percentile 0 to 100
+	 * @return upper bound of the bucket holding the percentile, 0 when empty
+	 */
+	public long getPercentileNanos(double percentile) {
+		long n = count.get();
+		if (n == 0) {
+			return 0;
+		}
+		long rank = (long) Math.ceil(n * percentile / 100);
+		long seen = 0;
+		for (int i = 0; i < bucketCount; i++) {
+			seen += buckets.get(i);
+			if (seen >= Math.max(rank, 1)) {
+				return Math.min((1L << (i + 1)) - 1, getMaxNanos());
+			}
+		}
+		return getMaxNanos();
+	}
+
+	public void reset() {
+		for (int i = 0; i < bucketCount; i++) {
+			buckets.set(i, 0);
+		}
+		count.set(0);
+		totalNanos.set(0);
+		maxNanos.set(0);
+	}
+
+	/**
+	 * One line per non-empty bucket with its share of the values
+	 */
+	public String format() {
+		StringBuilder sb = new StringBuilder(toString()).append('\n');
+		long n = Math.max(1, count.get());
+		for (int i = 0; i < bucketCount; i++) {
+			long c = buckets.get(i);
+			if (c == 0) {
+				continue;
+			}
+			sb.append(String.format("  < %10.1fus %8d ", ((1L << (i + 1)) - 1) / 1000.0, c));
+			for (int bar = 0; bar < c * 50 / n; bar++) {
+				sb.append('#');
+			}
+			sb.append('\n');
+		}
+		return sb.toString();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s: %d, avg %.1fus, p50 %.1fus, p99 %.1fus, max %.1fus", name, getCount(),
+				getAverageNanos() / 1000, getPercentileNanos(50) / 1000.0, getPercentileNanos(99) / 1000.0,
+				getMaxNanos() / 1000.0);
+	}
+}
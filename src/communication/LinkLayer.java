@@ -0,0 +1,388 @@
+package communication;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+import logger.Loggers;
+
+/**
+ * Sequence numbers and a CRC for every downstream frame, so corrupted and lost frames are
+ * noticed and requested again within the same pass.
+ * <pre>
+ * STX SOH seq crc payload EOT
+ * </pre>
+ * seq and crc are 8 hex digits each, crc is the CRC32 of the payload. Frames that do not start
+ * with SOH come from a sender without the link layer and are passed on unchecked.
+ * A gap in the sequence is requested with a NACK (an upstream packet listing the missing ranges)
+ * sent through CommunicationManager.sendMessage, and requested again every retry interval
+ * until the frames arrive or the attempts run out. The retries are checked on every frame and,
+ * while {@link #start()} runs, on a timer, so they go on when the link goes quiet.
+ * A gap is only seen when a later frame arrives: frames lost at the end of a burst or a pass are
+ * never noticed, requested or counted as lost.
+ * The sender counts from 0 after it restarts (and after 0xFFFFFFFF), so frame 0 starts a new sequence.
+ */
+public class LinkLayer {
+	public static final byte SOH = 1;
+	static final int HEADER_SIZE = 17;
+	public static final int DEFAULT_MAX_MISSING = 1024;
+	public static final long DEFAULT_RETRY_NANOS = TimeUnit.SECONDS.toNanos(2);
+	public static final int DEFAULT_MAX_ATTEMPTS = 3;
+	/**
+	 * Frames 1, 2, ... in a row from before the expected sequence that mean the sender restarted
+	 * its count and frame 0 of the new count was lost
+	 */
+	private static final int restartRunLength = 2;
+	private static final Pattern nackPattern = Pattern.compile("<nack from=\"(\\d+)\" to=\"(\\d+)\"/>");
+
+	private final int maxMissing;
+	private final long retryNanos;
+	private final int maxAttempts;
+	private final TreeMap<Long, Request> missing = new TreeMap<Long, Request>();
+	private final CRC32 crc = new CRC32();
+	private boolean isRequestingRetransmissions = true;
+	private long expected = -1;
+	private long nextRetryNanos = 0;
+	private int restartRun = 0;
+	private Thread retryThread = null;
+
+	private long receivedFrames = 0;
+	private long unsequencedFrames = 0;
+	private long corruptedFrames = 0;
+	private long duplicateFrames = 0;
+	private long recoveredFrames = 0;
+	private long lostFrames = 0;
+	private long nacksSent = 0;
+
+	private static class Request {
+		long requestedNanos;
+		int attempts = 1;
+
+		Request(long requestedNanos) {
+			this.requestedNanos = requestedNanos;
+		}
+	}
+
+	public LinkLayer() {
+		this(DEFAULT_MAX_MISSING, DEFAULT_RETRY_NANOS, DEFAULT_MAX_ATTEMPTS);
+	}
+
+	/**
+	 * @param maxMissing most frames waiting for a retransmission, larger gaps are given up at once
+	 * @param retryNanos time to wait for a requested frame before requesting it again
+	 * @param maxAttempts requests per missing frame
+	 */
+	public LinkLayer(int maxMissing, long retryNanos, int maxAttempts) {
+		this.maxMissing = maxMissing;
+		this.retryNanos = retryNanos;
+		this.maxAttempts = maxAttempts;
+	}
+
+	/**
+	 * Check a received frame
+	 * @return offset of the payload in the buffer, -1 if the frame is corrupted or a duplicate
+	 */
+	public int accept(byte[] buffer, int offset, int length) {
+		return accept(buffer, offset, length, System.nanoTime());
+	}
+
+	synchronized int accept(byte[] buffer, int offset, int length, long now) {
+		receivedFrames++;
+		if (length == 0 || buffer[offset] != SOH) {
+			unsequencedFrames++;
+			return offset;
+		}
+		long seq = length < HEADER_SIZE ? -1 : parseHex(buffer, offset + 1);
+		long frameCrc = length < HEADER_SIZE ? -1 : parseHex(buffer, offset + 9);
+		if (seq < 0 || frameCrc < 0 || crc(buffer, offset + HEADER_SIZE, length - HEADER_SIZE) != frameCrc) {
+			corruptedFrames++;
+			Loggers.logError("Dropped a corrupted frame of {} bytes", length);
+			retryTimedOut(now);
+			return -1;
+		}
+		boolean isNew = sequence(seq, now);
+		retryTimedOut(now);
+		return isNew ? offset + HEADER_SIZE : -1;
+	}
+
+	private boolean sequence(long seq, long now) {
+		if (expected < 0 || expected - seq > maxMissing || isRestart(seq)) {
+			if (expected >= 0) {
+				Loggers.logAction("Frame sequence restarted at {}, expected {}", seq, expected);
+				lostFrames += missing.size();
+				missing.clear();
+			}
+			expected = seq + 1;
+			restartRun = 0;
+			return true;
+		}
+		if (seq >= expected) {
+			long gap = seq - expected;
+			if (gap > 0) {
+				if (missing.size() + gap > maxMissing) {
+					lostFrames += gap;
+					Loggers.logError("Lost {} frames before frame {}, too many to request again", gap, seq);
+				}
+				else {
+					for (long s = expected; s < seq; s++) {
+						missing.put(s, new Request(now));
+					}
+					List<long[]> ranges = new ArrayList<long[]>(1);
+					ranges.add(new long[]{expected, seq - 1});
+					requestRetransmission(ranges);
+				}
+			}
+			expected = seq + 1;
+			return true;
+		}
+		if (missing.remove(seq) != null) {
+			recoveredFrames++;
+			return true;
+		}
+		duplicateFrames++;
+		return false;
+	}
+
+	/**
+	 * Frame 0 always starts a new count, it is never requested again since a sequence starts with
+	 * its first frame. Without frame 0 a restart is only taken for frames 1, 2, ... in a row, so
+	 * late retransmissions from the middle of the sequence are not mistaken for one.
+	 */
+	private boolean isRestart(long seq) {
+		if (seq >= expected) {
+			restartRun = 0;
+			return false;
+		}
+		if (seq == 0) {
+			return true;
+		}
+		if (missing.containsKey(seq)) {
+			return false;
+		}
+		restartRun = seq == restartRun + 1 ? restartRun + 1 : 0;
+		return restartRun >= restartRunLength;
+	}
+
+	/**
+	 * Request again the frames that timed out, and give up on those out of attempts
+	 */
+	public void checkRetries() {
+		checkRetries(System.nanoTime());
+	}
+
+	synchronized void checkRetries(long now) {
+		retryTimedOut(now);
+	}
+
+	/**
+	 * Check the retries from a daemon thread, also while no frames arrive
+	 */
+	public synchronized void start() {
+		if (retryThread != null) {
+			return;
+		}
+		retryThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				long waitMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(retryNanos / 4));
+				synchronized (LinkLayer.this) {
+					while (retryThread == Thread.currentThread()) {
+						retryTimedOut(System.nanoTime());
+						try {
+							LinkLayer.this.wait(waitMillis);
+						} catch (InterruptedException e) {
+							return;
+						}
+					}
+				}
+			}
+		}, "LinkLayerRetry");
+		retryThread.setDaemon(true);
+		retryThread.start();
+	}
+
+	public synchronized void stopThread() {
+		retryThread = null;
+		notifyAll();
+	}
+
+	private void retryTimedOut(long now) {
+		if (missing.isEmpty() || now - nextRetryNanos < 0) {
+			return;
+		}
+		nextRetryNanos = now + retryNanos / 4;
+		List<long[]> ranges = new ArrayList<long[]>();
+		for (Iterator<Map.Entry<Long, Request>> it = missing.entrySet().iterator(); it.hasNext();) {
+			Map.Entry<Long, Request> entry = it.next();
+			Request request = entry.getValue();
+			if (now - request.requestedNanos < retryNanos) {
+				continue;
+			}
+			if (request.attempts >= maxAttempts) {
+				it.remove();
+				lostFrames++;
+				Loggers.logError("Frame {} lost after {} retransmission requests", entry.getKey(), request.attempts);
+				continue;
+			}
+			request.attempts++;
+			request.requestedNanos = now;
+			long seq = entry.getKey();
+			long[] last = ranges.isEmpty() ? null : ranges.get(ranges.size() - 1);
+			if (last != null && last[1] == seq - 1) {
+				last[1] = seq;
+			}
+			else {
+				ranges.add(new long[]{seq, seq});
+			}
+		}
+		if (!ranges.isEmpty()) {
+			requestRetransmission(ranges);
+		}
+	}
+
+	private void requestRetransmission(List<long[]> ranges) {
+		if (!isRequestingRetransmissions) {
+			return;
+		}
+		nacksSent++;
+		sendNack(nackMessage(ranges));
+	}
+
+	/**
+	 * Queue a NACK to the satellite, overridden by the tests
+	 */
+	void sendNack(String nack) {
+		CommunicationManager.getInstance().sendMessage(new Message(nack));
+	}
+
+	/**
+	 * Stop sending NACKs, e.g. while replaying a recording. Gaps are still counted.
+	 */
+	public synchronized void setRequestingRetransmissions(boolean requesting) {
+		this.isRequestingRetransmissions = requesting;
+	}
+
+	/**
+	 * Forget the sequence, the next frame starts a new one
+	 */
+	public synchronized void reset() {
+		expected = -1;
+		missing.clear();
+		restartRun = 0;
+	}
+
+	private long crc(byte[] buffer, int offset, int length) {
+		crc.reset();
+		crc.update(buffer, offset, length);
+		return crc.getValue();
+	}
+
+	private static long parseHex(byte[] buffer, int offset) {
+		long value = 0;
+		for (int i = 0; i < 8; i++) {
+			int digit = Character.digit((char) buffer[offset + i], 16);
+			if (digit < 0) {
+				return -1;
+			}
+			value = (value << 4) | digit;
+		}
+		return value;
+	}
+
+	private static void putHex(byte[] buffer, int offset, long value) {
+		for (int i = 7; i >= 0; i--) {
+			buffer[offset + i] = (byte) Character.forDigit((int) (value & 0xF), 16);
+			value >>>= 4;
+		}
+	}
+
+	/**
+	 * @param seq 0 to 0xFFFFFFFF
+	 * @return the payload with the link header, between the frame delimiters
+	 */
+	public static byte[] frame(long seq, byte[] payload) {
+		byte[] frame = new byte[payload.length + HEADER_SIZE + 2];
+		CRC32 crc = new CRC32();
+		crc.update(payload);
+		frame[0] = FrameDecoder.STX;
+		frame[1] = SOH;
+		putHex(frame, 2, seq);
+		putHex(frame, 10, crc.getValue());
+		System.arraycopy(payload, 0, frame, HEADER_SIZE + 1, payload.length);
+		frame[frame.length - 1] = FrameDecoder.EOT;
+		return frame;
+	}
+
+	/**
+	 * @param ranges first and last sequence number of every missing range
+	 */
+	public static String nackMessage(List<long[]> ranges) {
+		StringBuilder sb = new StringBuilder().append(CommunicationManager.msgStartDelimiter)
+				.append("<?xml version=\"1.0\"?><packet><upstreamPacket time=\"")
+				.append(MessageParser.toRTEMSTimestamp(new Timestamp(System.currentTimeMillis()))).append("\">");
+		for (long[] range : ranges) {
+			sb.append("<nack from=\"").append(range[0]).append("\" to=\"").append(range[1]).append("\"/>");
+		}
+		return sb.append("</upstreamPacket></packet>").append(CommunicationManager.msgStopDelimiter).toString();
+	}
+
+	/**
+	 * @return the ranges requested by a NACK message, empty if it is not one
+	 */
+	public static List<long[]> parseNack(String message) {
+		List<long[]> ranges = new ArrayList<long[]>();
+		Matcher m = nackPattern.matcher(message);
+		while (m.find()) {
+			ranges.add(new long[]{Long.parseLong(m.group(1)), Long.parseLong(m.group(2))});
+		}
+		return ranges;
+	}
+
+	public synchronized long getReceivedFrames() {
+		return receivedFrames;
+	}
+
+	public synchronized long getUnsequencedFrames() {
+		return unsequencedFrames;
+	}
+
+	public synchronized long getCorruptedFrames() {
+		return corruptedFrames;
+	}
+
+	public synchronized long getDuplicateFrames() {
+		return duplicateFrames;
+	}
+
+	public synchronized long getRecoveredFrames() {
+		return recoveredFrames;
+	}
+
+	public synchronized long getLostFrames() {
+		return lostFrames;
+	}
+
+	/**
+	 * @return frames requested again that did not arrive yet
+	 */
+	public synchronized int getMissingFrames() {
+		return missing.size();
+	}
+
+	public synchronized long getNacksSent() {
+		return nacksSent;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format("link: %d frames, %d corrupted, %d duplicate, %d recovered, %d missing, %d lost, %d NACKs",
+				receivedFrames, corruptedFrames, duplicateFrames, recoveredFrames, missing.size(), lostFrames, nacksSent);
+	}
+}
@@ -0,0 +1,134 @@
+package communication;
+
+import static org.junit.Assert.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class LinkLayerTests {
+	private static final long retryNanos = 1000;
+
+	private List<String> nacks;
+	private LinkLayer link;
+
+	@Before
+	public void initObjects() {
+		nacks = new ArrayList<String>();
+		link = new LinkLayer(16, retryNanos, 2) {
+			@Override
+			void sendNack(String nack) {
+				nacks.add(nack);
+			}
+		};
+	}
+
+	private static byte[] frame(long seq) {
+		return LinkLayer.frame(seq, ("packet " + seq).getBytes(StandardCharsets.US_ASCII));
+	}
+
+	/**
+	 * @return the payload, null if the frame was dropped
+	 */
+	private String accept(byte[] frame, long now) {
+		int payload = link.accept(frame, 1, frame.length - 2, now);
+		return payload < 0 ? null : new String(frame, payload, frame.length - 1 - payload, StandardCharsets.US_ASCII);
+	}
+
+	@Test
+	public void testGapIsRequestedAndRecovered() {
+		assertEquals("packet 7", accept(frame(7), 0));
+		assertEquals("packet 8", accept(frame(8), 0));
+		assertEquals("packet 11", accept(frame(11), 0));
+		assertEquals(1, nacks.size());
+		List<long[]> ranges = LinkLayer.parseNack(nacks.get(0));
+		assertEquals(1, ranges.size());
+		assertArrayEquals(new long[]{9, 10}, ranges.get(0));
+		assertEquals(2, link.getMissingFrames());
+
+		assertEquals("packet 10", accept(frame(10), 10));
+		assertNull(accept(frame(10), 20));
+		assertEquals(1, link.getRecoveredFrames());
+		assertEquals(1, link.getDuplicateFrames());
+
+		// 9 is requested again, then given up
+		accept(frame(12), retryNanos);
+		assertEquals(2, nacks.size());
+		assertArrayEquals(new long[]{9, 9}, LinkLayer.parseNack(nacks.get(1)).get(0));
+		accept(frame(13), 2 * retryNanos);
+		assertEquals(0, link.getMissingFrames());
+		assertEquals(1, link.getLostFrames());
+	}
+
+	@Test
+	public void testRetriesWhileTheLinkIsQuiet() {
+		accept(frame(1), 0);
+		accept(frame(4), 0);
+		assertEquals(1, nacks.size());
+		// No more frames, the retries and the give-up still happen
+		link.checkRetries(retryNanos);
+		assertEquals(2, nacks.size());
+		assertArrayEquals(new long[]{2, 3}, LinkLayer.parseNack(nacks.get(1)).get(0));
+		link.checkRetries(2 * retryNanos);
+		assertEquals(0, link.getMissingFrames());
+		assertEquals(2, link.getLostFrames());
+	}
+
+	@Test
+	public void testCorruptedAndUnsequencedFrames() {
+		byte[] frame = frame(1);
+		frame[frame.length - 3] ^= 1;
+		assertNull(accept(frame, 0));
+		assertEquals(1, link.getCorruptedFrames());
+
+		byte[] legacy = ("\u0002<?xml version=\"1.0\"?>\u0004").getBytes(StandardCharsets.US_ASCII);
+		assertEquals("<?xml version=\"1.0\"?>", accept(legacy, 0));
+		assertEquals(1, link.getUnsequencedFrames());
+	}
+
+	@Test
+	public void testSenderRestart() {
+		for (long seq = 10; seq < 15; seq++) {
+			accept(frame(seq), 0);
+		}
+		for (long seq = 0; seq < 5; seq++) {
+			assertEquals("packet " + seq, accept(frame(seq), 0));
+		}
+		assertEquals("packet 5", accept(frame(5), 0));
+		assertTrue(nacks.isEmpty());
+		assertEquals(0, link.getDuplicateFrames());
+	}
+
+	@Test
+	public void testRestartWithoutFrameZero() {
+		// Close enough to the new count not to be taken for a restart by distance alone
+		for (long seq = 10; seq < 15; seq++) {
+			accept(frame(seq), 0);
+		}
+		// Frame 0 of the new count was lost, only frame 1 is dropped
+		assertNull(accept(frame(1), 0));
+		assertEquals("packet 2", accept(frame(2), 0));
+		assertEquals("packet 3", accept(frame(3), 0));
+		assertTrue(nacks.isEmpty());
+	}
+
+	@Test
+	public void testLateRetransmissionsAreNotARestart() {
+		accept(frame(7), 0);
+		accept(frame(12), 0);
+		for (long seq = 8; seq < 12; seq++) {
+			assertEquals("packet " + seq, accept(frame(seq), 0));
+		}
+		// The second answer to the NACK
+		for (long seq = 8; seq < 12; seq++) {
+			assertNull(accept(frame(seq), 0));
+		}
+		assertEquals(4, link.getDuplicateFrames());
+		assertEquals("packet 13", accept(frame(13), 0));
+		assertNull(accept(frame(12), 0));
+		assertEquals(1, nacks.size());
+	}
+}
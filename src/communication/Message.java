@@ -15,7 +15,20 @@ import org.xml.sax.SAXException;
 import com.sun.org.apache.xerces.internal.parsers.DOMParser;
 
 public class Message {
+	private static final Charset charset = Charset.forName("UTF-8");
+	
 	private String messageText;
+	private byte[] messageBytes;
+	private final long createdNanos = System.nanoTime();
+	private SendListener sendListener;
+	
+	/**
+	 * Told by the SerialWriter whether the message reached the transport
+	 */
+	public interface SendListener {
+		void onSent(Message msg);
+		void onSendFailed(Message msg, IOException e);
+	}
 	
 	public Message () {
 		this.messageText = "";
@@ -25,8 +38,17 @@ public class Message {
 		this.messageText = messageText;
 	}
 	
+	/**
+	 * Message that was received as raw bytes, the text is only decoded if someone asks for it
+	 * @param messageBytes UTF-8 encoded message, not copied
+	 */
+	public Message (byte[] messageBytes) {
+		this.messageBytes = messageBytes;
+	}
+	
 	public void append (String addition) {
-		messageText = this.messageText.concat(addition);
+		messageText = this.toString().concat(addition);
+		messageBytes = null;
 	}
 	
 	public Document toDocument() {
@@ -35,7 +57,7 @@ public class Message {
         DocumentBuilder builder;
 		try {
 			builder = factory.newDocumentBuilder();
-			String noTabsAndSpacesMsg = this.messageText.replaceAll(">\\s+<", "><").trim();
+			String noTabsAndSpacesMsg = this.toString().replaceAll(">\\s+<", "><").trim();
 			InputSource is = new InputSource(new StringReader(noTabsAndSpacesMsg));
 			return builder.parse(is);
 		} catch (ParserConfigurationException e) {
@@ -53,10 +75,39 @@ public class Message {
 	}
 	
 	public String toString() {
+		if (messageText == null) {
+			messageText = new String(messageBytes, charset);
+		}
 		return messageText;
 	}
 	
+	/**
+	 * @return System.nanoTime() when the message was created, for received frames when the frame was complete
+	 */
+	public long getCreatedNanos() {
+		return createdNanos;
+	}
+	
+	public void setSendListener(SendListener listener) {
+		this.sendListener = listener;
+	}
+	
+	void sent() {
+		if (sendListener != null) {
+			sendListener.onSent(this);
+		}
+	}
+	
+	void sendFailed(IOException e) {
+		if (sendListener != null) {
+			sendListener.onSendFailed(this, e);
+		}
+	}
+	
 	public byte[] getBytes() {
-		return messageText.getBytes(Charset.forName("UTF-8"));
+		if (messageBytes == null) {
+			messageBytes = messageText.getBytes(charset);
+		}
+		return messageBytes;
 	}
 }
@@ -1,9 +1,6 @@
 package communication;
 
 import java.sql.Timestamp;
-import java.text.DateFormat;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
 
 import logger.Loggers;
 
@@ -13,7 +10,7 @@ import data.DataManager;
 import data.Satellite;
 import data.Status;
 
-public class MessageParser implements Runnable {
+public class MessageParser implements Runnable, DownlinkHandler {
 	public static final String tagType = "type";
 	public static final String tagState = "state";
 	public static final String tagUpPacket = "upstreamPacket";
@@ -55,9 +52,22 @@ public class MessageParser implements Runnable {
 	public static final String tagModuleThermalCtrl = "ThermalControl";
 	
 	private boolean isRunning;
+	private DownlinkHandler handler;
 	
+	/**
+	 * Parser that logs and stores every sample itself
+	 */
 	public MessageParser () {
+		this(null);
+	}
+	
+	/**
+	 * Parser that reports the parsed samples to the given handler
+	 * @param handler null to handle them in this parser
+	 */
+	public MessageParser (DownlinkHandler handler) {
 		this.isRunning = true;
+		this.handler = handler == null ? this : handler;
 	}
 	
 	public void run ()
@@ -74,34 +84,45 @@ public class MessageParser implements Runnable {
 				Loggers.logAction("Message Accepted By Parser");
 				//System.out.println("DEBUG: Message Accepted By Parser");
 				//System.out.println(m.toString());
-				Document msg;			
-				try {
-					msg = m.toDocument();
-				}
-				catch (Exception e) {
-					System.out.println(e.getMessage());
-					continue;
-				}
-				try {
-					parseMessage(msg);
-				} catch (InvalidMessageException e) {
-					if (msg.getElementsByTagName(tagUpPacket).getLength() != 0) {
-						continue; // Ignore upstream packets sent from airborne control system simulator
-					}
-					else {
-						Loggers.logError("There was an error parsing the following message:\n" + msg);
-						System.out.println("PARSING ERROR: " + e.getMessage());
-					}
-				} catch (Exception e) {
-					System.out.println(e.getMessage());
-				}
+				parse(m);
 	        } catch (InterruptedException e) {
 				e.printStackTrace();
 			}
 		}       
     }
 	
+	/**
+	 * Parse a message with the codec registered for its first byte, XML packets with
+	 * the parser chosen in the CommunicationManager
+	 * @param m
+	 */
+	public void parse(Message m) {
+		parse(m, handler);
+	}
+	
+	/**
+	 * Parse a message, reporting to the given handler instead of this parser's
+	 */
+	public void parse(Message m, DownlinkHandler handler) {
+		PacketCodec codec = PacketCodecRegistry.getInstance().getCodec(m);
+		try {
+			codec.decode(m, handler);
+		} catch (InvalidMessageException e) {
+			Loggers.logError("There was an error parsing the following " + codec.getName() + " message:\n" + m);
+			System.out.println("PARSING ERROR: " + e.getMessage());
+		} catch (Exception e) {
+			System.out.println(e.getMessage());
+		}
+	}
+	
 	public void parseMessage(Document msg) throws InvalidMessageException {
+		parseMessage(msg, handler);
+	}
+	
+	/**
+	 * Parse a DOM, reporting to the given handler, so one parser can serve any number of handlers
+	 */
+	public void parseMessage(Document msg, DownlinkHandler handler) throws InvalidMessageException {
     	NodeList nList = msg.getElementsByTagName(tagDownPacket);
     	if(nList.getLength() == 0) {
     		Loggers.logError("There was no <downstreamPacket> element in the message");
@@ -116,13 +137,13 @@ public class MessageParser implements Runnable {
     	String type = typeNodes.item(0).getTextContent();
     	switch(type) {
     	case "Static":
-    		parseStaticPacket(packet);
+    		parseStaticPacket(packet, handler);
     		break;
     	case "Temperature":
-    		parseTemperaturePacket(packet);
+    		parseTemperaturePacket(packet, handler);
     		break;
     	case "Energy":
-    		parseEnergyPacket(packet);
+    		parseEnergyPacket(packet, handler);
     		break;
     	default:
     		Loggers.logError("Wrong packet type accepted");
@@ -130,8 +151,7 @@ public class MessageParser implements Runnable {
     	}
     }
 	
-	public void parseStaticPacket (Node packet) {
-		System.out.println("DEBUG: Static packet parsing");
+	public void parseStaticPacket (Node packet, DownlinkHandler handler) {
 		Status defaultStatus = Status.UNKNOWN;
 		NodeList children = packet.getChildNodes();
 		Satellite.SatelliteState satState = Satellite.SatelliteState.UNKNOWN;
@@ -193,24 +213,28 @@ public class MessageParser implements Runnable {
 				}
 			}
 		}
-		String logMsg = "Inserting Static Update. Satellite State: " + satState + "\n" +
-				"Energy Status: " + energyStatus.toString() + " at " + energyStatusTS + "\n" +
-				"Temperature Status: " + temperatureStatus.toString() + " at " + temperatureStatusTS + "\n" +
-				"SBand Status: " + sbandStatus.toString() + " at " + sbandStatusTS + "\n" +
-				"Payload Status: " + payloadStatus.toString() + " at " + payloadStatusTS + "\n" +
-				"Solar Panels Status: " + solarPanelsStatus.toString() + " at " + solarPanelsStatusTS + "\n" +
-				"Thermal Control Status: " + thermalCtrlStatus.toString() + " at " + thermalCtrlStatusTS;
-		System.out.println("===========");
-		System.out.println(logMsg);
-		System.out.println("===========");
-		Loggers.logAction(logMsg);
+		handler.onStaticPacket(satState, temperatureStatus, temperatureStatusTS, energyStatus, energyStatusTS, 
+				sbandStatus, sbandStatusTS, payloadStatus, payloadStatusTS, solarPanelsStatus, 
+				solarPanelsStatusTS, thermalCtrlStatus, thermalCtrlStatusTS);
+	}
+	
+	@Override
+	public void onStaticPacket(Satellite.SatelliteState satState, Status temperatureStatus, Timestamp temperatureStatusTS, 
+								Status energyStatus, Timestamp energyStatusTS, Status sbandStatus, Timestamp sbandStatusTS, 
+								Status payloadStatus, Timestamp payloadStatusTS, Status solarPanelsStatus, Timestamp solarPanelsStatusTS, 
+								Status thermalCtrlStatus, Timestamp thermalCtrlStatusTS) {
+		if (Loggers.isActionLogEnabled()) {
+			String logMsg = describeStaticPacket(satState, temperatureStatus, temperatureStatusTS, energyStatus, energyStatusTS, 
+					sbandStatus, sbandStatusTS, payloadStatus, payloadStatusTS, solarPanelsStatus, 
+					solarPanelsStatusTS, thermalCtrlStatus, thermalCtrlStatusTS);
+			Loggers.logAction(logMsg);
+		}
 		DataManager.getInstance().insertSatellite(satState, temperatureStatus, temperatureStatusTS, energyStatus, energyStatusTS, 
 								sbandStatus, sbandStatusTS, payloadStatus, payloadStatusTS, solarPanelsStatus, 
 								solarPanelsStatusTS, thermalCtrlStatus, thermalCtrlStatusTS);
 	}
 	
-	public void parseTemperaturePacket (Node packet) {
-		System.out.println("DEBUG: Temperature packet parsing");
+	public void parseTemperaturePacket (Node packet, DownlinkHandler handler) {
 		NodeList children = packet.getChildNodes();
 		for (int i=0; i < children.getLength(); i++) { //For each packet element
 			Node child = children.item(i);
@@ -240,21 +264,21 @@ public class MessageParser implements Runnable {
 						break;	
 					}
 				}
-				String logMsg = "Inserting Temperature Sample. Time: " + ts + "\n" +
-						"Sensor1 temperature: " + sensor1 + "C\n" +
-						"Sensor2 temperature: " + sensor2 + "C\n" +
-						"Sensor3 temperature: " + sensor3 + "C";
-				System.out.println("===========");
-				System.out.println(logMsg);
-				System.out.println("===========");
-				Loggers.logAction(logMsg);
-				DataManager.getInstance().insertTemprature(sensor1, sensor2, sensor3, ts);
+				handler.onTemperatureSample(sensor1, sensor2, sensor3, ts);
 			}
 		}
 	}
 	
-	public void parseEnergyPacket (Node packet) {
-		System.out.println("DEBUG: Energy packet parsing");
+	@Override
+	public void onTemperatureSample(float sensor1, float sensor2, float sensor3, Timestamp ts) {
+		if (Loggers.isActionLogEnabled()) {
+			String logMsg = describeTemperatureSample(sensor1, sensor2, sensor3, ts);
+			Loggers.logAction(logMsg);
+		}
+		DataManager.getInstance().insertTemprature(sensor1, sensor2, sensor3, ts);
+	}
+	
+	public void parseEnergyPacket (Node packet, DownlinkHandler handler) {
 		NodeList children = packet.getChildNodes();
 		for (int i=0; i < children.getLength(); i++) { //For each packet element
 			Node child = children.item(i);
@@ -288,45 +312,70 @@ public class MessageParser implements Runnable {
 						break;	
 					}
 				}
-				String logMsg = "Inserting Energy Sample. Time: " + ts + "\n" +
-						"Battery1: " + batt1V + "V " + batt1C + "A\n" +
-						"Battery2: " + batt2V + "V " + batt2C + "A\n" +
-						"Battery3: " + batt3V + "V " + batt3C + "A";
-				System.out.println("===========");
-				System.out.println(logMsg);
-				System.out.println("===========");
-				Loggers.logAction(logMsg);
-				DataManager.getInstance().insertEnergy(batt1V, batt2V, batt3V, batt1C, batt2C, batt3C, ts);
+				handler.onEnergySample(batt1V, batt2V, batt3V, batt1C, batt2C, batt3C, ts);
 			}
 		}
 	}
 	
+	@Override
+	public void onEnergySample(float batt1V, float batt2V, float batt3V, float batt1C, float batt2C, float batt3C, Timestamp ts) {
+		if (Loggers.isActionLogEnabled()) {
+			String logMsg = describeEnergySample(batt1V, batt2V, batt3V, batt1C, batt2C, batt3C, ts);
+			Loggers.logAction(logMsg);
+		}
+		DataManager.getInstance().insertEnergy(batt1V, batt2V, batt3V, batt1C, batt2C, batt3C, ts);
+	}
+	
+	public static String describeStaticPacket(Satellite.SatelliteState satState, Status temperatureStatus, Timestamp temperatureStatusTS, 
+								Status energyStatus, Timestamp energyStatusTS, Status sbandStatus, Timestamp sbandStatusTS, 
+								Status payloadStatus, Timestamp payloadStatusTS, Status solarPanelsStatus, Timestamp solarPanelsStatusTS, 
+								Status thermalCtrlStatus, Timestamp thermalCtrlStatusTS) {
+		return "Inserting Static Update. Satellite State: " + satState + "\n" +
+				"Energy Status: " + energyStatus + " at " + energyStatusTS + "\n" +
+				"Temperature Status: " + temperatureStatus + " at " + temperatureStatusTS + "\n" +
+				"SBand Status: " + sbandStatus + " at " + sbandStatusTS + "\n" +
+				"Payload Status: " + payloadStatus + " at " + payloadStatusTS + "\n" +
+				"Solar Panels Status: " + solarPanelsStatus + " at " + solarPanelsStatusTS + "\n" +
+				"Thermal Control Status: " + thermalCtrlStatus + " at " + thermalCtrlStatusTS;
+	}
+	
+	public static String describeTemperatureSample(float sensor1, float sensor2, float sensor3, Timestamp ts) {
+		return "Inserting Temperature Sample. Time: " + ts + "\n" +
+				"Sensor1 temperature: " + sensor1 + "C\n" +
+				"Sensor2 temperature: " + sensor2 + "C\n" +
+				"Sensor3 temperature: " + sensor3 + "C";
+	}
+	
+	public static String describeEnergySample(float batt1V, float batt2V, float batt3V, float batt1C, float batt2C, float batt3C, Timestamp ts) {
+		return "Inserting Energy Sample. Time: " + ts + "\n" +
+				"Battery1: " + batt1V + "V " + batt1C + "A\n" +
+				"Battery2: " + batt2V + "V " + batt2C + "A\n" +
+				"Battery3: " + batt3V + "V " + batt3C + "A";
+	}
+	
 	/**
 	 * Translate RTEMS timestamp format to standard time format
-	 * @param timestamp String timestamp of format yyyymmddhhmmss
-	 * @return
+	 * @param timestamp String timestamp of format yyyymmddhhmmss, UTC
+	 * @return epoch ms, 0 if the timestamp is not valid
 	 */
 	public static long parseRTEMSTimestamp (String timestamp) {
-		DateFormat df = new SimpleDateFormat("yyyyMMddHHmmss");
-		//df.setTimeZone(TimeZone.getTimeZone("UTC"));
 		try {
-			return df.parse(timestamp).getTime();
-		} catch (ParseException e) {
-			e.printStackTrace();
+			return RtemsTime.parse(timestamp);
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
 			return 0;
 		}
 	}
 	
 	public static String toRTEMSTimestamp (Timestamp timestamp) {
-		DateFormat df = new SimpleDateFormat("yyyyMMddHHmmss");
-		return df.format(timestamp.getTime());
+		return RtemsTime.format(timestamp.getTime());
 	}
 	
 	public void stopThread() {
     	this.isRunning = false;
     }
 	
-	public Status stringToStatus (String strst) {
+	public static Status stringToStatus (String strst) {
 		Status st;
 		switch (strst) {
 		case tagStatusOn:
@@ -348,7 +397,7 @@ public class MessageParser implements Runnable {
 		return st;
 	}
 	
-	public Satellite.SatelliteState stringToSatState (String satstate) {
+	public static Satellite.SatelliteState stringToSatState (String satstate) {
 		Satellite.SatelliteState satst;
 		switch (satstate) {
 		case tagStateOperational:
@@ -0,0 +1,19 @@
+package communication;
+
+/**
+ * A downstream packet format. The first byte of a frame picks the codec,
+ * see {@link PacketCodecRegistry}.
+ */
+public interface PacketCodec {
+	/**
+	 * @return the first byte of every packet in this format
+	 */
+	byte getHeaderByte();
+
+	String getName();
+
+	/**
+	 * Report every sample of the message to the handler
+	 */
+	void decode(Message m, DownlinkHandler handler) throws InvalidMessageException;
+}
@@ -0,0 +1,43 @@
+package communication;
+
+/**
+ * Picks the codec of a received frame by its first byte.
+ * Frames whose first byte has no codec registered are treated as XML, which may start
+ * with whitespace or a byte order mark.
+ */
+public class PacketCodecRegistry {
+	private static PacketCodecRegistry instance = null;
+
+	private final PacketCodec[] codecs = new PacketCodec[256];
+	private final PacketCodec defaultCodec;
+
+	private PacketCodecRegistry() {
+		defaultCodec = new XmlPacketCodec();
+		register(defaultCodec);
+		register(new BinaryPacketCodec());
+	}
+
+	public static synchronized PacketCodecRegistry getInstance() {
+		if (instance == null) {
+			instance = new PacketCodecRegistry();
+		}
+		return instance;
+	}
+
+	/**
+	 * Replaces the codec registered for the same header byte
+	 */
+	public synchronized void register(PacketCodec codec) {
+		codecs[codec.getHeaderByte() & 0xFF] = codec;
+	}
+
+	public PacketCodec getCodec(byte headerByte) {
+		PacketCodec codec = codecs[headerByte & 0xFF];
+		return codec == null ? defaultCodec : codec;
+	}
+
+	public PacketCodec getCodec(Message m) {
+		byte[] bytes = m.getBytes();
+		return bytes.length == 0 ? defaultCodec : getCodec(bytes[0]);
+	}
+}
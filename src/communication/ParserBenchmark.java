@@ -0,0 +1,125 @@
+package communication;
+
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.Random;
+
+import org.w3c.dom.Document;
+
+import data.Satellite;
+import data.Status;
+
+/**
+ * Compares the DOM parsing path with the StAX parsing path on Energy and Temperature
+ * bursts of the size we get during a pass. Nothing is inserted to the database,
+ * the samples are only counted.
+ */
+public class ParserBenchmark {
+	private static final int samplesPerPacket = 200;
+	private static final int warmupRounds = 2000;
+	private static final int measuredRounds = 5000;
+
+	private static long samples = 0;
+
+	private static class CountingParser extends MessageParser {
+		@Override
+		public void onStaticPacket(Satellite.SatelliteState satState, Status temperatureStatus, Timestamp temperatureStatusTS,
+									Status energyStatus, Timestamp energyStatusTS, Status sbandStatus, Timestamp sbandStatusTS,
+									Status payloadStatus, Timestamp payloadStatusTS, Status solarPanelsStatus, Timestamp solarPanelsStatusTS,
+									Status thermalCtrlStatus, Timestamp thermalCtrlStatusTS) {
+			samples++;
+		}
+
+		@Override
+		public void onTemperatureSample(float sensor1, float sensor2, float sensor3, Timestamp ts) {
+			samples++;
+		}
+
+		@Override
+		public void onEnergySample(float batt1V, float batt2V, float batt3V, float batt1C, float batt2C, float batt3C, Timestamp ts) {
+			samples++;
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		Message energy = new Message(energyPacket(samplesPerPacket));
+		Message temperature = new Message(temperaturePacket(samplesPerPacket));
+		CountingParser parser = new CountingParser();
+		StreamingMessageParser streaming = new StreamingMessageParser(parser);
+
+		System.out.println("Packets of " + samplesPerPacket + " samples, " + measuredRounds + " rounds");
+		for (Message m : new Message[] {energy, temperature}) {
+			runDom(parser, m, warmupRounds);
+			runStreaming(streaming, m, warmupRounds);
+			long dom = runDom(parser, m, measuredRounds);
+			long stax = runStreaming(streaming, m, measuredRounds);
+			System.out.println(m.toString().contains("<type>Energy</type>") ? "Energy:" : "Temperature:");
+			print("DOM", dom);
+			print("StAX", stax);
+		}
+	}
+
+	private static long runDom(MessageParser parser, Message m, int rounds) throws InvalidMessageException {
+		samples = 0;
+		long start = System.nanoTime();
+		for (int i = 0; i < rounds; i++) {
+			Document doc = m.toDocument();
+			parser.parseMessage(doc);
+		}
+		long elapsed = System.nanoTime() - start;
+		check(rounds);
+		return elapsed;
+	}
+
+	private static long runStreaming(StreamingMessageParser parser, Message m, int rounds) throws InvalidMessageException {
+		samples = 0;
+		long start = System.nanoTime();
+		for (int i = 0; i < rounds; i++) {
+			parser.parse(m);
+		}
+		long elapsed = System.nanoTime() - start;
+		check(rounds);
+		return elapsed;
+	}
+
+	private static void check(int rounds) {
+		if (samples != (long) rounds * samplesPerPacket) {
+			throw new IllegalStateException("Expected " + rounds * samplesPerPacket + " samples, parsed " + samples);
+		}
+	}
+
+	private static void print(String name, long elapsedNanos) {
+		double perPacket = elapsedNanos / 1000.0 / measuredRounds;
+		double perSecond = (double) measuredRounds * samplesPerPacket / (elapsedNanos / 1e9);
+		System.out.println(String.format("  %-5s %10.1f us/packet %12.0f samples/s", name, perPacket, perSecond));
+	}
+
+	static String energyPacket(int count) {
+		Random rand = new Random(1);
+		long time = new Date().getTime();
+		StringBuilder sb = new StringBuilder("<?xml version=\"1.0\"?><packet><downstreamPacket>\n<type>Energy</type>\n");
+		for (int i = 0; i < count; i++) {
+			sb.append("<EnergySample time=\"").append(MessageParser.toRTEMSTimestamp(new Timestamp(time + i * 1000))).append("\">\n");
+			for (int b = 1; b <= 3; b++) {
+				sb.append("<Battery").append(b).append(" voltage=\"").append(107 + rand.nextFloat() * 5)
+					.append("\" current=\"").append(1 + rand.nextFloat() * 3).append("\"/>\n");
+			}
+			sb.append("</EnergySample>\n");
+		}
+		return sb.append("</downstreamPacket>\n</packet>").toString();
+	}
+
+	static String temperaturePacket(int count) {
+		Random rand = new Random(2);
+		long time = new Date().getTime();
+		StringBuilder sb = new StringBuilder("<?xml version=\"1.0\"?><packet><downstreamPacket>\n<type>Temperature</type>\n");
+		for (int i = 0; i < count; i++) {
+			sb.append("<TemperatureSample time=\"").append(MessageParser.toRTEMSTimestamp(new Timestamp(time + i * 1000))).append("\">\n");
+			for (int s = 1; s <= 3; s++) {
+				sb.append("<Sensor").append(s).append(" temp=\"").append(40 + rand.nextFloat() * 20).append("\"/>\n");
+			}
+			sb.append("</TemperatureSample>\n");
+		}
+		return sb.append("</downstreamPacket>\n</packet>").toString();
+	}
+}
@@ -0,0 +1,156 @@
+package communication;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+
+import logger.EventType;
+import logger.JournalReader;
+
+/**
+ * What a recorded pass downlinked, rebuilt from the event journal: the frames and packets
+ * between a PASS_START and the PASS_END after it.
+ */
+public class PassStatistics {
+	private final long start;
+	private long end;
+	private int frames = 0;
+	/** Frame bytes on the link, with the frame delimiters */
+	private long bytes = 0;
+	private int packets = 0;
+	private long statics = 0;
+	private long samples = 0;
+
+	public PassStatistics(long start, long expectedEnd) {
+		this.start = start;
+		this.end = expectedEnd;
+	}
+
+	/**
+	 * @return the passes that started in [from, to)
+	 */
+	public static List<PassStatistics> read(JournalReader reader, long from, long to) throws IOException {
+		final List<PassStatistics> passes = new ArrayList<PassStatistics>();
+		final PassStatistics[] current = new PassStatistics[1];
+		reader.read(from, to, EnumSet.of(EventType.PASS_START, EventType.PASS_END, EventType.FRAME_RECEIVED,
+				EventType.PACKET_PARSED), new JournalReader.Visitor() {
+			@Override
+			public void visit(long time, EventType type, long arg0, int arg1, String text) {
+				switch (type) {
+				case PASS_START:
+					current[0] = new PassStatistics(time, arg0);
+					passes.add(current[0]);
+					break;
+				case PASS_END:
+					if (current[0] != null) {
+						current[0].end = time;
+						current[0] = null;
+					}
+					break;
+				case FRAME_RECEIVED:
+					if (current[0] != null) {
+						current[0].onFrame(arg1);
+					}
+					break;
+				case PACKET_PARSED:
+					if (current[0] != null) {
+						current[0].onPacket(arg0, arg1);
+					}
+					break;
+				default:
+					break;
+				}
+			}
+		});
+		return passes;
+	}
+
+	/**
+	 * A pass from a {@link FrameRecorder} recording, counted like the ingest path receives it: every
+	 * frame takes link time, duplicates and corrupted ones too, and the packets of the new frames
+	 * are decoded with the codec of their header byte.
+	 * @param start when the pass started, the recording has no pass boundaries
+	 * @param end when the pass ended
+	 */
+	public static PassStatistics readRecording(File recording, long start, long end) {
+		final PassStatistics pass = new PassStatistics(start, end);
+		final LinkLayer link = new LinkLayer();
+		link.setRequestingRetransmissions(false);
+		FrameReplay replay = new FrameReplay(recording, FrameReplay.MAX_SPEED, new FrameDecoder.FrameListener() {
+			@Override
+			public void onFrame(byte[] buffer, int offset, int length) {
+				pass.onFrame(length);
+				int payload = link.accept(buffer, offset, length);
+				if (payload < 0) {
+					return;
+				}
+				byte[] bytes = new byte[offset + length - payload];
+				System.arraycopy(buffer, payload, bytes, 0, bytes.length);
+				Message m = new Message(bytes);
+				DownlinkPacket packet = new DownlinkPacket();
+				try {
+					PacketCodecRegistry.getInstance().getCodec(m).decode(m, packet);
+				} catch (InvalidMessageException e) {
+					return; // Takes link time but isn't parsed, as on the ground station
+				}
+				pass.onPacket(packet.getStaticCount(), packet.getTemperatureCount() + packet.getEnergyCount());
+			}
+		});
+		replay.run();
+		return pass;
+	}
+
+	/**
+	 * @param length the frame between its delimiters, as FRAME_RECEIVED records it
+	 */
+	void onFrame(int length) {
+		frames++;
+		bytes += length + 2;
+	}
+
+	void onPacket(long statuses, int samples) {
+		packets++;
+		this.statics += statuses;
+		this.samples += samples;
+	}
+
+	public long getStart() {
+		return start;
+	}
+
+	public long getEnd() {
+		return end;
+	}
+
+	public long getDuration() {
+		return end - start;
+	}
+
+	public int getFrames() {
+		return frames;
+	}
+
+	public long getBytes() {
+		return bytes;
+	}
+
+	public int getPackets() {
+		return packets;
+	}
+
+	public long getStatics() {
+		return statics;
+	}
+
+	public long getSamples() {
+		return samples;
+	}
+
+	@Override
+	public String toString() {
+		return "pass of " + getDuration() / 1000 + "s: " + frames + " frames, " + bytes + " bytes, " + packets
+				+ " packets, " + statics + " statuses, " + samples + " samples";
+	}
+}
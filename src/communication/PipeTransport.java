@@ -0,0 +1,84 @@
+package communication;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * In-process link, for headless tests: {@link #createPair()} returns two connected ends,
+ * what one end sends the other receives.
+ */
+public class PipeTransport implements Transport {
+	private static final byte[] closed = new byte[0];
+
+	private final BlockingQueue<byte[]> inbox;
+	private PipeTransport peer;
+	private volatile boolean isOpen;
+	private Thread readerThread;
+
+	private PipeTransport() {
+		this.inbox = new LinkedBlockingQueue<byte[]>();
+		this.isOpen = false;
+	}
+
+	/**
+	 * @return the ground station end and the satellite end
+	 */
+	public static PipeTransport[] createPair() {
+		PipeTransport station = new PipeTransport();
+		PipeTransport satellite = new PipeTransport();
+		station.peer = satellite;
+		satellite.peer = station;
+		return new PipeTransport[] { station, satellite };
+	}
+
+	@Override
+	public void open(FrameDecoder.FrameListener listener) throws IOException {
+		final FrameDecoder decoder = new FrameDecoder(FrameDecoder.DEFAULT_INITIAL_CAPACITY,
+				FrameDecoder.DEFAULT_MAX_FRAME_SIZE, listener);
+		isOpen = true;
+		readerThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					while (isOpen) {
+						byte[] chunk = inbox.take();
+						if (chunk == closed) {
+							break;
+						}
+						decoder.decode(chunk, 0, chunk.length);
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}, "PipeTransport");
+		readerThread.setDaemon(true);
+		readerThread.start();
+	}
+
+	@Override
+	public void send(byte[] data, int offset, int length) throws IOException {
+		if (!isOpen) {
+			throw new IOException("Pipe is closed");
+		}
+		peer.inbox.add(Arrays.copyOfRange(data, offset, offset + length));
+	}
+
+	@Override
+	public void close() {
+		isOpen = false;
+		inbox.add(closed);
+	}
+
+	@Override
+	public boolean isOpen() {
+		return isOpen;
+	}
+
+	@Override
+	public String toString() {
+		return "in-process pipe";
+	}
+}
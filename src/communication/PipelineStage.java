@@ -0,0 +1,175 @@
+package communication;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One stage of the ingest pipeline: a bounded input queue drained by its own workers.
+ * The result of each item is handed to the next stage; when the next stage's queue is full
+ * the workers wait, so a slow stage slows the ones before it instead of growing memory.
+ * @param <I> type accepted by this stage
+ * @param <O> type passed to the next stage
+ */
+public class PipelineStage<I, O> {
+
+	public interface Processor<I, O> {
+		/**
+		 * @return the item for the next stage, null to stop processing this item
+		 */
+		public O process(I item) throws Exception;
+	}
+
+	private final String name;
+	private final BlockingQueue<I> queue;
+	private final int workers;
+	private final Processor<I, O> processor;
+	private PipelineStage<O, ?> next;
+	private volatile boolean isRunning;
+	private final List<Thread> threads = new ArrayList<Thread>();
+	/** How long stop() waits for a worker that is busy with an item */
+	private static final long stopTimeoutMillis = 1000;
+
+	private final AtomicLong processed = new AtomicLong();
+	private final AtomicLong failed = new AtomicLong();
+	private final AtomicLong totalNanos = new AtomicLong();
+	private final AtomicLong maxNanos = new AtomicLong();
+
+	public PipelineStage(String name, int capacity, int workers, Processor<I, O> processor) {
+		this.name = name;
+		this.queue = new ArrayBlockingQueue<I>(capacity);
+		this.workers = workers;
+		this.processor = processor;
+		this.isRunning = false;
+	}
+
+	public void setNext(PipelineStage<O, ?> next) {
+		this.next = next;
+	}
+
+	public synchronized void start() {
+		if (isRunning) {
+			return;
+		}
+		isRunning = true;
+		for (int i = 0; i < workers; i++) {
+			Thread t = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					work();
+				}
+			}, name + "-" + i);
+			t.setDaemon(true);
+			threads.add(t);
+			t.start();
+		}
+	}
+
+	/**
+	 * Interrupt the workers, also the ones waiting for an item, and wait until they exit.
+	 * Items still queued are processed after the next start.
+	 */
+	public synchronized void stop() {
+		isRunning = false;
+		for (Thread t : threads) {
+			t.interrupt();
+		}
+		for (Thread t : threads) {
+			if (t == Thread.currentThread()) {
+				continue;
+			}
+			try {
+				t.join(stopTimeoutMillis);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+		threads.clear();
+	}
+
+	/**
+	 * Blocks while this stage's queue is full
+	 */
+	public void put(I item) throws InterruptedException {
+		queue.put(item);
+	}
+
+	private void work() {
+		while (isRunning && !Thread.currentThread().isInterrupted()) {
+			I item;
+			try {
+				item = queue.take();
+			} catch (InterruptedException e) {
+				return;
+			}
+			long start = System.nanoTime();
+			O result = null;
+			try {
+				result = processor.process(item);
+			} catch (Exception e) {
+				failed.incrementAndGet();
+				System.out.println(name + " stage error: " + e.getMessage());
+			}
+			long elapsed = System.nanoTime() - start;
+			processed.incrementAndGet();
+			totalNanos.addAndGet(elapsed);
+			long max = maxNanos.get();
+			while (elapsed > max && !maxNanos.compareAndSet(max, elapsed)) {
+				max = maxNanos.get();
+			}
+			if (result != null && next != null) {
+				try {
+					next.put(result);
+				} catch (InterruptedException e) {
+					return;
+				}
+			}
+		}
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public BlockingQueue<I> getQueue() {
+		return queue;
+	}
+
+	public int getWorkers() {
+		return workers;
+	}
+
+	public int getQueueDepth() {
+		return queue.size();
+	}
+
+	public long getProcessedCount() {
+		return processed.get();
+	}
+
+	public long getFailedCount() {
+		return failed.get();
+	}
+
+	/**
+	 * @return mean time spent processing one item, in microseconds
+	 */
+	public double getAverageLatencyMicros() {
+		long count = processed.get();
+		return count == 0 ? 0 : totalNanos.get() / 1000.0 / count;
+	}
+
+	public double getMaxLatencyMicros() {
+		return maxNanos.get() / 1000.0;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s[workers=%d depth=%d processed=%d failed=%d avg=%.1fus max=%.1fus]",
+				name, workers, getQueueDepth(), getProcessedCount(), getFailedCount(),
+				getAverageLatencyMicros(), getMaxLatencyMicros());
+	}
+}
@@ -0,0 +1,43 @@
+package communication;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class PipelineStageTests {
+
+	@Test
+	public void testStopEndsIdleWorkers() throws Exception {
+		final CountDownLatch processed = new CountDownLatch(1);
+		PipelineStage<String, String> stage = new PipelineStage<String, String>("test", 4, 2,
+				new PipelineStage.Processor<String, String>() {
+			@Override
+			public String process(String item) {
+				processed.countDown();
+				return null;
+			}
+		});
+		stage.start();
+		stage.put("a");
+		assertTrue(processed.await(1, TimeUnit.SECONDS));
+		// Both workers are now waiting in take()
+		stage.stop();
+		for (Thread t : Thread.getAllStackTraces().keySet()) {
+			assertFalse(t.getName(), t.getName().startsWith("test-"));
+		}
+
+		// Queued while stopped, processed after the next start
+		stage.put("b");
+		assertEquals(1, stage.getQueueDepth());
+		stage.start();
+		long deadline = System.currentTimeMillis() + 1000;
+		while (stage.getProcessedCount() < 2 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertEquals(2, stage.getProcessedCount());
+		stage.stop();
+	}
+}
@@ -0,0 +1,42 @@
+package communication;
+
+import java.io.File;
+
+/**
+ * Replays a frame recording through the ingest pipeline and prints its throughput.
+ * Arguments: the recording directory and the speed (1 for real time, N, or "max")
+ */
+public class ReplayTest {
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 1) {
+			System.out.println("usage: ReplayTest <recording dir> [speed|max]");
+			return;
+		}
+		double speed = FrameReplay.REAL_TIME;
+		if (args.length > 1) {
+			speed = args[1].equalsIgnoreCase("max") ? FrameReplay.MAX_SPEED : Double.parseDouble(args[1]);
+		}
+		CommunicationManager comm = CommunicationManager.getInstance();
+		long start = System.nanoTime();
+		comm.connectReplay(new File(args[0]), speed);
+		FrameReplay replay = comm.getFrameReplay();
+		while (!replay.isFinished()) {
+			Thread.sleep(100);
+		}
+		boolean isBusy = true;
+		while (isBusy) {
+			isBusy = false;
+			for (PipelineStage<?, ?> stage : comm.getIngestPipeline().getStages()) {
+				isBusy |= stage.getQueueDepth() > 0;
+			}
+			Thread.sleep(10);
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.println(replay.getReplayedFrames() + " frames in " + String.format("%.2f", seconds) + "s, "
+				+ String.format("%.0f", replay.getReplayedFrames() / seconds) + " frames/s, max lag "
+				+ replay.getMaxLagNanos() / 1000 + "us");
+		System.out.print(comm.getIngestPipeline().getMetrics());
+		System.exit(0);
+	}
+}
@@ -0,0 +1,81 @@
+package communication;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * The sending side of the {@link LinkLayer}: numbers the outgoing frames and keeps the
+ * last ones so they can be sent again when the other side NACKs them.
+ */
+public class RetransmitBuffer {
+	public static final int DEFAULT_CAPACITY = 4096;
+
+	private final byte[][] frames;
+	private final long[] sequences;
+	private long nextSeq = 0;
+	private long retransmittedFrames = 0;
+	private long expiredFrames = 0;
+
+	public RetransmitBuffer(int capacity) {
+		this.frames = new byte[capacity][];
+		this.sequences = new long[capacity];
+	}
+
+	/**
+	 * @return the next frame to send, with its sequence number and CRC
+	 */
+	public synchronized Message frame(byte[] payload) {
+		long seq = nextSeq;
+		nextSeq = (nextSeq + 1) & 0xFFFFFFFFL;
+		byte[] frame = LinkLayer.frame(seq, payload);
+		int slot = (int) (seq % frames.length);
+		frames[slot] = frame;
+		sequences[slot] = seq;
+		return new Message(frame);
+	}
+
+	/**
+	 * Send the frames a NACK asks for again
+	 * @return false if the frame is not a NACK
+	 */
+	public boolean handleNack(byte[] buffer, int offset, int length) {
+		String text = new String(buffer, offset, length, StandardCharsets.UTF_8);
+		if (!text.contains("<nack ")) {
+			return false;
+		}
+		List<long[]> ranges = LinkLayer.parseNack(text);
+		for (long[] range : ranges) {
+			for (long seq = range[0]; seq <= range[1]; seq++) {
+				byte[] frame = get(seq);
+				if (frame != null) {
+					CommunicationManager.getInstance().sendMessage(new Message(frame));
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return the frame, null if it was never sent or was overwritten
+	 */
+	public synchronized byte[] get(long seq) {
+		int slot = (int) (seq % frames.length);
+		if (frames[slot] == null || sequences[slot] != seq) {
+			expiredFrames++;
+			return null;
+		}
+		retransmittedFrames++;
+		return frames[slot];
+	}
+
+	public synchronized long getRetransmittedFrames() {
+		return retransmittedFrames;
+	}
+
+	/**
+	 * @return requested frames that were no longer in the buffer
+	 */
+	public synchronized long getExpiredFrames() {
+		return expiredFrames;
+	}
+}
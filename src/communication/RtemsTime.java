@@ -0,0 +1,186 @@
+package communication;
+
+/**
+ * The RTEMS timestamp format of the packets, yyyyMMddHHmmss in UTC, parsed and formatted with
+ * arithmetic instead of a SimpleDateFormat. Timestamps of the day the thread saw last skip the
+ * calendar math. Every thread caches its own day, so parser threads working on different
+ * passes neither lock nor evict each other's day.
+ */
+public final class RtemsTime {
+	public static final int LENGTH = 14;
+	private static final long millisPerDay = 86400000L;
+
+	private static final class Day {
+		final int key; // yyyyMMdd as a number
+		final long startMillis;
+		final byte[] digits = new byte[8];
+
+		Day(int year, int month, int day, long startMillis) {
+			this.key = year * 10000 + month * 100 + day;
+			this.startMillis = startMillis;
+			int value = key;
+			for (int i = 7; i >= 0; i--) {
+				digits[i] = (byte) ('0' + value % 10);
+				value /= 10;
+			}
+		}
+	}
+
+	private static final ThreadLocal<Day> cachedDay = new ThreadLocal<Day>() {
+		@Override
+		protected Day initialValue() {
+			return new Day(1970, 1, 1, 0);
+		}
+	};
+
+	private RtemsTime() {
+	}
+
+	/**
+	 * @return epoch ms
+	 * @throws IllegalArgumentException if the text is not a valid 14 digit timestamp
+	 */
+	public static long parse(CharSequence text) {
+		if (text == null || text.length() != LENGTH) {
+			throw new IllegalArgumentException("Not an RTEMS timestamp: " + text);
+		}
+		return parse(text, 0);
+	}
+
+	/**
+	 * Parse the 14 characters at start
+	 */
+	public static long parse(CharSequence text, int start) {
+		int year = 0, month = 0, day = 0, hour = 0, minute = 0, second = 0;
+		for (int i = 0; i < LENGTH; i++) {
+			int digit = text.charAt(start + i) - '0';
+			if (digit < 0 || digit > 9) {
+				throw new IllegalArgumentException("Not an RTEMS timestamp: " + text);
+			}
+			if (i < 4) year = year * 10 + digit;
+			else if (i < 6) month = month * 10 + digit;
+			else if (i < 8) day = day * 10 + digit;
+			else if (i < 10) hour = hour * 10 + digit;
+			else if (i < 12) minute = minute * 10 + digit;
+			else second = second * 10 + digit;
+		}
+		return toMillis(year, month, day, hour, minute, second);
+	}
+
+	/**
+	 * Parse the 14 ASCII digits at offset
+	 */
+	public static long parse(byte[] bytes, int offset) {
+		int year = 0, month = 0, day = 0, hour = 0, minute = 0, second = 0;
+		for (int i = 0; i < LENGTH; i++) {
+			int digit = bytes[offset + i] - '0';
+			if (digit < 0 || digit > 9) {
+				throw new IllegalArgumentException("Not an RTEMS timestamp at " + offset);
+			}
+			if (i < 4) year = year * 10 + digit;
+			else if (i < 6) month = month * 10 + digit;
+			else if (i < 8) day = day * 10 + digit;
+			else if (i < 10) hour = hour * 10 + digit;
+			else if (i < 12) minute = minute * 10 + digit;
+			else second = second * 10 + digit;
+		}
+		return toMillis(year, month, day, hour, minute, second);
+	}
+
+	private static long toMillis(int year, int month, int day, int hour, int minute, int second) {
+		if (hour > 23 || minute > 59 || second > 59) {
+			throw new IllegalArgumentException("Bad RTEMS time of day " + hour + ":" + minute + ":" + second);
+		}
+		Day cached = cachedDay.get();
+		if (cached.key != year * 10000 + month * 100 + day) {
+			if (month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)) {
+				throw new IllegalArgumentException("Bad RTEMS date " + year + "-" + month + "-" + day);
+			}
+			cached = new Day(year, month, day, daysFromCivil(year, month, day) * millisPerDay);
+			cachedDay.set(cached);
+		}
+		return cached.startMillis + ((hour * 60 + minute) * 60 + second) * 1000L;
+	}
+
+	/**
+	 * Write the 14 digits of the time at offset, milliseconds are dropped
+	 */
+	public static void format(long millis, byte[] dest, int offset) {
+		Day day = dayOf(millis);
+		System.arraycopy(day.digits, 0, dest, offset, 8);
+		int secondOfDay = (int) ((millis - day.startMillis) / 1000);
+		putTwoDigits(dest, offset + 8, secondOfDay / 3600);
+		putTwoDigits(dest, offset + 10, secondOfDay / 60 % 60);
+		putTwoDigits(dest, offset + 12, secondOfDay % 60);
+	}
+
+	public static void format(long millis, StringBuilder dest) {
+		Day day = dayOf(millis);
+		for (byte b : day.digits) {
+			dest.append((char) b);
+		}
+		int secondOfDay = (int) ((millis - day.startMillis) / 1000);
+		appendTwoDigits(dest, secondOfDay / 3600);
+		appendTwoDigits(dest, secondOfDay / 60 % 60);
+		appendTwoDigits(dest, secondOfDay % 60);
+	}
+
+	public static String format(long millis) {
+		StringBuilder sb = new StringBuilder(LENGTH);
+		format(millis, sb);
+		return sb.toString();
+	}
+
+	private static Day dayOf(long millis) {
+		Day cached = cachedDay.get();
+		if (millis >= cached.startMillis && millis - cached.startMillis < millisPerDay) {
+			return cached;
+		}
+		long days = Math.floorDiv(millis, millisPerDay);
+		// civil from days
+		long z = days + 719468;
+		long era = Math.floorDiv(z, 146097);
+		int doe = (int) (z - era * 146097);
+		int yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+		int doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+		int mp = (5 * doy + 2) / 153;
+		int day = doy - (153 * mp + 2) / 5 + 1;
+		int month = mp < 10 ? mp + 3 : mp - 9;
+		int year = (int) (yoe + era * 400) + (month <= 2 ? 1 : 0);
+		cached = new Day(year, month, day, days * millisPerDay);
+		cachedDay.set(cached);
+		return cached;
+	}
+
+	static long daysFromCivil(int year, int month, int day) {
+		int y = month <= 2 ? year - 1 : year;
+		int era = (y >= 0 ? y : y - 399) / 400;
+		int yoe = y - era * 400;
+		int doy = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+		int doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+		return era * 146097L + doe - 719468;
+	}
+
+	private static int daysInMonth(int year, int month) {
+		switch (month) {
+		case 2:
+			return (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+		case 4:
+		case 6:
+		case 9:
+		case 11:
+			return 30;
+		default:
+			return 31;
+		}
+	}
+
+	private static void putTwoDigits(byte[] dest, int offset, int value) {
+		dest[offset] = (byte) ('0' + value / 10);
+		dest[offset + 1] = (byte) ('0' + value % 10);
+	}
+
+	private static void appendTwoDigits(StringBuilder dest, int value) {
+		dest.append((char) ('0' + value / 10)).append((char) ('0' + value % 10));
+	}
+}
@@ -0,0 +1,113 @@
+package communication;
+
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Compares the SimpleDateFormat per call that MessageParser used with {@link RtemsTime},
+ * parsing and formatting the timestamps of a pass (one sample a second) on one and on several threads.
+ */
+public class RtemsTimeBenchmark {
+	private static final int timestamps = 100000;
+	private static final int warmupRounds = 5;
+	private static final int measuredRounds = 10;
+	private static final int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+	private static final String[] texts = new String[timestamps];
+
+	private interface Codec {
+		long parse(String text) throws ParseException;
+		String format(long millis);
+	}
+
+	private static final Codec simpleDateFormat = new Codec() {
+		@Override
+		public long parse(String text) throws ParseException {
+			return newFormat().parse(text).getTime();
+		}
+
+		@Override
+		public String format(long millis) {
+			return newFormat().format(millis);
+		}
+
+		private DateFormat newFormat() {
+			DateFormat df = new SimpleDateFormat("yyyyMMddHHmmss");
+			df.setTimeZone(TimeZone.getTimeZone("UTC"));
+			return df;
+		}
+	};
+
+	private static final Codec rtemsTime = new Codec() {
+		@Override
+		public long parse(String text) {
+			return RtemsTime.parse(text);
+		}
+
+		@Override
+		public String format(long millis) {
+			return RtemsTime.format(millis);
+		}
+	};
+
+	public static void main(String[] args) throws Exception {
+		long start = 1414998900000L;
+		for (int i = 0; i < timestamps; i++) {
+			texts[i] = RtemsTime.format(start + i * 1000L);
+		}
+		System.out.println(timestamps + " timestamps, " + threads + " threads");
+		for (int i = 0; i < warmupRounds; i++) {
+			run(simpleDateFormat, 1);
+			run(rtemsTime, 1);
+		}
+		print("SimpleDateFormat", 1, run(simpleDateFormat, 1));
+		print("RtemsTime", 1, run(rtemsTime, 1));
+		print("SimpleDateFormat", threads, run(simpleDateFormat, threads));
+		print("RtemsTime", threads, run(rtemsTime, threads));
+	}
+
+	/**
+	 * @return nanoseconds for measuredRounds of parsing and formatting every timestamp on each thread
+	 */
+	private static long run(final Codec codec, int threadCount) throws Exception {
+		ExecutorService pool = Executors.newFixedThreadPool(threadCount);
+		try {
+			Callable<Long> task = new Callable<Long>() {
+				@Override
+				public Long call() throws ParseException {
+					long check = 0;
+					for (int round = 0; round < measuredRounds; round++) {
+						for (String text : texts) {
+							long millis = codec.parse(text);
+							check += codec.format(millis).length() + millis;
+						}
+					}
+					return check;
+				}
+			};
+			long begin = System.nanoTime();
+			Future<?>[] futures = new Future<?>[threadCount];
+			for (int i = 0; i < threadCount; i++) {
+				futures[i] = pool.submit(task);
+			}
+			for (Future<?> f : futures) {
+				f.get();
+			}
+			return System.nanoTime() - begin;
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	private static void print(String name, int threadCount, long elapsedNanos) {
+		long operations = (long) timestamps * measuredRounds * threadCount;
+		System.out.println(String.format("  %-16s %2d threads %8.1f ns/timestamp %12.0f timestamps/s", name, threadCount,
+				(double) elapsedNanos / operations * threadCount, operations / (elapsedNanos / 1e9)));
+	}
+}
@@ -0,0 +1,56 @@
+package communication;
+
+import static org.junit.Assert.*;
+
+import java.nio.charset.StandardCharsets;
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Random;
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+public class RtemsTimeTests {
+
+	private static DateFormat utcFormat() {
+		DateFormat df = new SimpleDateFormat("yyyyMMddHHmmss");
+		df.setTimeZone(TimeZone.getTimeZone("UTC"));
+		return df;
+	}
+
+	@Test
+	public void testSameAsSimpleDateFormat() throws ParseException {
+		DateFormat df = utcFormat();
+		Random random = new Random(1);
+		byte[] bytes = new byte[RtemsTime.LENGTH + 2];
+		for (int i = 0; i < 10000; i++) {
+			// 1970 to 2100, whole seconds
+			long millis = (long) (random.nextDouble() * 4102444800L) * 1000;
+			String expected = df.format(millis);
+			assertEquals(expected, RtemsTime.format(millis));
+			assertEquals(millis, RtemsTime.parse(expected));
+
+			RtemsTime.format(millis, bytes, 1);
+			assertEquals(expected, new String(bytes, 1, RtemsTime.LENGTH, StandardCharsets.US_ASCII));
+			assertEquals(millis, RtemsTime.parse(bytes, 1));
+		}
+		assertEquals(df.parse("20160229235959").getTime(), RtemsTime.parse("20160229235959"));
+		assertEquals("20141103101500", RtemsTime.format(df.parse("20141103101500").getTime() + 999));
+	}
+
+	@Test
+	public void testInvalidTimestamps() {
+		String[] invalid = {"2014110310150", "201411031015000", "2014110310150x", "20141303101500",
+				"20150229101500", "20141100101500", "20141103241500", "20141103106000", null};
+		for (String text : invalid) {
+			try {
+				RtemsTime.parse(text);
+				fail(text);
+			} catch (IllegalArgumentException e) {
+				// expected
+			}
+		}
+		assertEquals(0, MessageParser.parseRTEMSTimestamp("not a time"));
+	}
+}
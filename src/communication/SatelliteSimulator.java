@@ -2,6 +2,7 @@ package communication;
 
 import gnu.io.NoSuchPortException;
 
+import java.nio.charset.StandardCharsets;
 import java.sql.Timestamp;
 import java.util.Date;
 import java.util.Random;
@@ -20,13 +21,22 @@ public class SatelliteSimulator {
     static Status ThermalStatus = Status.STANDBY;
     static Timestamp ts;
     static boolean keepWorking = true;
+    static boolean binaryFormat = false;
+    static int lossPercent = 0;
+    static RetransmitBuffer sentFrames = new RetransmitBuffer(RetransmitBuffer.DEFAULT_CAPACITY);
     static Scanner in;
     
 	public static void main(String[] args) {
 		in = new Scanner(System.in);
 		
-		try {
-			CommunicationManager.getInstance().connectSimulator("COM4");
+		// A port name such as "TCP:localhost:7000" talks to a ground station listening on TCP
+		String portName = args.length > 0 ? args[0] : "COM4";
+		binaryFormat = args.length > 1 && args[1].equalsIgnoreCase("binary");
+		// Percentage of frames dropped on purpose, to see them requested again by the ground station
+		lossPercent = args.length > 2 ? Integer.parseInt(args[2]) : 0;
+		CommunicationManager.getInstance().setRetransmitBuffer(sentFrames);
+		try {
+			CommunicationManager.getInstance().connectSimulator(portName);
 		} catch (Exception e) {
 			try {
 				CommunicationManager.getInstance().connectSimulator("LOCAL");
@@ -42,7 +52,8 @@ public class SatelliteSimulator {
 					+ "3. Send status to ground station\n"
 					+ "4. Send temperature packets to ground station\n"
 					+ "5. Send energy packets to ground station\n"
-					+ "6. Exit");
+					+ "6. Exit\n"
+					+ "7. Send " + (binaryFormat ? "XML" : "binary") + " packets from now on");
 			String command = in.next();
 			switch(command){
 			case "1":
@@ -64,6 +75,10 @@ public class SatelliteSimulator {
 				System.out.println("Bye-Bye");
 				keepWorking = false;
 				break;
+			case "7":
+				binaryFormat = !binaryFormat;
+				System.out.println("Sending " + (binaryFormat ? "binary" : "XML") + " packets");
+				break;
 			default:
 				System.out.println("Wrong input");
 				break;
@@ -73,40 +88,78 @@ public class SatelliteSimulator {
 	
 	private static void sendTemperatureToGround() {
 		ts = new Timestamp((new Date()).getTime());
-		String tss = MessageParser.toRTEMSTimestamp(ts);
-		String msg = CommunicationManager.msgStartDelimiter + "<?xml version=\"1.0\"?>"
-				+ "<packet><downstreamPacket>\n"
-				+ "<type>Temperature</type>\n"
-				+ "<TemperatureSample time=\"" + tss + "\">\n"
-				+ "<Sensor1 temp=\"" + randFloat(40.0f,45.0f) + "\"/>\n"
-				+ "<Sensor2 temp=\"" + randFloat(55.0f,60.0f) + "\"/>\n"
-				+ "<Sensor3 temp=\"" + randFloat(50.0f,55.0f) + "\"/>\n"
-				+ "</TemperatureSample>\n"
-				+ "</downstreamPacket>\n"
-				+ "</packet>" + CommunicationManager.msgStopDelimiter;	
-		CommunicationManager.getInstance().sendMessage(new Message(msg));
+		send(temperaturePacket(ts, randFloat(40.0f,45.0f), randFloat(55.0f,60.0f), randFloat(50.0f,55.0f), binaryFormat));
 	}
 	
 	private static void sendEnergyToGround() {
 		ts = new Timestamp((new Date()).getTime());
-		String tss = MessageParser.toRTEMSTimestamp(ts);
-		String msg = CommunicationManager.msgStartDelimiter + "<?xml version=\"1.0\"?>"
-				+ "<packet><downstreamPacket>\n"
-				+ "<type>Energy</type>\n"
-				+ "<EnergySample time=\"" + tss + "\">\n"
-				+ "<Battery1 voltage=\"" + randFloat(107.0f,112.0f) + "\" current=\"" + randFloat(1.0f,4.0f) + "\"/>\n"
-				+ "<Battery2 voltage=\"" + randFloat(107.0f,112.0f) + "\" current=\"" + randFloat(1.0f,4.0f) + "\"/>\n"
-				+ "<Battery3 voltage=\"" + randFloat(107.0f,112.0f) + "\" current=\"" + randFloat(1.0f,4.0f) + "\"/>\n"
-				+ "</EnergySample>\n"
-				+ "</downstreamPacket>\n"
-				+ "</packet>" + CommunicationManager.msgStopDelimiter;	
-		CommunicationManager.getInstance().sendMessage(new Message(msg));
+		send(energyPacket(ts, randFloat(107.0f,112.0f), randFloat(107.0f,112.0f), randFloat(107.0f,112.0f),
+				randFloat(1.0f,4.0f), randFloat(1.0f,4.0f), randFloat(1.0f,4.0f), binaryFormat));
 	}
 	
 	private static void sendStaticToGround() {
 		ts = new Timestamp((new Date()).getTime());
+		send(staticPacket(ts, binaryFormat));
+	}
+	
+	static byte[] temperaturePacket(Timestamp ts, float sensor1, float sensor2, float sensor3, boolean binary) {
+		DownlinkPacket packet = new DownlinkPacket();
+		packet.onTemperatureSample(sensor1, sensor2, sensor3, ts);
+		return samplesPacket(packet, binary);
+	}
+	
+	static byte[] energyPacket(Timestamp ts, float batt1V, float batt2V, float batt3V, float batt1C, float batt2C, float batt3C,
+			boolean binary) {
+		DownlinkPacket packet = new DownlinkPacket();
+		packet.onEnergySample(batt1V, batt2V, batt3V, batt1C, batt2C, batt3C, ts);
+		return samplesPacket(packet, binary);
+	}
+	
+	/**
+	 * All the samples in one downstream packet. An XML packet has a single type, so it only
+	 * holds the temperature samples if there are any, the energy samples otherwise.
+	 */
+	static byte[] samplesPacket(DownlinkPacket packet, boolean binary) {
+		if (binary) {
+			return BinaryPacketCodec.encode(packet);
+		}
+		StringBuilder msg = new StringBuilder("<?xml version=\"1.0\"?>").append("<packet><downstreamPacket>\n");
+		if (packet.getTemperatureCount() > 0) {
+			msg.append("<type>Temperature</type>\n");
+			for (DownlinkPacket.TemperatureSample sample : packet.getTemperatures()) {
+				msg.append("<TemperatureSample time=\"").append(MessageParser.toRTEMSTimestamp(sample.ts)).append("\">\n")
+						.append("<Sensor1 temp=\"").append(sample.sensor1).append("\"/>\n")
+						.append("<Sensor2 temp=\"").append(sample.sensor2).append("\"/>\n")
+						.append("<Sensor3 temp=\"").append(sample.sensor3).append("\"/>\n")
+						.append("</TemperatureSample>\n");
+			}
+		}
+		else {
+			msg.append("<type>Energy</type>\n");
+			for (DownlinkPacket.EnergySample sample : packet.getEnergies()) {
+				msg.append("<EnergySample time=\"").append(MessageParser.toRTEMSTimestamp(sample.ts)).append("\">\n")
+						.append("<Battery1 voltage=\"").append(sample.batt1V).append("\" current=\"").append(sample.batt1C).append("\"/>\n")
+						.append("<Battery2 voltage=\"").append(sample.batt2V).append("\" current=\"").append(sample.batt2C).append("\"/>\n")
+						.append("<Battery3 voltage=\"").append(sample.batt3V).append("\" current=\"").append(sample.batt3C).append("\"/>\n")
+						.append("</EnergySample>\n");
+			}
+		}
+		msg.append("</downstreamPacket>\n").append("</packet>");
+		return msg.toString().getBytes(StandardCharsets.UTF_8);
+	}
+	
+	/**
+	 * The state and module statuses the simulator currently has
+	 */
+	static byte[] staticPacket(Timestamp ts, boolean binary) {
+		if (binary) {
+			DownlinkPacket packet = new DownlinkPacket();
+			packet.onStaticPacket(MessageParser.stringToSatState(satelliteState), TempratureStatus, ts, EnergyStatus, ts,
+					SbandStatus, ts, PayloadStatus, ts, SolarPanelsStatus, ts, ThermalStatus, ts);
+			return BinaryPacketCodec.encode(packet);
+		}
 		String tss = MessageParser.toRTEMSTimestamp(ts);
-		String msg = CommunicationManager.msgStartDelimiter + "<?xml version=\"1.0\"?>"
+		String msg = "<?xml version=\"1.0\"?>"
 				+ "<packet><downstreamPacket>\n"
 				+ "<type>Static</type>\n"
 				+ "<state>" + satelliteState + "</state>\n"
@@ -129,8 +182,20 @@ public class SatelliteSimulator {
 				+ "<Info name='" + MessageParser.tagModulePayload + "' status='" + PayloadStatus.toString() + "'/>\n"
 				+ "</Module>\n"
 				+ "</downstreamPacket>\n"
-				+ "</packet>" + CommunicationManager.msgStopDelimiter;	
-		CommunicationManager.getInstance().sendMessage(new Message(msg));
+				+ "</packet>";	
+		return msg.getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Number the packet and send it, unless the simulated link loses it
+	 */
+	private static void send(byte[] packet) {
+		Message frame = sentFrames.frame(packet);
+		if (lossPercent > 0 && new Random().nextInt(100) < lossPercent) {
+			System.out.println("Frame lost on the simulated link");
+			return;
+		}
+		CommunicationManager.getInstance().sendMessage(frame);
 	}
 
 	public static void printComponents() {
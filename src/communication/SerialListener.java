@@ -1,19 +1,14 @@
 package communication;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-
 import gnu.io.SerialPortEvent;
 import gnu.io.SerialPortEventListener;
 
 public class SerialListener implements SerialPortEventListener {
 	
-	private InputStream in;
+	private SerialReader reader;
 	
-	public SerialListener (InputStream in) {
-		this.in = in;
+	public SerialListener (SerialReader reader) {
+		this.reader = reader;
 	}
 
 	/**
@@ -67,12 +62,7 @@ public class SerialListener implements SerialPortEventListener {
 	}
 
 	private void dataAvailable(SerialPortEvent event) {
-		CommunicationManager.getInstance().getInputLock().lock();
-		try {
-			CommunicationManager.getInstance().getInputDataAvailable().signal();
-		} finally {
-			CommunicationManager.getInstance().getInputLock().unlock();
-		}
+		reader.signalDataAvailable();
 	}
 
 	private void outputBufferEmpty(SerialPortEvent event) {
@@ -2,62 +2,79 @@ package communication;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Reads the serial input stream into the frame decoder.
+ * The SerialListener releases a permit for every DATA_AVAILABLE event; each wake-up drains
+ * everything the driver has buffered. An event that arrives while draining leaves its permit
+ * behind, so it is never lost, and a wake-up with nothing left to read costs nothing.
+ */
 public class SerialReader implements Runnable {
+	private static final long pollMillis = 100;
+
 	InputStream in;
-	private boolean isRunning;
+	private volatile boolean isRunning;
+	private FrameDecoder decoder;
+	private final Semaphore dataAvailable;
+	private volatile long wakeups;
+	private volatile long bytesRead;
     
-    public SerialReader ( InputStream in ) {
+    public SerialReader ( InputStream in, FrameDecoder.FrameListener listener ) {
         this.in = in;
         isRunning = true;
+        decoder = new FrameDecoder(FrameDecoder.DEFAULT_INITIAL_CAPACITY, FrameDecoder.DEFAULT_MAX_FRAME_SIZE, listener);
+        dataAvailable = new Semaphore(0);
+    }
+    
+    /**
+     * Called by the SerialListener when the driver has bytes
+     */
+    public void signalDataAvailable() {
+    	dataAvailable.release();
     }
     
     public void run () {  
-        int len = -1;      
-        Message msg = new Message();
-        StringBuffer remainder = new StringBuffer();
         while(isRunning) {
 	        try
 	        {
-	        	byte[] buffer = new byte[1024];
-	        	len = in.read(buffer, 0, buffer.length);
-	        	if (len > 0) {
-		        	System.out.println("DEBUG: Read " + len + " bytes");
-		        	StringBuffer str = new StringBuffer(new String(buffer, 0, len));
-		        	str = remainder.append(str);
-		        	
-		        	Pattern pattern = Pattern.compile(CommunicationManager.msgStartDelimiter 
-		        							+ "(.*?)" + CommunicationManager.msgStopDelimiter, Pattern.DOTALL);
-		        	Matcher matcher = pattern.matcher(str);
-		        	while (matcher.find())
-		        	{
-		        		String foundMsg = matcher.group(1);
-		        		StringBuffer trash = new StringBuffer();
-		        		matcher.appendReplacement(trash, foundMsg);
-		        	    System.out.println(foundMsg);
-		        	    CommunicationManager.getInstance().getMessageAcceptorQueue().put(new Message(foundMsg));
-		        	}
-		        	remainder = new StringBuffer();
-		        	matcher.appendTail(remainder);
-	        	}	
-		        CommunicationManager.getInstance().getInputLock().lock();
-		        CommunicationManager.getInstance().getInputDataAvailable().await();
+	        	drain();
+	        	// Polls too, in case the driver misses an event
+	        	dataAvailable.tryAcquire(pollMillis, TimeUnit.MILLISECONDS);
+	        	dataAvailable.drainPermits();
+	        	wakeups++;
 	        }
 	        catch ( IOException e ) {
 	            e.printStackTrace();
 	        } 
 	        catch (InterruptedException e) {
-				e.printStackTrace();
+	        	Thread.currentThread().interrupt();
+	        	return;
 			}
-	        finally {
-	        	CommunicationManager.getInstance().getInputLock().unlock();
-	        }
         }
     }
     
+    private void drain() throws IOException {
+    	while (isRunning && in.available() > 0) {
+    		int len = decoder.readFrom(in);
+    		if (len <= 0) {
+    			break;
+    		}
+    		bytesRead += len;
+    	}
+    }
+    
+    public long getWakeups() {
+    	return wakeups;
+    }
+    
+    public long getBytesRead() {
+    	return bytesRead;
+    }
+    
     public void stopThread() {
     	this.isRunning = false;
+    	signalDataAvailable();
     }
 }
@@ -0,0 +1,84 @@
+package communication;
+
+import gnu.io.CommPort;
+import gnu.io.CommPortIdentifier;
+import gnu.io.NoSuchPortException;
+import gnu.io.PortInUseException;
+import gnu.io.SerialPort;
+import gnu.io.UnsupportedCommOperationException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.TooManyListenersException;
+
+/**
+ * RXTX serial port at 19200 8N1
+ */
+public class SerialTransport implements Transport {
+	public static final int BAUD_RATE = 19200;
+
+	private final String portName;
+	private SerialPort serialPort;
+	private OutputStream out;
+	private SerialReader serialReader;
+
+	public SerialTransport(String portName) {
+		this.portName = portName;
+	}
+
+	@Override
+	public void open(FrameDecoder.FrameListener listener) throws IOException {
+		try {
+			CommPortIdentifier portIdentifier = CommPortIdentifier.getPortIdentifier(portName);
+			if (portIdentifier.isCurrentlyOwned()) {
+				throw new IOException("Port " + portName + " is currently in use");
+			}
+			CommPort commPort = portIdentifier.open(CommunicationManager.class.getName(), 2000);
+			if (!(commPort instanceof SerialPort)) {
+				commPort.close();
+				throw new IOException("Only serial ports are handled by this application");
+			}
+			serialPort = (SerialPort) commPort;
+			serialPort.setSerialPortParams(BAUD_RATE, SerialPort.DATABITS_8, SerialPort.STOPBITS_1, SerialPort.PARITY_NONE);
+			//serialPort.setFlowControlMode(serialPort.FLOWCONTROL_RTSCTS_IN);
+
+			InputStream in = serialPort.getInputStream();
+			out = serialPort.getOutputStream();
+
+			serialReader = new SerialReader(in, listener);
+			serialPort.addEventListener(new SerialListener(serialReader));
+			serialPort.notifyOnDataAvailable(true);
+
+			(new Thread(serialReader, "SerialReader")).start();
+		} catch (NoSuchPortException | PortInUseException | UnsupportedCommOperationException | TooManyListenersException e) {
+			throw new IOException("Could not open " + portName + ": " + e, e);
+		}
+	}
+
+	@Override
+	public void send(byte[] data, int offset, int length) throws IOException {
+		out.write(data, offset, length);
+	}
+
+	@Override
+	public void close() {
+		if (serialReader != null) {
+			serialReader.stopThread();
+		}
+		if (serialPort != null) {
+			serialPort.close();
+			serialPort = null;
+		}
+	}
+
+	@Override
+	public boolean isOpen() {
+		return serialPort != null;
+	}
+
+	@Override
+	public String toString() {
+		return "serial " + portName;
+	}
+}
@@ -1,39 +1,60 @@
 package communication;
 
 import java.io.IOException;
-import java.io.OutputStream;
 
+/**
+ * Writes the messages of the output queue to the transport, each followed by a newline,
+ * and tells the message's SendListener how it went
+ */
 public class SerialWriter implements Runnable {
-	OutputStream out;
-	private boolean isRunning;
+	private Transport transport;
+	private volatile boolean isRunning;
+	private volatile Thread thread;
     
-    public SerialWriter (OutputStream out)
+    public SerialWriter (Transport transport)
     {
-        this.out = out;
+        this.transport = transport;
         this.isRunning = true;
     }
 
 	public void run ()
     {
+		thread = Thread.currentThread();
 		while (isRunning) {
+			Message msg;
+			try {
+				msg = CommunicationManager.getInstance().getOutputQueue().take();
+			} catch (InterruptedException e) {
+				continue; // Stopped, or the loop takes again
+			}
 			try {
-				Message msg = CommunicationManager.getInstance().getOutputQueue().take();
 				//System.out.println("DEBUG: Sending message:\n" + msg.toString());
-				//this.out.write(CommunicationManager.startDelimiter);
-				this.out.write(msg.getBytes(), 0, msg.getBytes().length);
-				//this.out.write(CommunicationManager.stopDelimiter);
-				this.out.write(10);
+				byte[] bytes = msg.getBytes();
+				byte[] line = new byte[bytes.length + 1];
+				System.arraycopy(bytes, 0, line, 0, bytes.length);
+				line[bytes.length] = 10;
+				// One write per message, a datagram transport sends it as one packet
+				this.transport.send(line, 0, line.length);
 	        }
 	        catch ( IOException e )
 	        {
 	            e.printStackTrace();
-	        } catch (InterruptedException e) {
-				e.printStackTrace();
-			}
+	            msg.sendFailed(e);
+	            continue;
+	        }
+			msg.sent();
 		}       
     }
 	
+	/**
+	 * Also wakes the writer waiting for a message, so it doesn't take one from the shared
+	 * output queue after the next connection's writer started
+	 */
 	public void stopThread() {
     	this.isRunning = false;
+    	Thread writer = thread;
+    	if (writer != null) {
+    		writer.interrupt();
+    	}
     }
 }
@@ -0,0 +1,267 @@
+package communication;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.sql.Timestamp;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import logger.Loggers;
+import data.Satellite;
+import data.Status;
+
+/**
+ * Pull (StAX) parser for downstream packets.
+ * Reads the message bytes once, without building a DOM and without the whitespace
+ * stripping regex used by {@link Message#toDocument()}, and reports each sample
+ * to a {@link DownlinkHandler} as soon as its element is closed.
+ */
+public class StreamingMessageParser {
+	private static final XMLInputFactory factory = createFactory();
+
+	private final DownlinkHandler handler;
+
+	/**
+	 * Parser for {@link #parse(Message, DownlinkHandler)}, one can be shared by any number of threads
+	 */
+	public StreamingMessageParser () {
+		this(null);
+	}
+
+	public StreamingMessageParser (DownlinkHandler handler) {
+		this.handler = handler;
+	}
+
+	private static XMLInputFactory createFactory() {
+		XMLInputFactory f = XMLInputFactory.newInstance();
+		f.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		f.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		f.setProperty(XMLInputFactory.IS_COALESCING, true);
+		return f;
+	}
+
+	public void parse (Message msg) throws InvalidMessageException {
+		parse(msg, handler);
+	}
+
+	public void parse (InputStream in) throws InvalidMessageException {
+		parse(in, handler);
+	}
+
+	public void parse (Message msg, DownlinkHandler handler) throws InvalidMessageException {
+		byte[] bytes = msg.getBytes();
+		int offset = 0;
+		while (offset < bytes.length && bytes[offset] <= ' ') { //The XML prolog must be the first thing in the stream
+			offset++;
+		}
+		parse(new ByteArrayInputStream(bytes, offset, bytes.length - offset), handler);
+	}
+
+	public void parse (InputStream in, DownlinkHandler handler) throws InvalidMessageException {
+		XMLStreamReader reader = null;
+		try {
+			reader = factory.createXMLStreamReader(in, "UTF-8");
+			parsePacket(reader, handler);
+		} catch (XMLStreamException e) {
+			throw new InvalidMessageException("Malformed message: " + e.getMessage());
+		} finally {
+			if (reader != null) {
+				try {
+					reader.close();
+				} catch (XMLStreamException e) {
+					// nothing left to release
+				}
+			}
+		}
+	}
+
+	private void parsePacket (XMLStreamReader reader, DownlinkHandler handler) throws XMLStreamException, InvalidMessageException {
+		boolean inPacket = false;
+		String type = null;
+		while (reader.hasNext()) {
+			if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+				continue;
+			}
+			String name = reader.getLocalName();
+			if (name.equals(MessageParser.tagUpPacket)) {
+				return; // Ignore upstream packets sent from airborne control system simulator
+			}
+			else if (name.equals(MessageParser.tagDownPacket)) {
+				inPacket = true;
+			}
+			else if (inPacket && name.equals(MessageParser.tagType)) {
+				type = reader.getElementText().trim();
+				switch (type) {
+				case "Static":
+					parseStaticPacket(reader, handler);
+					return;
+				case "Temperature":
+					parseTemperaturePacket(reader, handler);
+					return;
+				case "Energy":
+					parseEnergyPacket(reader, handler);
+					return;
+				default:
+					Loggers.logError("Wrong packet type accepted");
+					throw new InvalidMessageException("Wrong packet type!");
+				}
+			}
+		}
+		if (!inPacket) {
+			Loggers.logError("There was no <downstreamPacket> element in the message");
+			throw new InvalidMessageException("No downstreamPacket Element!");
+		}
+		Loggers.logError("Wrong packet type accepted");
+		throw new InvalidMessageException("No type Element!");
+	}
+
+	private void parseStaticPacket (XMLStreamReader reader, DownlinkHandler handler) throws XMLStreamException {
+		Status defaultStatus = Status.UNKNOWN;
+		Satellite.SatelliteState satState = Satellite.SatelliteState.UNKNOWN;
+		Status energyStatus = defaultStatus;
+		Timestamp energyStatusTS = null;
+		Status temperatureStatus = defaultStatus;
+		Timestamp temperatureStatusTS = null;
+		Status payloadStatus = defaultStatus;
+		Timestamp payloadStatusTS = null;
+		Status sbandStatus = defaultStatus;
+		Timestamp sbandStatusTS = null;
+		Status solarPanelsStatus = defaultStatus;
+		Timestamp solarPanelsStatusTS = null;
+		Status thermalCtrlStatus = defaultStatus;
+		Timestamp thermalCtrlStatusTS = null;
+		String moduleTimestamp = null;
+
+		while (reader.hasNext()) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.END_ELEMENT && reader.getLocalName().equals(MessageParser.tagDownPacket)) {
+				break;
+			}
+			if (event != XMLStreamConstants.START_ELEMENT) {
+				continue;
+			}
+			String name = reader.getLocalName();
+			if (name.equals(MessageParser.tagState)) {
+				satState = MessageParser.stringToSatState(reader.getElementText().trim());
+			}
+			else if (name.equals(MessageParser.tagModule)) {
+				moduleTimestamp = reader.getAttributeValue(null, MessageParser.tagTime);
+			}
+			else if (name.equals(MessageParser.tagInfo)) {
+				String moduleName = reader.getAttributeValue(null, MessageParser.tagName);
+				Status moduleStatus = MessageParser.stringToStatus(reader.getAttributeValue(null, MessageParser.tagStatus));
+				switch (moduleName) {
+				case MessageParser.tagModuleTemperature:
+					temperatureStatus = moduleStatus;
+					temperatureStatusTS = new Timestamp(MessageParser.parseRTEMSTimestamp(moduleTimestamp));
+					break;
+				case MessageParser.tagModuleEnergy:
+					energyStatus = moduleStatus;
+					energyStatusTS = new Timestamp(MessageParser.parseRTEMSTimestamp(moduleTimestamp));
+					break;
+				case MessageParser.tagModulePayload:
+					payloadStatus = moduleStatus;
+					payloadStatusTS = new Timestamp(MessageParser.parseRTEMSTimestamp(moduleTimestamp));
+					break;
+				case MessageParser.tagModuleSband:
+					sbandStatus = moduleStatus;
+					sbandStatusTS = new Timestamp(MessageParser.parseRTEMSTimestamp(moduleTimestamp));
+					break;
+				case MessageParser.tagModuleSolarPanels:
+					solarPanelsStatus = moduleStatus;
+					solarPanelsStatusTS = new Timestamp(MessageParser.parseRTEMSTimestamp(moduleTimestamp));
+					break;
+				case MessageParser.tagModuleThermalCtrl:
+					thermalCtrlStatus = moduleStatus;
+					thermalCtrlStatusTS = new Timestamp(MessageParser.parseRTEMSTimestamp(moduleTimestamp));
+					break;
+				default:
+					break;
+				}
+			}
+		}
+		handler.onStaticPacket(satState, temperatureStatus, temperatureStatusTS, energyStatus, energyStatusTS,
+				sbandStatus, sbandStatusTS, payloadStatus, payloadStatusTS, solarPanelsStatus,
+				solarPanelsStatusTS, thermalCtrlStatus, thermalCtrlStatusTS);
+	}
+
+	private void parseTemperaturePacket (XMLStreamReader reader, DownlinkHandler handler) throws XMLStreamException {
+		float sensor1 = 0, sensor2 = 0, sensor3 = 0;
+		Timestamp ts = null;
+		while (reader.hasNext()) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				String name = reader.getLocalName();
+				switch (name) {
+				case MessageParser.tagTempSample:
+					sensor1 = sensor2 = sensor3 = 0;
+					ts = new Timestamp(MessageParser.parseRTEMSTimestamp(reader.getAttributeValue(null, MessageParser.tagTime)));
+					break;
+				case MessageParser.tagTempPacketItem1:
+					sensor1 = Float.parseFloat(reader.getAttributeValue(null, MessageParser.tagTemp));
+					break;
+				case MessageParser.tagTempPacketItem2:
+					sensor2 = Float.parseFloat(reader.getAttributeValue(null, MessageParser.tagTemp));
+					break;
+				case MessageParser.tagTempPacketItem3:
+					sensor3 = Float.parseFloat(reader.getAttributeValue(null, MessageParser.tagTemp));
+					break;
+				default:
+					break;
+				}
+			}
+			else if (event == XMLStreamConstants.END_ELEMENT) {
+				String name = reader.getLocalName();
+				if (name.equals(MessageParser.tagTempSample)) {
+					handler.onTemperatureSample(sensor1, sensor2, sensor3, ts);
+				}
+				else if (name.equals(MessageParser.tagDownPacket)) {
+					return;
+				}
+			}
+		}
+	}
+
+	private void parseEnergyPacket (XMLStreamReader reader, DownlinkHandler handler) throws XMLStreamException {
+		float batt1V = 0, batt2V = 0, batt3V = 0, batt1C = 0, batt2C = 0, batt3C = 0;
+		Timestamp ts = null;
+		while (reader.hasNext()) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				String name = reader.getLocalName();
+				switch (name) {
+				case MessageParser.tagEnergySample:
+					batt1V = batt2V = batt3V = batt1C = batt2C = batt3C = 0;
+					ts = new Timestamp(MessageParser.parseRTEMSTimestamp(reader.getAttributeValue(null, MessageParser.tagTime)));
+					break;
+				case MessageParser.tagEnergyPacketItem1:
+					batt1V = Float.parseFloat(reader.getAttributeValue(null, MessageParser.tagVoltage));
+					batt1C = Float.parseFloat(reader.getAttributeValue(null, MessageParser.tagCurrent));
+					break;
+				case MessageParser.tagEnergyPacketItem2:
+					batt2V = Float.parseFloat(reader.getAttributeValue(null, MessageParser.tagVoltage));
+					batt2C = Float.parseFloat(reader.getAttributeValue(null, MessageParser.tagCurrent));
+					break;
+				case MessageParser.tagEnergyPacketItem3:
+					batt3V = Float.parseFloat(reader.getAttributeValue(null, MessageParser.tagVoltage));
+					batt3C = Float.parseFloat(reader.getAttributeValue(null, MessageParser.tagCurrent));
+					break;
+				default:
+					break;
+				}
+			}
+			else if (event == XMLStreamConstants.END_ELEMENT) {
+				String name = reader.getLocalName();
+				if (name.equals(MessageParser.tagEnergySample)) {
+					handler.onEnergySample(batt1V, batt2V, batt3V, batt1C, batt2C, batt3C, ts);
+				}
+				else if (name.equals(MessageParser.tagDownPacket)) {
+					return;
+				}
+			}
+		}
+	}
+}
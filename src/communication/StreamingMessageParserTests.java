@@ -0,0 +1,122 @@
+package communication;
+
+import static org.junit.Assert.*;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import data.Satellite;
+import data.Satellite.SatelliteState;
+import data.Status;
+
+public class StreamingMessageParserTests {
+	private List<Object[]> parsed;
+	private RecordingParser domParser;
+	private StreamingMessageParser streamingParser;
+
+	private class RecordingParser extends MessageParser {
+		@Override
+		public void onStaticPacket(Satellite.SatelliteState satState, Status temperatureStatus, Timestamp temperatureStatusTS,
+									Status energyStatus, Timestamp energyStatusTS, Status sbandStatus, Timestamp sbandStatusTS,
+									Status payloadStatus, Timestamp payloadStatusTS, Status solarPanelsStatus, Timestamp solarPanelsStatusTS,
+									Status thermalCtrlStatus, Timestamp thermalCtrlStatusTS) {
+			parsed.add(new Object[]{satState, temperatureStatus, temperatureStatusTS, energyStatus, energyStatusTS, sbandStatus, sbandStatusTS,
+					payloadStatus, payloadStatusTS, solarPanelsStatus, solarPanelsStatusTS, thermalCtrlStatus, thermalCtrlStatusTS});
+		}
+
+		@Override
+		public void onTemperatureSample(float sensor1, float sensor2, float sensor3, Timestamp ts) {
+			parsed.add(new Object[]{sensor1, sensor2, sensor3, ts});
+		}
+
+		@Override
+		public void onEnergySample(float batt1V, float batt2V, float batt3V, float batt1C, float batt2C, float batt3C, Timestamp ts) {
+			parsed.add(new Object[]{batt1V, batt2V, batt3V, batt1C, batt2C, batt3C, ts});
+		}
+	}
+
+	private static final String staticPacket = "<?xml version=\"1.0\"?>"
+			+ "<packet><downstreamPacket>\n"
+			+ "<type>Static</type>\n"
+			+ "<state>SAFE_STATE</state>\n"
+			+ "<Module time=\"20141103101500\">\n<Info name='Energy' status='ON'/>\n</Module>\n"
+			+ "<Module time=\"20141103101501\">\n<Info name='Temperature' status='MALFUNCTION'/>\n</Module>\n"
+			+ "<Module time=\"20141103101502\">\n<Info name='Sband' status='STANDBY'/>\n</Module>\n"
+			+ "</downstreamPacket>\n"
+			+ "</packet>";
+
+	@Before
+	public void initObjects(){
+		parsed = new ArrayList<Object[]>();
+		domParser = new RecordingParser();
+		streamingParser = new StreamingMessageParser(domParser);
+	}
+
+	private List<Object[]> parseDom(String msg) throws InvalidMessageException {
+		parsed = new ArrayList<Object[]>();
+		domParser.parseMessage(new Message(msg).toDocument());
+		return parsed;
+	}
+
+	private List<Object[]> parseStreaming(String msg) throws InvalidMessageException {
+		parsed = new ArrayList<Object[]>();
+		streamingParser.parse(new Message(msg));
+		return parsed;
+	}
+
+	@Test
+	public void testTemperaturePacket() throws InvalidMessageException {
+		List<Object[]> samples = parseStreaming(ParserBenchmark.temperaturePacket(5));
+		assertEquals(5, samples.size());
+		assertArrayEquals(parseDom(ParserBenchmark.temperaturePacket(5)).toArray(), samples.toArray());
+	}
+
+	@Test
+	public void testEnergyPacket() throws InvalidMessageException {
+		List<Object[]> samples = parseStreaming(ParserBenchmark.energyPacket(7));
+		assertEquals(7, samples.size());
+		assertArrayEquals(parseDom(ParserBenchmark.energyPacket(7)).toArray(), samples.toArray());
+	}
+
+	@Test
+	public void testStaticPacket() throws InvalidMessageException {
+		List<Object[]> packets = parseStreaming(staticPacket);
+		assertEquals(1, packets.size());
+		assertEquals(SatelliteState.SAFE_MODE, packets.get(0)[0]);
+		assertEquals(Status.MALFUNCTION, packets.get(0)[1]);
+		assertEquals(Status.ON, packets.get(0)[3]);
+		assertEquals(Status.UNKNOWN, packets.get(0)[7]);
+		assertNull(packets.get(0)[8]);
+		assertArrayEquals(parseDom(staticPacket).get(0), packets.get(0));
+	}
+
+	@Test
+	public void testLeadingWhitespace() throws InvalidMessageException {
+		assertEquals(3, parseStreaming("\r\n  " + ParserBenchmark.energyPacket(3)).size());
+	}
+
+	@Test
+	public void testUpstreamPacketIgnored() throws InvalidMessageException {
+		String msg = "<?xml version=\"1.0\"?><packet><upstreamPacket time=\"0\"><mission time=\"0\" opcode=\"4\" priority=\"1\"/></upstreamPacket></packet>";
+		assertTrue(parseStreaming(msg).isEmpty());
+	}
+
+	@Test(expected = InvalidMessageException.class)
+	public void testNoDownstreamPacket() throws InvalidMessageException {
+		parseStreaming("<?xml version=\"1.0\"?><packet></packet>");
+	}
+
+	@Test(expected = InvalidMessageException.class)
+	public void testWrongType() throws InvalidMessageException {
+		parseStreaming("<?xml version=\"1.0\"?><packet><downstreamPacket><type>Photo</type></downstreamPacket></packet>");
+	}
+
+	@Test(expected = InvalidMessageException.class)
+	public void testMalformed() throws InvalidMessageException {
+		parseStreaming("<?xml version=\"1.0\"?><packet><downstreamPacket><type>Energy</type>");
+	}
+}
@@ -0,0 +1,317 @@
+package communication;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.UnresolvedAddressException;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Non-blocking TCP link run by one selector thread.
+ * Either connects to a network attached modem (reconnecting when the connection drops) or
+ * listens for connections, e.g. from the simulator in a loopback load test. Every connection
+ * has its own frame decoder; sent messages go to every open connection.
+ */
+public class TcpTransport implements Transport {
+	private static final int readBufferSize = 64 * 1024;
+	private static final long reconnectDelayMillis = TimeUnit.SECONDS.toMillis(1);
+
+	private final InetSocketAddress address;
+	private final boolean isServer;
+	private final Map<SocketChannel, Connection> connections;
+	private final ConcurrentLinkedQueue<Connection> pendingWrites;
+	private final ByteBuffer readBuffer;
+	private FrameDecoder.FrameListener listener;
+	private Selector selector;
+	private ServerSocketChannel serverChannel;
+	private long reconnectAt;
+	private Thread selectorThread;
+	private volatile boolean isOpen;
+
+	private class Connection {
+		final SocketChannel channel;
+		final FrameDecoder decoder;
+		final ArrayDeque<ByteBuffer> writes = new ArrayDeque<ByteBuffer>();
+
+		Connection(SocketChannel channel) {
+			this.channel = channel;
+			this.decoder = new FrameDecoder(FrameDecoder.DEFAULT_INITIAL_CAPACITY, FrameDecoder.DEFAULT_MAX_FRAME_SIZE, listener);
+		}
+	}
+
+	private TcpTransport(InetSocketAddress address, boolean isServer) {
+		this.address = address;
+		this.isServer = isServer;
+		this.connections = new ConcurrentHashMap<SocketChannel, Connection>();
+		this.pendingWrites = new ConcurrentLinkedQueue<Connection>();
+		this.readBuffer = ByteBuffer.allocate(readBufferSize);
+	}
+
+	public static TcpTransport connect(String host, int port) {
+		return new TcpTransport(new InetSocketAddress(host, port), false);
+	}
+
+	/**
+	 * @param port 0 for any free port, see {@link #getLocalPort()}
+	 */
+	public static TcpTransport listen(int port) {
+		return new TcpTransport(new InetSocketAddress(port), true);
+	}
+
+	@Override
+	public void open(FrameDecoder.FrameListener listener) throws IOException {
+		this.listener = listener;
+		selector = Selector.open();
+		if (isServer) {
+			serverChannel = ServerSocketChannel.open();
+			serverChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+			serverChannel.bind(address);
+			serverChannel.configureBlocking(false);
+			serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+		}
+		else {
+			try {
+				startConnect();
+			} catch (UnresolvedAddressException e) {
+				throw new IOException("Unknown host " + address.getHostString());
+			}
+		}
+		isOpen = true;
+		selectorThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				select();
+			}
+		}, "TcpTransport");
+		selectorThread.setDaemon(true);
+		selectorThread.start();
+	}
+
+	public int getLocalPort() {
+		try {
+			return ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+		} catch (IOException e) {
+			return -1;
+		}
+	}
+
+	public int getConnectionCount() {
+		return connections.size();
+	}
+
+	private void startConnect() throws IOException {
+		// The name is looked up again, the modem may not have been in the DNS the last time
+		InetSocketAddress target = address.isUnresolved()
+				? new InetSocketAddress(address.getHostString(), address.getPort()) : address;
+		SocketChannel channel = SocketChannel.open();
+		try {
+			channel.configureBlocking(false);
+			channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+			if (channel.connect(target)) {
+				addConnection(channel, null);
+			}
+			else {
+				channel.register(selector, SelectionKey.OP_CONNECT);
+			}
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Connect again, if that fails at once try again after the reconnect delay
+	 */
+	private void reconnect() {
+		reconnectAt = 0;
+		try {
+			startConnect();
+		} catch (IOException | UnresolvedAddressException e) {
+			System.err.println("TCP connection to " + address + " failed: " + e);
+			reconnectAt = System.currentTimeMillis() + reconnectDelayMillis;
+		}
+	}
+
+	/**
+	 * @param key the key the channel is already registered with, or null
+	 */
+	private void addConnection(SocketChannel channel, SelectionKey key) throws IOException {
+		Connection connection = new Connection(channel);
+		if (key == null) {
+			channel.register(selector, SelectionKey.OP_READ, connection);
+		}
+		else {
+			key.interestOps(SelectionKey.OP_READ);
+			key.attach(connection);
+		}
+		connections.put(channel, connection);
+		System.out.println("Connected to " + channel.getRemoteAddress());
+	}
+
+	private void select() {
+		try {
+			selectLoop();
+		} finally {
+			try {
+				for (SocketChannel channel : connections.keySet()) {
+					channel.close();
+				}
+				connections.clear();
+				if (serverChannel != null) {
+					serverChannel.close();
+				}
+				selector.close();
+			} catch (IOException e) {
+				System.err.println("Error closing the TCP transport: " + e.getMessage());
+			}
+		}
+	}
+
+	private void selectLoop() {
+		while (isOpen) {
+			try {
+				selector.select(reconnectDelayMillis);
+				if (!isOpen) {
+					break;
+				}
+				Connection pending;
+				while ((pending = pendingWrites.poll()) != null) {
+					SelectionKey key = pending.channel.keyFor(selector);
+					if (key != null && key.isValid()) {
+						key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+					}
+				}
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					handle(key);
+				}
+				if (!isServer && connections.isEmpty() && reconnectAt > 0 && System.currentTimeMillis() >= reconnectAt) {
+					reconnect();
+				}
+			} catch (IOException e) {
+				System.err.println("TCP transport error: " + e.getMessage());
+			}
+		}
+	}
+
+	private void handle(SelectionKey key) {
+		SocketChannel channel = null;
+		try {
+			if (key.isAcceptable()) {
+				channel = serverChannel.accept();
+				if (channel != null) {
+					channel.configureBlocking(false);
+					channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+					addConnection(channel, null);
+				}
+				return;
+			}
+			channel = (SocketChannel) key.channel();
+			if (key.isConnectable()) {
+				channel.finishConnect();
+				addConnection(channel, key);
+				return;
+			}
+			Connection connection = (Connection) key.attachment();
+			if (key.isReadable()) {
+				readBuffer.clear();
+				int len = channel.read(readBuffer);
+				if (len < 0) {
+					drop(key, channel, null);
+					return;
+				}
+				connection.decoder.decode(readBuffer.array(), 0, len);
+			}
+			if (key.isValid() && key.isWritable()) {
+				synchronized (connection.writes) {
+					while (!connection.writes.isEmpty()) {
+						ByteBuffer head = connection.writes.peek();
+						channel.write(head);
+						if (head.hasRemaining()) {
+							return; // Socket buffer is full, wait for the next OP_WRITE
+						}
+						connection.writes.poll();
+					}
+					key.interestOps(SelectionKey.OP_READ);
+				}
+			}
+		} catch (IOException e) {
+			if (key.channel() == serverChannel) {
+				System.err.println("Error accepting a TCP connection: " + e.getMessage());
+				return;
+			}
+			drop(key, channel, e);
+		}
+	}
+
+	private void drop(SelectionKey key, SocketChannel channel, IOException e) {
+		key.cancel();
+		if (channel != null) {
+			connections.remove(channel);
+			try {
+				channel.close();
+			} catch (IOException ignored) {
+			}
+		}
+		if (e != null) {
+			System.err.println("TCP connection to " + address + " lost: " + e.getMessage());
+		}
+		if (!isServer && connections.isEmpty()) {
+			reconnectAt = System.currentTimeMillis() + reconnectDelayMillis;
+		}
+	}
+
+	@Override
+	public void send(byte[] data, int offset, int length) throws IOException {
+		if (connections.isEmpty()) {
+			throw new IOException("No TCP connection to " + address);
+		}
+		for (Connection connection : connections.values()) {
+			ByteBuffer copy = ByteBuffer.allocate(length);
+			copy.put(data, offset, length);
+			copy.flip();
+			synchronized (connection.writes) {
+				connection.writes.add(copy);
+			}
+			pendingWrites.add(connection);
+		}
+		selector.wakeup();
+	}
+
+	@Override
+	public void close() {
+		isOpen = false;
+		if (selector == null) {
+			return;
+		}
+		// The selector thread closes the channels on its way out
+		selector.wakeup();
+		try {
+			selectorThread.join(reconnectDelayMillis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Override
+	public boolean isOpen() {
+		return isOpen;
+	}
+
+	@Override
+	public String toString() {
+		return (isServer ? "TCP listening on " : "TCP to ") + address;
+	}
+}
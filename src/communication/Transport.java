@@ -0,0 +1,22 @@
+package communication;
+
+import java.io.IOException;
+
+/**
+ * A link to the satellite (or to the ground station, for the simulator).
+ * Received bytes go through a {@link FrameDecoder} and every complete frame is handed to the
+ * listener, so all transports feed the same ingest pipeline. Outgoing messages are written by
+ * the {@link SerialWriter} through {@link #send(byte[], int, int)}.
+ */
+public interface Transport {
+	/**
+	 * Connect (or start listening) and start delivering frames
+	 */
+	public void open(FrameDecoder.FrameListener listener) throws IOException;
+
+	public void send(byte[] data, int offset, int length) throws IOException;
+
+	public void close();
+
+	public boolean isOpen();
+}
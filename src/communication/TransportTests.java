@@ -0,0 +1,76 @@
+package communication;
+
+import static org.junit.Assert.*;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class TransportTests {
+	private static final byte[] frame = "\u0002<packet/>\u0004".getBytes();
+
+	private static class Collector implements FrameDecoder.FrameListener {
+		final BlockingQueue<String> frames = new LinkedBlockingQueue<String>();
+
+		@Override
+		public void onFrame(byte[] buffer, int offset, int length) {
+			frames.add(new String(buffer, offset, length));
+		}
+
+		String next() throws InterruptedException {
+			return frames.poll(5, TimeUnit.SECONDS);
+		}
+	}
+
+	private void assertRoundTrip(Transport a, Collector atA, Transport b, Collector atB) throws Exception {
+		b.send(frame, 0, frame.length);
+		assertEquals("<packet/>", atA.next());
+		a.send(frame, 0, 5);
+		a.send(frame, 5, frame.length - 5);
+		assertEquals("<packet/>", atB.next());
+	}
+
+	@Test
+	public void testPipe() throws Exception {
+		PipeTransport[] pair = PipeTransport.createPair();
+		Collector station = new Collector();
+		Collector satellite = new Collector();
+		pair[0].open(station);
+		pair[1].open(satellite);
+		assertRoundTrip(pair[0], station, pair[1], satellite);
+		pair[0].close();
+		pair[1].close();
+	}
+
+	@Test
+	public void testTcp() throws Exception {
+		TcpTransport server = TcpTransport.listen(0);
+		Collector station = new Collector();
+		server.open(station);
+		TcpTransport client = TcpTransport.connect("localhost", server.getLocalPort());
+		Collector satellite = new Collector();
+		client.open(satellite);
+		for (int i = 0; i < 100 && (server.getConnectionCount() == 0 || client.getConnectionCount() == 0); i++) {
+			Thread.sleep(20);
+		}
+		assertRoundTrip(server, station, client, satellite);
+		client.close();
+		server.close();
+	}
+
+	@Test
+	public void testUdp() throws Exception {
+		UdpTransport station = new UdpTransport(0, null);
+		Collector atStation = new Collector();
+		station.open(atStation);
+		UdpTransport satellite = new UdpTransport(0, new InetSocketAddress("localhost", station.getLocalPort()));
+		Collector atSatellite = new Collector();
+		satellite.open(atSatellite);
+		assertRoundTrip(station, atStation, satellite, atSatellite);
+		satellite.close();
+		station.close();
+	}
+}
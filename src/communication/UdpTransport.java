@@ -0,0 +1,104 @@
+package communication;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+
+/**
+ * Frames in UDP datagrams. Messages are sent to the configured remote address, or when there is
+ * none, to whoever sent the last datagram.
+ */
+public class UdpTransport implements Transport {
+	private static final int maxDatagramSize = 65507;
+
+	private final InetSocketAddress localAddress;
+	private volatile SocketAddress remoteAddress;
+	private DatagramChannel channel;
+	private volatile boolean isOpen;
+
+	/**
+	 * @param localPort 0 for any free port, see {@link #getLocalPort()}
+	 * @param remoteAddress null to answer the last sender
+	 */
+	public UdpTransport(int localPort, InetSocketAddress remoteAddress) {
+		this.localAddress = new InetSocketAddress(localPort);
+		this.remoteAddress = remoteAddress;
+	}
+
+	@Override
+	public void open(FrameDecoder.FrameListener listener) throws IOException {
+		final FrameDecoder decoder = new FrameDecoder(FrameDecoder.DEFAULT_INITIAL_CAPACITY,
+				FrameDecoder.DEFAULT_MAX_FRAME_SIZE, listener);
+		final boolean answerSender = remoteAddress == null;
+		channel = DatagramChannel.open();
+		channel.bind(localAddress);
+		isOpen = true;
+		Thread receiverThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				ByteBuffer datagram = ByteBuffer.allocate(maxDatagramSize);
+				while (isOpen) {
+					try {
+						datagram.clear();
+						SocketAddress sender = channel.receive(datagram);
+						if (answerSender) {
+							remoteAddress = sender;
+						}
+						decoder.decode(datagram.array(), 0, datagram.position());
+					} catch (ClosedChannelException e) {
+						break;
+					} catch (IOException e) {
+						System.err.println("UDP transport error: " + e.getMessage());
+					}
+				}
+			}
+		}, "UdpTransport");
+		receiverThread.setDaemon(true);
+		receiverThread.start();
+	}
+
+	public int getLocalPort() {
+		try {
+			return ((InetSocketAddress) channel.getLocalAddress()).getPort();
+		} catch (IOException e) {
+			return -1;
+		}
+	}
+
+	@Override
+	public void send(byte[] data, int offset, int length) throws IOException {
+		SocketAddress remote = remoteAddress;
+		if (remote == null) {
+			throw new IOException("No UDP peer to send to yet");
+		}
+		if (length > maxDatagramSize) {
+			throw new IOException("Message of " + length + " bytes doesn't fit a datagram");
+		}
+		channel.send(ByteBuffer.wrap(data, offset, length), remote);
+	}
+
+	@Override
+	public void close() {
+		isOpen = false;
+		try {
+			if (channel != null) {
+				channel.close();
+			}
+		} catch (IOException e) {
+			System.err.println("Error closing the UDP transport: " + e.getMessage());
+		}
+	}
+
+	@Override
+	public boolean isOpen() {
+		return isOpen;
+	}
+
+	@Override
+	public String toString() {
+		return "UDP on " + localAddress + (remoteAddress != null ? " to " + remoteAddress : "");
+	}
+}
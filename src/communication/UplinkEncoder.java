@@ -0,0 +1,114 @@
+package communication;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+
+import data.Mission;
+
+/**
+ * Writes uplink packets straight into one reusable buffer, in time linear in the number of missions.
+ * Timestamps are written with {@link RtemsTime}, without a date formatter.
+ */
+public class UplinkEncoder {
+	private static final byte[] header = bytes("<?xml version=\"1.0\"?><packet><upstreamPacket time=\"");
+	private static final byte[] headerEnd = bytes("\">");
+	private static final byte[] missionStart = bytes("<mission time=\"");
+	private static final byte[] opcode = bytes("\" opcode=\"");
+	private static final byte[] priority = bytes("\" priority=\"");
+	private static final byte[] missionEnd = bytes("\"/>");
+	private static final byte[] footer = bytes("</upstreamPacket></packet>");
+	/** Bytes of a packet without its missions */
+	public static final int PACKET_OVERHEAD = header.length + RtemsTime.LENGTH + headerEnd.length + footer.length;
+
+	private ByteBuffer buffer = ByteBuffer.allocate(1024);
+
+	private static byte[] bytes(String s) {
+		return s.getBytes(StandardCharsets.US_ASCII);
+	}
+
+	/**
+	 * @param now epoch ms of the packet time
+	 * @return the packet, a new array the caller owns
+	 */
+	public synchronized byte[] encode(Collection<Mission> missions, long now) {
+		buffer.clear();
+		ensureRemaining(PACKET_OVERHEAD + missions.size() * maxMissionSize());
+		buffer.put(header);
+		putTimestamp(now);
+		buffer.put(headerEnd);
+		for (Mission mission : missions) {
+			buffer.put(missionStart);
+			if (mission.getExecutionTime() == null) {
+				buffer.put((byte) '0');
+			}
+			else {
+				putTimestamp(mission.getExecutionTime().getTime());
+			}
+			buffer.put(opcode);
+			putInt(mission.getCommand().getValue());
+			buffer.put(priority);
+			putInt(mission.getPriority());
+			buffer.put(missionEnd);
+		}
+		buffer.put(footer);
+		return Arrays.copyOf(buffer.array(), buffer.position());
+	}
+
+	/**
+	 * @return bytes the mission takes in a packet
+	 */
+	public static int missionSize(Mission mission) {
+		return missionStart.length + (mission.getExecutionTime() == null ? 1 : RtemsTime.LENGTH) + opcode.length
+				+ digits(mission.getCommand().getValue()) + priority.length + digits(mission.getPriority()) + missionEnd.length;
+	}
+
+	private static int maxMissionSize() {
+		return missionStart.length + RtemsTime.LENGTH + opcode.length + 11 + priority.length + 11 + missionEnd.length;
+	}
+
+	private static int digits(long value) {
+		if (value < 0) {
+			return 1 + digits(-value);
+		}
+		int digits = 1;
+		while (value >= 10) {
+			value /= 10;
+			digits++;
+		}
+		return digits;
+	}
+
+	private void ensureRemaining(int bytes) {
+		if (buffer.remaining() < bytes) {
+			ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+			buffer.flip();
+			larger.put(buffer);
+			buffer = larger;
+		}
+	}
+
+	private void putTimestamp(long millis) {
+		RtemsTime.format(millis, buffer.array(), buffer.position());
+		buffer.position(buffer.position() + RtemsTime.LENGTH);
+	}
+
+	private void putInt(long value) {
+		if (value < 0) {
+			buffer.put((byte) '-');
+			value = -value;
+		}
+		int start = buffer.position();
+		do {
+			buffer.put((byte) ('0' + value % 10));
+			value /= 10;
+		} while (value > 0);
+		// Digits were written backwards
+		for (int i = start, j = buffer.position() - 1; i < j; i++, j--) {
+			byte b = buffer.get(i);
+			buffer.put(i, buffer.get(j));
+			buffer.put(j, b);
+		}
+	}
+}
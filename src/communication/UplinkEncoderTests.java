@@ -0,0 +1,56 @@
+package communication;
+
+import static org.junit.Assert.*;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import data.Command;
+import data.Mission;
+
+public class UplinkEncoderTests {
+
+	/**
+	 * The packet as sendMissions used to build it
+	 */
+	private static String expectedPacket(List<Mission> missions, long now) {
+		StringBuilder sb = new StringBuilder("<?xml version=\"1.0\"?><packet><upstreamPacket time=\"")
+				.append(MessageParser.toRTEMSTimestamp(new Timestamp(now))).append("\">");
+		for (Mission mission : missions) {
+			sb.append("<mission time=\"")
+					.append(mission.getExecutionTime() == null ? "0" : MessageParser.toRTEMSTimestamp(mission.getExecutionTime()))
+					.append("\" opcode=\"").append(mission.getCommand().getValue())
+					.append("\" priority=\"").append(mission.getPriority()).append("\"/>");
+		}
+		return sb.append("</upstreamPacket></packet>").toString();
+	}
+
+	@Test
+	public void testSameAsStringPacket() {
+		long now = 1414998959999L;
+		List<Mission> missions = new ArrayList<Mission>();
+		missions.add(new Mission(null, Command.MOVE_TO_SAFE, 1));
+		Command[] commands = Command.values();
+		for (int i = 0; i < 200; i++) {
+			// Every 17 minutes and 13 seconds, across hours and days
+			missions.add(new Mission(new Timestamp(now + i * 1033000L), commands[i % commands.length], i % 12));
+		}
+		UplinkEncoder encoder = new UplinkEncoder();
+		byte[] packet = encoder.encode(missions, now);
+		assertEquals(expectedPacket(missions, now), new String(packet, StandardCharsets.US_ASCII));
+
+		int size = UplinkEncoder.PACKET_OVERHEAD;
+		for (Mission mission : missions) {
+			size += UplinkEncoder.missionSize(mission);
+		}
+		assertEquals(packet.length, size);
+
+		// The buffer is reused
+		List<Mission> one = missions.subList(5, 6);
+		assertEquals(expectedPacket(one, now - 86400000), new String(encoder.encode(one, now - 86400000), StandardCharsets.US_ASCII));
+	}
+}
@@ -0,0 +1,199 @@
+package communication;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import logger.Loggers;
+import orbit.OrbitManager;
+import orbit.PassListener;
+import data.Mission;
+
+/**
+ * Holds the missions until the satellite is in a pass and uplinks them in priority order.
+ * Each uplink packet carries as many missions as fit both the packet size and what the link can
+ * still send before the pass ends. Missions that do not fit wait for the next pass.
+ * Priority 1 is the most urgent, then the earliest execution time (none means now) goes first.
+ */
+public class UplinkScheduler implements Runnable, PassListener {
+	/** 19200 baud, 10 bits per byte */
+	public static final int DEFAULT_BYTES_PER_SECOND = 1920;
+	public static final int DEFAULT_MAX_PACKET_BYTES = 1024;
+	/** The end of the pass is left unused, the satellite may already be low on the horizon */
+	public static final long DEFAULT_GUARD_MILLIS = 10000;
+	private static final long pollMillis = 1000;
+
+	static final Comparator<Mission> missionOrder = new Comparator<Mission>() {
+		@Override
+		public int compare(Mission a, Mission b) {
+			if (a.getPriority() != b.getPriority()) {
+				return a.getPriority() < b.getPriority() ? -1 : 1;
+			}
+			int byExecution = compareTimes(a.getExecutionTime(), b.getExecutionTime());
+			return byExecution != 0 ? byExecution : compareTimes(a.getCreationTimestamp(), b.getCreationTimestamp());
+		}
+
+		private int compareTimes(Timestamp a, Timestamp b) {
+			long ta = a == null ? Long.MIN_VALUE : a.getTime();
+			long tb = b == null ? Long.MIN_VALUE : b.getTime();
+			return ta < tb ? -1 : (ta == tb ? 0 : 1);
+		}
+	};
+
+	private final PriorityQueue<Mission> pending = new PriorityQueue<Mission>(16, missionOrder);
+	private final int bytesPerSecond;
+	private final int maxPacketBytes;
+	private final long guardMillis;
+	private long linkBusyUntil = 0;
+	/** Epoch ms when the current pass ends, 0 out of a pass */
+	private long passEnd = 0;
+	private long sentMissions = 0;
+	private long sentPackets = 0;
+	private volatile boolean isRunning;
+
+	public UplinkScheduler() {
+		this(DEFAULT_BYTES_PER_SECOND, DEFAULT_MAX_PACKET_BYTES, DEFAULT_GUARD_MILLIS);
+	}
+
+	public UplinkScheduler(int bytesPerSecond, int maxPacketBytes, long guardMillis) {
+		this.bytesPerSecond = bytesPerSecond;
+		this.maxPacketBytes = maxPacketBytes;
+		this.guardMillis = guardMillis;
+	}
+
+	public synchronized void submit(Mission mission) {
+		pending.add(mission);
+		notifyAll();
+	}
+
+	public synchronized void submitAll(Collection<Mission> missions) {
+		pending.addAll(missions);
+		notifyAll();
+	}
+
+	/**
+	 * @return false if the mission was already sent or never submitted
+	 */
+	public synchronized boolean cancel(Mission mission) {
+		return pending.remove(mission);
+	}
+
+	public synchronized int getPendingCount() {
+		return pending.size();
+	}
+
+	public synchronized List<Mission> getPending() {
+		List<Mission> missions = new ArrayList<Mission>(pending);
+		Collections.sort(missions, missionOrder);
+		return missions;
+	}
+
+	/**
+	 * Take the missions of the next uplink packet
+	 * @param now epoch ms
+	 * @param passEnd epoch ms when the pass ends
+	 * @return empty if nothing is pending or nothing fits before the pass ends
+	 */
+	synchronized List<Mission> nextPacket(long now, long passEnd) {
+		long start = Math.max(now, linkBusyUntil);
+		long budget = Math.min(maxPacketBytes, (passEnd - guardMillis - start) * bytesPerSecond / 1000);
+		int size = UplinkEncoder.PACKET_OVERHEAD;
+		List<Mission> packet = new ArrayList<Mission>();
+		while (!pending.isEmpty()) {
+			int missionSize = UplinkEncoder.missionSize(pending.peek());
+			if (size + missionSize > budget) {
+				break;
+			}
+			packet.add(pending.poll());
+			size += missionSize;
+		}
+		if (!packet.isEmpty()) {
+			linkBusyUntil = start + size * 1000L / bytesPerSecond;
+			sentMissions += packet.size();
+			sentPackets++;
+		}
+		return packet;
+	}
+
+	/**
+	 * Sleeps until a pass starts or a mission is submitted during a pass
+	 */
+	@Override
+	public void run() {
+		while (isRunning) {
+			long end;
+			synchronized (this) {
+				try {
+					while (isRunning && (passEnd == 0 || pending.isEmpty())) {
+						wait();
+					}
+				} catch (InterruptedException e) {
+					return;
+				}
+				end = passEnd;
+			}
+			List<Mission> packet;
+			while (isRunning && !(packet = nextPacket(System.currentTimeMillis(), end)).isEmpty()) {
+				CommunicationManager.getInstance().sendMissions(packet);
+			}
+			// The rest did not fit yet, the link may be busy
+			synchronized (this) {
+				try {
+					wait(pollMillis);
+				} catch (InterruptedException e) {
+					return;
+				}
+			}
+		}
+	}
+
+	@Override
+	public synchronized void onPassStart(long passEndMillis) {
+		linkBusyUntil = 0;
+		passEnd = passEndMillis;
+		Loggers.logAction("Pass started, {} missions waiting for the uplink", pending.size());
+		notifyAll();
+	}
+
+	@Override
+	public synchronized void onPassEnd() {
+		passEnd = 0;
+		if (!pending.isEmpty()) {
+			Loggers.logAction("Pass ended, {} missions left for the next pass", pending.size());
+		}
+	}
+
+	public synchronized void start() {
+		if (isRunning) {
+			return;
+		}
+		isRunning = true;
+		OrbitManager orbit = OrbitManager.getInstance();
+		orbit.addPassListener(this);
+		// Started during a pass, its start was told before we listened
+		if (orbit.isPassPhase()) {
+			passEnd = orbit.getPassState().now() + orbit.timeToPassEnd();
+		}
+		Thread thread = new Thread(this, "UplinkScheduler");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	public synchronized void stopThread() {
+		isRunning = false;
+		OrbitManager.getInstance().removePassListener(this);
+		notifyAll();
+	}
+
+	public synchronized long getSentMissions() {
+		return sentMissions;
+	}
+
+	public synchronized long getSentPackets() {
+		return sentPackets;
+	}
+}
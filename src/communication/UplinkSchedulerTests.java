@@ -0,0 +1,65 @@
+package communication;
+
+import static org.junit.Assert.*;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import data.Command;
+import data.Mission;
+
+public class UplinkSchedulerTests {
+	private static final long now = 1414998900000L;
+	private UplinkScheduler scheduler;
+
+	@Before
+	public void initObjects() {
+		// 100 bytes a second, no guard time
+		scheduler = new UplinkScheduler(100, 400, 0);
+	}
+
+	@Test
+	public void testPriorityOrder() {
+		Mission later = new Mission(new Timestamp(now + 60000), Command.FORMAT_TEMP, 1);
+		Mission urgent = new Mission(null, Command.MOVE_TO_SAFE, 1);
+		Mission routine = new Mission(null, Command.SBAND_ON, 3);
+		scheduler.submit(routine);
+		scheduler.submit(later);
+		scheduler.submit(urgent);
+
+		List<Mission> packet = scheduler.nextPacket(now, now + 600000);
+		assertEquals(3, packet.size());
+		assertSame(urgent, packet.get(0));
+		assertSame(later, packet.get(1));
+		assertSame(routine, packet.get(2));
+		assertEquals(0, scheduler.getPendingCount());
+	}
+
+	@Test
+	public void testPacketsFitThePass() {
+		for (int i = 0; i < 40; i++) {
+			scheduler.submit(new Mission(null, Command.FORMAT_MIXED, 2));
+		}
+		int missionSize = UplinkEncoder.missionSize(new Mission(null, Command.FORMAT_MIXED, 2));
+		int sent = 0;
+		List<Mission> packet;
+		// 20 seconds of pass, 2000 bytes
+		while (!(packet = scheduler.nextPacket(now, now + 20000)).isEmpty()) {
+			assertTrue(packet.size() * missionSize < 400);
+			sent += packet.size();
+		}
+		assertTrue(sent > 0);
+		assertTrue(sent * missionSize <= 2000);
+		assertEquals(40 - sent, scheduler.getPendingCount());
+
+		// The next pass takes the rest
+		scheduler.onPassStart(now + 3600000);
+		while (!(packet = scheduler.nextPacket(now + 3000000, now + 3600000)).isEmpty()) {
+			sent += packet.size();
+		}
+		assertEquals(40, sent);
+	}
+}
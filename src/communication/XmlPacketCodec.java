@@ -0,0 +1,38 @@
+package communication;
+
+import org.w3c.dom.Document;
+
+/**
+ * The original XML packets, parsed with the parser chosen in the CommunicationManager
+ */
+public class XmlPacketCodec implements PacketCodec {
+	/** Both only hold their configuration, the handler is given with each message */
+	private final StreamingMessageParser streamingParser = new StreamingMessageParser();
+	private final MessageParser documentParser = new MessageParser();
+
+	@Override
+	public byte getHeaderByte() {
+		return '<';
+	}
+
+	@Override
+	public String getName() {
+		return "XML";
+	}
+
+	@Override
+	public void decode(Message m, DownlinkHandler handler) throws InvalidMessageException {
+		if (CommunicationManager.getInstance().isStreamingParser()) {
+			streamingParser.parse(m, handler);
+			return;
+		}
+		Document msg = m.toDocument();
+		if (msg == null) {
+			throw new InvalidMessageException("Malformed message");
+		}
+		if (msg.getElementsByTagName(MessageParser.tagUpPacket).getLength() != 0) {
+			return; // Ignore upstream packets sent from airborne control system simulator
+		}
+		documentParser.parseMessage(msg, handler);
+	}
+}
@@ -0,0 +1,40 @@
+package data;
+
+import java.sql.Timestamp;
+
+import com.j256.ormlite.field.DatabaseField;
+import com.j256.ormlite.table.DatabaseTable;
+
+import persistency.TimestampLongType;
+
+/**
+ * The single row of the current_state table, pointing at the newest Satellite status.
+ * Updated in place together with every inserted status, so startup reads one row by key.
+ */
+@DatabaseTable(tableName="current_state")
+public class CurrentState {
+	public static final int ROW_ID = 1;
+
+	@DatabaseField(id = true)
+	private int id;
+	@DatabaseField
+	private long satelliteId;
+	@DatabaseField(persisterClass = TimestampLongType.class)
+	private Timestamp updated;
+
+	public CurrentState(){}
+
+	public CurrentState(long satelliteId){
+		this.id = ROW_ID;
+		this.satelliteId = satelliteId;
+		this.updated = new Timestamp(System.currentTimeMillis());
+	}
+
+	public long getSatelliteId(){
+		return satelliteId;
+	}
+
+	public Timestamp getUpdated(){
+		return updated;
+	}
+}
@@ -7,35 +7,74 @@ import gnu.io.UnsupportedCommOperationException;
 import java.io.IOException;
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.TooManyListenersException;
-
-import com.j256.ormlite.field.DatabaseField;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
 
 import Utils.GuiManager;
 import communication.CommunicationManager;
 import data.Satellite.SatelliteState;
 import javafx.util.Pair;
 import logger.Loggers;
+import persistency.TelemetryWriter;
 import persistency.dbConnection;
 
 public class DataManager {
 	private static final String comPort = "COM2";
+	private static final int writeQueueCapacity = 10000;
+	private static final int writeBatchSize = 500;
+	private static final long writeMaxDelayMillis = 250;
+	private static final int cacheCapacity = 65536;
+	private static final long cacheWindowMillis = 6 * 60 * 60 * 1000L;
 	private dbConnection db;
+	private TelemetryWriter writer;
+	private TelemetryRingBuffer temperatureCache;
+	private TelemetryRingBuffer energyCache;
+	private long cacheGeneration;
+	private final AtomicLong cacheHits = new AtomicLong();
+	private final AtomicLong cacheMisses = new AtomicLong();
 	private CommunicationManager comm;
 	
 	private static DataManager instance = null;
 	
-	private Satellite latestSatData;
+	/** Swapped whole on every status, readers never see a status being built */
+	private final AtomicReference<Satellite> latestSatData = new AtomicReference<Satellite>();
+	/** Keeps current_state writes in the order of the published statuses */
+	private final Object currentStateLock = new Object();
 	private boolean testMode;
 	
 	private DataManager() {
 		db = dbConnection.getdbCon();
 		comm = CommunicationManager.getInstance();
 		db.createTables();
-		latestSatData=db.getLatestSatelliteData();
+		latestSatData.set(db.getLatestSatelliteData());
 		testMode = false;
+		warmCaches();
+		writer = new TelemetryWriter(db, writeQueueCapacity, writeBatchSize, writeMaxDelayMillis);
+		Thread writerThread = new Thread(writer, "TelemetryWriter");
+		writerThread.setDaemon(true);
+		writerThread.start();
+		if (db.needsRollupBackfill()){
+			Thread backfill = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					Loggers.logAction("Building telemetry rollups for the stored samples");
+					db.backfillRollups();
+				}
+			}, "RollupBackfill");
+			backfill.setDaemon(true);
+			backfill.start();
+		}
+		Runtime.getRuntime().addShutdownHook(new Thread() {
+			@Override
+			public void run() {
+				writer.flush();
+			}
+		});
 			try {
 				comm.connect(comPort);
 			} catch (NoSuchPortException | PortInUseException
@@ -55,21 +94,198 @@ public class DataManager {
 	public void setTestMode(boolean mode){
 		testMode = mode;
 	}
-	public void setLatestSatData(Satellite sat){
-		this.latestSatData=sat;
+	
+	public boolean isTestMode(){
+		return testMode;
+	}
+	/**
+	 * Publish the status unless a newer one (by {@link Satellite#getStatusTime()}) already was,
+	 * e.g. by another persist worker or before a late retransmission arrived. current_state
+	 * is only moved to a published status.
+	 */
+	public void setLatestSatData(final Satellite sat){
+		Satellite latest = latestSatData.updateAndGet(new UnaryOperator<Satellite>() {
+			@Override
+			public Satellite apply(Satellite current) {
+				return current == null || !sat.getStatusTime().before(current.getStatusTime()) ? sat : current;
+			}
+		});
+		if (latest != sat){
+			return;
+		}
+		synchronized (currentStateLock) {
+			// A status published meanwhile moves current_state itself
+			if (latestSatData.get() == sat)
+				db.setCurrentState(sat);
+		}
 		if (testMode==false){
 			GuiManager.getInstance().refreshSatelliteController(sat);
 		}
 	}
 	
+	/**
+	 * Ranges inside the recent telemetry window are answered from memory,
+	 * older ranges go to the database
+	 */
 	public List<Temprature> getTemprature(Timestamp startDate, Timestamp endDate){
+		checkCacheGeneration();
+		if (temperatureCache.covers(startDate.getTime())){
+			cacheHits.incrementAndGet();
+			final List<Temprature> data = new ArrayList<Temprature>();
+			temperatureCache.forEach(startDate.getTime(), endDate.getTime(), new TelemetryRingBuffer.Visitor() {
+				@Override
+				public void visit(long sampleTime, long receivedTime, float[][] channels, int i) {
+					data.add(new Temprature(new Timestamp(sampleTime), new Timestamp(receivedTime),
+							channels[0][i], channels[1][i], channels[2][i]));
+				}
+			});
+			return data;
+		}
+		cacheMisses.incrementAndGet();
+		writer.flush();
 		return db.getTemprature(startDate, endDate);
 	}
 	
+	/**
+	 * Ranges inside the recent telemetry window are answered from memory,
+	 * older ranges go to the database
+	 */
 	public List<Energy> getEnergy(Timestamp startDate, Timestamp endDate){
+		checkCacheGeneration();
+		if (energyCache.covers(startDate.getTime())){
+			cacheHits.incrementAndGet();
+			final List<Energy> data = new ArrayList<Energy>();
+			energyCache.forEach(startDate.getTime(), endDate.getTime(), new TelemetryRingBuffer.Visitor() {
+				@Override
+				public void visit(long sampleTime, long receivedTime, float[][] channels, int i) {
+					data.add(new Energy(new Timestamp(sampleTime), new Timestamp(receivedTime),
+							channels[0][i], channels[1][i], channels[2][i], channels[3][i], channels[4][i], channels[5][i]));
+				}
+			});
+			return data;
+		}
+		cacheMisses.incrementAndGet();
+		writer.flush();
 		return db.getEnergy(startDate, endDate);
 	}
 	
+	/**
+	 * Same range as {@link #getTemprature(Timestamp, Timestamp)} in columns, ordered by sample time
+	 */
+	public TelemetrySeries getTemperatureSeries(Timestamp startDate, Timestamp endDate){
+		return getSeries(temperatureCache, Temprature.SENSOR_NAMES, startDate, endDate, false);
+	}
+	
+	/**
+	 * Same range as {@link #getEnergy(Timestamp, Timestamp)} in columns, ordered by sample time
+	 */
+	public TelemetrySeries getEnergySeries(Timestamp startDate, Timestamp endDate){
+		return getSeries(energyCache, Energy.SENSOR_NAMES, startDate, endDate, true);
+	}
+	
+	/**
+	 * Range at a given resolution: the raw samples when resolutionMillis is below a minute,
+	 * otherwise one sample per bucket of the coarsest rollup (minute, hour, day) that is not
+	 * wider than resolutionMillis, so long trends read a few hundred rows
+	 */
+	public TelemetrySeries getTemperatureSeries(Timestamp startDate, Timestamp endDate, long resolutionMillis, TelemetryRollup.Aggregate aggregate){
+		long resolution = TelemetryRollup.coarsestResolution(resolutionMillis);
+		if (resolution == 0)
+			return getTemperatureSeries(startDate, endDate);
+		return getRollupSeries("Temprature", Temprature.SENSOR_NAMES, resolution, startDate, endDate, aggregate);
+	}
+	
+	/**
+	 * @see #getTemperatureSeries(Timestamp, Timestamp, long, TelemetryRollup.Aggregate)
+	 */
+	public TelemetrySeries getEnergySeries(Timestamp startDate, Timestamp endDate, long resolutionMillis, TelemetryRollup.Aggregate aggregate){
+		long resolution = TelemetryRollup.coarsestResolution(resolutionMillis);
+		if (resolution == 0)
+			return getEnergySeries(startDate, endDate);
+		return getRollupSeries("Energy", Energy.SENSOR_NAMES, resolution, startDate, endDate, aggregate);
+	}
+	
+	private TelemetrySeries getRollupSeries(String component, String[] sensors, long resolution,
+											Timestamp startDate, Timestamp endDate, TelemetryRollup.Aggregate aggregate){
+		writer.flush();
+		TelemetrySeries series = db.getRollupSeries(component, sensors, resolution, startDate, endDate, aggregate);
+		return series != null ? series : new TelemetrySeries(sensors, 0);
+	}
+	
+	private TelemetrySeries getSeries(TelemetryRingBuffer cache, String[] sensors, Timestamp startDate, Timestamp endDate, boolean energy){
+		checkCacheGeneration();
+		if (cache.covers(startDate.getTime())){
+			cacheHits.incrementAndGet();
+			final TelemetrySeries series = new TelemetrySeries(sensors, 256);
+			cache.forEach(startDate.getTime(), endDate.getTime(), new TelemetryRingBuffer.Visitor() {
+				@Override
+				public void visit(long sampleTime, long receivedTime, float[][] channels, int i) {
+					series.add(sampleTime, channels, i);
+				}
+			});
+			return series;
+		}
+		cacheMisses.incrementAndGet();
+		writer.flush();
+		TelemetrySeries series = energy ? db.getEnergySeries(startDate, endDate) : db.getTempratureSeries(startDate, endDate);
+		return series != null ? series : new TelemetrySeries(sensors, 0);
+	}
+	
+	/**
+	 * Fill the telemetry caches with the last cacheWindowMillis from the database
+	 */
+	private void warmCaches(){
+		long now = System.currentTimeMillis();
+		long from = now - cacheWindowMillis;
+		temperatureCache = new TelemetryRingBuffer(3, cacheCapacity, cacheWindowMillis, from);
+		energyCache = new TelemetryRingBuffer(6, cacheCapacity, cacheWindowMillis, from);
+		cacheGeneration = db.getModificationCount();
+		List<Temprature> temps = db.getTemprature(new Timestamp(from), new Timestamp(now + cacheWindowMillis));
+		if (temps != null){
+			for (Temprature t : temps)
+				cacheTemprature(t);
+		}
+		List<Energy> energies = db.getEnergy(new Timestamp(from), new Timestamp(now + cacheWindowMillis));
+		if (energies != null){
+			for (Energy e : energies)
+				cacheEnergy(e);
+		}
+	}
+	
+	/**
+	 * The database was changed behind our back (cleared, deleted from, written directly),
+	 * start caching again from now on and take the latest status from current_state again
+	 */
+	private synchronized void checkCacheGeneration(){
+		long generation = db.getModificationCount();
+		if (generation != cacheGeneration){
+			cacheGeneration = generation;
+			long now = System.currentTimeMillis();
+			temperatureCache.reset(now);
+			energyCache.reset(now);
+			latestSatData.set(db.getLatestSatelliteData());
+		}
+	}
+	
+	private void cacheTemprature(Temprature t){
+		temperatureCache.add(t.getSampleTimestamp().getTime(), t.getReceivedTimestamp().getTime(),
+				new float[]{t.getSensor1(), t.getSensor2(), t.getSensor3()});
+	}
+	
+	private void cacheEnergy(Energy e){
+		energyCache.add(e.getSampleTimestamp().getTime(), e.getReceivedTimestamp().getTime(),
+				new float[]{e.getBatt1Voltage(), e.getBatt2Voltage(), e.getBatt3Voltage(),
+							e.getBatt1Current(), e.getBatt2Current(), e.getBatt3Current()});
+	}
+	
+	public long getCacheHits(){
+		return cacheHits.get();
+	}
+	
+	public long getCacheMisses(){
+		return cacheMisses.get();
+	}
+	
 	public List<Satellite> getSatellite(Timestamp startDate, Timestamp endDate){
 		return db.getSatelliteData(startDate, endDate);
 	}
@@ -84,7 +300,7 @@ public class DataManager {
 
 
 	public Satellite getLatestSatData(){
-		return(this.latestSatData);
+		return(this.latestSatData.get());
 	}
 	
 	public Map<String,Float> getReadingsPerSensor(Component component){
@@ -100,27 +316,73 @@ public class DataManager {
 	 public Satellite insertSatellite(Status temp, Timestamp tempTS, Status energy, Timestamp energyTS, 
 			 							Status Sband, Timestamp SbandTS, Status Payload, Timestamp PayloadTS, 
 			 							Status SolarPanels, Timestamp SolarPanelsTS, Status Thermal, Timestamp ThermalTS){
-		 return db.insertSatellite(temp, tempTS, energy, energyTS, Sband, SbandTS, Payload, PayloadTS, SolarPanels, 
+		 checkCacheGeneration();
+		 Satellite sat = db.insertSatellite(temp, tempTS, energy, energyTS, Sband, SbandTS, Payload, PayloadTS, SolarPanels, 
 				 					SolarPanelsTS, Thermal, ThermalTS);
+		 if (sat != null)
+			 setLatestSatData(sat);
+		 return sat;
 	 }
 	 
 	 public Satellite insertSatellite(Satellite.SatelliteState state, Status temp, Timestamp tempTS, Status energy, 
 			 					Timestamp energyTS, Status Sband, Timestamp SbandTS, Status Payload, Timestamp PayloadTS, 
 			 					Status SolarPanels, Timestamp SolarPanelsTS, Status Thermal, Timestamp ThermalTS){
-		 return db.insertSatellite(state, temp, tempTS, energy, energyTS, Sband, SbandTS, Payload, PayloadTS, 
+		 checkCacheGeneration();
+		 Satellite sat = db.insertSatellite(state, temp, tempTS, energy, energyTS, Sband, SbandTS, Payload, PayloadTS, 
 				 				SolarPanels, SolarPanelsTS, Thermal, ThermalTS);
+		 if (sat != null)
+			 setLatestSatData(sat);
+		 return sat;
 	 }
 	 
+	 /**
+	  * Queues the sample for the batched telemetry writer, blocks while the write queue is full
+	  */
 	 public Temprature insertTemprature(float sensor1,float sensor2, float sensor3, Timestamp ts){
-		 return db.insertTemprature(sensor1, sensor2, sensor3, ts);
+		 Temprature tmp = new Temprature(ts, sensor1, sensor2, sensor3);
+		 checkCacheGeneration();
+		 cacheTemprature(tmp);
+		 writer.write(tmp);
+		 return tmp;
 	 }
 	 
+	 /**
+	  * Queues the sample for the batched telemetry writer, blocks while the write queue is full
+	  */
 	 public Energy insertEnergy(float batt1V,float batt2V,float batt3V, float batt1C,float batt2C,float batt3C, Timestamp ts){
-		 return db.insertEnergy(batt1V, batt2V, batt3V, batt1C, batt2C, batt3C, ts);
+		 Energy eng = new Energy(ts, batt1V, batt2V, batt3V, batt1C, batt2C, batt3C);
+		 checkCacheGeneration();
+		 cacheEnergy(eng);
+		 writer.write(eng);
+		 return eng;
+	 }
+	 
+	 /**
+	  * @return true while parsed samples arrive faster than they can be committed
+	  */
+	 public boolean isTelemetryWriteBacklogged(){
+		 return writer.isBacklogged();
+	 }
+	 
+	 public TelemetryWriter getTelemetryWriter(){
+		 return writer;
 	 }
 	 
 	 public void deleteComponent(String component,Timestamp timeStamp) {
-		 db.deleteComponent(component, timeStamp);
+		 writer.flush();
+		 // Under the lock of checkCacheGeneration, which must not see the delete before the caches do
+		 synchronized (this){
+			 checkCacheGeneration();
+			 db.deleteComponent(component, timeStamp);
+			 // Keep the caches valid instead of dropping them for our own delete
+			 if (timeStamp != null){
+				 if ("Temprature".equals(component))
+					 temperatureCache.remove(timeStamp.getTime());
+				 else if ("Energy".equals(component))
+					 energyCache.remove(timeStamp.getTime());
+			 }
+			 cacheGeneration = db.getModificationCount();
+		 }
 	 }
 	    
 	 public void deleteCompletedMission(Timestamp creationTimestamp){
@@ -152,10 +414,21 @@ public class DataManager {
 		 
 	 }
 	 
+	 /**
+	  * Store the sent time of all the missions in one transaction
+	  */
+	 public void setMissionsSentTS(Collection<Mission> missions, Timestamp sentTime){
+		 for (Mission m : missions){
+			 m.setSentTime(sentTime);
+		 }
+		 db.updateMissions(missions);
+	 }
+	 
 	 public SatelliteState getLastSateliteState(){
-		 if(latestSatData == null){
+		 Satellite latest = latestSatData.get();
+		 if(latest == null){
 			 return SatelliteState.UNKNOWN;
 		 }
-		 return latestSatData.getSatelliteState();
+		 return latest.getSatelliteState();
 	 }
 }
@@ -134,6 +134,14 @@ public class DataManagerTests {
 		assertEquals(s.getObjectCreationTimestamp(), dm.getLatestSatData().getObjectCreationTimestamp());
 	}
 	@Test
+	public void testOlderSatelliteDataIsNotPublished() {
+		Satellite s = dm.insertSatellite(Status.ON, TSNow, Status.ON, TSNow, Status.ON, TSNow, Status.ON, TSNow, Status.ON, TSNow, Status.ON, TSNow);
+		// A status from before, e.g. a late retransmission, is stored but doesn't replace the latest one
+		dm.insertSatellite(Status.STANDBY, TSdayEarlier, Status.STANDBY, TSdayEarlier, Status.STANDBY, TSdayEarlier, Status.STANDBY, TSdayEarlier, Status.STANDBY, TSdayEarlier, Status.STANDBY, TSdayEarlier);
+		assertEquals(s.getId(), dm.getLatestSatData().getId());
+		assertEquals(s.getId(), db.getLatestSatelliteData().getId());
+	}
+	@Test
 	public void testGetReadingsPerSensor() {
 		Energy e = dm.insertEnergy(one, two, three, one, two, three, TSdayEarlier);
 		Map<String,Float> map = dm.getReadingsPerSensor(e);
@@ -3,6 +3,8 @@ package data;
 import com.j256.ormlite.field.DatabaseField;
 import com.j256.ormlite.table.DatabaseTable;
 
+import persistency.TimestampLongType;
+
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -13,7 +15,12 @@ import javafx.util.Pair;
 @DatabaseTable(tableName="Energy")
 public class Energy extends Component {
 	public static final String DATE_FIELD_NAME = "sampleTimestamp";
-    @DatabaseField(id = true ,columnName = DATE_FIELD_NAME)
+	/** Channel order used by TelemetrySeries */
+	public static final String[] SENSOR_NAMES = {"batt1Voltage", "batt2Voltage", "batt3Voltage",
+													"batt1Current", "batt2Current", "batt3Current"};
+    @DatabaseField(generatedId = true)
+    private long id;
+    @DatabaseField(columnName = DATE_FIELD_NAME, persisterClass = TimestampLongType.class, unique = true)
     private Timestamp sampleTimestamp;
     @DatabaseField
     private float batt1Voltage;
@@ -27,7 +34,7 @@ public class Energy extends Component {
     private float batt2Current;
     @DatabaseField
     private float batt3Current;
-    @DatabaseField
+    @DatabaseField(persisterClass = TimestampLongType.class)
     private Timestamp timeReceivedTimestamp;
     
     public Energy(){}
@@ -44,6 +51,20 @@ public class Energy extends Component {
         this.batt2Current=_batt2Current;
         this.batt3Current=_batt3Current;
     }
+    
+    /**
+     * Rebuild a sample that was already received, e.g. from the telemetry cache
+     */
+    Energy(Timestamp ts, Timestamp received, float _batt1Voltage,float _batt2Voltage,float _batt3Voltage, float _batt1Current,float _batt2Current,float _batt3Current){
+        this.sampleTimestamp=ts;
+        this.timeReceivedTimestamp=received;
+        this.batt1Voltage=_batt1Voltage;
+        this.batt2Voltage=_batt2Voltage;
+        this.batt3Voltage=_batt3Voltage;
+        this.batt1Current=_batt1Current;
+        this.batt2Current=_batt2Current;
+        this.batt3Current=_batt3Current;
+    }
 	
 
     public Timestamp getSampleTimestamp(){
@@ -74,12 +95,12 @@ public class Energy extends Component {
 	public 	Map<String, Float> getSensorsValues() {
 		if(sensorsValues == null){
 			sensorsValues= new HashMap<String, Float>();
-			sensorsValues.put("batt1Voltage",new Float(this.getBatt1Voltage()));
-			sensorsValues.put("batt2Voltage",new Float(this.getBatt2Voltage()));
-			sensorsValues.put("batt3Voltage",new Float(this.getBatt3Voltage()));
-			sensorsValues.put("batt1Current",new Float(this.getBatt1Current()));
-			sensorsValues.put("batt2Current",new Float(this.getBatt2Current()));
-			sensorsValues.put("batt3Current",new Float(this.getBatt3Current()));
+			sensorsValues.put(SENSOR_NAMES[0],new Float(this.getBatt1Voltage()));
+			sensorsValues.put(SENSOR_NAMES[1],new Float(this.getBatt2Voltage()));
+			sensorsValues.put(SENSOR_NAMES[2],new Float(this.getBatt3Voltage()));
+			sensorsValues.put(SENSOR_NAMES[3],new Float(this.getBatt1Current()));
+			sensorsValues.put(SENSOR_NAMES[4],new Float(this.getBatt2Current()));
+			sensorsValues.put(SENSOR_NAMES[5],new Float(this.getBatt3Current()));
 		}
 		return sensorsValues;
 	}
@@ -3,20 +3,24 @@ package data;
 import com.j256.ormlite.field.DatabaseField;
 import com.j256.ormlite.table.DatabaseTable;
 
+import persistency.TimestampLongType;
+
 import java.sql.Timestamp;
 
 @DatabaseTable(tableName="Mission")
 public class Mission {
 	public static final String DATE_FIELD_NAME = "creationTimestamp";
-    @DatabaseField(id = true ,columnName = DATE_FIELD_NAME)
+    @DatabaseField(generatedId = true)
+    private long id;
+    @DatabaseField(columnName = DATE_FIELD_NAME, persisterClass = TimestampLongType.class, index = true)
     private Timestamp creationTimestamp;
-    @DatabaseField
+    @DatabaseField(persisterClass = TimestampLongType.class)
     private Timestamp missionExecutionTS;
     @DatabaseField
     private Command command;
     @DatabaseField
     private int priority;
-    @DatabaseField
+    @DatabaseField(persisterClass = TimestampLongType.class)
     private Timestamp sentTime;
     
     public Mission(){}
@@ -31,6 +35,10 @@ public class Mission {
         this.sentTime=null;
 	}
     
+    public long getId(){
+    	return this.id;
+    }
+    
     public Timestamp getMissionExecutionTS(){
     	return this.missionExecutionTS;
     }
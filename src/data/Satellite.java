@@ -3,11 +3,17 @@ package data;
 import com.j256.ormlite.field.DatabaseField;
 import com.j256.ormlite.table.DatabaseTable;
 
+import persistency.TimestampLongType;
+
 import data.Satellite.SatelliteState;
 
 import java.sql.Timestamp;
 import java.util.ArrayList;
 
+/**
+ * One status report of the satellite. Instances are not changed after they are built,
+ * so the latest one can be shared between threads as is.
+ */
 @DatabaseTable(tableName="Satellite")
 public class Satellite {
 	
@@ -24,35 +30,36 @@ public class Satellite {
 	}
 	 
     public static final String DATE_FIELD_NAME = "creationTimestamp";
-    @DatabaseField(id = true) 
+    @DatabaseField(generatedId = true)
+    private long id;
+    @DatabaseField(columnName = DATE_FIELD_NAME, persisterClass = TimestampLongType.class, index = true)
     private Timestamp creationTimestamp;
     @DatabaseField
     private SatelliteState satelliteState;
     @DatabaseField
     private Status TempratureStatus;
-    @DatabaseField
+    @DatabaseField(persisterClass = TimestampLongType.class)
     private Timestamp TempratureTimestamp;
     @DatabaseField
     private Status EnergyStatus;
-    @DatabaseField
+    @DatabaseField(persisterClass = TimestampLongType.class)
     private Timestamp EnergyTimestamp;
     @DatabaseField
     private Status SbandStatus;
-    @DatabaseField
+    @DatabaseField(persisterClass = TimestampLongType.class)
     private Timestamp SbandTimestamp;
     @DatabaseField
     private Status PayloadStatus;
-    @DatabaseField
+    @DatabaseField(persisterClass = TimestampLongType.class)
     private Timestamp PayloadTimestamp;
     @DatabaseField
     private Status SolarPanelsStatus;
-    @DatabaseField
+    @DatabaseField(persisterClass = TimestampLongType.class)
     private Timestamp SolarPanelsTimestamp;
     @DatabaseField
     private Status ThermalStatus;
-    @DatabaseField
+    @DatabaseField(persisterClass = TimestampLongType.class)
     private Timestamp ThermalTimestamp;
-    DataManager dm;
     
     public Satellite(){}
     
@@ -75,9 +82,6 @@ public class Satellite {
         this.SolarPanelsTimestamp=SolarPanelsTS;
         this.ThermalStatus=Thermal;
         this.ThermalTimestamp=ThermalTS;
-        
-        dm=DataManager.getInstance();
-        dm.setLatestSatData(this);
 	}
     
     public Satellite(SatelliteState state, Status temp, Timestamp tempratureTS, Status energy,  
@@ -99,16 +103,30 @@ public class Satellite {
         this.SolarPanelsTimestamp=SolarPanelsTS;
         this.ThermalStatus=Thermal;
         this.ThermalTimestamp=ThermalTS;
-        
-        dm=DataManager.getInstance();
-        dm.setLatestSatData(this);
 	}
 
 
 
+	public long getId(){
+		return this.id;
+	}
+	
 	public Timestamp getObjectCreationTimestamp(){
     	return this.creationTimestamp;
     }
+    
+    /**
+     * @return the newest time the satellite gave for a subsystem, the creation time if it gave none
+     */
+    public Timestamp getStatusTime(){
+    	Timestamp newest = null;
+    	for (Timestamp ts : new Timestamp[]{TempratureTimestamp, EnergyTimestamp, SbandTimestamp, PayloadTimestamp,
+    										SolarPanelsTimestamp, ThermalTimestamp}){
+    		if (ts != null && (newest == null || ts.after(newest)))
+    			newest = ts;
+    	}
+    	return newest != null ? newest : creationTimestamp;
+    }
     public Status getTempratureStatus(){
     	return this.TempratureStatus;
     }   
@@ -0,0 +1,130 @@
+package data;
+
+import java.util.Arrays;
+
+/**
+ * Picks the samples worth drawing when a range holds many more samples than the chart has pixels.
+ * All methods return indices into the given arrays, in time order, so the caller can read
+ * times and values of any channel without copying.
+ */
+public class TelemetryDownsampler {
+
+	private TelemetryDownsampler() {
+	}
+
+	/**
+	 * Samples of one channel between start and end (inclusive) reduced to about one point per pixel
+	 * with Largest-Triangle-Three-Buckets. The samples just outside the range are included so
+	 * the line runs to the chart edges.
+	 * @param series time ordered
+	 * @param pixels width of the plot area
+	 */
+	public static int[] downsample(TelemetrySeries series, int channel, long start, long end, int pixels) {
+		int from = Math.max(0, series.lowerBound(start) - 1);
+		int to = Math.min(series.size(), series.lowerBound(end + 1) + 1);
+		return largestTriangleThreeBuckets(series.getTimes(), series.getChannel(channel), from, to, Math.max(pixels, 3));
+	}
+
+	/**
+	 * Largest-Triangle-Three-Buckets (Steinarsson, 2013): keeps the first and last sample and from each
+	 * of threshold - 2 equal buckets in between the sample forming the largest triangle with the
+	 * previously kept sample and the average of the next bucket. Keeps the visual shape, spikes included.
+	 * @param from first index (inclusive)
+	 * @param to last index (exclusive)
+	 * @param threshold number of samples to keep
+	 */
+	public static int[] largestTriangleThreeBuckets(long[] times, float[] values, int from, int to, int threshold) {
+		int count = to - from;
+		if (count <= threshold || threshold < 3) {
+			return range(from, to);
+		}
+		int[] sampled = new int[threshold];
+		int n = 0;
+		double every = (double) (count - 2) / (threshold - 2);
+		long origin = times[from]; // Keep the areas small enough for double precision
+		int a = from;
+		sampled[n++] = a;
+		for (int i = 0; i < threshold - 2; i++) {
+			int avgStart = from + (int) Math.floor((i + 1) * every) + 1;
+			int avgEnd = Math.min(from + (int) Math.floor((i + 2) * every) + 1, to);
+			double avgX = 0, avgY = 0;
+			for (int j = avgStart; j < avgEnd; j++) {
+				avgX += times[j] - origin;
+				avgY += values[j];
+			}
+			avgX /= avgEnd - avgStart;
+			avgY /= avgEnd - avgStart;
+
+			int rangeStart = from + (int) Math.floor(i * every) + 1;
+			int rangeEnd = from + (int) Math.floor((i + 1) * every) + 1;
+			double ax = times[a] - origin;
+			double ay = values[a];
+			double maxArea = -1;
+			int next = rangeStart;
+			for (int j = rangeStart; j < rangeEnd; j++) {
+				double area = Math.abs((ax - avgX) * (values[j] - ay) - (ax - (times[j] - origin)) * (avgY - ay));
+				if (area > maxArea) {
+					maxArea = area;
+					next = j;
+				}
+			}
+			sampled[n++] = next;
+			a = next;
+		}
+		sampled[n++] = to - 1;
+		return sampled;
+	}
+
+	/**
+	 * Splits the time span into equal buckets (one per pixel) and keeps the lowest and highest
+	 * sample of each, so no peak is lost. At most 2 * buckets samples are returned.
+	 * @param from first index (inclusive)
+	 * @param to last index (exclusive)
+	 */
+	public static int[] minMax(long[] times, float[] values, int from, int to, int buckets) {
+		int count = to - from;
+		if (count <= 2 * buckets || buckets < 1) {
+			return range(from, to);
+		}
+		int[] sampled = new int[2 * buckets];
+		int n = 0;
+		long origin = times[from];
+		double span = Math.max(1, times[to - 1] - origin);
+		int bucket = 0;
+		int min = from, max = from;
+		for (int j = from; j < to; j++) {
+			int b = Math.min(buckets - 1, (int) ((times[j] - origin) * buckets / span));
+			if (b != bucket) {
+				n = addMinMax(sampled, n, min, max);
+				bucket = b;
+				min = j;
+				max = j;
+			} else {
+				if (values[j] < values[min])
+					min = j;
+				if (values[j] > values[max])
+					max = j;
+			}
+		}
+		n = addMinMax(sampled, n, min, max);
+		return Arrays.copyOf(sampled, n);
+	}
+
+	private static int addMinMax(int[] sampled, int n, int min, int max) {
+		if (min == max) {
+			sampled[n++] = min;
+		} else {
+			sampled[n++] = Math.min(min, max);
+			sampled[n++] = Math.max(min, max);
+		}
+		return n;
+	}
+
+	private static int[] range(int from, int to) {
+		int[] all = new int[Math.max(0, to - from)];
+		for (int i = 0; i < all.length; i++) {
+			all[i] = from + i;
+		}
+		return all;
+	}
+}
@@ -0,0 +1,54 @@
+package data;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TelemetryDownsamplerTests {
+	private TelemetrySeries series;
+
+	@Before
+	public void initObjects(){
+		// A day of 1Hz samples, flat except for one spike
+		series = new TelemetrySeries(new String[]{"Sensor 1"}, 86400);
+		for (int i = 0; i < 86400; i++) {
+			series.add(i * 1000L, new float[]{i == 40000 ? 100 : 1});
+		}
+	}
+
+	private void assertOrderedAndKeepsSpike(int[] indices) {
+		boolean spike = false;
+		for (int i = 0; i < indices.length; i++) {
+			if (i > 0)
+				assertTrue(indices[i] > indices[i - 1]);
+			spike |= indices[i] == 40000;
+		}
+		assertTrue(spike);
+	}
+
+	@Test
+	public void testLttbBoundedByPixels() {
+		int[] indices = TelemetryDownsampler.downsample(series, 0, 0, 86400 * 1000L, 800);
+		assertEquals(800, indices.length);
+		assertEquals(0, indices[0]);
+		assertEquals(86399, indices[indices.length - 1]);
+		assertOrderedAndKeepsSpike(indices);
+	}
+
+	@Test
+	public void testMinMaxBoundedByPixels() {
+		int[] indices = TelemetryDownsampler.minMax(series.getTimes(), series.getChannel(0), 0, series.size(), 500);
+		assertTrue(indices.length <= 1000);
+		assertOrderedAndKeepsSpike(indices);
+	}
+
+	@Test
+	public void testZoomReturnsAllSamplesInRange() {
+		// 60 seconds of data on an 800 pixel chart, plus one sample beyond each edge
+		int[] indices = TelemetryDownsampler.downsample(series, 0, 10000 * 1000L, 10059 * 1000L, 800);
+		assertEquals(62, indices.length);
+		assertEquals(9999, indices[0]);
+		assertEquals(10060, indices[61]);
+	}
+}
@@ -0,0 +1,179 @@
+package data;
+
+/**
+ * Fixed size, time ordered ring of samples kept in primitive arrays, one float[] per channel.
+ * Holds the samples of the last windowMillis (by sample time) and knows from which time on
+ * it holds every sample that was stored, so a range query starting at or after
+ * {@link #getCoverageStart()} can be answered without the database.
+ */
+public class TelemetryRingBuffer {
+	private final int capacity;
+	private final long windowMillis;
+	private final long[] sampleTimes;
+	private final long[] receivedTimes;
+	private final float[][] channels;
+	private int head;
+	private int size;
+	private long coverageStart;
+
+	public TelemetryRingBuffer(int channelCount, int capacity, long windowMillis, long coverageStart) {
+		this.capacity = capacity;
+		this.windowMillis = windowMillis;
+		this.sampleTimes = new long[capacity];
+		this.receivedTimes = new long[capacity];
+		this.channels = new float[channelCount][capacity];
+		reset(coverageStart);
+	}
+
+	/**
+	 * Forget all samples
+	 * @param coverageStart time from which on every new sample will be kept
+	 */
+	public synchronized void reset(long coverageStart) {
+		this.head = 0;
+		this.size = 0;
+		this.coverageStart = coverageStart;
+	}
+
+	/**
+	 * Store a sample. Samples older than the coverage start are ignored (the database has them),
+	 * a second sample with the same time is ignored like the database does.
+	 * @param values one value per channel
+	 */
+	public synchronized void add(long sampleTime, long receivedTime, float[] values) {
+		if (sampleTime < coverageStart) {
+			return;
+		}
+		int pos = upperBound(sampleTime);
+		if (pos > 0 && sampleTimes[physical(pos - 1)] == sampleTime) {
+			return;
+		}
+		if (size == capacity) {
+			if (pos == 0) { // Older than everything in a full buffer
+				coverageStart = sampleTime + 1;
+				return;
+			}
+			evictOldest();
+			pos--;
+		}
+		for (int i = size; i > pos; i--) { // Only moves anything for out of order samples
+			copy(physical(i - 1), physical(i));
+		}
+		int p = physical(pos);
+		sampleTimes[p] = sampleTime;
+		receivedTimes[p] = receivedTime;
+		for (int c = 0; c < channels.length; c++) {
+			channels[c][p] = values[c];
+		}
+		size++;
+		long newest = sampleTimes[physical(size - 1)];
+		while (size > 0 && sampleTimes[head] < newest - windowMillis) {
+			evictOldest();
+		}
+	}
+
+	public synchronized void remove(long sampleTime) {
+		int pos = lowerBound(sampleTime);
+		if (pos >= size || sampleTimes[physical(pos)] != sampleTime) {
+			return;
+		}
+		for (int i = pos; i < size - 1; i++) {
+			copy(physical(i + 1), physical(i));
+		}
+		size--;
+	}
+
+	/**
+	 * @return true if every stored sample from start on is in this buffer
+	 */
+	public synchronized boolean covers(long start) {
+		return start >= coverageStart;
+	}
+
+	public interface Visitor {
+		/**
+		 * @param index position of this sample in each of the channel arrays
+		 */
+		public void visit(long sampleTime, long receivedTime, float[][] channels, int index);
+	}
+
+	/**
+	 * Visit the samples with start <= sample time <= end in time order
+	 * @return number of samples visited
+	 */
+	public synchronized int forEach(long start, long end, Visitor visitor) {
+		int from = lowerBound(start);
+		int to = upperBound(end);
+		for (int i = from; i < to; i++) {
+			int p = physical(i);
+			visitor.visit(sampleTimes[p], receivedTimes[p], channels, p);
+		}
+		return Math.max(0, to - from);
+	}
+
+	public synchronized int size() {
+		return size;
+	}
+
+	public synchronized long getCoverageStart() {
+		return coverageStart;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	private void evictOldest() {
+		coverageStart = Math.max(coverageStart, sampleTimes[head] + 1);
+		head = (head + 1) % capacity;
+		size--;
+	}
+
+	private void copy(int from, int to) {
+		sampleTimes[to] = sampleTimes[from];
+		receivedTimes[to] = receivedTimes[from];
+		for (int c = 0; c < channels.length; c++) {
+			channels[c][to] = channels[c][from];
+		}
+	}
+
+	private int physical(int logical) {
+		return (head + logical) % capacity;
+	}
+
+	/**
+	 * @return first logical index with time >= t
+	 */
+	private int lowerBound(long t) {
+		int lo = 0, hi = size;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (sampleTimes[physical(mid)] < t)
+				lo = mid + 1;
+			else
+				hi = mid;
+		}
+		return lo;
+	}
+
+	/**
+	 * @return first logical index with time > t
+	 */
+	private int upperBound(long t) {
+		int lo = 0, hi = size;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (sampleTimes[physical(mid)] <= t)
+				lo = mid + 1;
+			else
+				hi = mid;
+		}
+		return lo;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "TelemetryRingBuffer[size=" + size + "/" + capacity + " coverageStart=" + coverageStart
+				+ " channels=" + channels.length + "]";
+	}
+}
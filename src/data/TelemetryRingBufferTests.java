@@ -0,0 +1,72 @@
+package data;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TelemetryRingBufferTests {
+	private TelemetryRingBuffer buffer;
+
+	@Before
+	public void initObjects(){
+		buffer = new TelemetryRingBuffer(2, 4, 1000, 100);
+	}
+
+	private List<Long> times(long start, long end) {
+		final List<Long> times = new ArrayList<Long>();
+		buffer.forEach(start, end, new TelemetryRingBuffer.Visitor() {
+			@Override
+			public void visit(long sampleTime, long receivedTime, float[][] channels, int index) {
+				times.add(sampleTime);
+			}
+		});
+		return times;
+	}
+
+	@Test
+	public void testOrderedRange() {
+		buffer.add(300, 1, new float[]{3, 30});
+		buffer.add(100, 1, new float[]{1, 10});
+		buffer.add(200, 1, new float[]{2, 20});
+		assertEquals(3, buffer.size());
+		assertEquals("[100, 200, 300]", times(0, 1000).toString());
+		assertEquals("[200, 300]", times(200, 300).toString());
+	}
+
+	@Test
+	public void testIgnoresOldAndDuplicates() {
+		buffer.add(50, 1, new float[]{0, 0});
+		buffer.add(150, 1, new float[]{1, 1});
+		buffer.add(150, 1, new float[]{2, 2});
+		assertEquals(1, buffer.size());
+		assertFalse(buffer.covers(99));
+		assertTrue(buffer.covers(100));
+	}
+
+	@Test
+	public void testEvictionMovesCoverage() {
+		for (long t = 100; t <= 500; t += 100) {
+			buffer.add(t, 1, new float[]{t, t});
+		}
+		assertEquals(4, buffer.size());
+		assertFalse(buffer.covers(100));
+		assertTrue(buffer.covers(101));
+		buffer.add(2000, 1, new float[]{0, 0});
+		assertEquals("[2000]", times(0, 5000).toString());
+		assertTrue(buffer.covers(1000));
+		assertFalse(buffer.covers(500));
+	}
+
+	@Test
+	public void testRemove() {
+		buffer.add(100, 1, new float[]{1, 1});
+		buffer.add(200, 1, new float[]{2, 2});
+		buffer.remove(100);
+		buffer.remove(150);
+		assertEquals("[200]", times(0, 1000).toString());
+	}
+}
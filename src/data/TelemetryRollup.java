@@ -0,0 +1,134 @@
+package data;
+
+import com.j256.ormlite.field.DatabaseField;
+import com.j256.ormlite.table.DatabaseTable;
+
+/**
+ * Aggregate of one sensor channel of Energy or Temprature over a minute, hour or day bucket.
+ * Bucket starts are epoch milliseconds aligned to the resolution (UTC days).
+ * The sum is kept instead of the average so buckets can be merged incrementally.
+ */
+@DatabaseTable(tableName="TelemetryRollup")
+public class TelemetryRollup {
+	public static final long MINUTE = 60 * 1000L;
+	public static final long HOUR = 60 * MINUTE;
+	public static final long DAY = 24 * HOUR;
+	/** Finest first */
+	public static final long[] RESOLUTIONS = {MINUTE, HOUR, DAY};
+
+	public static final String COMPONENT_FIELD_NAME = "component";
+	public static final String RESOLUTION_FIELD_NAME = "resolution";
+	public static final String BUCKET_FIELD_NAME = "bucketStart";
+	public static final String CHANNEL_FIELD_NAME = "channel";
+
+	public enum Aggregate {
+		MIN, MAX, AVERAGE
+	}
+
+	@DatabaseField(generatedId = true)
+	private long id;
+	@DatabaseField(uniqueCombo = true, columnName = COMPONENT_FIELD_NAME)
+	private String component;
+	@DatabaseField(uniqueCombo = true, columnName = RESOLUTION_FIELD_NAME)
+	private long resolution;
+	@DatabaseField(uniqueCombo = true, columnName = BUCKET_FIELD_NAME)
+	private long bucketStart;
+	@DatabaseField(uniqueCombo = true, columnName = CHANNEL_FIELD_NAME)
+	private int channel;
+	@DatabaseField
+	private float minValue;
+	@DatabaseField
+	private float maxValue;
+	@DatabaseField
+	private double sumValue;
+	@DatabaseField
+	private long count;
+
+	public TelemetryRollup(){}
+
+	/**
+	 * An empty bucket
+	 * @param component table name of the samples, "Energy" or "Temprature"
+	 * @param time any time inside the bucket
+	 */
+	public TelemetryRollup(String component, long resolution, long time, int channel){
+		this.component = component;
+		this.resolution = resolution;
+		this.bucketStart = bucketStart(time, resolution);
+		this.channel = channel;
+		this.minValue = Float.POSITIVE_INFINITY;
+		this.maxValue = Float.NEGATIVE_INFINITY;
+		this.sumValue = 0;
+		this.count = 0;
+	}
+
+	public static long bucketStart(long time, long resolution){
+		return time - ((time % resolution) + resolution) % resolution;
+	}
+
+	/**
+	 * @return the coarsest resolution whose buckets are not wider than the requested one,
+	 * 0 if even minutes are too coarse and the raw samples should be read
+	 */
+	public static long coarsestResolution(long requested){
+		long best = 0;
+		for (long r : RESOLUTIONS){
+			if (r <= requested)
+				best = r;
+		}
+		return best;
+	}
+
+	public void add(float value){
+		minValue = Math.min(minValue, value);
+		maxValue = Math.max(maxValue, value);
+		sumValue += value;
+		count++;
+	}
+
+	/**
+	 * Add the samples of another part of the same bucket
+	 */
+	public void merge(TelemetryRollup other){
+		minValue = Math.min(minValue, other.minValue);
+		maxValue = Math.max(maxValue, other.maxValue);
+		sumValue += other.sumValue;
+		count += other.count;
+	}
+
+	public String getComponent(){
+		return component;
+	}
+	public long getResolution(){
+		return resolution;
+	}
+	public long getBucketStart(){
+		return bucketStart;
+	}
+	public int getChannel(){
+		return channel;
+	}
+	public float getMin(){
+		return minValue;
+	}
+	public float getMax(){
+		return maxValue;
+	}
+	public float getAverage(){
+		return count == 0 ? Float.NaN : (float) (sumValue / count);
+	}
+	public long getCount(){
+		return count;
+	}
+
+	public float getValue(Aggregate aggregate){
+		switch (aggregate) {
+		case MIN:
+			return getMin();
+		case MAX:
+			return getMax();
+		default:
+			return getAverage();
+		}
+	}
+}
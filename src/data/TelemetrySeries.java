@@ -0,0 +1,140 @@
+package data;
+
+import java.util.Arrays;
+
+/**
+ * Column oriented telemetry: one long[] of sample times and one float[] per sensor channel,
+ * so a long range costs a few arrays instead of an object and a map per sample.
+ * Samples are kept in the order they were added (time order for everything DataManager returns).
+ * The arrays returned by {@link #getTimes()} and {@link #getChannel(int)} may be longer than
+ * {@link #size()}, only the first size() entries are valid.
+ */
+public class TelemetrySeries {
+	private final String[] channelNames;
+	private long[] times;
+	private float[][] channels;
+	private int size;
+
+	public TelemetrySeries(String[] channelNames, int initialCapacity) {
+		this.channelNames = channelNames;
+		int capacity = Math.max(initialCapacity, 16);
+		this.times = new long[capacity];
+		this.channels = new float[channelNames.length][capacity];
+		this.size = 0;
+	}
+
+	/**
+	 * @param values one value per channel
+	 */
+	public void add(long sampleTime, float[] values) {
+		ensureCapacity(size + 1);
+		times[size] = sampleTime;
+		for (int c = 0; c < channels.length; c++) {
+			channels[c][size] = values[c];
+		}
+		size++;
+	}
+
+	/**
+	 * Copy one sample out of other column oriented storage
+	 * @param source one array per channel
+	 * @param index position of the sample in each of the source arrays
+	 */
+	public void add(long sampleTime, float[][] source, int index) {
+		ensureCapacity(size + 1);
+		times[size] = sampleTime;
+		for (int c = 0; c < channels.length; c++) {
+			channels[c][size] = source[c][index];
+		}
+		size++;
+	}
+
+	private void ensureCapacity(int needed) {
+		if (needed <= times.length) {
+			return;
+		}
+		int capacity = Math.max(needed, times.length * 2);
+		times = Arrays.copyOf(times, capacity);
+		for (int c = 0; c < channels.length; c++) {
+			channels[c] = Arrays.copyOf(channels[c], capacity);
+		}
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public int getChannelCount() {
+		return channelNames.length;
+	}
+
+	public String getChannelName(int channel) {
+		return channelNames[channel];
+	}
+
+	/**
+	 * @return channel number of the given sensor name, -1 if there is none
+	 */
+	public int getChannelIndex(String name) {
+		for (int c = 0; c < channelNames.length; c++) {
+			if (channelNames[c].equals(name)) {
+				return c;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Binary search, the series must be in time order
+	 * @return index of the first sample with time >= the given time, size() if there is none
+	 */
+	public int lowerBound(long time) {
+		int lo = 0, hi = size;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (times[mid] < time)
+				lo = mid + 1;
+			else
+				hi = mid;
+		}
+		return lo;
+	}
+
+	/**
+	 * @return a copy of the samples from index from (inclusive) to index to (exclusive)
+	 */
+	public TelemetrySeries slice(int from, int to) {
+		TelemetrySeries slice = new TelemetrySeries(channelNames, to - from);
+		System.arraycopy(times, from, slice.times, 0, to - from);
+		for (int c = 0; c < channels.length; c++) {
+			System.arraycopy(channels[c], from, slice.channels[c], 0, to - from);
+		}
+		slice.size = to - from;
+		return slice;
+	}
+
+	public long getTime(int index) {
+		return times[index];
+	}
+
+	public float getValue(int channel, int index) {
+		return channels[channel][index];
+	}
+
+	public long[] getTimes() {
+		return times;
+	}
+
+	public float[] getChannel(int channel) {
+		return channels[channel];
+	}
+
+	@Override
+	public String toString() {
+		return "TelemetrySeries[" + Arrays.toString(channelNames) + " size=" + size + "]";
+	}
+}
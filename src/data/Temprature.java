@@ -3,6 +3,8 @@ package data;
 import com.j256.ormlite.field.DatabaseField;
 import com.j256.ormlite.table.DatabaseTable;
 
+import persistency.TimestampLongType;
+
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -13,7 +15,11 @@ import javafx.util.Pair;
 @DatabaseTable(tableName="Temprature")
 public class Temprature extends Component {
 	public static final String DATE_FIELD_NAME = "sampleTimestamp";
-    @DatabaseField(id = true ,columnName = DATE_FIELD_NAME)
+	/** Channel order used by TelemetrySeries */
+	public static final String[] SENSOR_NAMES = {"Sensor 1", "Sensor 2", "Sensor 3"};
+    @DatabaseField(generatedId = true)
+    private long id;
+    @DatabaseField(columnName = DATE_FIELD_NAME, persisterClass = TimestampLongType.class, unique = true)
     private Timestamp sampleTimestamp;
     @DatabaseField
     private float sensor1;
@@ -21,7 +27,7 @@ public class Temprature extends Component {
     private float sensor2;
     @DatabaseField
     private float sensor3;
-    @DatabaseField
+    @DatabaseField(persisterClass = TimestampLongType.class)
     private Timestamp timeReceivedTimestamp;
 
    
@@ -37,6 +43,17 @@ public class Temprature extends Component {
         this.sensor3=s3;
         
     }
+    
+    /**
+     * Rebuild a sample that was already received, e.g. from the telemetry cache
+     */
+    Temprature(Timestamp ts, Timestamp received, float s1,float s2, float s3){
+        this.sampleTimestamp=ts;
+        this.timeReceivedTimestamp=received;
+        this.sensor1=s1;
+        this.sensor2=s2;
+        this.sensor3=s3;
+    }
     public Timestamp getSampleTimestamp(){
         return sampleTimestamp;
     }
@@ -57,9 +74,9 @@ public class Temprature extends Component {
 	public 	Map<String, Float> getSensorsValues() {
 		if(sensorsValues == null){
 			sensorsValues = new HashMap<>();
-			sensorsValues.put("Sensor 1",new Float(this.getSensor1()));
-			sensorsValues.put("Sensor 2",new Float(this.getSensor2()));
-			sensorsValues.put("Sensor 3",new Float(this.getSensor3()));
+			sensorsValues.put(SENSOR_NAMES[0],new Float(this.getSensor1()));
+			sensorsValues.put(SENSOR_NAMES[1],new Float(this.getSensor2()));
+			sensorsValues.put(SENSOR_NAMES[2],new Float(this.getSensor3()));
 		}
 		return sensorsValues;
 	}
@@ -0,0 +1,307 @@
+package logger;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+
+/**
+ * HTML log file and/or event journal written by its own thread.
+ * Callers claim a slot of a preallocated ring with a CAS and return; the writer thread formats
+ * the message ("{}" placeholders, dates cached per second) and writes it, flushing whenever
+ * the ring runs empty. When the ring is full the message is either dropped (and counted) or the
+ * caller waits for a free slot, depending on the {@link OverflowPolicy}.
+ * Arguments are formatted later on the writer thread, so only pass values that don't change.
+ */
+public class AsyncLogger {
+
+	public enum OverflowPolicy {
+		/** Never wait, count the lost message and report the count in the log */
+		DROP,
+		/** Wait for the writer, nothing is lost */
+		BLOCK
+	}
+
+	private static final long idleParkNanos = TimeUnit.MILLISECONDS.toNanos(50);
+	private static final long fullParkNanos = TimeUnit.MICROSECONDS.toNanos(100);
+
+	private static class Slot {
+		volatile long sequence = -1;
+		int level;
+		long time;
+		String template;
+		int argCount;
+		Object arg0, arg1, arg2;
+	}
+
+	private final String fileName;
+	private final LoggerFormatter formatter;
+	private final OverflowPolicy policy;
+	private final Slot[] slots;
+	private final int mask;
+	private final AtomicLong tail = new AtomicLong();
+	private volatile long head = 0;
+	private final AtomicLong dropped = new AtomicLong();
+	private long reportedDropped = 0;
+	private volatile int level;
+	private volatile boolean isRunning;
+	private volatile boolean writerParked;
+	private Thread writerThread;
+	private Writer out;
+	private EventJournal journal;
+	private EventType journalType;
+
+	// Used by the writer thread only
+	private final StringBuilder message = new StringBuilder(256);
+	private final StringBuilder line = new StringBuilder(256);
+	private final SimpleDateFormat dateFormat = new SimpleDateFormat("dd.MM.yy HH:mm:ss");
+	private long cachedSecond = Long.MIN_VALUE;
+	private String cachedDate;
+
+	/**
+	 * @param fileName the HTML file, null to only write to the journal
+	 * @param capacity rounded up to a power of two
+	 */
+	public AsyncLogger(String fileName, String title, int capacity, Level level, OverflowPolicy policy) {
+		this.fileName = fileName;
+		this.formatter = new LoggerFormatter(title);
+		this.policy = policy;
+		int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+		this.slots = new Slot[size];
+		for (int i = 0; i < size; i++) {
+			slots[i] = new Slot();
+		}
+		this.mask = size - 1;
+		this.level = level.intValue();
+	}
+
+	/**
+	 * Also record every message in the journal, must be called before {@link #start()}
+	 */
+	public void setJournal(EventJournal journal, EventType type) {
+		this.journal = journal;
+		this.journalType = type;
+	}
+
+	/**
+	 * Open the file and start the writer thread
+	 */
+	public synchronized void start() throws IOException {
+		if (isRunning) {
+			return;
+		}
+		if (fileName != null) {
+			out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(fileName), StandardCharsets.UTF_8));
+			out.write(formatter.getHead(null));
+		}
+		isRunning = true;
+		writerThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				drain();
+			}
+		}, "AsyncLogger-" + formatter.getTitle());
+		writerThread.setDaemon(true);
+		writerThread.start();
+	}
+
+	/**
+	 * Write everything that was queued, then the end of the file
+	 */
+	public synchronized void close() {
+		if (!isRunning) {
+			return;
+		}
+		isRunning = false;
+		LockSupport.unpark(writerThread);
+		try {
+			writerThread.join();
+			if (out != null) {
+				out.write(formatter.getTail(null));
+				out.close();
+			}
+		} catch (InterruptedException | IOException e) {
+			System.err.println("Error closing log " + fileName + ": " + e.getMessage());
+		}
+	}
+
+	public boolean isLoggable(Level level) {
+		return level.intValue() >= this.level;
+	}
+
+	public void setLevel(Level level) {
+		this.level = level.intValue();
+	}
+
+	public long getDroppedCount() {
+		return dropped.get();
+	}
+
+	public OverflowPolicy getOverflowPolicy() {
+		return policy;
+	}
+
+	public boolean log(Level level, String msg) {
+		return isLoggable(level) && enqueue(level, msg, 0, null, null, null);
+	}
+
+	public boolean log(Level level, String template, Object arg0) {
+		return isLoggable(level) && enqueue(level, template, 1, arg0, null, null);
+	}
+
+	public boolean log(Level level, String template, Object arg0, Object arg1) {
+		return isLoggable(level) && enqueue(level, template, 2, arg0, arg1, null);
+	}
+
+	public boolean log(Level level, String template, Object arg0, Object arg1, Object arg2) {
+		return isLoggable(level) && enqueue(level, template, 3, arg0, arg1, arg2);
+	}
+
+	/**
+	 * @return false if the message was dropped
+	 */
+	private boolean enqueue(Level level, String template, int argCount, Object arg0, Object arg1, Object arg2) {
+		long seq;
+		while (true) {
+			seq = tail.get();
+			if (seq - head >= slots.length) {
+				if (policy == OverflowPolicy.DROP || !isRunning) {
+					dropped.incrementAndGet();
+					return false;
+				}
+				LockSupport.unpark(writerThread);
+				LockSupport.parkNanos(fullParkNanos);
+				continue;
+			}
+			if (tail.compareAndSet(seq, seq + 1)) {
+				break;
+			}
+		}
+		Slot slot = slots[(int) (seq & mask)];
+		slot.level = level.intValue();
+		slot.time = System.currentTimeMillis();
+		slot.template = template;
+		slot.argCount = argCount;
+		slot.arg0 = arg0;
+		slot.arg1 = arg1;
+		slot.arg2 = arg2;
+		slot.sequence = seq; // Publishes the fields above to the writer
+		if (writerParked) {
+			LockSupport.unpark(writerThread);
+		}
+		return true;
+	}
+
+	private void drain() {
+		while (isRunning || head < tail.get()) {
+			Slot slot = slots[(int) (head & mask)];
+			if (slot.sequence != head) {
+				if (head == tail.get()) {
+					idle();
+				} else {
+					Thread.yield(); // Claimed but not yet published
+				}
+				continue;
+			}
+			write(slot);
+			slot.template = null;
+			slot.arg0 = null;
+			slot.arg1 = null;
+			slot.arg2 = null;
+			head = head + 1; // Frees the slot, only this thread writes head
+		}
+		writeDropped();
+		flush();
+	}
+
+	private void idle() {
+		writeDropped();
+		flush();
+		writerParked = true;
+		if (isRunning && head == tail.get()) {
+			LockSupport.parkNanos(idleParkNanos);
+		}
+		writerParked = false;
+	}
+
+	private void write(Slot slot) {
+		message.setLength(0);
+		if (slot.argCount == 0) {
+			message.append(slot.template);
+		} else {
+			appendFormatted(message, slot.template, slot.argCount, slot.arg0, slot.arg1, slot.arg2);
+		}
+		if (journal != null) {
+			journal.record(slot.time, journalType, 0, 0, message);
+		}
+		if (out == null) {
+			return;
+		}
+		line.setLength(0);
+		LoggerFormatter.appendLine(line, slot.level >= Level.WARNING.intValue(), formatDate(slot.time), message);
+		line.append('\n');
+		try {
+			out.append(line);
+		} catch (IOException e) {
+			System.err.println("Error writing log " + fileName + ": " + e.getMessage());
+		}
+	}
+
+	private void writeDropped() {
+		long count = dropped.get();
+		if (count != reportedDropped) {
+			Slot report = new Slot();
+			report.level = Level.WARNING.intValue();
+			report.time = System.currentTimeMillis();
+			report.template = "{} log messages were dropped because the log queue was full";
+			report.argCount = 1;
+			report.arg0 = count - reportedDropped;
+			reportedDropped = count;
+			write(report);
+		}
+	}
+
+	private void flush() {
+		if (out == null) {
+			return;
+		}
+		try {
+			out.flush();
+		} catch (IOException e) {
+			System.err.println("Error writing log " + fileName + ": " + e.getMessage());
+		}
+	}
+
+	private String formatDate(long time) {
+		long second = time / 1000;
+		if (second != cachedSecond) {
+			cachedSecond = second;
+			cachedDate = dateFormat.format(new Date(time));
+		}
+		return cachedDate;
+	}
+
+	/**
+	 * Replace each "{}" in the template with the next argument
+	 */
+	static void appendFormatted(StringBuilder sb, String template, int argCount, Object arg0, Object arg1, Object arg2) {
+		int arg = 0;
+		int from = 0;
+		int at;
+		while (arg < argCount && (at = template.indexOf("{}", from)) >= 0) {
+			sb.append(template, from, at);
+			sb.append(arg == 0 ? arg0 : arg == 1 ? arg1 : arg2);
+			arg++;
+			from = at + 2;
+		}
+		sb.append(template, from, template.length());
+	}
+}
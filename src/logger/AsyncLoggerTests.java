@@ -0,0 +1,70 @@
+package logger;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.logging.Level;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import logger.AsyncLogger.OverflowPolicy;
+
+public class AsyncLoggerTests {
+	private File file;
+
+	@Before
+	public void initObjects() throws Exception {
+		file = File.createTempFile("AsyncLoggerTests", ".htm");
+	}
+
+	@After
+	public void cleanUp() {
+		file.delete();
+	}
+
+	@Test
+	public void testFormatting() {
+		StringBuilder sb = new StringBuilder();
+		AsyncLogger.appendFormatted(sb, "{} of {} samples, {} left", 2, 3, 7, null);
+		assertEquals("3 of 7 samples, {} left", sb.toString());
+	}
+
+	@Test
+	public void testBlockingKeepsEveryMessage() throws Exception {
+		final AsyncLogger log = new AsyncLogger(file.getPath(), "Test", 4, Level.INFO, OverflowPolicy.BLOCK);
+		log.start();
+		Thread[] writers = new Thread[4];
+		for (int t = 0; t < writers.length; t++) {
+			final int id = t;
+			writers[t] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					for (int i = 0; i < 500; i++) {
+						log.log(Level.INFO, "writer {} message {}", id, i);
+					}
+				}
+			});
+			writers[t].start();
+		}
+		for (Thread writer : writers) {
+			writer.join();
+		}
+		assertFalse(log.log(Level.FINE, "below the level"));
+		log.close();
+
+		List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+		int messages = 0;
+		for (String line : lines) {
+			if (line.contains("message"))
+				messages++;
+		}
+		assertEquals(2000, messages);
+		assertEquals(0, log.getDroppedCount());
+		assertTrue(lines.get(lines.size() - 1).endsWith("</html>"));
+	}
+}
@@ -0,0 +1,249 @@
+package logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * Append-only journal of typed ground station events in memory-mapped files.
+ * Every record is RECORD_SIZE bytes:
+ * <pre>
+ *  0 long  time (epoch ms)
+ *  8 byte  type code, 0 marks the end of the written records
+ *  9 byte  number of CONTINUATION records holding the rest of the text
+ * 10 short text bytes in this record
+ * 12 int   arg1
+ * 16 long  arg0
+ * 24       UTF-8 text, up to TEXT_CAPACITY bytes
+ * </pre>
+ * A segment file is opened per UTC day ("yyyyMMdd-NN.journal"), and another part of the same day
+ * when one fills up. Writing a record is a copy into the mapping, the OS writes it out.
+ * Read the journal with {@link JournalReader}.
+ */
+public class EventJournal {
+	public static final int RECORD_SIZE = 128;
+	public static final int TEXT_OFFSET = 24;
+	public static final int TEXT_CAPACITY = RECORD_SIZE - TEXT_OFFSET;
+	/** Longer texts are cut */
+	public static final int MAX_TEXT = 4096;
+	/** 64MB per segment, the file is sparse until written */
+	public static final int DEFAULT_SEGMENT_RECORDS = 1 << 19;
+	public static final String DEFAULT_DIR = "Logs" + File.separator + "journal";
+	public static final String SUFFIX = ".journal";
+	static final long DAY = 24 * 60 * 60 * 1000L;
+
+	private static EventJournal instance = null;
+
+	private final File dir;
+	private final int segmentRecords;
+	private final SimpleDateFormat dayFormat;
+	private final CharsetEncoder encoder;
+	private final ByteBuffer textBuffer;
+	private RandomAccessFile file;
+	private MappedByteBuffer segment;
+	private long segmentDay = Long.MIN_VALUE;
+	private int segmentPart = 0;
+	private int position;
+	private boolean isFailed = false;
+	private boolean isClosed = false;
+	private long droppedRecords = 0;
+	private long writtenRecords = 0;
+
+	public EventJournal(File dir, int segmentRecords) {
+		this.dir = dir;
+		this.segmentRecords = segmentRecords;
+		this.dayFormat = segmentDayFormat();
+		this.encoder = StandardCharsets.UTF_8.newEncoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		this.textBuffer = ByteBuffer.allocate(MAX_TEXT);
+	}
+
+	public static synchronized EventJournal getInstance() {
+		if (instance == null)
+			instance = new EventJournal(new File(DEFAULT_DIR), DEFAULT_SEGMENT_RECORDS);
+		return instance;
+	}
+
+	static SimpleDateFormat segmentDayFormat() {
+		SimpleDateFormat format = new SimpleDateFormat("yyyyMMdd");
+		format.setTimeZone(TimeZone.getTimeZone("UTC"));
+		return format;
+	}
+
+	public File getDirectory() {
+		return dir;
+	}
+
+	public void record(EventType type, long arg0, int arg1) {
+		record(System.currentTimeMillis(), type, arg0, arg1, null);
+	}
+
+	public void record(EventType type, long arg0, int arg1, CharSequence text) {
+		record(System.currentTimeMillis(), type, arg0, arg1, text);
+	}
+
+	/**
+	 * @param text may be null
+	 */
+	public synchronized void record(long time, EventType type, long arg0, int arg1, CharSequence text) {
+		int textLength = encode(text);
+		int parts = textLength <= TEXT_CAPACITY ? 0 : (textLength - 1) / TEXT_CAPACITY;
+		if (!ensureSegment(time, parts + 1)) {
+			droppedRecords++;
+			return;
+		}
+		int head = position;
+		// Continuations first and the head's type last, so a reader never sees half an event
+		for (int part = 1; part <= parts; part++) {
+			writeRecord(head + part, time, EventType.CONTINUATION, 0, 0, 0, part * TEXT_CAPACITY, textLength);
+		}
+		writeRecord(head, time, type, parts, arg0, arg1, 0, textLength);
+		position = head + parts + 1;
+		writtenRecords++;
+	}
+
+	private int encode(CharSequence text) {
+		textBuffer.clear();
+		if (text != null) {
+			encoder.reset();
+			// Stops at a character boundary when the buffer is full
+			encoder.encode(CharBuffer.wrap(text), textBuffer, true);
+		}
+		return textBuffer.position();
+	}
+
+	private void writeRecord(int index, long time, EventType type, int parts, long arg0, int arg1, int textFrom, int textLength) {
+		int base = index * RECORD_SIZE;
+		int length = Math.max(0, Math.min(TEXT_CAPACITY, textLength - textFrom));
+		segment.putLong(base, time);
+		segment.put(base + 9, (byte) parts);
+		segment.putShort(base + 10, (short) length);
+		segment.putInt(base + 12, arg1);
+		segment.putLong(base + 16, arg0);
+		byte[] text = textBuffer.array();
+		for (int i = 0; i < length; i++) {
+			segment.put(base + TEXT_OFFSET + i, text[textFrom + i]);
+		}
+		segment.put(base + 8, type.getCode());
+	}
+
+	/**
+	 * Open the segment of the record's day, or the next part when the current one is full
+	 */
+	private boolean ensureSegment(long time, int records) {
+		if (isFailed || isClosed) {
+			return false;
+		}
+		long day = Math.floorDiv(time, DAY);
+		try {
+			if (segment == null || day > segmentDay) {
+				openSegment(day, 0);
+			}
+			if (position + records > segmentRecords) {
+				openSegment(segmentDay, segmentPart + 1);
+			}
+		} catch (IOException e) {
+			isFailed = true;
+			System.err.println("Error opening the event journal in " + dir + ": " + e.getMessage());
+			return false;
+		}
+		return position + records <= segmentRecords;
+	}
+
+	private void openSegment(long day, int firstPart) throws IOException {
+		closeSegment();
+		if (!dir.exists() && !dir.mkdirs()) {
+			throw new IOException("can't create " + dir);
+		}
+		String prefix = dayFormat.format(new Date(day * DAY));
+		int part = firstPart;
+		// Continue the last part written today, e.g. after a restart
+		while (new File(dir, segmentName(prefix, part + 1)).exists()) {
+			part++;
+		}
+		while (true) {
+			file = new RandomAccessFile(new File(dir, segmentName(prefix, part)), "rw");
+			segment = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, (long) segmentRecords * RECORD_SIZE);
+			position = findEnd(segment, segmentRecords);
+			if (position < segmentRecords) {
+				break;
+			}
+			closeSegment();
+			part++;
+		}
+		segmentDay = day;
+		segmentPart = part;
+	}
+
+	static String segmentName(String day, int part) {
+		return String.format("%s-%02d%s", day, part, SUFFIX);
+	}
+
+	/**
+	 * Records are written contiguously from the start, binary search the first empty one
+	 */
+	static int findEnd(ByteBuffer segment, int records) {
+		int low = 0;
+		int high = records;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (segment.get(mid * RECORD_SIZE + 8) != 0) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	private void closeSegment() throws IOException {
+		if (segment != null) {
+			segment.force();
+			segment = null;
+		}
+		if (file != null) {
+			file.close();
+			file = null;
+		}
+	}
+
+	/**
+	 * Write the mapped records out to the disk
+	 */
+	public synchronized void force() {
+		if (segment != null) {
+			segment.force();
+		}
+	}
+
+	public synchronized void close() {
+		isClosed = true;
+		try {
+			closeSegment();
+		} catch (IOException e) {
+			System.err.println("Error closing the event journal: " + e.getMessage());
+		}
+	}
+
+	public synchronized long getWrittenRecords() {
+		return writtenRecords;
+	}
+
+	/**
+	 * @return events lost because the journal couldn't be opened or an event didn't fit a segment
+	 */
+	public synchronized long getDroppedRecords() {
+		return droppedRecords;
+	}
+}
@@ -0,0 +1,84 @@
+package logger;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class EventJournalTests {
+	private static final long DAY = 24 * 60 * 60 * 1000L;
+	private static final long T0 = 20000 * DAY;
+
+	private File dir;
+	private EventJournal journal;
+	private JournalReader reader;
+
+	@Before
+	public void initObjects() throws Exception {
+		dir = Files.createTempDirectory("EventJournalTests").toFile();
+		journal = new EventJournal(dir, 4);
+		reader = new JournalReader(dir);
+	}
+
+	@After
+	public void cleanUp() {
+		journal.close();
+		for (File file : dir.listFiles()) {
+			file.delete();
+		}
+		dir.delete();
+	}
+
+	private List<String> read(long from, long to, EnumSet<EventType> types) throws Exception {
+		final List<String> events = new ArrayList<String>();
+		reader.read(from, to, types, new JournalReader.Visitor() {
+			@Override
+			public void visit(long time, EventType type, long arg0, int arg1, String text) {
+				events.add((time - T0) + " " + type + " " + arg0 + " " + arg1 + " " + text);
+			}
+		});
+		return events;
+	}
+
+	@Test
+	public void testFilterByTimeAndType() throws Exception {
+		journal.record(T0 + 1, EventType.FRAME_RECEIVED, 0, 120, null);
+		journal.record(T0 + 2, EventType.MISSION_SENT, 7, 3, "RESET");
+		journal.record(T0 + 3, EventType.FRAME_RECEIVED, 0, 64, null);
+		assertEquals("[1 FRAME_RECEIVED 0 120 , 3 FRAME_RECEIVED 0 64 ]",
+				read(T0, T0 + 10, EnumSet.of(EventType.FRAME_RECEIVED)).toString());
+		assertEquals("[2 MISSION_SENT 7 3 RESET]", read(T0 + 2, T0 + 3, null).toString());
+	}
+
+	@Test
+	public void testLongTextAndRollover() throws Exception {
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 3 * EventJournal.TEXT_CAPACITY; i++) {
+			text.append((char) ('a' + i % 26));
+		}
+		journal.record(T0, EventType.ACTION, 0, 0, text);
+		journal.record(T0 + 1, EventType.ERROR, 0, 0, "second");
+		journal.record(T0 + 2, EventType.ERROR, 0, 0, "third");
+		journal.record(T0 + DAY, EventType.PASS_END, 0, 0, null);
+		assertEquals(4, journal.getWrittenRecords());
+		assertEquals(3, dir.listFiles().length);
+
+		List<String> events = read(T0, T0 + 2 * DAY, null);
+		assertEquals(4, events.size());
+		assertEquals("0 ACTION 0 0 " + text, events.get(0));
+		assertEquals("2 ERROR 0 0 third", events.get(2));
+		assertEquals(1, reader.getSegments(T0 + DAY, T0 + 2 * DAY).size());
+
+		StringWriter html = new StringWriter();
+		assertEquals(2, reader.renderHtml(T0, T0 + DAY, EnumSet.of(EventType.ERROR), html, "Errors"));
+		assertTrue(html.toString().contains("ERROR</font>"));
+	}
+}
@@ -0,0 +1,49 @@
+package logger;
+
+/**
+ * Types of the event journal records. The code is what is stored on disk, never reuse or change one.
+ */
+public enum EventType {
+	/** A framed message arrived on the serial port. arg1: frame length */
+	FRAME_RECEIVED(1),
+	/** A downstream packet was parsed and validated. arg0: status records, arg1: samples in the packet */
+	PACKET_PARSED(2),
+	/** A batch of samples was committed to the database. arg0: newest sample time, arg1: samples in the batch */
+	SAMPLE_STORED(3),
+	/** A mission was put in an upstream packet. arg0: mission id, arg1: opcode, text: the command */
+	MISSION_SENT(4),
+	/** The satellite came into view. arg0: expected end of the pass */
+	PASS_START(5),
+	/** The satellite went out of view */
+	PASS_END(6),
+	/** An entry of the actions log, text: the message */
+	ACTION(7),
+	/** An entry of the errors log, text: the message */
+	ERROR(8),
+	/** The rest of the text of the record before it */
+	CONTINUATION(127);
+
+	private static final EventType[] byCode = new EventType[128];
+	static {
+		for (EventType type : values()) {
+			byCode[type.code] = type;
+		}
+	}
+
+	private final byte code;
+
+	private EventType(int code) {
+		this.code = (byte) code;
+	}
+
+	public byte getCode() {
+		return code;
+	}
+
+	/**
+	 * @return null for 0 (an empty record) and unknown codes
+	 */
+	public static EventType fromCode(byte code) {
+		return code > 0 ? byCode[code] : null;
+	}
+}
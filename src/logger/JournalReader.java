@@ -0,0 +1,241 @@
+package logger;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Reads the segments written by {@link EventJournal}, skipping the days outside the requested range.
+ * Also a command line tool to list events or render them as the HTML log:
+ * <pre>
+ * JournalReader [-dir dir] [-from "yyyy-MM-dd HH:mm:ss"] [-to "yyyy-MM-dd HH:mm:ss"] [-type ERROR,MISSION_SENT] [-html file.htm]
+ * </pre>
+ */
+public class JournalReader {
+	public interface Visitor {
+		public void visit(long time, EventType type, long arg0, int arg1, String text);
+	}
+
+	private final File dir;
+
+	public JournalReader(File dir) {
+		this.dir = dir;
+	}
+
+	/**
+	 * @return the segments that can hold events of [from, to), oldest first
+	 */
+	public List<File> getSegments(long from, long to) {
+		File[] files = dir.listFiles(new FilenameFilter() {
+			@Override
+			public boolean accept(File dir, String name) {
+				return name.endsWith(EventJournal.SUFFIX);
+			}
+		});
+		List<File> segments = new ArrayList<File>();
+		if (files == null) {
+			return segments;
+		}
+		Arrays.sort(files);
+		SimpleDateFormat dayFormat = EventJournal.segmentDayFormat();
+		String firstDay = dayFormat.format(new Date(from));
+		String lastDay = dayFormat.format(new Date(to - 1));
+		for (File file : files) {
+			String day = file.getName().substring(0, firstDay.length());
+			if (day.compareTo(firstDay) >= 0 && day.compareTo(lastDay) <= 0) {
+				segments.add(file);
+			}
+		}
+		return segments;
+	}
+
+	/**
+	 * Visit the events of [from, to) in the order they were written
+	 * @param types null for all types
+	 * @return the number of visited events
+	 */
+	public int read(long from, long to, Set<EventType> types, Visitor visitor) throws IOException {
+		int count = 0;
+		for (File file : getSegments(from, to)) {
+			count += readSegment(file, from, to, types, visitor);
+		}
+		return count;
+	}
+
+	private int readSegment(File file, long from, long to, Set<EventType> types, Visitor visitor) throws IOException {
+		int count = 0;
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+			FileChannel channel = raf.getChannel();
+			MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			int records = (int) (channel.size() / EventJournal.RECORD_SIZE);
+			int index = 0;
+			byte[] text = new byte[EventJournal.MAX_TEXT];
+			while (index < records) {
+				int base = index * EventJournal.RECORD_SIZE;
+				byte code = segment.get(base + 8);
+				if (code == 0) {
+					break;
+				}
+				int parts = segment.get(base + 9) & 0xFF;
+				EventType type = EventType.fromCode(code);
+				long time = segment.getLong(base);
+				if (type != null && type != EventType.CONTINUATION && time >= from && time < to
+						&& (types == null || types.contains(type))) {
+					int length = 0;
+					for (int part = 0; part <= parts && index + part < records; part++) {
+						int partBase = base + part * EventJournal.RECORD_SIZE;
+						int partLength = segment.getShort(partBase + 10);
+						for (int i = 0; i < partLength && length < text.length; i++) {
+							text[length++] = segment.get(partBase + EventJournal.TEXT_OFFSET + i);
+						}
+					}
+					visitor.visit(time, type, segment.getLong(base + 16), segment.getInt(base + 12),
+							new String(text, 0, length, StandardCharsets.UTF_8));
+					count++;
+				}
+				index += type == EventType.CONTINUATION ? 1 : parts + 1;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Write the events in the layout of the actions/errors log files
+	 */
+	public int renderHtml(long from, long to, Set<EventType> types, final Writer out, String title) throws IOException {
+		LoggerFormatter formatter = new LoggerFormatter(title);
+		out.write(formatter.getHead(null));
+		final SimpleDateFormat dateFormat = new SimpleDateFormat("dd.MM.yy HH:mm:ss");
+		final StringBuilder line = new StringBuilder(256);
+		final IOException[] failure = new IOException[1];
+		int count = read(from, to, types, new Visitor() {
+			@Override
+			public void visit(long time, EventType type, long arg0, int arg1, String text) {
+				line.setLength(0);
+				CharSequence message = type == EventType.ACTION || type == EventType.ERROR ? text : describe(type, arg0, arg1, text);
+				LoggerFormatter.appendLine(line, type == EventType.ERROR, dateFormat.format(new Date(time)), message);
+				line.append('\n');
+				try {
+					out.append(line);
+				} catch (IOException e) {
+					failure[0] = e;
+				}
+			}
+		});
+		if (failure[0] != null) {
+			throw failure[0];
+		}
+		out.write(formatter.getTail(null));
+		return count;
+	}
+
+	public static String describe(EventType type, long arg0, int arg1, String text) {
+		StringBuilder sb = new StringBuilder(type.name());
+		switch (type) {
+		case FRAME_RECEIVED:
+			sb.append(" length=").append(arg1);
+			break;
+		case PACKET_PARSED:
+			sb.append(" statuses=").append(arg0).append(" samples=").append(arg1);
+			break;
+		case SAMPLE_STORED:
+			sb.append(" samples=").append(arg1).append(" newest=").append(arg0);
+			break;
+		case MISSION_SENT:
+			sb.append(" id=").append(arg0).append(" opcode=").append(arg1);
+			break;
+		case PASS_START:
+			sb.append(" until=").append(arg0);
+			break;
+		default:
+			break;
+		}
+		if (!text.isEmpty()) {
+			sb.append(' ').append(text);
+		}
+		return sb.toString();
+	}
+
+	private static void usage() {
+		System.err.println("usage: JournalReader [-dir dir] [-from \"yyyy-MM-dd HH:mm:ss\"] [-to \"yyyy-MM-dd HH:mm:ss\"]"
+				+ " [-type TYPE[,TYPE...]] [-html file.htm]");
+		System.exit(1);
+	}
+
+	public static void main(String[] args) throws IOException {
+		File dir = new File(EventJournal.DEFAULT_DIR);
+		long from = 0;
+		long to = Long.MAX_VALUE;
+		Set<EventType> types = null;
+		String html = null;
+		SimpleDateFormat argFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+		try {
+			for (int i = 0; i < args.length; i++) {
+				String value = i + 1 < args.length ? args[i + 1] : null;
+				if (value == null) {
+					usage();
+				}
+				switch (args[i]) {
+				case "-dir":
+					dir = new File(value);
+					break;
+				case "-from":
+					from = argFormat.parse(value).getTime();
+					break;
+				case "-to":
+					to = argFormat.parse(value).getTime();
+					break;
+				case "-type":
+					types = EnumSet.noneOf(EventType.class);
+					for (String name : value.split(",")) {
+						types.add(EventType.valueOf(name.trim().toUpperCase()));
+					}
+					break;
+				case "-html":
+					html = value;
+					break;
+				default:
+					usage();
+				}
+				i++;
+			}
+		} catch (ParseException | IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			usage();
+		}
+
+		JournalReader reader = new JournalReader(dir);
+		if (html != null) {
+			try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(html), StandardCharsets.UTF_8))) {
+				int count = reader.renderHtml(from, to, types, out, "Journal");
+				System.out.println(count + " events written to " + html);
+			}
+			return;
+		}
+		final PrintStream out = System.out;
+		final SimpleDateFormat dateFormat = new SimpleDateFormat("dd.MM.yy HH:mm:ss.SSS");
+		reader.read(from, to, types, new Visitor() {
+			@Override
+			public void visit(long time, EventType type, long arg0, int arg1, String text) {
+				out.println(dateFormat.format(new Date(time)) + " " + describe(type, arg0, arg1, text));
+			}
+		});
+	}
+}
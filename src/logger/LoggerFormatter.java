@@ -14,20 +14,29 @@ public class LoggerFormatter extends Formatter {
 		this.title = title;
 	}
 
+	public String getTitle() {
+		return title;
+	}
+
 	@Override
 	public String format(LogRecord rec) {
-		StringBuffer buf = new StringBuffer(1000);
+		StringBuilder buf = new StringBuilder(1000);
+		appendLine(buf, rec.getLevel().intValue() >= Level.WARNING.intValue(), calcDate(), formatMessage(rec));
+		return buf.toString();
+	}
 
-		if (rec.getLevel().intValue() >= Level.WARNING.intValue()) {
+	/**
+	 * One log entry, as written by the log files and the journal's HTML view
+	 */
+	public static void appendLine(StringBuilder buf, boolean isError, String date, CharSequence message) {
+		if (isError) {
 			buf.append("[<font color=\"red\">ERROR</font>@<font color=\"green\">");
 		} else {
 			buf.append("[<font color=\"blue\">ACTION</font>@<font color=\"green\">");
 		}
-		buf.append(calcDate() + "</font>] ");
-		buf.append(formatMessage(rec));
+		buf.append(date).append("</font>] ");
+		buf.append(message);
 		buf.append("<br/>");
-
-		return buf.toString();
 	}
 
 	private String calcDate() {
@@ -51,4 +60,4 @@ public class LoggerFormatter extends Formatter {
 		sb.append("</body></html>");
 		return sb.toString();
 	}
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -5,71 +5,145 @@ import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
 import java.util.Date;
-import java.util.Scanner;
-import java.util.logging.*;
+import java.util.logging.Level;
 
+import logger.AsyncLogger.OverflowPolicy;
+
+/**
+ * The actions and errors logs. Messages are queued and written by a background thread per log,
+ * so callers (the parser on the serial thread) never wait for the disk.
+ * Use the "{}" overloads on hot paths, the message is only built if the log is enabled.
+ * Actions are dropped when the queue is full, errors wait for room.
+ * Everything goes to the {@link EventJournal}; the HTML files are only written when the
+ * "logs.html" system property is true, otherwise render them with {@link JournalReader}.
+ */
 public class Loggers {
-	private static Logger ACTION_LOG;
-	private static Logger ERROR_LOG;
-	private static FileHandler Actionfh;
-	private static FileHandler Errorfh;
-	private static LoggerFormatter actionFormatter;
-	private static LoggerFormatter errorFormatter;
+	private static final String LOG_DIR = "Logs";
+	public static final String HTML_PROPERTY = "logs.html";
+	private static final int ACTION_QUEUE_SIZE = 8192;
+	private static final int ERROR_QUEUE_SIZE = 1024;
+	private static AsyncLogger ACTION_LOG;
+	private static AsyncLogger ERROR_LOG;
     private static final SimpleDateFormat date_format = new SimpleDateFormat("ddMMyy-HHmmss");
-    private static boolean isInitialized = false;
+    private static volatile boolean isInitialized = false;
 
-    public static void makeLoggers() {
-    	isInitialized = true;
-		actionFormatter = new LoggerFormatter("Actions");
-		errorFormatter = new LoggerFormatter("Errors");
-		ACTION_LOG = Logger.getLogger("ActionsLog");
-		ERROR_LOG = Logger.getLogger("ErrorsLog");
+    public static synchronized void makeLoggers() {
+    	if (isInitialized) {
+    		return;
+    	}
+		String stamp = date_format.format(new Date());
+		boolean writeHtml = Boolean.getBoolean(HTML_PROPERTY);
+		ACTION_LOG = new AsyncLogger(writeHtml ? LOG_DIR+System.getProperty("file.separator")+"ActionsLog"+stamp+".htm" : null,
+				"Actions", ACTION_QUEUE_SIZE, Level.INFO, OverflowPolicy.DROP);
+		ERROR_LOG = new AsyncLogger(writeHtml ? LOG_DIR+System.getProperty("file.separator")+"ErrorsLog"+stamp+".htm" : null,
+				"Errors", ERROR_QUEUE_SIZE, Level.WARNING, OverflowPolicy.BLOCK);
+		ACTION_LOG.setJournal(EventJournal.getInstance(), EventType.ACTION);
+		ERROR_LOG.setJournal(EventJournal.getInstance(), EventType.ERROR);
 
 		try {
-            if (!Files.exists(Paths.get("logs"))) {
-                Files.createDirectory(Paths.get("logs"));
+            if (!Files.exists(Paths.get(LOG_DIR))) {
+                Files.createDirectory(Paths.get(LOG_DIR));
             }
-
-            ACTION_LOG.setUseParentHandlers(false);
-			Actionfh = new FileHandler("Logs"+System.getProperty("file.separator")+"ActionsLog"+date_format.format(new Date())+".htm");
-			Actionfh.setFormatter(actionFormatter);
-			ACTION_LOG.addHandler(Actionfh);
-            ACTION_LOG.setLevel(Level.INFO);
-
-            ERROR_LOG.setUseParentHandlers(false);
-			Errorfh = new FileHandler("Logs"+System.getProperty("file.separator")+"ErrorsLog"+date_format.format(new Date())+".htm");
-			Errorfh.setFormatter(errorFormatter);
-			ERROR_LOG.addHandler(Errorfh);
-			ERROR_LOG.setLevel(Level.WARNING);
-
+			ACTION_LOG.start();
+			ERROR_LOG.start();
 		} catch (IOException e) {
 			e.printStackTrace();
 			System.err.println("Error init loggers!");
 		}
-		
+		isInitialized = true;
+
+		Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+			@Override
+			public void run() {
+				ACTION_LOG.close();
+				ERROR_LOG.close();
+				EventJournal.getInstance().close();
+			}
+		}, "LoggersShutdown"));
+
 		logError("System started!");
 		logAction("System started!");
 	}
 
 	public static void closeLoggers() {
 		logError("System exited!");
-		logAction("System existed!");
-		
-		Actionfh.close();
-		Errorfh.close();
+		logAction("System exited!");
+
+		ACTION_LOG.close();
+		ERROR_LOG.close();
+		EventJournal.getInstance().force();
 	}
 
-	public static void logError(String msg) {
+	private static void init() {
 		if (!isInitialized) {
 			makeLoggers();
 		}
-		ERROR_LOG.warning(msg);
+	}
+
+	public static boolean isActionLogEnabled() {
+		init();
+		return ACTION_LOG.isLoggable(Level.INFO);
+	}
+
+	/**
+	 * Turn the actions log off (or back on), e.g. while replaying a high rate stream
+	 */
+	public static void setActionLogEnabled(boolean enabled) {
+		init();
+		ACTION_LOG.setLevel(enabled ? Level.INFO : Level.OFF);
+	}
+
+	/**
+	 * @return the number of action messages lost because the queue was full
+	 */
+	public static long getDroppedActions() {
+		init();
+		return ACTION_LOG.getDroppedCount();
+	}
+
+	/**
+	 * Record a typed event in the journal, see {@link EventType} for the meaning of the arguments
+	 */
+	public static void logEvent(EventType type, long arg0, int arg1) {
+		EventJournal.getInstance().record(type, arg0, arg1);
+	}
+
+	public static void logEvent(EventType type, long arg0, int arg1, CharSequence text) {
+		EventJournal.getInstance().record(type, arg0, arg1, text);
+	}
+
+	public static void logError(String msg) {
+		init();
+		ERROR_LOG.log(Level.WARNING, msg);
+	}
+
+	public static void logError(String template, Object arg0) {
+		init();
+		ERROR_LOG.log(Level.WARNING, template, arg0);
+	}
+
+	public static void logError(String template, Object arg0, Object arg1) {
+		init();
+		ERROR_LOG.log(Level.WARNING, template, arg0, arg1);
 	}
 
 	public static void logAction(String msg) {
-		if (!isInitialized) {
-			makeLoggers();
-		}
-		ACTION_LOG.info(msg);
+		init();
+		ACTION_LOG.log(Level.INFO, msg);
+	}
+
+	public static void logAction(String template, Object arg0) {
+		init();
+		ACTION_LOG.log(Level.INFO, template, arg0);
+	}
+
+	public static void logAction(String template, Object arg0, Object arg1) {
+		init();
+		ACTION_LOG.log(Level.INFO, template, arg0, arg1);
+	}
+
+	public static void logAction(String template, Object arg0, Object arg1, Object arg2) {
+		init();
+		ACTION_LOG.log(Level.INFO, template, arg0, arg1, arg2);
 	}
-}
\ No newline at end of file
+}
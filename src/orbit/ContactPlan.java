@@ -0,0 +1,143 @@
+package orbit;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * The passes of several satellites over one ground station, ordered by start time.
+ * The station tracks one satellite at a time, so passes that overlap are conflicts.
+ */
+public class ContactPlan {
+	public static class Contact {
+		private final Tle satellite;
+		private final Pass pass;
+
+		public Contact(Tle satellite, Pass pass) {
+			this.satellite = satellite;
+			this.pass = pass;
+		}
+
+		public Tle getSatellite() {
+			return satellite;
+		}
+
+		public Pass getPass() {
+			return pass;
+		}
+
+		public long getStartTime() {
+			return pass.getStartTime();
+		}
+
+		public long getEndTime() {
+			return pass.getEndTime();
+		}
+
+		@Override
+		public String toString() {
+			return satellite + " " + pass.getStartTime() + ".." + pass.getEndTime();
+		}
+	}
+
+	public static class Conflict {
+		private final Contact first;
+		private final Contact second;
+
+		public Conflict(Contact first, Contact second) {
+			this.first = first;
+			this.second = second;
+		}
+
+		/**
+		 * @return the contact that starts first
+		 */
+		public Contact getFirst() {
+			return first;
+		}
+
+		public Contact getSecond() {
+			return second;
+		}
+
+		public long getOverlapStart() {
+			return second.getStartTime();
+		}
+
+		public long getOverlapEnd() {
+			return Math.min(first.getEndTime(), second.getEndTime());
+		}
+
+		@Override
+		public String toString() {
+			return first.getSatellite() + " and " + second.getSatellite() + " overlap "
+					+ (getOverlapEnd() - getOverlapStart()) + " ms";
+		}
+	}
+
+	private final List<Contact> contacts;
+	private final List<Conflict> conflicts;
+
+	/**
+	 * @param contacts ordered by start time
+	 */
+	public ContactPlan(List<Contact> contacts) {
+		this.contacts = Collections.unmodifiableList(contacts);
+		this.conflicts = Collections.unmodifiableList(findConflicts(contacts));
+	}
+
+	/**
+	 * Sweep in start order, keeping the contacts that have not ended yet
+	 */
+	private static List<Conflict> findConflicts(List<Contact> contacts) {
+		List<Conflict> conflicts = new ArrayList<Conflict>();
+		List<Contact> active = new LinkedList<Contact>();
+		for (Contact contact : contacts) {
+			for (Iterator<Contact> it = active.iterator(); it.hasNext();) {
+				Contact earlier = it.next();
+				if (earlier.getEndTime() <= contact.getStartTime()) {
+					it.remove();
+				}
+				else {
+					conflicts.add(new Conflict(earlier, contact));
+				}
+			}
+			active.add(contact);
+		}
+		return conflicts;
+	}
+
+	public List<Contact> getContacts() {
+		return contacts;
+	}
+
+	public List<Conflict> getConflicts() {
+		return conflicts;
+	}
+
+	/**
+	 * @return the contacts that start from start and before end
+	 */
+	public List<Contact> getContactsBetween(long start, long end) {
+		int from = firstStartingFrom(start);
+		int to = firstStartingFrom(end);
+		return contacts.subList(from, Math.max(from, to));
+	}
+
+	private int firstStartingFrom(long time) {
+		int low = 0;
+		int high = contacts.size();
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (contacts.get(mid).getStartTime() < time) {
+				low = mid + 1;
+			}
+			else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+}
@@ -0,0 +1,81 @@
+package orbit;
+
+/**
+ * A ground station on the WGS-72 ellipsoid. The default station is read from the system properties
+ * groundStation.latitude, groundStation.longitude (degrees, east positive) and groundStation.altitude (km).
+ */
+public class GroundStation {
+	private static final double flattening = 1 / 298.26;
+	private static final double eccentricitySquared = flattening * (2 - flattening);
+
+	private final double latitude;
+	private final double longitude;
+	private final double altitude;
+	// Earth fixed position and the local up direction
+	private final double x, y, z;
+	private final double upX, upY, upZ;
+
+	/**
+	 * @param latitude geodetic degrees
+	 * @param longitude degrees, east positive
+	 * @param altitude km above the ellipsoid
+	 */
+	public GroundStation(double latitude, double longitude, double altitude) {
+		this.latitude = latitude;
+		this.longitude = longitude;
+		this.altitude = altitude;
+		double lat = Math.toRadians(latitude);
+		double lon = Math.toRadians(longitude);
+		double sinLat = Math.sin(lat);
+		double cosLat = Math.cos(lat);
+		double n = Sgp4.RADIUS_EARTH_KM / Math.sqrt(1 - eccentricitySquared * sinLat * sinLat);
+		x = (n + altitude) * cosLat * Math.cos(lon);
+		y = (n + altitude) * cosLat * Math.sin(lon);
+		z = (n * (1 - eccentricitySquared) + altitude) * sinLat;
+		upX = cosLat * Math.cos(lon);
+		upY = cosLat * Math.sin(lon);
+		upZ = sinLat;
+	}
+
+	/**
+	 * Beer-Sheva, unless the system properties say otherwise
+	 */
+	public static GroundStation getDefault() {
+		return new GroundStation(Double.parseDouble(System.getProperty("groundStation.latitude", "31.262")),
+				Double.parseDouble(System.getProperty("groundStation.longitude", "34.801")),
+				Double.parseDouble(System.getProperty("groundStation.altitude", "0.28")));
+	}
+
+	/**
+	 * @param position TEME km of the satellite
+	 * @param gmst Greenwich mean sidereal time in radians, see {@link Sgp4#gmst(long)}
+	 * @return elevation in radians above the local horizon
+	 */
+	public double elevation(double[] position, double gmst) {
+		double cos = Math.cos(gmst);
+		double sin = Math.sin(gmst);
+		// TEME to earth fixed, ignoring polar motion
+		double dx = position[0] * cos + position[1] * sin - x;
+		double dy = -position[0] * sin + position[1] * cos - y;
+		double dz = position[2] - z;
+		double range = Math.sqrt(dx * dx + dy * dy + dz * dz);
+		return Math.asin((dx * upX + dy * upY + dz * upZ) / range);
+	}
+
+	public double getLatitude() {
+		return latitude;
+	}
+
+	public double getLongitude() {
+		return longitude;
+	}
+
+	public double getAltitude() {
+		return altitude;
+	}
+
+	@Override
+	public String toString() {
+		return latitude + "," + longitude + "," + altitude + "km";
+	}
+}
@@ -1,6 +1,9 @@
 package orbit;
 
-import java.util.Date;
+import java.time.Clock;
+
+import logger.EventType;
+import logger.Loggers;
 
 public class OrbitManager {
 	public static final String tle = 
@@ -10,44 +13,72 @@ public class OrbitManager {
 
 	private static OrbitManager instance = null;
 	
-	private Pass nextPass;
 	private OrbitPropagator propagator;
+	private final PassStateService passState;
 	
 	public static final int REAL_TIME_MODE = 0;
 	public static final int ALWAYS_PASS_MODE = 1;
 	public static final int MANUAL_PASS_MODE = 2;
 	
-	private int mode;
+	private volatile int mode;
+	private Tle elements = Tle.parse(tle);
+	private GroundStation groundStation = GroundStation.getDefault();
+	private Sgp4OrbitPropagator sgp4Propagator = null;
 	
 	private OrbitManager() {
 		this.mode = MANUAL_PASS_MODE;
 		this.propagator = new SimOrbitPropagator();
-		this.nextPass = null;
+		this.passState = new PassStateService(propagator, Clock.systemUTC());
+		this.passState.addPassListener(new PassListener() {
+			@Override
+			public void onPassStart(long passEndMillis) {
+				Loggers.logEvent(EventType.PASS_START, passEndMillis, 0);
+			}
+
+			@Override
+			public void onPassEnd() {
+				Loggers.logEvent(EventType.PASS_END, 0, 0);
+			}
+		});
 	}
 	
 	public static OrbitManager getInstance() {
-		if (instance == null)
+		if (instance == null) {
 			instance = new OrbitManager();
+			instance.passState.start();
+		}
 		return instance;
 	}
 	
-	private Pass getNextPass() {
-		if (nextPass == null || nextPass.isOutOfDate()) {
-			nextPass = propagator.getNextPass();
-		}
-		return nextPass;
+	/**
+	 * The pass listeners are told about the passes from here, without anyone polling
+	 */
+	public PassStateService getPassState() {
+		return passState;
 	}
 	
+	/**
+	 * Also tells the pass listeners when the phase changed since they were last told
+	 */
 	public boolean isPassPhase() {
-		return this.getNextPass().isInPassPhase();
+		return passState.isPassPhase();
+	}
+	
+	public void addPassListener(PassListener listener) {
+		passState.addPassListener(listener);
+	}
+	
+	public void removePassListener(PassListener listener) {
+		passState.removePassListener(listener);
 	}
 	
 	/**
 	 * Get the time remaining to the Pass
-	 * @return milliseconds to this pass from now, 0 if the Pass already started
+	 * @return milliseconds to this pass from now, 0 if the Pass already started,
+	 * Long.MAX_VALUE if no pass is predicted
 	 */
 	public long timeToPassStart() {
-		return this.getNextPass().getTimeToPassStart();
+		return passState.timeToPassStart();
 	}
 	
 	/**
@@ -55,24 +86,75 @@ public class OrbitManager {
 	 * @return milliseconds to this pass from now, 0 if not in this pass phase
 	 */
 	public long timeToPassEnd() {
-		return this.getNextPass().getTimeToPassEnd();
+		return passState.timeToPassEnd();
 	}
 	
 	public int getMode() {
 		return mode;
 	}
 	
+	/**
+	 * REAL_TIME_MODE predicts the passes from the TLE, the other modes simulate them
+	 */
+	public synchronized void setMode(int mode) {
+		this.mode = mode;
+		this.propagator = mode == REAL_TIME_MODE ? getSgp4Propagator() : new SimOrbitPropagator();
+		passState.setPropagator(propagator);
+	}
+	
+	public synchronized Tle getTle() {
+		return elements;
+	}
+	
+	/**
+	 * @throws IllegalArgumentException if SGP4 cannot propagate the elements
+	 */
+	public synchronized void setTle(Tle tle) {
+		Sgp4OrbitPropagator propagator = new Sgp4OrbitPropagator(tle, groundStation);
+		this.elements = tle;
+		this.sgp4Propagator = propagator;
+		passesChanged();
+	}
+	
+	public synchronized GroundStation getGroundStation() {
+		return groundStation;
+	}
+	
+	public synchronized void setGroundStation(GroundStation groundStation) {
+		this.groundStation = groundStation;
+		this.sgp4Propagator = null;
+		passesChanged();
+	}
+	
+	public synchronized OrbitPropagator getPropagator() {
+		return propagator;
+	}
+	
+	private Sgp4OrbitPropagator getSgp4Propagator() {
+		if (sgp4Propagator == null) {
+			sgp4Propagator = new Sgp4OrbitPropagator(elements, groundStation);
+		}
+		return sgp4Propagator;
+	}
+	
+	private void passesChanged() {
+		if (mode == REAL_TIME_MODE) {
+			this.propagator = getSgp4Propagator();
+			passState.setPropagator(propagator);
+		}
+	}
+	
 	public void setPassPhase () {
 		if (mode == OrbitManager.MANUAL_PASS_MODE) {
-			Date now = new Date();
-			this.nextPass = new Pass(now, new Date(now.getTime() + 600000));
+			long now = passState.now();
+			passState.setPass(new Pass(now, now + 600000, Double.NaN));
 		}
 	}
 	
 	public void setNonPassPhase () {
 		if (mode == OrbitManager.MANUAL_PASS_MODE) {
-			Date now = new Date();
-			this.nextPass = new Pass(new Date(now.getTime() + 300000), new Date(now.getTime() + 900000));
+			long now = passState.now();
+			passState.setPass(new Pass(now + 300000, now + 900000, Double.NaN));
 		}
 	}
 }
@@ -4,5 +4,10 @@ import java.util.Collection;
 
 public interface OrbitPropagator {
 	public Pass getNextPass();
+	/**
+	 * @param time epoch ms
+	 * @return the pass in progress at the time or the next one, null if none is predicted
+	 */
+	public Pass getNextPass(long time);
 	public Collection<Pass> getPassesBetween(long start, long end);
 }
@@ -3,41 +3,64 @@ package orbit;
 import java.util.Date;
 
 public class Pass {
-	private Date startTime;
-	private Date endTime;
+	private final long startTime;
+	private final long endTime;
+	private final double maxElevation;
 	
 	public Pass (Date start, Date end) {
+		this(start.getTime(), end.getTime(), Double.NaN);
+	}
+	
+	/**
+	 * @param maxElevation degrees
+	 */
+	public Pass (Date start, Date end, double maxElevation) {
+		this(start.getTime(), end.getTime(), maxElevation);
+	}
+	
+	/**
+	 * @param start epoch ms
+	 * @param end epoch ms
+	 * @param maxElevation degrees
+	 */
+	public Pass (long start, long end, double maxElevation) {
 		this.startTime = start;
 		this.endTime = end;
+		this.maxElevation = maxElevation;
 	}
 	
 	public long getStartTime () {
-		return startTime.getTime();
+		return startTime;
 	}
 	
 	public long getEndTime () {
-		return endTime.getTime();
+		return endTime;
+	}
+	
+	/**
+	 * @return degrees above the horizon at the highest point of the pass, NaN if not predicted
+	 */
+	public double getMaxElevation () {
+		return maxElevation;
 	}
 	
 	public boolean isInPassPhase () {
-		Date now = new Date();
-		if (now.getTime() >= this.getStartTime() 
-				&& now.getTime() < this.getEndTime()) {
-			return true;
-		}
-		else {
-			return false;
-		}
+		return isInPassPhase(System.currentTimeMillis());
+	}
+	
+	/**
+	 * @param now epoch ms
+	 */
+	public boolean isInPassPhase (long now) {
+		return now >= startTime && now < endTime;
 	}
 	
 	public boolean isOutOfDate () {
-		Date now = new Date();
-		if (now.getTime() >= this.getEndTime()) {
-			return true;
-		}
-		else {
-			return false;
-		}
+		return isOutOfDate(System.currentTimeMillis());
+	}
+	
+	public boolean isOutOfDate (long now) {
+		return now >= endTime;
 	}
 	
 	/**
@@ -45,14 +68,11 @@ public class Pass {
 	 * @return milliseconds to this pass from now, 0 if the Pass already started
 	 */
 	public long getTimeToPassStart () {
-		Date now = new Date();
-		long toPass = this.getStartTime() - now.getTime();
-		if (toPass <= 0) {
-			return 0;
-		}
-		else {
-			return toPass;
-		}
+		return getTimeToPassStart(System.currentTimeMillis());
+	}
+	
+	public long getTimeToPassStart (long now) {
+		return Math.max(0, startTime - now);
 	}
 	
 	/**
@@ -60,12 +80,10 @@ public class Pass {
 	 * @return milliseconds to this pass from now, 0 if not in this pass phase
 	 */
 	public long getTimeToPassEnd () {
-		Date now = new Date();
-		if (this.isInPassPhase()) {
-			return this.getEndTime() - now.getTime();
-		}
-		else {
-			return 0;
-		}
+		return getTimeToPassEnd(System.currentTimeMillis());
+	}
+	
+	public long getTimeToPassEnd (long now) {
+		return isInPassPhase(now) ? endTime - now : 0;
 	}
 }
@@ -0,0 +1,13 @@
+package orbit;
+
+/**
+ * Told by the OrbitManager when a pass starts and ends
+ */
+public interface PassListener {
+	/**
+	 * @param passEndMillis epoch ms when the pass ends
+	 */
+	void onPassStart(long passEndMillis);
+
+	void onPassEnd();
+}
@@ -0,0 +1,65 @@
+package orbit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Predicts a week of passes for a catalog of low earth orbit satellites on fork-join pools of
+ * 1, 2, 4... threads up to the number of cores. The catalog is the ISS elements spread over
+ * other planes, inclinations and phases.
+ * Arguments: [satellites, default 300] [days, default 7]
+ */
+public class PassPredictionBenchmark {
+	private static final int warmupRounds = 3;
+	private static final int measuredRounds = 5;
+
+	public static void main(String[] args) {
+		int satellites = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+		int days = args.length > 1 ? Integer.parseInt(args[1]) : 7;
+		List<Tle> catalog = catalog(satellites);
+		long start = catalog.get(0).getEpochMillis();
+		long end = start + days * 86400000L;
+		int cores = Runtime.getRuntime().availableProcessors();
+		System.out.println(satellites + " satellites, " + days + " days, " + cores + " cores");
+
+		long single = 0;
+		for (int threads = 1; threads <= cores; threads = threads == cores ? cores + 1 : Math.min(threads * 2, cores)) {
+			ForkJoinPool pool = new ForkJoinPool(threads);
+			try {
+				PassPredictionEngine engine = new PassPredictionEngine(GroundStation.getDefault(), 0, pool);
+				ContactPlan plan = null;
+				for (int i = 0; i < warmupRounds; i++) {
+					plan = engine.predict(catalog, start, end);
+				}
+				long begin = System.nanoTime();
+				for (int i = 0; i < measuredRounds; i++) {
+					plan = engine.predict(catalog, start, end);
+				}
+				long elapsed = (System.nanoTime() - begin) / measuredRounds;
+				if (threads == 1) {
+					single = elapsed;
+				}
+				System.out.println(String.format(Locale.ROOT, "  %2d threads %8.1f ms %6.2fx  %d contacts, %d conflicts",
+						threads, elapsed / 1e6, (double) single / elapsed, plan.getContacts().size(),
+						plan.getConflicts().size()));
+			} finally {
+				pool.shutdown();
+			}
+		}
+	}
+
+	static List<Tle> catalog(int satellites) {
+		List<Tle> catalog = new ArrayList<Tle>(satellites);
+		for (int i = 0; i < satellites; i++) {
+			int number = 90000 + i;
+			String line1 = String.format(Locale.ROOT,
+					"1 %05dU 98067A   08264.51782528 -.00002182  00000-0 -11606-4 0  2927", number);
+			String line2 = String.format(Locale.ROOT, "2 %05d %8.4f %8.4f 0006703 130.5360 %8.4f 15.72125391563537",
+					number, 45.0 + (i * 7) % 53, (i * 37.3) % 360, (i * 131.7) % 360);
+			catalog.add(new Tle("SAT " + i, line1, line2));
+		}
+		return catalog;
+	}
+}
@@ -0,0 +1,102 @@
+package orbit;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Predicts the passes of a catalog of satellites over a ground station on a fork-join pool.
+ * The catalog is split in halves down to single satellites, and the sorted pass lists of the
+ * halves are merged on the way back up, so the merge runs in parallel as well.
+ * Element sets SGP4 cannot propagate are reported and left out of the plan.
+ */
+public class PassPredictionEngine {
+	private final GroundStation station;
+	private final double minElevation;
+	private final ForkJoinPool pool;
+
+	public PassPredictionEngine(GroundStation station) {
+		this(station, 0, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * @param minElevation degrees above the horizon where a pass starts
+	 */
+	public PassPredictionEngine(GroundStation station, double minElevation, ForkJoinPool pool) {
+		this.station = station;
+		this.minElevation = minElevation;
+		this.pool = pool;
+	}
+
+	/**
+	 * @param start epoch ms
+	 * @param end epoch ms
+	 */
+	public ContactPlan predict(List<Tle> catalog, long start, long end) {
+		if (catalog.isEmpty()) {
+			return new ContactPlan(new ArrayList<ContactPlan.Contact>());
+		}
+		return new ContactPlan(pool.invoke(new PredictTask(catalog, 0, catalog.size(), start, end)));
+	}
+
+	private class PredictTask extends RecursiveTask<List<ContactPlan.Contact>> {
+		private static final long serialVersionUID = 1L;
+		private final List<Tle> catalog;
+		private final int from, to;
+		private final long start, end;
+
+		PredictTask(List<Tle> catalog, int from, int to, long start, long end) {
+			this.catalog = catalog;
+			this.from = from;
+			this.to = to;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		protected List<ContactPlan.Contact> compute() {
+			if (to - from == 1) {
+				return predict(catalog.get(from));
+			}
+			int middle = (from + to) >>> 1;
+			PredictTask left = new PredictTask(catalog, from, middle, start, end);
+			left.fork();
+			List<ContactPlan.Contact> right = new PredictTask(catalog, middle, to, start, end).compute();
+			return merge(left.join(), right);
+		}
+
+		private List<ContactPlan.Contact> predict(Tle tle) {
+			Sgp4OrbitPropagator propagator;
+			try {
+				propagator = new Sgp4OrbitPropagator(tle, station, minElevation,
+						(int) ((end - start) / 86400000L) + 1);
+			} catch (IllegalArgumentException e) {
+				System.err.println("No passes predicted for " + tle + ": " + e.getMessage());
+				return Collections.emptyList();
+			}
+			List<ContactPlan.Contact> contacts = new ArrayList<ContactPlan.Contact>();
+			for (Pass pass : propagator.getPassesBetween(start, end)) {
+				contacts.add(new ContactPlan.Contact(tle, pass));
+			}
+			return contacts;
+		}
+	}
+
+	private static List<ContactPlan.Contact> merge(List<ContactPlan.Contact> a, List<ContactPlan.Contact> b) {
+		List<ContactPlan.Contact> merged = new ArrayList<ContactPlan.Contact>(a.size() + b.size());
+		int i = 0, j = 0;
+		while (i < a.size() && j < b.size()) {
+			if (a.get(i).getStartTime() <= b.get(j).getStartTime()) {
+				merged.add(a.get(i++));
+			}
+			else {
+				merged.add(b.get(j++));
+			}
+		}
+		merged.addAll(a.subList(i, a.size()));
+		merged.addAll(b.subList(j, b.size()));
+		return merged;
+	}
+}
@@ -0,0 +1,69 @@
+package orbit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+public class PassPredictionEngineTests {
+	private static final GroundStation station = new GroundStation(31.262, 34.801, 0.28);
+
+	@Test
+	public void testPlanMatchesEachSatellite() {
+		List<Tle> catalog = PassPredictionBenchmark.catalog(12);
+		long start = catalog.get(0).getEpochMillis();
+		long end = start + 2 * 86400000L;
+		ForkJoinPool pool = new ForkJoinPool(4);
+		ContactPlan plan;
+		try {
+			plan = new PassPredictionEngine(station, 0, pool).predict(catalog, start, end);
+		} finally {
+			pool.shutdown();
+		}
+
+		int expected = 0;
+		for (Tle tle : catalog) {
+			expected += new Sgp4OrbitPropagator(tle, station).getPassesBetween(start, end).size();
+		}
+		List<ContactPlan.Contact> contacts = plan.getContacts();
+		assertEquals(expected, contacts.size());
+		for (int i = 1; i < contacts.size(); i++) {
+			assertTrue(contacts.get(i - 1).getStartTime() <= contacts.get(i).getStartTime());
+		}
+
+		// Every overlapping pair, and nothing else, is a conflict
+		List<String> overlapping = new ArrayList<String>();
+		for (int i = 0; i < contacts.size(); i++) {
+			for (int j = i + 1; j < contacts.size(); j++) {
+				if (contacts.get(j).getStartTime() < contacts.get(i).getEndTime()) {
+					overlapping.add(contacts.get(i) + "/" + contacts.get(j));
+				}
+			}
+		}
+		assertFalse(overlapping.isEmpty());
+		assertEquals(overlapping.size(), plan.getConflicts().size());
+		for (ContactPlan.Conflict conflict : plan.getConflicts()) {
+			assertTrue(overlapping.contains(conflict.getFirst() + "/" + conflict.getSecond()));
+			assertTrue(conflict.getOverlapEnd() > conflict.getOverlapStart());
+		}
+	}
+
+	@Test
+	public void testBadElementsAreLeftOut() {
+		List<Tle> catalog = new ArrayList<Tle>(PassPredictionBenchmark.catalog(2));
+		// A geostationary orbit needs SDP4
+		catalog.add(new Tle("GEO", "1 90100U 98067A   08264.51782528  .00000000  00000-0  00000-0 0  2927",
+				"2 90100   0.0100  90.0000 0001000  90.0000 180.0000  1.00270000    10"));
+		long start = catalog.get(0).getEpochMillis();
+		ContactPlan plan = new PassPredictionEngine(station).predict(catalog, start, start + 86400000L);
+		for (ContactPlan.Contact contact : plan.getContacts()) {
+			assertFalse("GEO".equals(contact.getSatellite().getName()));
+		}
+		assertFalse(plan.getContacts().isEmpty());
+	}
+}
@@ -0,0 +1,219 @@
+package orbit;
+
+import java.time.Clock;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Keeps the current or next pass as two longs and answers the pass questions by comparing them
+ * with the clock, so the GUI countdown can ask every frame. The propagator is only asked again
+ * once the pass is over. Pass starts and ends are queued in the order they are seen and published
+ * to the listeners from the thread that {@link #start()} runs, which sleeps until the next boundary
+ * instead of polling. Without that thread the caller of {@link #update()} publishes them.
+ * Tests drive time with their own Clock and call update().
+ */
+public class PassStateService implements Runnable {
+	/** When no pass is predicted, the propagator is asked again after this long */
+	private static final long noPassRetryMillis = 60000;
+	/** The longest the thread sleeps, in case the clock was set */
+	private static final long maxSleepMillis = 60000;
+	/** Queued for a pass end, a pass start is queued as the end time of the pass */
+	private static final long PASS_END_EVENT = Long.MIN_VALUE;
+
+	private final Clock clock;
+	private final List<PassListener> listeners = new CopyOnWriteArrayList<PassListener>();
+	private final ArrayDeque<Long> events = new ArrayDeque<Long>();
+	/** Held while publishing, so one thread at a time calls the listeners */
+	private final Object publishLock = new Object();
+	private OrbitPropagator propagator;
+	private Pass pass = null;
+	private long passStart = Long.MAX_VALUE;
+	private long passEnd = Long.MAX_VALUE;
+	private long validUntil = Long.MIN_VALUE;
+	private boolean inPass = false;
+	private Thread thread = null;
+
+	public PassStateService(OrbitPropagator propagator, Clock clock) {
+		this.propagator = propagator;
+		this.clock = clock;
+	}
+
+	/**
+	 * @return epoch ms of the service clock
+	 */
+	public long now() {
+		return clock.millis();
+	}
+
+	public void addPassListener(PassListener listener) {
+		listeners.add(listener);
+	}
+
+	public void removePassListener(PassListener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Forget the current pass and predict with this propagator from now on
+	 */
+	public synchronized void setPropagator(OrbitPropagator propagator) {
+		this.propagator = propagator;
+		this.validUntil = Long.MIN_VALUE;
+		notifyAll();
+	}
+
+	/**
+	 * Use this pass until it ends, then go back to the propagator
+	 */
+	public synchronized void setPass(Pass pass) {
+		setBoundaries(pass, clock.millis());
+		notifyAll();
+	}
+
+	/**
+	 * @return the current or next pass, null if none is predicted
+	 */
+	public synchronized Pass getPass() {
+		refresh(clock.millis());
+		return pass;
+	}
+
+	/**
+	 * @return true in a pass phase, the listeners are told first if that changed
+	 */
+	public boolean isPassPhase() {
+		return update();
+	}
+
+	/**
+	 * @return milliseconds to the pass, 0 if it already started, Long.MAX_VALUE if none is predicted
+	 */
+	public synchronized long timeToPassStart() {
+		long now = clock.millis();
+		refresh(now);
+		return passStart == Long.MAX_VALUE ? Long.MAX_VALUE : Math.max(0, passStart - now);
+	}
+
+	/**
+	 * @return milliseconds to the end of the pass, 0 if not in a pass phase
+	 */
+	public synchronized long timeToPassEnd() {
+		long now = clock.millis();
+		refresh(now);
+		return now >= passStart && now < passEnd ? passEnd - now : 0;
+	}
+
+	/**
+	 * Check the clock against the pass and tell the listeners if a pass started or ended.
+	 * While the thread runs it tells them, otherwise they are told before this returns.
+	 * @return true in a pass phase
+	 */
+	public boolean update() {
+		boolean isPassPhase;
+		synchronized (this) {
+			long now = clock.millis();
+			refresh(now);
+			isPassPhase = now >= passStart && now < passEnd;
+			if (isPassPhase != inPass) {
+				inPass = isPassPhase;
+				events.add(isPassPhase ? passEnd : PASS_END_EVENT);
+				notifyAll();
+			}
+			if (events.isEmpty() || (thread != null && thread != Thread.currentThread())) {
+				return isPassPhase;
+			}
+		}
+		publish();
+		return isPassPhase;
+	}
+
+	/**
+	 * Call the listeners for the queued events, in order. Outside the service lock, a listener may
+	 * ask about the pass.
+	 */
+	private void publish() {
+		synchronized (publishLock) {
+			while (true) {
+				long event;
+				synchronized (this) {
+					if (events.isEmpty()) {
+						return;
+					}
+					event = events.poll();
+				}
+				for (PassListener listener : listeners) {
+					if (event == PASS_END_EVENT)
+						listener.onPassEnd();
+					else
+						listener.onPassStart(event);
+				}
+			}
+		}
+	}
+
+	private void refresh(long now) {
+		if (now < validUntil) {
+			return;
+		}
+		Pass next = propagator.getNextPass(now);
+		setBoundaries(next, now);
+		if (next == null) {
+			validUntil = now + noPassRetryMillis;
+		}
+	}
+
+	private void setBoundaries(Pass next, long now) {
+		pass = next;
+		if (next == null) {
+			passStart = Long.MAX_VALUE;
+			passEnd = Long.MAX_VALUE;
+			validUntil = Long.MIN_VALUE;
+		}
+		else {
+			passStart = next.getStartTime();
+			passEnd = next.getEndTime();
+			validUntil = passEnd;
+		}
+	}
+
+	@Override
+	public void run() {
+		while (true) {
+			update();
+			synchronized (this) {
+				if (thread != Thread.currentThread()) {
+					return;
+				}
+				if (!events.isEmpty()) {
+					continue; // Queued by another caller since update() returned
+				}
+				long now = clock.millis();
+				long next = Math.min(now < passStart ? passStart : passEnd, validUntil);
+				long sleep = next <= now ? 1 : Math.min(maxSleepMillis, next - now);
+				try {
+					wait(sleep);
+				} catch (InterruptedException e) {
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Publish the pass boundaries from a daemon thread
+	 */
+	public synchronized void start() {
+		if (thread != null) {
+			return;
+		}
+		thread = new Thread(this, "PassState");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	public synchronized void stopThread() {
+		thread = null;
+		notifyAll();
+	}
+}
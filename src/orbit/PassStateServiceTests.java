@@ -0,0 +1,180 @@
+package orbit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class PassStateServiceTests {
+	private static final long T0 = 1414998900000L;
+
+	/** Time only moves when the test says so */
+	private static class TestClock extends Clock {
+		long millis = T0;
+
+		@Override
+		public long millis() {
+			return millis;
+		}
+
+		@Override
+		public Instant instant() {
+			return Instant.ofEpochMilli(millis);
+		}
+
+		@Override
+		public ZoneId getZone() {
+			return ZoneOffset.UTC;
+		}
+
+		@Override
+		public Clock withZone(ZoneId zone) {
+			return this;
+		}
+	}
+
+	/** A 10 minute pass every 90 minutes, starting 5 minutes after T0 */
+	private static class TestPropagator implements OrbitPropagator {
+		int calls = 0;
+
+		@Override
+		public Pass getNextPass() {
+			throw new AssertionError("The service must ask with its own clock");
+		}
+
+		@Override
+		public Pass getNextPass(long time) {
+			calls++;
+			long orbit = Math.max(0, Math.floorDiv(time - T0 - 900000, 5400000) + 1);
+			long start = T0 + 300000 + orbit * 5400000;
+			return new Pass(start, start + 600000, 45);
+		}
+
+		@Override
+		public Collection<Pass> getPassesBetween(long start, long end) {
+			return null;
+		}
+	}
+
+	private TestClock clock;
+	private TestPropagator propagator;
+	private PassStateService service;
+	private List<String> events;
+
+	@Before
+	public void initObjects() {
+		clock = new TestClock();
+		propagator = new TestPropagator();
+		service = new PassStateService(propagator, clock);
+		events = new ArrayList<String>();
+		service.addPassListener(new PassListener() {
+			@Override
+			public void onPassStart(long passEndMillis) {
+				events.add("start " + (passEndMillis - T0));
+			}
+
+			@Override
+			public void onPassEnd() {
+				events.add("end");
+			}
+		});
+	}
+
+	@Test
+	public void testTransitions() {
+		assertFalse(service.update());
+		assertEquals(300000, service.timeToPassStart());
+		assertEquals(0, service.timeToPassEnd());
+
+		clock.millis = T0 + 300000;
+		assertTrue(service.update());
+		assertEquals(0, service.timeToPassStart());
+		assertEquals(600000, service.timeToPassEnd());
+		// No event twice for the same pass
+		assertTrue(service.isPassPhase());
+
+		clock.millis = T0 + 900000;
+		assertFalse(service.update());
+		assertEquals(5400000 - 600000, service.timeToPassStart());
+
+		clock.millis = T0 + 300000 + 5400000 + 1000;
+		assertTrue(service.update());
+		assertEquals(599000, service.timeToPassEnd());
+
+		List<String> expected = new ArrayList<String>();
+		expected.add("start 900000");
+		expected.add("end");
+		expected.add("start " + (900000 + 5400000));
+		assertEquals(expected, events);
+	}
+
+	@Test
+	public void testFrequentCallsReuseThePass() {
+		for (long t = T0; t < T0 + 900000; t += 16) {
+			clock.millis = t;
+			service.timeToPassStart();
+			service.isPassPhase();
+		}
+		assertEquals(1, propagator.calls);
+		assertEquals(1, events.size());
+	}
+
+	@Test
+	public void testThreadPublishesInOrder() throws Exception {
+		final List<String> threads = new ArrayList<String>();
+		service.addPassListener(new PassListener() {
+			@Override
+			public void onPassStart(long passEndMillis) {
+				threads.add(Thread.currentThread().getName());
+			}
+
+			@Override
+			public void onPassEnd() {
+				threads.add(Thread.currentThread().getName());
+			}
+		});
+		service.start();
+		try {
+			clock.millis = T0 + 300000;
+			assertTrue(service.update());
+			clock.millis = T0 + 900000;
+			assertFalse(service.update());
+			long deadline = System.currentTimeMillis() + 1000;
+			while (threads.size() < 2 && System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+		} finally {
+			service.stopThread();
+		}
+		List<String> expected = new ArrayList<String>();
+		expected.add("start 900000");
+		expected.add("end");
+		assertEquals(expected, events);
+		assertEquals(2, threads.size());
+		for (String name : threads) {
+			assertEquals("PassState", name);
+		}
+	}
+
+	@Test
+	public void testManualPass() {
+		service.setPass(new Pass(T0, T0 + 60000, Double.NaN));
+		assertTrue(service.update());
+		assertEquals(60000, service.timeToPassEnd());
+		// After the manual pass the propagator takes over again
+		clock.millis = T0 + 60000;
+		assertFalse(service.update());
+		assertEquals(240000, service.timeToPassStart());
+		assertEquals(1, propagator.calls);
+	}
+}
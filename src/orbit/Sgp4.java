@@ -0,0 +1,297 @@
+package orbit;
+
+/**
+ * The SGP4 propagator for near earth orbits (periods under 225 minutes), following
+ * Vallado, Crawford, Hujsak and Kelso, "Revisiting Spacetrack Report #3" (2006), with the
+ * WGS-72 constants the element sets are fitted with. Positions are in the TEME frame.
+ * The SDP4 deep space terms are not implemented: a deep space element set is rejected.
+ */
+public class Sgp4 {
+	private static final double twoPi = 2 * Math.PI;
+	private static final double x2o3 = 2.0 / 3.0;
+	static final double RADIUS_EARTH_KM = 6378.135;
+	private static final double mu = 398600.8;
+	private static final double xke = 60.0 / Math.sqrt(RADIUS_EARTH_KM * RADIUS_EARTH_KM * RADIUS_EARTH_KM / mu);
+	private static final double j2 = 0.001082616;
+	private static final double j3 = -0.00000253881;
+	private static final double j4 = -0.00000165597;
+	private static final double j3oj2 = j3 / j2;
+	private static final double vkmpersec = RADIUS_EARTH_KM * xke / 60.0;
+	private static final double temp4 = 1.5e-12;
+
+	private final Tle tle;
+	private final long epochMillis;
+	private final double ecco, inclo, nodeo, argpo, mo, bstar;
+	private final double noUnkozai, ao;
+	private final boolean isimp;
+	private final double con41, x1mth2, x7thm1, cc1, cc4, cc5, d2, d3, d4, delmo, eta, argpdot, omgcof,
+			sinmao, t2cof, t3cof, t4cof, t5cof, xlcof, aycof, xmcof, nodecf, mdot, nodedot;
+
+	public Sgp4(Tle tle) {
+		this.tle = tle;
+		this.epochMillis = tle.getEpochMillis();
+		this.ecco = tle.getEccentricity();
+		this.inclo = tle.getInclination();
+		this.nodeo = tle.getRaan();
+		this.argpo = tle.getArgumentOfPerigee();
+		this.mo = tle.getMeanAnomaly();
+		this.bstar = tle.getBstar();
+		double noKozai = tle.getMeanMotion();
+
+		// Recover the original mean motion and semi major axis from the Kozai mean motion
+		double eccsq = ecco * ecco;
+		double omeosq = 1.0 - eccsq;
+		double rteosq = Math.sqrt(omeosq);
+		double cosio = Math.cos(inclo);
+		double cosio2 = cosio * cosio;
+		double ak = Math.pow(xke / noKozai, x2o3);
+		double d1 = 0.75 * j2 * (3.0 * cosio2 - 1.0) / (rteosq * omeosq);
+		double del = d1 / (ak * ak);
+		double adel = ak * (1.0 - del * del - del * (1.0 / 3.0 + 134.0 * del * del / 81.0));
+		del = d1 / (adel * adel);
+		noUnkozai = noKozai / (1.0 + del);
+		ao = Math.pow(xke / noUnkozai, x2o3);
+		double sinio = Math.sin(inclo);
+		double po = ao * omeosq;
+		double con42 = 1.0 - 5.0 * cosio2;
+		con41 = -con42 - cosio2 - cosio2;
+		double posq = po * po;
+		double rp = ao * (1.0 - ecco);
+
+		if (twoPi / noUnkozai >= 225.0) {
+			throw new IllegalArgumentException(tle + " is a deep space orbit, SDP4 is not supported");
+		}
+		if (omeosq <= 0 || noUnkozai <= 0) {
+			throw new IllegalArgumentException(tle + " has bad elements");
+		}
+
+		isimp = rp < 220.0 / RADIUS_EARTH_KM + 1.0;
+		double sfour = 78.0 / RADIUS_EARTH_KM + 1.0;
+		double qzms24 = Math.pow((120.0 - 78.0) / RADIUS_EARTH_KM, 4);
+		double perige = (rp - 1.0) * RADIUS_EARTH_KM;
+		if (perige < 156.0) {
+			sfour = perige - 78.0;
+			if (perige < 98.0) {
+				sfour = 20.0;
+			}
+			qzms24 = Math.pow((120.0 - sfour) / RADIUS_EARTH_KM, 4);
+			sfour = sfour / RADIUS_EARTH_KM + 1.0;
+		}
+		double pinvsq = 1.0 / posq;
+		double tsi = 1.0 / (ao - sfour);
+		eta = ao * ecco * tsi;
+		double etasq = eta * eta;
+		double eeta = ecco * eta;
+		double psisq = Math.abs(1.0 - etasq);
+		double coef = qzms24 * Math.pow(tsi, 4);
+		double coef1 = coef / Math.pow(psisq, 3.5);
+		double cc2 = coef1 * noUnkozai * (ao * (1.0 + 1.5 * etasq + eeta * (4.0 + etasq))
+				+ 0.375 * j2 * tsi / psisq * con41 * (8.0 + 3.0 * etasq * (8.0 + etasq)));
+		cc1 = bstar * cc2;
+		double cc3 = 0.0;
+		if (ecco > 1.0e-4) {
+			cc3 = -2.0 * coef * tsi * j3oj2 * noUnkozai * sinio / ecco;
+		}
+		x1mth2 = 1.0 - cosio2;
+		cc4 = 2.0 * noUnkozai * coef1 * ao * omeosq * (eta * (2.0 + 0.5 * etasq) + ecco * (0.5 + 2.0 * etasq)
+				- j2 * tsi / (ao * psisq) * (-3.0 * con41 * (1.0 - 2.0 * eeta + etasq * (1.5 - 0.5 * eeta))
+				+ 0.75 * x1mth2 * (2.0 * etasq - eeta * (1.0 + etasq)) * Math.cos(2.0 * argpo)));
+		cc5 = 2.0 * coef1 * ao * omeosq * (1.0 + 2.75 * (etasq + eeta) + eeta * etasq);
+		double cosio4 = cosio2 * cosio2;
+		double temp1 = 1.5 * j2 * pinvsq * noUnkozai;
+		double temp2 = 0.5 * temp1 * j2 * pinvsq;
+		double temp3 = -0.46875 * j4 * pinvsq * pinvsq * noUnkozai;
+		mdot = noUnkozai + 0.5 * temp1 * rteosq * con41 + 0.0625 * temp2 * rteosq * (13.0 - 78.0 * cosio2 + 137.0 * cosio4);
+		argpdot = -0.5 * temp1 * con42 + 0.0625 * temp2 * (7.0 - 114.0 * cosio2 + 395.0 * cosio4)
+				+ temp3 * (3.0 - 36.0 * cosio2 + 49.0 * cosio4);
+		double xhdot1 = -temp1 * cosio;
+		nodedot = xhdot1 + (0.5 * temp2 * (4.0 - 19.0 * cosio2) + 2.0 * temp3 * (3.0 - 7.0 * cosio2)) * cosio;
+		omgcof = bstar * cc3 * Math.cos(argpo);
+		xmcof = ecco > 1.0e-4 ? -x2o3 * coef * bstar / eeta : 0.0;
+		nodecf = 3.5 * omeosq * xhdot1 * cc1;
+		t2cof = 1.5 * cc1;
+		if (Math.abs(cosio + 1.0) > 1.5e-12) {
+			xlcof = -0.25 * j3oj2 * sinio * (3.0 + 5.0 * cosio) / (1.0 + cosio);
+		}
+		else {
+			xlcof = -0.25 * j3oj2 * sinio * (3.0 + 5.0 * cosio) / temp4;
+		}
+		aycof = -0.5 * j3oj2 * sinio;
+		delmo = Math.pow(1.0 + eta * Math.cos(mo), 3);
+		sinmao = Math.sin(mo);
+		x7thm1 = 7.0 * cosio2 - 1.0;
+
+		if (!isimp) {
+			double cc1sq = cc1 * cc1;
+			d2 = 4.0 * ao * tsi * cc1sq;
+			double temp = d2 * tsi * cc1 / 3.0;
+			d3 = (17.0 * ao + sfour) * temp;
+			d4 = 0.5 * temp * ao * tsi * (221.0 * ao + 31.0 * sfour) * cc1;
+			t3cof = d2 + 2.0 * cc1sq;
+			t4cof = 0.25 * (3.0 * d3 + cc1 * (12.0 * d2 + 10.0 * cc1sq));
+			t5cof = 0.2 * (3.0 * d4 + 12.0 * cc1 * d3 + 6.0 * d2 * d2 + 15.0 * cc1sq * (2.0 * d2 + cc1sq));
+		}
+		else {
+			d2 = d3 = d4 = t3cof = t4cof = t5cof = 0;
+		}
+	}
+
+	public Tle getTle() {
+		return tle;
+	}
+
+	/**
+	 * @param millis epoch ms (UTC)
+	 * @param position TEME km, 3 elements
+	 * @return false if the orbit decayed or the elements are no longer valid at that time
+	 */
+	public boolean propagateTo(long millis, double[] position) {
+		return propagate((millis - epochMillis) / 60000.0, position, null);
+	}
+
+	/**
+	 * @param tsince minutes since the element set epoch
+	 * @param position TEME km, 3 elements
+	 * @param velocity TEME km/s, 3 elements, or null
+	 * @return false if the orbit decayed or the elements are no longer valid at that time
+	 */
+	public boolean propagate(double tsince, double[] position, double[] velocity) {
+		double t = tsince;
+		double xmdf = mo + mdot * t;
+		double argpdf = argpo + argpdot * t;
+		double nodedf = nodeo + nodedot * t;
+		double argpm = argpdf;
+		double mm = xmdf;
+		double t2 = t * t;
+		double nodem = nodedf + nodecf * t2;
+		double tempa = 1.0 - cc1 * t;
+		double tempe = bstar * cc4 * t;
+		double templ = t2cof * t2;
+
+		if (!isimp) {
+			double delomg = omgcof * t;
+			double delmtemp = 1.0 + eta * Math.cos(xmdf);
+			double delm = xmcof * (delmtemp * delmtemp * delmtemp - delmo);
+			double temp = delomg + delm;
+			mm = xmdf + temp;
+			argpm = argpdf - temp;
+			double t3 = t2 * t;
+			double t4 = t3 * t;
+			tempa = tempa - d2 * t2 - d3 * t3 - d4 * t4;
+			tempe = tempe + bstar * cc5 * (Math.sin(mm) - sinmao);
+			templ = templ + t3cof * t3 + t4 * (t4cof + t * t5cof);
+		}
+
+		double nm = noUnkozai;
+		double em = ecco;
+		double inclm = inclo;
+		double am = Math.pow(xke / nm, x2o3) * tempa * tempa;
+		nm = xke / Math.pow(am, 1.5);
+		em = em - tempe;
+		if (em >= 1.0 || em < -0.001 || am < 0.95) {
+			return false;
+		}
+		if (em < 1.0e-6) {
+			em = 1.0e-6;
+		}
+		mm = mm + noUnkozai * templ;
+		double xlm = mm + argpm + nodem;
+		nodem = nodem % twoPi;
+		argpm = argpm % twoPi;
+		xlm = xlm % twoPi;
+		mm = (xlm - argpm - nodem) % twoPi;
+
+		double sinip = Math.sin(inclm);
+		double cosip = Math.cos(inclm);
+
+		// Long period periodics
+		double axnl = em * Math.cos(argpm);
+		double temp = 1.0 / (am * (1.0 - em * em));
+		double aynl = em * Math.sin(argpm) + temp * aycof;
+		double xl = mm + argpm + nodem + temp * xlcof * axnl;
+
+		// Kepler's equation
+		double u = (xl - nodem) % twoPi;
+		double eo1 = u;
+		double tem5 = 9999.9;
+		double sineo1 = 0, coseo1 = 0;
+		for (int ktr = 1; Math.abs(tem5) >= 1.0e-12 && ktr <= 10; ktr++) {
+			sineo1 = Math.sin(eo1);
+			coseo1 = Math.cos(eo1);
+			tem5 = 1.0 - coseo1 * axnl - sineo1 * aynl;
+			tem5 = (u - aynl * coseo1 + axnl * sineo1 - eo1) / tem5;
+			if (Math.abs(tem5) >= 0.95) {
+				tem5 = tem5 > 0.0 ? 0.95 : -0.95;
+			}
+			eo1 = eo1 + tem5;
+		}
+
+		// Short period periodics
+		double ecose = axnl * coseo1 + aynl * sineo1;
+		double esine = axnl * sineo1 - aynl * coseo1;
+		double el2 = axnl * axnl + aynl * aynl;
+		double pl = am * (1.0 - el2);
+		if (pl < 0.0) {
+			return false;
+		}
+		double rl = am * (1.0 - ecose);
+		double rdotl = Math.sqrt(am) * esine / rl;
+		double rvdotl = Math.sqrt(pl) / rl;
+		double betal = Math.sqrt(1.0 - el2);
+		temp = esine / (1.0 + betal);
+		double sinu = am / rl * (sineo1 - aynl - axnl * temp);
+		double cosu = am / rl * (coseo1 - axnl + aynl * temp);
+		double su = Math.atan2(sinu, cosu);
+		double sin2u = (cosu + cosu) * sinu;
+		double cos2u = 1.0 - 2.0 * sinu * sinu;
+		temp = 1.0 / pl;
+		double temp1 = 0.5 * j2 * temp;
+		double temp2 = temp1 * temp;
+
+		double mrt = rl * (1.0 - 1.5 * temp2 * betal * con41) + 0.5 * temp1 * x1mth2 * cos2u;
+		su = su - 0.25 * temp2 * x7thm1 * sin2u;
+		double xnode = nodem + 1.5 * temp2 * cosip * sin2u;
+		double xinc = inclm + 1.5 * temp2 * cosip * sinip * cos2u;
+		double mvt = rdotl - nm * temp1 * x1mth2 * sin2u / xke;
+		double rvdot = rvdotl + nm * temp1 * (x1mth2 * cos2u + 1.5 * con41) / xke;
+
+		double sinsu = Math.sin(su);
+		double cossu = Math.cos(su);
+		double snod = Math.sin(xnode);
+		double cnod = Math.cos(xnode);
+		double sini = Math.sin(xinc);
+		double cosi = Math.cos(xinc);
+		double xmx = -snod * cosi;
+		double xmy = cnod * cosi;
+		double ux = xmx * sinsu + cnod * cossu;
+		double uy = xmy * sinsu + snod * cossu;
+		double uz = sini * sinsu;
+		position[0] = mrt * ux * RADIUS_EARTH_KM;
+		position[1] = mrt * uy * RADIUS_EARTH_KM;
+		position[2] = mrt * uz * RADIUS_EARTH_KM;
+		if (velocity != null) {
+			double vx = xmx * cossu - cnod * sinsu;
+			double vy = xmy * cossu - snod * sinsu;
+			double vz = sini * cossu;
+			velocity[0] = (mvt * ux + rvdot * vx) * vkmpersec;
+			velocity[1] = (mvt * uy + rvdot * vy) * vkmpersec;
+			velocity[2] = (mvt * uz + rvdot * vz) * vkmpersec;
+		}
+		// Below the surface, the orbit decayed
+		return mrt >= 1.0;
+	}
+
+	/**
+	 * Greenwich mean sidereal time (IAU 1982)
+	 * @param millis epoch ms (UTC, close enough to UT1 for pass prediction)
+	 * @return radians
+	 */
+	public static double gmst(long millis) {
+		double jd = millis / 86400000.0 + 2440587.5;
+		double tut1 = (jd - 2451545.0) / 36525.0;
+		double temp = -6.2e-6 * tut1 * tut1 * tut1 + 0.093104 * tut1 * tut1
+				+ (876600.0 * 3600 + 8640184.812866) * tut1 + 67310.54841;
+		temp = (temp * Math.PI / 180.0 / 240.0) % twoPi;
+		return temp < 0 ? temp + twoPi : temp;
+	}
+}
@@ -0,0 +1,242 @@
+package orbit;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Predicts the passes over a ground station from the TLE with SGP4. The passes of the next
+ * days are computed once into a table: the elevation is sampled every coarse step, AOS and LOS
+ * are refined by bisection between the samples around the horizon and the max elevation by a
+ * golden section search. Where the samples peak below the horizon the peak between them is
+ * searched too, so a grazing pass shorter than the step is not missed. Asking for the next pass is a binary search of the table, the table
+ * only grows when a caller asks past its end.
+ */
+public class Sgp4OrbitPropagator implements OrbitPropagator {
+	public static final int DEFAULT_DAYS = 7;
+	/** Passes shorter than this may fall between two samples, see {@link #search(long, long)} */
+	private static final long coarseStepMillis = 60000;
+	private static final long refineMillis = 100;
+	private static final long dayMillis = 86400000L;
+	private static final double goldenRatio = (Math.sqrt(5) - 1) / 2;
+
+	private final Sgp4 sgp4;
+	private final GroundStation station;
+	private final double minElevation;
+	private final int days;
+	private final double[] position = new double[3];
+
+	private final List<Pass> passes = new ArrayList<Pass>();
+	private long tableStart = Long.MAX_VALUE;
+	private long tableEnd = Long.MIN_VALUE;
+
+	public Sgp4OrbitPropagator(Tle tle, GroundStation station) {
+		this(tle, station, 0, DEFAULT_DAYS);
+	}
+
+	/**
+	 * @param minElevation degrees above the horizon where a pass starts
+	 * @param days how far ahead the table is computed
+	 */
+	public Sgp4OrbitPropagator(Tle tle, GroundStation station, double minElevation, int days) {
+		this.sgp4 = new Sgp4(tle);
+		this.station = station;
+		this.minElevation = Math.toRadians(minElevation);
+		this.days = days;
+	}
+
+	@Override
+	public Pass getNextPass() {
+		return getNextPass(System.currentTimeMillis());
+	}
+
+	@Override
+	public synchronized Pass getNextPass(long time) {
+		if (time < tableStart || time + dayMillis > tableEnd) {
+			fill(time, time + days * dayMillis);
+		}
+		int index = firstEndingAfter(time);
+		return index < passes.size() ? passes.get(index) : null;
+	}
+
+	@Override
+	public synchronized Collection<Pass> getPassesBetween(long start, long end) {
+		fill(start, end);
+		List<Pass> between = new ArrayList<Pass>();
+		for (int i = firstEndingAfter(start); i < passes.size() && passes.get(i).getStartTime() < end; i++) {
+			between.add(passes.get(i));
+		}
+		return Collections.unmodifiableList(between);
+	}
+
+	public GroundStation getGroundStation() {
+		return station;
+	}
+
+	public Tle getTle() {
+		return sgp4.getTle();
+	}
+
+	private int firstEndingAfter(long time) {
+		int low = 0;
+		int high = passes.size();
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (passes.get(mid).getEndTime() <= time) {
+				low = mid + 1;
+			}
+			else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Make the table cover start..end, keeping it contiguous
+	 */
+	private void fill(long start, long end) {
+		if (tableStart > tableEnd) {
+			passes.addAll(search(start, end));
+			tableStart = start;
+			tableEnd = end;
+			return;
+		}
+		if (start < tableStart) {
+			List<Pass> earlier = search(start, tableStart);
+			// The pass in progress at the old table start is already there
+			while (!earlier.isEmpty() && !passes.isEmpty()
+					&& earlier.get(earlier.size() - 1).getEndTime() > passes.get(0).getStartTime()) {
+				earlier.remove(earlier.size() - 1);
+			}
+			passes.addAll(0, earlier);
+			tableStart = start;
+		}
+		if (end > tableEnd) {
+			List<Pass> later = search(tableEnd, end);
+			while (!later.isEmpty() && !passes.isEmpty()
+					&& later.get(0).getStartTime() < passes.get(passes.size() - 1).getEndTime()) {
+				later.remove(0);
+			}
+			passes.addAll(later);
+			tableEnd = end;
+		}
+	}
+
+	/**
+	 * Find the passes from start to end, a pass in progress at start or end is included whole.
+	 * A pass shorter than the coarse step can lie between two samples below the horizon, it is
+	 * looked for wherever the elevation stops rising: the samples around a peak bracket it.
+	 */
+	private List<Pass> search(long start, long end) {
+		List<Pass> found = new ArrayList<Pass>();
+		long t = start;
+		double previous = Double.NaN;
+		double elevation = elevation(t);
+		if (elevation >= minElevation) {
+			t = backToAos(t);
+		}
+		long aos = elevation >= minElevation ? t : -1;
+		while (t < end || aos >= 0) {
+			long next = t + coarseStepMillis;
+			double nextElevation = elevation(next);
+			if (Double.isNaN(nextElevation)) {
+				break;
+			}
+			if (aos < 0 && nextElevation >= minElevation) {
+				aos = crossing(t, next, true);
+			}
+			else if (aos >= 0 && nextElevation < minElevation) {
+				long los = crossing(t, next, false);
+				found.add(new Pass(aos, los, Math.toDegrees(maxElevation(aos, los))));
+				aos = -1;
+			}
+			else if (aos < 0 && elevation > previous && elevation >= nextElevation) {
+				long before = t - coarseStepMillis;
+				long peak = peak(before, next);
+				double maxElevation = elevation(peak);
+				if (maxElevation >= minElevation) {
+					found.add(new Pass(crossing(before, peak, true), crossing(peak, next, false), Math.toDegrees(maxElevation)));
+				}
+			}
+			previous = elevation;
+			elevation = nextElevation;
+			t = next;
+		}
+		return found;
+	}
+
+	private long backToAos(long t) {
+		long earlier = t;
+		do {
+			t = earlier;
+			earlier = t - coarseStepMillis;
+		} while (elevation(earlier) >= minElevation);
+		return crossing(earlier, t, true);
+	}
+
+	/**
+	 * Bisect the horizon crossing between a and b
+	 * @return the first ms at or above the horizon if rising, the first below if setting
+	 */
+	private long crossing(long a, long b, boolean rising) {
+		while (b - a > refineMillis) {
+			long mid = (a + b) >>> 1;
+			if ((elevation(mid) >= minElevation) == rising) {
+				b = mid;
+			}
+			else {
+				a = mid;
+			}
+		}
+		return b;
+	}
+
+	/**
+	 * @return radians
+	 */
+	private double maxElevation(long aos, long los) {
+		return elevation(peak(aos, los));
+	}
+
+	/**
+	 * Golden section search, the elevation has one peak during a low earth orbit pass
+	 * @return the time of the highest elevation between a and b
+	 */
+	private long peak(long from, long to) {
+		double a = from;
+		double b = to;
+		double c = b - goldenRatio * (b - a);
+		double d = a + goldenRatio * (b - a);
+		double ec = elevation((long) c);
+		double ed = elevation((long) d);
+		while (b - a > refineMillis) {
+			if (ec > ed) {
+				b = d;
+				d = c;
+				ed = ec;
+				c = b - goldenRatio * (b - a);
+				ec = elevation((long) c);
+			}
+			else {
+				a = c;
+				c = d;
+				ec = ed;
+				d = a + goldenRatio * (b - a);
+				ed = elevation((long) d);
+			}
+		}
+		return ec > ed ? (long) c : (long) d;
+	}
+
+	/**
+	 * @return radians, NaN once the orbit decayed
+	 */
+	private double elevation(long millis) {
+		if (!sgp4.propagateTo(millis, position)) {
+			return Double.NaN;
+		}
+		return station.elevation(position, Sgp4.gmst(millis));
+	}
+}
@@ -0,0 +1,93 @@
+package orbit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class Sgp4Tests {
+	// Vallado's verification satellite, the expected vectors are from his tcppver.out
+	private static final Tle vanguard = new Tle(null,
+			"1 00005U 58002B   00179.78495062  .00000023  00000-0  28098-4 0  4753",
+			"2 00005  34.2682 348.7242 1859667 331.7664  19.3264 10.82419157413667");
+
+	@Test
+	public void testVerificationVectors() {
+		double[] r = new double[3];
+		double[] v = new double[3];
+		Sgp4 sgp4 = new Sgp4(vanguard);
+
+		assertTrue(sgp4.propagate(0, r, v));
+		assertVector(new double[] {7022.46529266, -1400.08296755, 0.03995155}, r, 1e-3);
+		assertVector(new double[] {1.893841015, 6.405893759, 4.534807250}, v, 1e-6);
+
+		assertTrue(sgp4.propagate(360, r, v));
+		assertVector(new double[] {-7154.03120202, -3783.17682504, -3536.19412294}, r, 1e-3);
+		assertVector(new double[] {4.741887409, -4.151817765, -2.093935425}, v, 1e-6);
+
+		assertTrue(sgp4.propagate(4320, r, v));
+		assertVector(new double[] {-9060.47373569, 4658.70952502, 813.68673153}, r, 1e-3);
+	}
+
+	@Test
+	public void testPassTable() {
+		Tle iss = Tle.parse(OrbitManager.tle);
+		Sgp4OrbitPropagator propagator = new Sgp4OrbitPropagator(iss, new GroundStation(31.262, 34.801, 0.28));
+		long start = iss.getEpochMillis();
+		long day = 86400000L;
+		List<Pass> week = new ArrayList<Pass>(propagator.getPassesBetween(start, start + 7 * day));
+		// About four to six passes a day at this latitude
+		assertTrue(week.size() > 20 && week.size() < 50);
+		long previousEnd = 0;
+		for (Pass pass : week) {
+			assertTrue(pass.getStartTime() > previousEnd);
+			long duration = pass.getEndTime() - pass.getStartTime();
+			assertTrue(duration > 0 && duration < 15 * 60000);
+			assertTrue(pass.getMaxElevation() > 0 && pass.getMaxElevation() <= 90);
+			previousEnd = pass.getEndTime();
+		}
+
+		// Looking up a pass is served from the table
+		Pass third = week.get(2);
+		assertSame(third, propagator.getNextPass(week.get(1).getEndTime()));
+		assertSame(third, propagator.getNextPass(third.getStartTime() + 1000));
+
+		// A table grown piece by piece has the same passes
+		Sgp4OrbitPropagator pieces = new Sgp4OrbitPropagator(iss, new GroundStation(31.262, 34.801, 0.28));
+		pieces.getPassesBetween(start + 3 * day, start + 4 * day);
+		pieces.getPassesBetween(start + 5 * day, start + 7 * day);
+		List<Pass> again = new ArrayList<Pass>(pieces.getPassesBetween(start, start + 7 * day));
+		assertEquals(week.size(), again.size());
+		for (int i = 0; i < week.size(); i++) {
+			assertEquals(week.get(i).getStartTime(), again.get(i).getStartTime(), 200);
+			assertEquals(week.get(i).getEndTime(), again.get(i).getEndTime(), 200);
+		}
+		assertFalse(propagator.getPassesBetween(start + 8 * day, start + 9 * day).isEmpty());
+	}
+
+	@Test
+	public void testGrazingPassBetweenSamples() {
+		Tle iss = Tle.parse(OrbitManager.tle);
+		GroundStation station = new GroundStation(31.262, 34.801, 0.28);
+		long start = iss.getEpochMillis();
+		Pass pass = new Sgp4OrbitPropagator(iss, station).getPassesBetween(start, start + 86400000L).iterator().next();
+		// Just under the peak the pass lasts seconds, far less than the coarse step
+		Sgp4OrbitPropagator grazing = new Sgp4OrbitPropagator(iss, station, pass.getMaxElevation() - 0.02, 1);
+		List<Pass> found = new ArrayList<Pass>(grazing.getPassesBetween(pass.getStartTime() - 600000, pass.getEndTime() + 600000));
+		assertEquals(1, found.size());
+		long duration = found.get(0).getEndTime() - found.get(0).getStartTime();
+		assertTrue(duration > 0 && duration < 60000);
+		assertEquals(pass.getMaxElevation(), found.get(0).getMaxElevation(), 0.01);
+	}
+
+	private static void assertVector(double[] expected, double[] actual, double delta) {
+		for (int i = 0; i < 3; i++) {
+			assertEquals(expected[i], actual[i], delta);
+		}
+	}
+}
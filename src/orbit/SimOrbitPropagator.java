@@ -1,7 +1,6 @@
 package orbit;
 
 import java.util.Collection;
-import java.util.Date;
 
 public class SimOrbitPropagator implements OrbitPropagator {
 	
@@ -10,12 +9,16 @@ public class SimOrbitPropagator implements OrbitPropagator {
 	
 	@Override
 	public Pass getNextPass() {
-		Date now = new Date();
+		return getNextPass(System.currentTimeMillis());
+	}
+	
+	@Override
+	public Pass getNextPass(long now) {
 		if (OrbitManager.getInstance().getMode() == OrbitManager.ALWAYS_PASS_MODE) {
-			return new Pass (now, new Date(now.getTime() + 240000));
+			return new Pass (now, now + 240000, Double.NaN);
 		}
 		else if (OrbitManager.getInstance().getMode() == OrbitManager.MANUAL_PASS_MODE){
-			return new Pass (new Date(now.getTime() + 240000), new Date(now.getTime() + 840000));
+			return new Pass (now + 240000, now + 840000, Double.NaN);
 		}
 		else {
 			return null;
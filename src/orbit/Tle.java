@@ -0,0 +1,175 @@
+package orbit;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A NORAD two line element set, with the angles in radians and the mean motion in radians per minute
+ * as the SGP4 propagator wants them.
+ */
+public class Tle {
+	private static final double deg2rad = Math.PI / 180;
+	private static final double minutesPerDay = 1440;
+
+	private final String name;
+	private final int satelliteNumber;
+	private final long epochMillis;
+	private final double bstar;
+	private final double inclination;
+	private final double raan;
+	private final double eccentricity;
+	private final double argumentOfPerigee;
+	private final double meanAnomaly;
+	private final double meanMotion;
+
+	/**
+	 * @param name may be null
+	 * @throws IllegalArgumentException if the lines are not a valid element set
+	 */
+	public Tle(String name, String line1, String line2) {
+		line1 = line1.trim();
+		line2 = line2.trim();
+		if (line1.length() < 64 || line2.length() < 63 || line1.charAt(0) != '1' || line2.charAt(0) != '2') {
+			throw new IllegalArgumentException("Not a two line element set:\n" + line1 + "\n" + line2);
+		}
+		try {
+			this.name = name == null ? null : name.trim();
+			this.satelliteNumber = Integer.parseInt(line1.substring(2, 7).trim());
+			int year = Integer.parseInt(line1.substring(18, 20).trim());
+			double dayOfYear = Double.parseDouble(line1.substring(20, 32).trim());
+			year += year < 57 ? 2000 : 1900;
+			this.epochMillis = Math.round((daysTo(year) + dayOfYear - 1) * 86400000.0);
+			this.bstar = parseExponent(line1.substring(53, 61));
+			this.inclination = Double.parseDouble(line2.substring(8, 16).trim()) * deg2rad;
+			this.raan = Double.parseDouble(line2.substring(17, 25).trim()) * deg2rad;
+			this.eccentricity = Double.parseDouble("0." + line2.substring(26, 33).trim());
+			this.argumentOfPerigee = Double.parseDouble(line2.substring(34, 42).trim()) * deg2rad;
+			this.meanAnomaly = Double.parseDouble(line2.substring(43, 51).trim()) * deg2rad;
+			this.meanMotion = Double.parseDouble(line2.substring(52, 63).trim()) * 2 * Math.PI / minutesPerDay;
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Bad number in the element set:\n" + line1 + "\n" + line2);
+		}
+	}
+
+	/**
+	 * @param tle two lines, or three with the name first
+	 */
+	public static Tle parse(String tle) {
+		String[] lines = tle.trim().split("\\r?\\n");
+		if (lines.length == 2) {
+			return new Tle(null, lines[0], lines[1]);
+		}
+		if (lines.length == 3) {
+			return new Tle(lines[0], lines[1], lines[2]);
+		}
+		throw new IllegalArgumentException("A TLE has two or three lines, not " + lines.length);
+	}
+
+	/**
+	 * Parse a catalog of element sets, like the files Celestrak publishes, each set two lines
+	 * or three with the name first. Blank lines are skipped.
+	 */
+	public static List<Tle> parseCatalog(String catalog) {
+		List<Tle> tles = new ArrayList<Tle>();
+		String name = null;
+		String line1 = null;
+		for (String line : catalog.split("\\r?\\n")) {
+			if (line.trim().isEmpty()) {
+				continue;
+			}
+			if (line.startsWith("1 ") && line1 == null) {
+				line1 = line;
+			}
+			else if (line.startsWith("2 ") && line1 != null) {
+				tles.add(new Tle(name, line1, line));
+				name = null;
+				line1 = null;
+			}
+			else if (line1 == null) {
+				name = line;
+			}
+			else {
+				throw new IllegalArgumentException("Expected the second line of " + line1);
+			}
+		}
+		return tles;
+	}
+
+	/**
+	 * @return days from 1970 to the first of January of the year
+	 */
+	private static long daysTo(int year) {
+		long y = year - 1;
+		return 365L * (year - 1970) + (y / 4 - y / 100 + y / 400) - 477;
+	}
+
+	/**
+	 * The "decimal point assumed" exponent fields, e.g. " 28098-4" is 0.28098e-4
+	 */
+	private static double parseExponent(String field) {
+		field = field.trim();
+		if (field.isEmpty()) {
+			return 0;
+		}
+		int exponentSign = Math.max(field.lastIndexOf('-'), field.lastIndexOf('+'));
+		if (exponentSign <= 0) {
+			return Double.parseDouble(field);
+		}
+		String mantissa = field.substring(0, exponentSign);
+		boolean negative = mantissa.startsWith("-");
+		mantissa = mantissa.replace("-", "").replace("+", "");
+		double value = Double.parseDouble("0." + mantissa) * Math.pow(10, Integer.parseInt(field.substring(exponentSign)));
+		return negative ? -value : value;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int getSatelliteNumber() {
+		return satelliteNumber;
+	}
+
+	/**
+	 * @return epoch ms (UTC) of the elements
+	 */
+	public long getEpochMillis() {
+		return epochMillis;
+	}
+
+	public double getBstar() {
+		return bstar;
+	}
+
+	public double getInclination() {
+		return inclination;
+	}
+
+	public double getRaan() {
+		return raan;
+	}
+
+	public double getEccentricity() {
+		return eccentricity;
+	}
+
+	public double getArgumentOfPerigee() {
+		return argumentOfPerigee;
+	}
+
+	public double getMeanAnomaly() {
+		return meanAnomaly;
+	}
+
+	/**
+	 * @return radians per minute
+	 */
+	public double getMeanMotion() {
+		return meanMotion;
+	}
+
+	@Override
+	public String toString() {
+		return (name == null ? "" : name + " ") + "#" + satelliteNumber;
+	}
+}
@@ -0,0 +1,97 @@
+package persistency;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import data.Component;
+import data.Energy;
+import data.TelemetryRollup;
+import data.Temprature;
+
+/**
+ * Aggregates samples of one component into minute, hour and day rollups in memory,
+ * to be merged into the TelemetryRollup table in one go.
+ */
+class RollupBuilder {
+	private final String component;
+	private final int channelCount;
+	private final List<Map<Long, TelemetryRollup[]>> buckets;
+	/** Last bucket used per resolution, samples mostly arrive in time order */
+	private final TelemetryRollup[][] current;
+	private final float[] values;
+
+	RollupBuilder(String component, int channelCount) {
+		this.component = component;
+		this.channelCount = channelCount;
+		this.buckets = new ArrayList<Map<Long, TelemetryRollup[]>>();
+		for (int r = 0; r < TelemetryRollup.RESOLUTIONS.length; r++) {
+			buckets.add(new HashMap<Long, TelemetryRollup[]>());
+		}
+		this.current = new TelemetryRollup[TelemetryRollup.RESOLUTIONS.length][];
+		this.values = new float[channelCount];
+	}
+
+	void add(Component sample) {
+		if (sample instanceof Temprature) {
+			Temprature tmp = (Temprature) sample;
+			values[0] = tmp.getSensor1();
+			values[1] = tmp.getSensor2();
+			values[2] = tmp.getSensor3();
+		} else if (sample instanceof Energy) {
+			Energy eng = (Energy) sample;
+			values[0] = eng.getBatt1Voltage();
+			values[1] = eng.getBatt2Voltage();
+			values[2] = eng.getBatt3Voltage();
+			values[3] = eng.getBatt1Current();
+			values[4] = eng.getBatt2Current();
+			values[5] = eng.getBatt3Current();
+		} else {
+			return;
+		}
+		add(sample.getSampleTimestamp().getTime(), values);
+	}
+
+	void add(long time, float[] values) {
+		for (int r = 0; r < TelemetryRollup.RESOLUTIONS.length; r++) {
+			long resolution = TelemetryRollup.RESOLUTIONS[r];
+			long bucket = TelemetryRollup.bucketStart(time, resolution);
+			TelemetryRollup[] rows = current[r];
+			if (rows == null || rows[0].getBucketStart() != bucket) {
+				rows = buckets.get(r).get(bucket);
+				if (rows == null) {
+					rows = new TelemetryRollup[channelCount];
+					for (int c = 0; c < channelCount; c++) {
+						rows[c] = new TelemetryRollup(component, resolution, bucket, c);
+					}
+					buckets.get(r).put(bucket, rows);
+				}
+				current[r] = rows;
+			}
+			for (int c = 0; c < channelCount; c++) {
+				rows[c].add(values[c]);
+			}
+		}
+	}
+
+	int getChannelCount() {
+		return channelCount;
+	}
+
+	boolean isEmpty() {
+		return current[0] == null;
+	}
+
+	List<TelemetryRollup> getRows() {
+		List<TelemetryRollup> rows = new ArrayList<TelemetryRollup>();
+		for (Map<Long, TelemetryRollup[]> map : buckets) {
+			for (TelemetryRollup[] bucket : map.values()) {
+				for (TelemetryRollup row : bucket) {
+					rows.add(row);
+				}
+			}
+		}
+		return rows;
+	}
+}
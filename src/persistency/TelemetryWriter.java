@@ -0,0 +1,248 @@
+package persistency;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import logger.EventType;
+import logger.Loggers;
+import data.Component;
+import data.Energy;
+import data.Temprature;
+
+/**
+ * Write-behind stage between the parser and SQLite.
+ * Samples are queued and committed in batches, each batch in one transaction, when either
+ * batchSize samples are waiting or the oldest waiting sample is maxDelayMillis old.
+ * The queue is bounded: when the disk can't keep up, {@link #write(Component)} blocks the
+ * caller until the writer catches up.
+ */
+public class TelemetryWriter implements Runnable {
+	private final dbConnection db;
+	private final int capacity;
+	private final int batchSize;
+	private final long maxDelayNanos;
+
+	private final ReentrantLock lock;
+	private final Condition notEmpty;
+	private final Condition notFull;
+	private final Condition idle;
+	private final ArrayDeque<Component> pending;
+	private long oldestQueuedAt;
+	private boolean writing;
+	private volatile boolean isRunning;
+
+	private volatile long committedSamples;
+	private volatile long failedSamples;
+	private volatile long committedBatches;
+	private volatile long blockedWrites;
+
+	public TelemetryWriter(dbConnection db, int capacity, int batchSize, long maxDelayMillis) {
+		this.db = db;
+		this.capacity = capacity;
+		this.batchSize = batchSize;
+		this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+		this.lock = new ReentrantLock();
+		this.notEmpty = lock.newCondition();
+		this.notFull = lock.newCondition();
+		this.idle = lock.newCondition();
+		this.pending = new ArrayDeque<Component>(capacity);
+		this.writing = false;
+		this.isRunning = true;
+	}
+
+	/**
+	 * Queue a sample for writing
+	 * @param sample Energy or Temprature
+	 * @return true if the sample was queued right away, false if the caller had to wait for the disk
+	 */
+	public boolean write(Component sample) {
+		boolean waited = false;
+		lock.lock();
+		try {
+			while (pending.size() >= capacity) {
+				if (!waited) {
+					waited = true;
+					blockedWrites++;
+				}
+				notFull.awaitUninterruptibly();
+			}
+			if (pending.isEmpty()) {
+				oldestQueuedAt = System.nanoTime();
+			}
+			pending.add(sample);
+			if (pending.size() >= batchSize) {
+				notEmpty.signal();
+			}
+		} finally {
+			lock.unlock();
+		}
+		return !waited;
+	}
+
+	/**
+	 * Commit everything that was queued so far, on the calling thread.
+	 * Used before reads so queries see the samples that were already accepted.
+	 */
+	public void flush() {
+		lock.lock();
+		try {
+			while (writing) {
+				idle.awaitUninterruptibly();
+			}
+			if (pending.isEmpty()) {
+				return;
+			}
+			List<Component> batch = takeBatch(pending.size());
+			writeBatch(batch);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void run() {
+		lock.lock();
+		try {
+			while (isRunning) {
+				if (writing) {
+					idle.await();
+					continue;
+				}
+				if (pending.isEmpty()) {
+					notEmpty.await(maxDelayNanos, TimeUnit.NANOSECONDS);
+					continue;
+				}
+				long wait = oldestQueuedAt + maxDelayNanos - System.nanoTime();
+				if (pending.size() < batchSize && wait > 0) {
+					notEmpty.await(wait, TimeUnit.NANOSECONDS);
+					continue;
+				}
+				writeBatch(takeBatch(batchSize));
+			}
+		} catch (InterruptedException e) {
+			Loggers.logError("Telemetry writer interrupted, {} samples were not written", pending.size());
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Must be called holding the lock, returns holding the lock.
+	 * The lock is released while the transaction runs so producers can keep queuing.
+	 */
+	private void writeBatch(List<Component> batch) {
+		writing = true;
+		lock.unlock();
+		try {
+			commit(batch);
+		} finally {
+			lock.lock();
+			writing = false;
+			idle.signalAll();
+		}
+	}
+
+	private List<Component> takeBatch(int max) {
+		List<Component> batch = new ArrayList<Component>(Math.min(max, pending.size()));
+		while (batch.size() < max && !pending.isEmpty()) {
+			batch.add(pending.poll());
+		}
+		notFull.signalAll();
+		return batch;
+	}
+
+	private void commit(List<Component> batch) {
+		List<Energy> energies = new ArrayList<Energy>();
+		List<Temprature> tempratures = new ArrayList<Temprature>();
+		for (Component c : batch) {
+			if (c instanceof Energy)
+				energies.add((Energy) c);
+			else if (c instanceof Temprature)
+				tempratures.add((Temprature) c);
+		}
+		long newest = 0;
+		int stored = 0;
+		if (db.insertComponents(energies, tempratures)) {
+			for (Component c : energies)
+				newest = Math.max(newest, c.getSampleTimestamp().getTime());
+			for (Component c : tempratures)
+				newest = Math.max(newest, c.getSampleTimestamp().getTime());
+			stored = energies.size() + tempratures.size();
+		} else {
+			// One bad sample (e.g. a duplicate timestamp) rolls back the whole batch, keep the rest
+			List<Energy> noEnergy = Collections.emptyList();
+			List<Temprature> noTemprature = Collections.emptyList();
+			for (Energy e : energies) {
+				if (db.insertComponents(Collections.singletonList(e), noTemprature)) {
+					newest = Math.max(newest, e.getSampleTimestamp().getTime());
+					stored++;
+				}
+			}
+			for (Temprature t : tempratures) {
+				if (db.insertComponents(noEnergy, Collections.singletonList(t))) {
+					newest = Math.max(newest, t.getSampleTimestamp().getTime());
+					stored++;
+				}
+			}
+		}
+		committedSamples += stored;
+		committedBatches++;
+		if (stored < batch.size()) {
+			failedSamples += batch.size() - stored;
+			Loggers.logError("{} of {} samples were not written", batch.size() - stored, batch.size());
+		}
+		if (stored > 0) {
+			Loggers.logEvent(EventType.SAMPLE_STORED, newest, stored);
+		}
+	}
+
+	public int getPendingCount() {
+		lock.lock();
+		try {
+			return pending.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return true when the queue is full and new samples wait for the disk
+	 */
+	public boolean isBacklogged() {
+		return getPendingCount() >= capacity;
+	}
+
+	public long getCommittedSamples() {
+		return committedSamples;
+	}
+
+	/**
+	 * @return samples that were dequeued but not written, e.g. duplicates or of an unknown kind
+	 */
+	public long getFailedSamples() {
+		return failedSamples;
+	}
+
+	public long getCommittedBatches() {
+		return committedBatches;
+	}
+
+	public long getBlockedWrites() {
+		return blockedWrites;
+	}
+
+	public void stopThread() {
+		this.isRunning = false;
+		lock.lock();
+		try {
+			notEmpty.signal();
+		} finally {
+			lock.unlock();
+		}
+	}
+}
@@ -0,0 +1,56 @@
+package persistency;
+
+import java.lang.reflect.Field;
+import java.sql.Timestamp;
+import java.util.Date;
+
+import com.j256.ormlite.field.FieldType;
+import com.j256.ormlite.field.SqlType;
+import com.j256.ormlite.field.types.DateLongType;
+
+/**
+ * Stores a java.sql.Timestamp as an INTEGER of epoch milliseconds, so range queries
+ * and max() compare numbers and can use the time indexes.
+ * Use with {@code @DatabaseField(persisterClass = TimestampLongType.class)}.
+ */
+public class TimestampLongType extends DateLongType {
+	private static final TimestampLongType singleton = new TimestampLongType();
+
+	private TimestampLongType() {
+		super(SqlType.LONG, new Class<?>[] { Timestamp.class });
+	}
+
+	public static TimestampLongType getSingleton() {
+		return singleton;
+	}
+
+	@Override
+	public Object sqlArgToJava(FieldType fieldType, Object sqlArg, int columnPos) {
+		return new Timestamp((Long) sqlArg);
+	}
+
+	/**
+	 * Query arguments may also be plain epoch milliseconds
+	 */
+	@Override
+	public Object javaToSqlArg(FieldType fieldType, Object javaObject) {
+		if (javaObject instanceof Number)
+			return ((Number) javaObject).longValue();
+		return ((Date) javaObject).getTime();
+	}
+
+	@Override
+	public Object resultStringToJava(FieldType fieldType, String stringValue, int columnPos) {
+		return sqlArgToJava(fieldType, Long.parseLong(stringValue), columnPos);
+	}
+
+	@Override
+	public boolean isValidForField(Field field) {
+		return field.getType() == Timestamp.class;
+	}
+
+	@Override
+	public Class<?> getPrimaryClass() {
+		return Timestamp.class;
+	}
+}
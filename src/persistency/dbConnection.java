@@ -3,23 +3,40 @@ package persistency;
 
 
 import data.*;
+import logger.Loggers;
 
 import com.j256.ormlite.dao.*;
 import com.j256.ormlite.jdbc.*;
+import com.j256.ormlite.misc.TransactionManager;
+import com.j256.ormlite.stmt.DeleteBuilder;
+import com.j256.ormlite.stmt.QueryBuilder;
 import com.j256.ormlite.support.*;
 import com.j256.ormlite.table.TableUtils;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 
 public class dbConnection {
     private static dbConnection dbcon;
     static ConnectionSource connectionSource;
-    static Dao<Energy, Timestamp> energyDao;
-    static Dao<Temprature, Timestamp> tempratureDao;
-    static Dao<Satellite, Timestamp> satelliteDao;
-    static Dao<Mission, Timestamp> missionDao;
+    static Dao<Energy, Long> energyDao;
+    static Dao<Temprature, Long> tempratureDao;
+    static Dao<Satellite, Long> satelliteDao;
+    static Dao<Mission, Long> missionDao;
+    static Dao<TelemetryRollup, Long> rollupDao;
+    static Dao<CurrentState, Integer> currentStateDao;
+    /** Held while rollups change, so a backfill doesn't count samples that are being inserted */
+    private static final Object rollupLock = new Object();
+    private static final int rollupChunkSize = 10000;
+    /** Stored in SQLite's user_version, see {@link #migrateSchema()} */
+    private static final int SCHEMA_VERSION = 2;
+    private static volatile long modificationCount = 0;
     
 
 
@@ -31,6 +48,8 @@ public class dbConnection {
             tempratureDao =DaoManager.createDao(connectionSource, Temprature.class);
             satelliteDao =DaoManager.createDao(connectionSource, Satellite.class);
             missionDao = DaoManager.createDao(connectionSource, Mission.class);
+            rollupDao = DaoManager.createDao(connectionSource, TelemetryRollup.class);
+            currentStateDao = DaoManager.createDao(connectionSource, CurrentState.class);
         }
         catch ( Exception e ) {
                System.err.println( e.getClass().getName() + ": " + e.getMessage() );
@@ -44,24 +63,155 @@ public class dbConnection {
         return dbcon;
     }
     
+    /**
+     * Counts the telemetry changes that were not made through DataManager
+     * (clearing, dropping, deleting and direct inserts), so in-memory copies know when to reload
+     */
+    public long getModificationCount(){
+        return modificationCount;
+    }
+    
     public void createTables(){
+    	try{
+    	migrateSchema();
+    	}
+    	catch ( SQLException e ) {
+    	    // The tables are still created, the old ones are kept as they are
+    	    System.err.println( e.getClass().getName() + ": " + e.getMessage() );
+    	    Loggers.logError("Database schema migration failed: {}", e.getMessage());
+    	}
     	try{
     	TableUtils.createTableIfNotExists(connectionSource, Energy.class);
     	TableUtils.createTableIfNotExists(connectionSource, Temprature.class);
     	TableUtils.createTableIfNotExists(connectionSource, Satellite.class);
     	TableUtils.createTableIfNotExists(connectionSource, Mission.class);
+    	TableUtils.createTableIfNotExists(connectionSource, TelemetryRollup.class);
+    	TableUtils.createTableIfNotExists(connectionSource, CurrentState.class);
+    	// Range scans over the telemetry tables are answered from the index alone
+    	energyDao.executeRaw("CREATE INDEX IF NOT EXISTS Energy_sample_covering ON Energy (" + Energy.DATE_FIELD_NAME
+    			+ ", batt1Voltage, batt2Voltage, batt3Voltage, batt1Current, batt2Current, batt3Current, timeReceivedTimestamp)");
+    	tempratureDao.executeRaw("CREATE INDEX IF NOT EXISTS Temprature_sample_covering ON Temprature (" + Temprature.DATE_FIELD_NAME
+    			+ ", sensor1, sensor2, sensor3, timeReceivedTimestamp)");
     	}
     	catch ( SQLException e ) {
             System.err.println( e.getClass().getName() + ": " + e.getMessage() );
         }
     }
     
+    /**
+     * Bring an existing database up to SCHEMA_VERSION, one migration at a time, each in its own transaction.
+     * A new database has nothing to migrate and is just stamped with the current version.
+     */
+    private void migrateSchema() throws SQLException{
+        int version = (int) energyDao.queryRawValue("PRAGMA user_version");
+        if (version == 0 && !tableExists("Energy")){
+            energyDao.executeRaw("PRAGMA user_version = " + SCHEMA_VERSION);
+            return;
+        }
+        for (int v = version + 1; v <= SCHEMA_VERSION; v++){
+            final int next = v;
+            TransactionManager.callInTransaction(connectionSource, new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    migrate(next);
+                    energyDao.executeRaw("PRAGMA user_version = " + next);
+                    return null;
+                }
+            });
+            Loggers.logAction("Database schema migrated to version {}", next);
+        }
+    }
+    
+    private void migrate(int version) throws SQLException{
+        switch (version) {
+        case 1:
+            // Timestamp primary keys -> surrogate rowid and INTEGER epoch milliseconds
+            rebuildWithEpochTimes(Energy.class, "Energy");
+            rebuildWithEpochTimes(Temprature.class, "Temprature");
+            rebuildWithEpochTimes(Satellite.class, "Satellite");
+            rebuildWithEpochTimes(Mission.class, "Mission");
+            break;
+        case 2:
+            // current_state, seeded with the newest stored status
+            TableUtils.createTableIfNotExists(connectionSource, CurrentState.class);
+            if (!getColumns("Satellite").isEmpty())
+                currentStateDao.executeRaw("INSERT OR REPLACE INTO current_state (id, satelliteId, updated) SELECT "
+                        + CurrentState.ROW_ID + ", id, " + Satellite.DATE_FIELD_NAME + " FROM Satellite ORDER BY "
+                        + Satellite.DATE_FIELD_NAME + " DESC LIMIT 1");
+            break;
+        default:
+            throw new SQLException("No migration to schema version " + version);
+        }
+    }
+    
+    /**
+     * Recreate a table from before the surrogate ids with the current layout and copy its rows,
+     * converting TIMESTAMP columns to epoch milliseconds
+     */
+    private void rebuildWithEpochTimes(Class<?> entity, String table) throws SQLException{
+        List<String[]> columns = getColumns(table);
+        if (columns.isEmpty())
+            return;
+        for (String[] column : columns){
+            if (column[1].equals("id"))
+                return;
+        }
+        energyDao.executeRaw("ALTER TABLE " + table + " RENAME TO " + table + "_v0");
+        TableUtils.createTable(connectionSource, entity);
+        StringBuilder names = new StringBuilder();
+        StringBuilder values = new StringBuilder();
+        for (String[] column : columns){
+            if (names.length() > 0){
+                names.append(", ");
+                values.append(", ");
+            }
+            names.append(column[1]);
+            values.append(column[2].equalsIgnoreCase("TIMESTAMP") ? epochMillis(column[1]) : column[1]);
+        }
+        energyDao.executeRaw("INSERT OR IGNORE INTO " + table + " (" + names + ") SELECT " + values + " FROM " + table + "_v0");
+        energyDao.executeRaw("DROP TABLE " + table + "_v0");
+    }
+    
+    /**
+     * @return one {cid, name, type, ...} row per column, empty if the table doesn't exist
+     */
+    private List<String[]> getColumns(String table) throws SQLException{
+        // PRAGMA table_info of a missing table returns no result set, which older drivers throw on
+        if (!tableExists(table))
+            return new ArrayList<String[]>();
+        GenericRawResults<String[]> results = energyDao.queryRaw("PRAGMA table_info(" + table + ")");
+        try{
+            return new ArrayList<String[]>(results.getResults());
+        }
+        finally {
+            results.close();
+        }
+    }
+    
+    private boolean tableExists(String table) throws SQLException{
+        return energyDao.queryRawValue("SELECT count(*) FROM sqlite_master WHERE type = 'table' AND name = ?", table) > 0;
+    }
+    
+    /**
+     * SQL converting an old time column: numbers already are milliseconds,
+     * text is read as "yyyy-MM-dd HH:mm:ss.fff" (taken as UTC)
+     */
+    private static String epochMillis(String column){
+        return "CASE WHEN " + column + " IS NULL THEN NULL"
+                + " WHEN typeof(" + column + ") IN ('integer', 'real') THEN CAST(" + column + " AS INTEGER)"
+                + " ELSE CAST(strftime('%s', " + column + ") AS INTEGER) * 1000"
+                + " + CAST(strftime('%f', " + column + ") * 1000 AS INTEGER) % 1000 END";
+    }
+    
     public void clearTables(){
+    	modificationCount++;
     	try{
     	TableUtils.clearTable(connectionSource, Energy.class);
     	TableUtils.clearTable(connectionSource, Temprature.class);
     	TableUtils.clearTable(connectionSource, Satellite.class);
     	TableUtils.clearTable(connectionSource, Mission.class);
+    	TableUtils.clearTable(connectionSource, TelemetryRollup.class);
+    	TableUtils.clearTable(connectionSource, CurrentState.class);
     	}
     	catch ( SQLException e ) {
             System.err.println( e.getClass().getName() + ": " + e.getMessage() );
@@ -69,11 +219,14 @@ public class dbConnection {
     }
     
     public void dropTables(){
+    	modificationCount++;
     	try{
     	TableUtils.dropTable(connectionSource, Energy.class, true);
     	TableUtils.dropTable(connectionSource, Temprature.class, true);
     	TableUtils.dropTable(connectionSource, Satellite.class, true);
     	TableUtils.dropTable(connectionSource, Mission.class, true);
+    	TableUtils.dropTable(connectionSource, TelemetryRollup.class, true);
+    	TableUtils.dropTable(connectionSource, CurrentState.class, true);
     	}
     	catch ( SQLException e ) {
             System.err.println( e.getClass().getName() + ": " + e.getMessage() );
@@ -107,12 +260,17 @@ public class dbConnection {
     	return mission;
     }
     
+    /**
+     * The status current_state points at, two lookups by key
+     */
     public Satellite getLatestSatelliteData(){
     	Satellite satellite=null;
     	try{
-    	long max = satelliteDao.queryRawValue("select max(creationTimestamp) from Satellite");
-    		// now perform a second query to get the max row
-    	satellite = satelliteDao.queryBuilder().where().eq("creationTimestamp", max).queryForFirst();
+    	CurrentState current = currentStateDao.queryForId(CurrentState.ROW_ID);
+    	if (current != null)
+    		satellite = satelliteDao.queryForId(current.getSatelliteId());
+    	if (satellite == null) // Newest row straight from the creationTimestamp index
+    		satellite = satelliteDao.queryBuilder().orderBy(Satellite.DATE_FIELD_NAME, false).limit(1L).queryForFirst();
     	}
     	catch ( SQLException e ) {
             System.err.println( e.getClass().getName() + ": " + e.getMessage() );
@@ -158,6 +316,67 @@ public class dbConnection {
         }
         return data;
     }
+    
+    /**
+     * Range query straight into columns, rows are read one at a time instead of into a list
+     */
+    public TelemetrySeries getTempratureSeries(Timestamp startDate, Timestamp endDate){
+        TelemetrySeries series = new TelemetrySeries(Temprature.SENSOR_NAMES, 1024);
+        float[] values = new float[Temprature.SENSOR_NAMES.length];
+        CloseableIterator<Temprature> it = null;
+        try{
+            it = tempratureDao.iterator(tempratureDao.queryBuilder().orderBy(Temprature.DATE_FIELD_NAME, true)
+                    .where().between(Temprature.DATE_FIELD_NAME, startDate, endDate).prepare());
+            while (it.hasNext()){
+                Temprature tmp = it.next();
+                values[0] = tmp.getSensor1();
+                values[1] = tmp.getSensor2();
+                values[2] = tmp.getSensor3();
+                series.add(tmp.getSampleTimestamp().getTime(), values);
+            }
+        }
+        catch ( Exception e ) {
+            System.err.println( e.getClass().getName() + ": " + e.getMessage() );
+            return null;
+        }
+        finally {
+            if (it != null)
+                it.closeQuietly();
+        }
+        return series;
+    }
+    
+    /**
+     * Range query straight into columns, rows are read one at a time instead of into a list
+     */
+    public TelemetrySeries getEnergySeries(Timestamp startDate, Timestamp endDate){
+        TelemetrySeries series = new TelemetrySeries(Energy.SENSOR_NAMES, 1024);
+        float[] values = new float[Energy.SENSOR_NAMES.length];
+        CloseableIterator<Energy> it = null;
+        try{
+            it = energyDao.iterator(energyDao.queryBuilder().orderBy(Energy.DATE_FIELD_NAME, true)
+                    .where().between(Energy.DATE_FIELD_NAME, startDate, endDate).prepare());
+            while (it.hasNext()){
+                Energy eng = it.next();
+                values[0] = eng.getBatt1Voltage();
+                values[1] = eng.getBatt2Voltage();
+                values[2] = eng.getBatt3Voltage();
+                values[3] = eng.getBatt1Current();
+                values[4] = eng.getBatt2Current();
+                values[5] = eng.getBatt3Current();
+                series.add(eng.getSampleTimestamp().getTime(), values);
+            }
+        }
+        catch ( Exception e ) {
+            System.err.println( e.getClass().getName() + ": " + e.getMessage() );
+            return null;
+        }
+        finally {
+            if (it != null)
+                it.closeQuietly();
+        }
+        return series;
+    }
 
  
 
@@ -178,14 +397,7 @@ public class dbConnection {
     									Status Sband, Timestamp sbandTS, Status Payload,Timestamp payloadTS, 
     									Status SolarPanels, Timestamp solarPanelsTS, Status Thermal, Timestamp ThermalTS){
         Satellite sat=new Satellite(temp,tempTS,energy,energyTS,Sband,sbandTS,Payload,payloadTS,SolarPanels,solarPanelsTS,Thermal,ThermalTS);
-        try{
-            satelliteDao.create(sat);
-            return sat;
-        }
-        catch ( SQLException e ) {
-            System.err.println( e.getClass().getName() + ": " + e.getMessage() );
-            return null;
-        }
+        return saveSatellite(sat);
     }
     
     public Satellite insertSatellite(Satellite.SatelliteState state, Status temp, Timestamp tempTS, Status energy, Timestamp energyTS, 
@@ -193,6 +405,13 @@ public class dbConnection {
     										Timestamp solarPanelsTS, Status Thermal, Timestamp ThermalTS){
         Satellite sat=new Satellite(state,temp,tempTS,energy,energyTS,Sband,sbandTS,Payload,payloadTS,
         							SolarPanels,solarPanelsTS,Thermal,ThermalTS);
+        return saveSatellite(sat);
+    }
+    
+    /**
+     * Insert the status, current_state is moved by {@link #setCurrentState(Satellite)} if it is the newest
+     */
+    private Satellite saveSatellite(final Satellite sat){
         try{
             satelliteDao.create(sat);
             return sat;
@@ -203,60 +422,302 @@ public class dbConnection {
         }
     }
     
-    public Temprature insertTemprature(float sensor1,float sensor2, float sensor3, Timestamp timeStamp){
-        Temprature tmp=new Temprature(timeStamp,sensor1,sensor2,sensor3);
+    /**
+     * Point current_state at a stored status
+     */
+    public void setCurrentState(Satellite sat){
         try{
-//        	List<Temprature> dataFromTable=tempratureDao.queryBuilder().where().eq(Temprature.DATE_FIELD_NAME, timeStamp).query();
-//        	if (dataFromTable!=null){
-//        		System.err.println("TimeStamp already exists");
-//        		return null;
-//        	}
-
-            tempratureDao.create(tmp);
-            return tmp;
+            currentStateDao.createOrUpdate(new CurrentState(sat.getId()));
         }
         catch ( SQLException e ) {
             System.err.println( e.getClass().getName() + ": " + e.getMessage() );
-            return null;
         }
     }
     
+    public Temprature insertTemprature(float sensor1,float sensor2, float sensor3, Timestamp timeStamp){
+        modificationCount++;
+        Temprature tmp=new Temprature(timeStamp,sensor1,sensor2,sensor3);
+        List<Energy> noEnergy = Collections.emptyList();
+        // Same path as the batches so the rollups are updated in the same transaction
+        if (insertComponents(noEnergy, Collections.singletonList(tmp)))
+            return tmp;
+        return null;
+    }
+    
     public Energy insertEnergy(float batt1V,float batt2V,float batt3V, float batt1C,float batt2C,float batt3C, Timestamp timeStamp){
-        try{
-//        	List<Energy> dataFromTable=energyDao.queryBuilder().where().eq(Energy.DATE_FIELD_NAME, timeStamp).query();
-//        	if(dataFromTable!=null){
-//        		System.err.println("TimeStamp already exists");
-//        		return null;
-//        	}
-        	Energy eng=new Energy(timeStamp,batt1V,batt2V,batt3V,batt1C,batt2C,batt3C);  
-            energyDao.create(eng);
+        modificationCount++;
+        Energy eng=new Energy(timeStamp,batt1V,batt2V,batt3V,batt1C,batt2C,batt3C);
+        List<Temprature> noTemprature = Collections.emptyList();
+        if (insertComponents(Collections.singletonList(eng), noTemprature))
             return eng;
-        }
-        catch ( SQLException e ) {
-            System.err.println( e.getClass().getName() + ": " + e.getMessage() );
-            return null;
-        }
+        return null;
     }
    
 
     
-    public void deleteComponent(String component,Timestamp timestamp) {
+    /**
+     * Insert a batch of samples in a single transaction (one commit instead of one per sample).
+     * The minute/hour/day rollups of the samples are updated in the same transaction.
+     * @return false if the transaction was rolled back
+     */
+    public boolean insertComponents(final List<Energy> energies, final List<Temprature> tempratures){
+        synchronized (rollupLock) {
+            try{
+                TransactionManager.callInTransaction(connectionSource, new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        RollupBuilder energyRollups = new RollupBuilder("Energy", Energy.SENSOR_NAMES.length);
+                        RollupBuilder tempratureRollups = new RollupBuilder("Temprature", Temprature.SENSOR_NAMES.length);
+                        for (Energy eng : energies){
+                            energyDao.create(eng);
+                            energyRollups.add(eng);
+                        }
+                        for (Temprature tmp : tempratures){
+                            tempratureDao.create(tmp);
+                            tempratureRollups.add(tmp);
+                        }
+                        mergeRollups(energyRollups);
+                        mergeRollups(tempratureRollups);
+                        return null;
+                    }
+                });
+                return true;
+            }
+            catch ( SQLException e ) {
+                System.err.println( e.getClass().getName() + ": " + e.getMessage() );
+                return false;
+            }
+        }
+    }
+
+    public void deleteComponent(final String component,final Timestamp timestamp) {
     	if (component==null) return;
-        try{
-            if(component.equals("Energy"))
-                energyDao.deleteById(timestamp);
-             else if(component.equals("Temprature"))
-                      tempratureDao.deleteById(timestamp);
+        modificationCount++;
+        synchronized (rollupLock) {
+            try{
+                // The rollups of the day are rebuilt in the same transaction, so they never disagree with the samples
+                TransactionManager.callInTransaction(connectionSource, new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        if(component.equals("Energy")){
+                            DeleteBuilder<Energy, Long> delete = energyDao.deleteBuilder();
+                            delete.where().eq(Energy.DATE_FIELD_NAME, timestamp);
+                            delete.delete();
+                        }
+                        else if(component.equals("Temprature")){
+                            DeleteBuilder<Temprature, Long> delete = tempratureDao.deleteBuilder();
+                            delete.where().eq(Temprature.DATE_FIELD_NAME, timestamp);
+                            delete.delete();
+                        }
+                        if (timestamp != null)
+                            rebuildRollups(component, timestamp.getTime());
+                        return null;
+                    }
+                });
             }
             catch ( Exception e ) {
                System.err.println( e.getClass().getName() + ": " + e.getMessage() );
             } 
-            
+        }
+    }
+    
+    /**
+     * One sample per bucket of the given rollup resolution (see {@link TelemetryRollup#RESOLUTIONS}),
+     * the bucket containing startDate included
+     * @param component "Energy" or "Temprature"
+     * @param sensors channel names of the component, in channel order
+     */
+    public TelemetrySeries getRollupSeries(String component, String[] sensors, long resolution,
+                                            Timestamp startDate, Timestamp endDate, TelemetryRollup.Aggregate aggregate){
+        TelemetrySeries series = new TelemetrySeries(sensors, 256);
+        float[] values = new float[sensors.length];
+        long bucket = 0;
+        boolean hasBucket = false;
+        CloseableIterator<TelemetryRollup> it = null;
+        try{
+            it = rollupDao.iterator(rollupDao.queryBuilder()
+                    .orderBy(TelemetryRollup.BUCKET_FIELD_NAME, true).orderBy(TelemetryRollup.CHANNEL_FIELD_NAME, true)
+                    .where().eq(TelemetryRollup.COMPONENT_FIELD_NAME, component)
+                    .and().eq(TelemetryRollup.RESOLUTION_FIELD_NAME, resolution)
+                    .and().between(TelemetryRollup.BUCKET_FIELD_NAME,
+                            TelemetryRollup.bucketStart(startDate.getTime(), resolution), endDate.getTime()).prepare());
+            while (it.hasNext()){
+                TelemetryRollup row = it.next();
+                if (!hasBucket || row.getBucketStart() != bucket){
+                    if (hasBucket)
+                        series.add(bucket, values);
+                    bucket = row.getBucketStart();
+                    hasBucket = true;
+                    Arrays.fill(values, Float.NaN);
+                }
+                if (row.getChannel() < values.length)
+                    values[row.getChannel()] = row.getValue(aggregate);
+            }
+            if (hasBucket)
+                series.add(bucket, values);
+        }
+        catch ( Exception e ) {
+            System.err.println( e.getClass().getName() + ": " + e.getMessage() );
+            return null;
+        }
+        finally {
+            if (it != null)
+                it.closeQuietly();
+        }
+        return series;
+    }
+    
+    /**
+     * @return true if there are samples but no rollups, e.g. for a database from before the rollups existed
+     */
+    public boolean needsRollupBackfill(){
+        try{
+            return rollupDao.countOf() == 0 && (energyDao.countOf() > 0 || tempratureDao.countOf() > 0);
+        }
+        catch ( SQLException e ) {
+            System.err.println( e.getClass().getName() + ": " + e.getMessage() );
+            return false;
+        }
+    }
+    
+    /**
+     * Recompute all rollups from the stored samples, a day at a time in its own transaction.
+     * Inserts only wait for the day being aggregated; a sample inserted into a day that is not
+     * done yet is counted again when that day is rebuilt from the stored samples.
+     * @return false if a day failed, the rollups are then cleared so the next start backfills again
+     */
+    public boolean backfillRollups(){
+        try{
+            synchronized (rollupLock) {
+                TableUtils.clearTable(connectionSource, TelemetryRollup.class);
+            }
+            backfillRollups("Energy");
+            backfillRollups("Temprature");
+            return true;
+        }
+        catch ( SQLException e ) {
+            System.err.println( e.getClass().getName() + ": " + e.getMessage() );
+            try{
+                synchronized (rollupLock) {
+                    TableUtils.clearTable(connectionSource, TelemetryRollup.class);
+                }
+            }
+            catch ( SQLException e1 ) {
+                System.err.println( e1.getClass().getName() + ": " + e1.getMessage() );
+            }
+            return false;
+        }
+    }
+    
+    private void backfillRollups(final String component) throws SQLException{
+        Long time = firstSampleTime(component, 0);
+        while (time != null){
+            final long dayStart = TelemetryRollup.bucketStart(time, TelemetryRollup.DAY);
+            synchronized (rollupLock) {
+                TransactionManager.callInTransaction(connectionSource, new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        rebuildRollups(component, dayStart);
+                        return null;
+                    }
+                });
+            }
+            time = firstSampleTime(component, dayStart + TelemetryRollup.DAY);
+        }
+    }
+    
+    /**
+     * @return the sample time of the first sample at or after from, null if there is none
+     */
+    private Long firstSampleTime(String component, long from) throws SQLException{
+        Component first;
+        if (component.equals("Energy"))
+            first = energyDao.queryBuilder().orderBy(Energy.DATE_FIELD_NAME, true)
+                    .where().ge(Energy.DATE_FIELD_NAME, new Timestamp(from)).queryForFirst();
+        else
+            first = tempratureDao.queryBuilder().orderBy(Temprature.DATE_FIELD_NAME, true)
+                    .where().ge(Temprature.DATE_FIELD_NAME, new Timestamp(from)).queryForFirst();
+        return first == null ? null : first.getSampleTimestamp().getTime();
+    }
+    
+    /**
+     * Rollups can't be decremented, so after a delete the whole day of the sample is aggregated again
+     */
+    private void rebuildRollups(String component, long time) throws SQLException{
+        long dayStart = TelemetryRollup.bucketStart(time, TelemetryRollup.DAY);
+        long dayEnd = dayStart + TelemetryRollup.DAY - 1;
+        DeleteBuilder<TelemetryRollup, Long> delete = rollupDao.deleteBuilder();
+        delete.where().eq(TelemetryRollup.COMPONENT_FIELD_NAME, component)
+                .and().between(TelemetryRollup.BUCKET_FIELD_NAME, dayStart, dayEnd);
+        delete.delete();
+        rollupStoredSamples(component, new Timestamp(dayStart), new Timestamp(dayEnd));
+    }
+    
+    /**
+     * Aggregate stored samples (all of them if startDate is null) into the rollups, a chunk at a time
+     */
+    private void rollupStoredSamples(String component, Timestamp startDate, Timestamp endDate) throws SQLException{
+        CloseableIterator<? extends Component> it;
+        RollupBuilder builder;
+        if (component.equals("Energy")){
+            QueryBuilder<Energy, Long> query = energyDao.queryBuilder();
+            if (startDate != null)
+                query.where().between(Energy.DATE_FIELD_NAME, startDate, endDate);
+            it = energyDao.iterator(query.prepare());
+            builder = new RollupBuilder(component, Energy.SENSOR_NAMES.length);
+        }
+        else if (component.equals("Temprature")){
+            QueryBuilder<Temprature, Long> query = tempratureDao.queryBuilder();
+            if (startDate != null)
+                query.where().between(Temprature.DATE_FIELD_NAME, startDate, endDate);
+            it = tempratureDao.iterator(query.prepare());
+            builder = new RollupBuilder(component, Temprature.SENSOR_NAMES.length);
+        }
+        else
+            return;
+        try{
+            int samples = 0;
+            while (it.hasNext()){
+                builder.add(it.next());
+                if (++samples % rollupChunkSize == 0){
+                    mergeRollups(builder);
+                    builder = new RollupBuilder(component, builder.getChannelCount());
+                }
+            }
+            mergeRollups(builder);
+        }
+        finally {
+            it.closeQuietly();
+        }
+    }
+    
+    /**
+     * Add the aggregates of the builder to the stored rollups, creating the buckets that don't exist yet
+     */
+    private void mergeRollups(RollupBuilder builder) throws SQLException{
+        if (builder.isEmpty())
+            return;
+        for (TelemetryRollup row : builder.getRows()){
+            TelemetryRollup stored = rollupDao.queryBuilder().where()
+                    .eq(TelemetryRollup.COMPONENT_FIELD_NAME, row.getComponent())
+                    .and().eq(TelemetryRollup.RESOLUTION_FIELD_NAME, row.getResolution())
+                    .and().eq(TelemetryRollup.BUCKET_FIELD_NAME, row.getBucketStart())
+                    .and().eq(TelemetryRollup.CHANNEL_FIELD_NAME, row.getChannel()).queryForFirst();
+            if (stored == null){
+                rollupDao.create(row);
+            }
+            else{
+                stored.merge(row);
+                rollupDao.update(stored);
+            }
+        }
     }
     
     public void deleteCompletedMission(Timestamp creationTimestamp){
     	try{
-    		missionDao.deleteById(creationTimestamp);
+    		DeleteBuilder<Mission, Long> delete = missionDao.deleteBuilder();
+    		delete.where().eq(Mission.DATE_FIELD_NAME, creationTimestamp);
+    		delete.delete();
     	}
     	catch ( Exception e ) {
             System.err.println( e.getClass().getName() + ": " + e.getMessage() );
@@ -273,5 +734,28 @@ public class dbConnection {
     	
     }
 
+    /**
+     * Update all the missions in one transaction
+     * @return false if the transaction was rolled back
+     */
+    public boolean updateMissions(final Collection<Mission> missions){
+    	try{
+            TransactionManager.callInTransaction(connectionSource, new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    for (Mission m : missions){
+                        missionDao.update(m);
+                    }
+                    return null;
+                }
+            });
+            return true;
+    	}
+    	catch ( SQLException e ) {
+            System.err.println( e.getClass().getName() + ": " + e.getMessage() );
+            return false;
+        }
+    }
+
 	
-}
+}